@@ -0,0 +1,45 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link JmmAnalyser#semanticAnalysis}, from the AST to the symbol table and the semantic reports, for all the
+ * programs of the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisBenchmark {
+
+    @Param({"corpus", "synthetic-10", "synthetic-100", "synthetic-1000"})
+    public String input;
+
+    private List<JmmParserResult> parserResults;
+
+    @Setup
+    public void setup() {
+        BenchmarkInputs.silence();
+        parserResults = BenchmarkInputs.parse(BenchmarkInputs.load(input));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkInputs.restore();
+    }
+
+    @Benchmark
+    public void semanticAnalysis(Blackhole blackhole) {
+        for (JmmParserResult parserResult : parserResults) {
+            blackhole.consume(new JmmAnalyser().semanticAnalysis(parserResult));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Compares the time from semantic analysis to Jasmin code of the three backends:
+ * <ul>
+ *     <li>ollir-text: OLLIR text, OLLIR parser, JasminBackender (what the tests use)</li>
+ *     <li>classunit: ClassUnit built from the AST, JasminBackender (-O1 and up)</li>
+ *     <li>ast: AstToJasminImpl, straight from the AST (-O0)</li>
+ * </ul>
+ * Usage: BackendBenchmark [-n iterations] file.jmm...
+ */
+public class BackendBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50;
+
+    public static void main(String[] args) {
+        int iterations = 200;
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n")) iterations = Integer.parseInt(args[++i]);
+            else files.add(new File(args[i]));
+        }
+
+        PrintStream out = System.out;
+        out.printf("%-40s %14s %14s %14s %9s%n", "file", "ollir-text us", "classunit us", "ast us", "speedup");
+
+        for (File file : files) {
+            Map<String, String> config = new HashMap<>();
+            config.put("inputFile", file.getPath());
+            config.put("optimize", "false");
+            config.put("registerAllocation", "-1");
+            config.put("debug", "false");
+
+            // The compiler stages print progress messages, keep them out of the report
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                var parserResult = new SimpleParser().parse(SpecsIo.read(file), config);
+                JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+
+                double ollirText = measure(iterations, semantics,
+                        s -> new JasminBackender().toJasmin(new Optimizer().toOllir(s)));
+                double classUnit = measure(iterations, semantics,
+                        s -> new JasminBackender().toJasmin(new Optimizer().toClassUnit(s), s.getConfig()));
+                double ast = measure(iterations, semantics, s -> new AstToJasminImpl().toJasmin(s));
+
+                System.setOut(out);
+                out.printf("%-40s %14.1f %14.1f %14.1f %8.1fx%n", file.getName(), ollirText, classUnit, ast,
+                        ollirText / ast);
+            } catch (RuntimeException e) {
+                System.setOut(out);
+                out.printf("%-40s failed: %s%n", file.getName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return the average time of an iteration, in microseconds
+     */
+    private static double measure(int iterations, JmmSemanticsResult semantics, Consumer<JmmSemanticsResult> backend) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            backend.accept(semantics);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            backend.accept(semantics);
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+}
@@ -0,0 +1,123 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The Java-- programs the stage benchmarks compile, selected by their "input" parameter:
+ * <ul>
+ *     <li>corpus: the .jmm files of the tests and of benchmarks/ that go through every stage without errors</li>
+ *     <li>synthetic-N: a class of N methods from the {@link ProgramGenerator} with its default knobs, to see how the
+ *     stages scale</li>
+ * </ul>
+ * Each stage gets the results of the stages before it, computed once in the setup.
+ */
+final class BenchmarkInputs {
+
+    private static final List<Path> CORPORA = List.of(Path.of("test"), Path.of("benchmarks"));
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+    private static final long SEED = 0;
+
+    private static PrintStream out;
+
+    private BenchmarkInputs() {
+    }
+
+    static List<String> load(String input) {
+        if (input.equals("corpus")) return loadCorpus();
+        if (input.startsWith(SYNTHETIC_PREFIX)) {
+            int methods = Integer.parseInt(input.substring(SYNTHETIC_PREFIX.length()));
+            return List.of(new ProgramGenerator(SEED).methods(methods).generate());
+        }
+        throw new RuntimeException("Unknown benchmark input '" + input + "', expected corpus or synthetic-N.");
+    }
+
+    static Map<String, String> config() {
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", "benchmark.jmm");
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+        config.put("debug", "false");
+        return config;
+    }
+
+    static List<JmmParserResult> parse(List<String> sources) {
+        List<JmmParserResult> results = new ArrayList<>();
+        for (String source : sources) results.add(new SimpleParser().parse(source, config()));
+        return results;
+    }
+
+    static List<JmmSemanticsResult> analyse(List<String> sources) {
+        List<JmmSemanticsResult> results = new ArrayList<>();
+        for (JmmParserResult parserResult : parse(sources)) results.add(new JmmAnalyser().semanticAnalysis(parserResult));
+        return results;
+    }
+
+    /**
+     * The compiler stages print progress messages, which would get mixed with the output of JMH.
+     */
+    static void silence() {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    static void restore() {
+        if (out != null) System.setOut(out);
+    }
+
+    private static List<String> loadCorpus() {
+        List<String> sources = new ArrayList<>();
+
+        for (Path corpus : CORPORA) {
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(corpus)) {
+                files = paths.filter(path -> path.toString().endsWith(".jmm")).sorted().toList();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not list the programs of " + corpus.toAbsolutePath(), e);
+            }
+
+            for (Path file : files) {
+                try {
+                    String source = Files.readString(file);
+                    if (compiles(source)) sources.add(source);
+                } catch (IOException e) {
+                    throw new RuntimeException("Could not read " + file, e);
+                }
+            }
+        }
+
+        return sources;
+    }
+
+    private static boolean compiles(String source) {
+        try {
+            JmmParserResult parserResult = new SimpleParser().parse(source, config());
+            if (hasErrors(parserResult.getReports()) || parserResult.getRootNode() == null) return false;
+
+            JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+            if (hasErrors(semantics.getReports())) return false;
+
+            return !hasErrors(new JasminBackender().toJasmin(new Optimizer().toOllir(semantics)).getReports());
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasErrors(List<Report> reports) {
+        return reports.stream().anyMatch(report -> report.getType() == ReportType.ERROR);
+    }
+}
@@ -0,0 +1,104 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.jasmin.ClassFileUpgrader;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the time the JVM takes to load, verify and initialize the generated classes as Jasmin writes them (version
+ * 45.3, checked by the type inferencing verifier) and after {@link ClassFileUpgrader} (version 61 with stack map
+ * frames, checked by the type checking verifier). Each round defines every class again in a new class loader, so
+ * that it is verified again.
+ * Usage: ClassLoadingBenchmark [-n rounds] [-O0|-O1|-O2] file.jmm...
+ */
+public class ClassLoadingBenchmark {
+
+    private static final int WARMUP_ROUNDS = 200;
+
+    public static void main(String[] args) {
+        int rounds = 2000;
+        int level = 0;
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n")) rounds = Integer.parseInt(args[++i]);
+            else if (args[i].matches("-O[0-2]")) level = args[i].charAt(2) - '0';
+            else files.add(new File(args[i]));
+        }
+
+        ClassLoader libraries = GeneratedClasses.libraries();
+        ClassFileUpgrader upgrader = new ClassFileUpgrader(libraries);
+
+        PrintStream out = System.out;
+        out.printf("%-40s %12s %12s %9s %9s%n", "file", "jasmin us", "upgraded us", "speedup", "bytes");
+
+        double totalJasmin = 0;
+        double totalUpgraded = 0;
+
+        for (File file : files) {
+            double jasmin;
+            double upgraded;
+            int size;
+
+            // The compiler stages print progress messages, keep them out of the report
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                Map<String, String> config = new HashMap<>();
+                config.put("inputFile", file.getPath());
+                config.put("debug", "false");
+                Launcher.setOptimizationLevel(config, level);
+
+                JasminResult result = GeneratedClasses.compile(file, config);
+                byte[] classFile = GeneratedClasses.assemble(result);
+                byte[] upgradedClassFile = upgrader.upgrade(classFile);
+                size = upgradedClassFile.length - classFile.length;
+
+                double[] times = measure(rounds, libraries, result.getClassName(), classFile, upgradedClassFile);
+                jasmin = times[0];
+                upgraded = times[1];
+            } catch (RuntimeException | LinkageError e) {
+                System.setOut(out);
+                out.printf("%-40s failed: %s%n", file.getName(), e);
+                continue;
+            }
+
+            System.setOut(out);
+            out.printf("%-40s %12.2f %12.2f %8.2fx %+9d%n", file.getName(), jasmin, upgraded, jasmin / upgraded, size);
+            totalJasmin += jasmin;
+            totalUpgraded += upgraded;
+        }
+
+        out.printf("%-40s %12.2f %12.2f %8.2fx%n", "total", totalJasmin, totalUpgraded, totalJasmin / totalUpgraded);
+    }
+
+    /**
+     * Loads the two versions of the class in turns, so that both see the same state of the JVM.
+     *
+     * @return the average time to load, verify and initialize each version, in microseconds
+     */
+    private static double[] measure(int rounds, ClassLoader libraries, String className, byte[]... classFiles) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            for (byte[] classFile : classFiles) GeneratedClasses.load(libraries, className, classFile);
+        }
+
+        double[] times = new double[classFiles.length];
+        for (int i = 0; i < rounds; i++) {
+            for (int version = 0; version < classFiles.length; version++) {
+                long start = System.nanoTime();
+                GeneratedClasses.load(libraries, className, classFiles[version]);
+                times[version] += System.nanoTime() - start;
+            }
+        }
+
+        for (int version = 0; version < classFiles.length; version++) times[version] /= 1000.0 * rounds;
+        return times;
+    }
+}
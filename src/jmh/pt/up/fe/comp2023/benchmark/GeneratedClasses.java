@@ -0,0 +1,102 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Map;
+
+/**
+ * Compiles Java-- programs in-process, through the backend the config selects, and loads the resulting classes, for
+ * the benchmarks that run or load the generated code. Imported classes are looked up in libs-jmm/compiled.
+ */
+final class GeneratedClasses {
+
+    private static final File LIBRARIES = new File("libs-jmm/compiled");
+
+    /**
+     * Defines a single class from its bytes, everything else comes from the parent. The class is defined even when the
+     * parent has one of the same name, like the Quicksort of libs-jmm.
+     */
+    private static class ByteArrayClassLoader extends ClassLoader {
+        private final String name;
+        private final byte[] classFile;
+
+        ByteArrayClassLoader(ClassLoader parent, String name, byte[] classFile) {
+            super(parent);
+            this.name = name;
+            this.classFile = classFile;
+        }
+
+        @Override
+        protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+            if (!className.equals(name)) return super.loadClass(className, resolve);
+
+            synchronized (getClassLoadingLock(className)) {
+                Class<?> loaded = findLoadedClass(className);
+                return loaded != null ? loaded : defineClass(className, classFile, 0, classFile.length);
+            }
+        }
+    }
+
+    private GeneratedClasses() {
+    }
+
+    static JasminResult compile(File file, Map<String, String> config) {
+        var parserResult = new SimpleParser().parse(SpecsIo.read(file), config);
+        JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+        if (config.get("backend").equals("ast")) return new AstToJasminImpl().toJasmin(semantics);
+
+        Optimizer optimizer = new Optimizer();
+        var classUnit = optimizer.toClassUnit(semantics);
+        optimizer.optimize(classUnit, config);
+        return new JasminBackender().toJasmin(classUnit, config);
+    }
+
+    /**
+     * @return the class file Jasmin assembles from the result
+     */
+    static byte[] assemble(JasminResult result) {
+        try {
+            File directory = Files.createTempDirectory("jmm").toFile();
+            byte[] classFile = Files.readAllBytes(result.compile(directory).toPath());
+            SpecsIo.deleteFolder(directory);
+            return classFile;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not assemble " + result.getClassName(), e);
+        }
+    }
+
+    /**
+     * @return a class loader of the classes in libs-jmm/compiled
+     */
+    static ClassLoader libraries() {
+        try {
+            return new URLClassLoader(new URL[]{LIBRARIES.toURI().toURL()}, GeneratedClasses.class.getClassLoader());
+        } catch (MalformedURLException e) {
+            throw new RuntimeException("Could not find " + LIBRARIES, e);
+        }
+    }
+
+    /**
+     * Loads, verifies and initializes the class in a new class loader, so that it is verified again on every call.
+     */
+    static Class<?> load(ClassLoader libraries, String className, byte[] classFile) {
+        try {
+            return Class.forName(className, true, new ByteArrayClassLoader(libraries, className, classFile));
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Could not load " + className, e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the backend for all the programs of the input: {@link JasminBackender#toJasmin} from OLLIR to Jasmin code,
+ * and {@link JasminResult#compile} from Jasmin code to class files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JasminBenchmark {
+
+    @Param({"corpus", "synthetic-10", "synthetic-100", "synthetic-1000"})
+    public String input;
+
+    private List<JmmSemanticsResult> semantics;
+    private List<JasminResult> jasminResults;
+    private File outputDirectory;
+
+    /**
+     * The backend builds the CFGs and variable tables of the ClassUnit in place, so each call gets new OLLIR results.
+     */
+    @State(Scope.Thread)
+    public static class OllirResults {
+        private final List<OllirResult> results = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void setup(JasminBenchmark benchmark) {
+            results.clear();
+            for (JmmSemanticsResult result : benchmark.semantics) results.add(new Optimizer().toOllir(result));
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkInputs.silence();
+        semantics = BenchmarkInputs.analyse(BenchmarkInputs.load(input));
+
+        jasminResults = new ArrayList<>();
+        for (JmmSemanticsResult result : semantics) {
+            jasminResults.add(new JasminBackender().toJasmin(new Optimizer().toOllir(result)));
+        }
+        outputDirectory = Files.createTempDirectory("jmm-benchmark").toFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        SpecsIo.deleteFolder(outputDirectory);
+        BenchmarkInputs.restore();
+    }
+
+    @Benchmark
+    public void toJasmin(OllirResults ollirResults, Blackhole blackhole) {
+        for (OllirResult result : ollirResults.results) blackhole.consume(new JasminBackender().toJasmin(result));
+    }
+
+    @Benchmark
+    public void compile(Blackhole blackhole) {
+        for (JasminResult result : jasminResults) blackhole.consume(result.compile(outputDirectory));
+    }
+}
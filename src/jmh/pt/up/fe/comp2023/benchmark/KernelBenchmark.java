@@ -0,0 +1,69 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls per second of run(n) of the compute kernels of {@link Kernels}, compiled at each optimization level and
+ * loaded in-process. The sizes of their code come from the main of {@link Kernels}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+    @Param({"quicksort", "matrix", "fibonacci", "scan"})
+    public String kernel;
+
+    @Param({"0", "1", "2"})
+    public int level;
+
+    /**
+     * Config entries added to the ones of the level, separated by spaces, e.g. "pass.array-hoisting=false" to measure
+     * the payoff of a pass.
+     */
+    @Param({""})
+    public String options;
+
+    private MethodHandle run;
+    private int n;
+
+    @Setup
+    public void setup() throws Throwable {
+        Map<String, String> config = new HashMap<>();
+        for (String option : options.split(" ")) {
+            if (!option.isEmpty()) config.put(option.split("=", 2)[0], option.split("=", 2)[1]);
+        }
+
+        Kernels.Kernel kernel = Kernels.get(this.kernel);
+        n = kernel.n();
+
+        BenchmarkInputs.silence();
+        MethodHandle reference;
+        try {
+            run = Kernels.load(Kernels.compile(kernel, level, config));
+            reference = Kernels.load(Kernels.compile(kernel, 0, Map.of()));
+        } finally {
+            BenchmarkInputs.restore();
+        }
+
+        int expected = (int) reference.invokeExact(n);
+        int result = (int) run.invokeExact(n);
+        if (result != expected) {
+            throw new RuntimeException(kernel.name() + ": run(" + n + ") returns " + result + " at -O" + level + " but "
+                    + expected + " at -O0");
+        }
+    }
+
+    @Benchmark
+    public int run() throws Throwable {
+        return (int) run.invokeExact(n);
+    }
+}
@@ -0,0 +1,171 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.objectweb.asm.ClassReader;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.jasmin.ClassFileUpgrader;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The compute kernels of benchmarks/, whose generated code KernelBenchmark runs under JMH. Each one is a Java-- class
+ * with a run(int n) method that does work growing with n and returns a checksum of it. They are compiled in-process,
+ * upgraded like the launcher does (see {@link ClassFileUpgrader}) and loaded in a class loader of their own.
+ * <p>
+ * This prints, for each kernel and level, the size of the generated code: the bytes of bytecode and the locals, summed
+ * over the methods, and the largest max stack of a method. It also checks that run(n) returns the same at every level.
+ * Usage: Kernels [key=value...]
+ * <p>
+ * The key=value entries are added to the config of every level, like in {@link OptimizationLevelBenchmark}.
+ */
+public class Kernels {
+
+    /**
+     * @param n the argument of run, large enough that a call takes about a millisecond at -O0
+     */
+    record Kernel(String name, File file, int n) {
+    }
+
+    static final List<Kernel> KERNELS = List.of(
+            new Kernel("quicksort", new File("benchmarks/Quicksort.jmm"), 10000),
+            new Kernel("matrix", new File("benchmarks/MatrixMultiply.jmm"), 64),
+            new Kernel("fibonacci", new File("benchmarks/Fibonacci.jmm"), 25),
+            new Kernel("scan", new File("benchmarks/ArrayScan.jmm"), 100000));
+
+    private static final int LEVELS = 3;
+
+    public static void main(String[] args) throws Throwable {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) options.put(arg.split("=", 2)[0], arg.split("=", 2)[1]);
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        out.printf("%-12s", "kernel");
+        for (int level = 0; level < LEVELS; level++) {
+            out.printf(" %10s %6s %7s", "-O" + level + " bytes", "stack", "locals");
+        }
+        out.println();
+
+        for (Kernel kernel : KERNELS) {
+            out.printf("%-12s", kernel.name());
+            int expected = 0;
+
+            for (int level = 0; level < LEVELS; level++) {
+                // The compiler stages print progress messages and warnings, keep them out of the report
+                System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+                byte[] classFile;
+                try {
+                    classFile = compile(kernel, level, options);
+                } finally {
+                    System.setOut(out);
+                    System.setErr(err);
+                }
+
+                int[] size = size(classFile);
+                out.printf(" %10d %6d %7d", size[0], size[1], size[2]);
+
+                int result = (int) load(classFile).invokeExact(kernel.n());
+                if (level == 0) expected = result;
+                else if (result != expected) {
+                    System.err.println(kernel.name() + ": run(" + kernel.n() + ") returns " + result + " at -O" + level
+                            + " but " + expected + " at -O0");
+                }
+            }
+            out.println();
+        }
+    }
+
+    static Kernel get(String name) {
+        for (Kernel kernel : KERNELS) {
+            if (kernel.name().equals(name)) return kernel;
+        }
+        throw new RuntimeException("Unknown kernel '" + name + "'.");
+    }
+
+    /**
+     * @param options config entries added to the ones of the level
+     * @return the class file of the kernel, as the launcher writes it
+     */
+    static byte[] compile(Kernel kernel, int level, Map<String, String> options) {
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", kernel.file().getPath());
+        config.put("debug", "false");
+        Launcher.setOptimizationLevel(config, level);
+        config.putAll(options);
+
+        byte[] classFile = GeneratedClasses.assemble(GeneratedClasses.compile(kernel.file(), config));
+        return new ClassFileUpgrader(GeneratedClasses.libraries()).upgrade(classFile);
+    }
+
+    /**
+     * Generated classes aren't public, and their constructor isn't always either.
+     *
+     * @return run of a new instance of the class, of type (int)int
+     */
+    static MethodHandle load(byte[] classFile) throws ReflectiveOperationException {
+        String className = new ClassReader(classFile).getClassName().replace('/', '.');
+        Class<?> kernelClass = GeneratedClasses.load(GeneratedClasses.libraries(), className, classFile);
+
+        Constructor<?> constructor = kernelClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        Method run = kernelClass.getDeclaredMethod("run", int.class);
+        run.setAccessible(true);
+
+        MethodHandle handle = MethodHandles.lookup().unreflect(run).bindTo(constructor.newInstance());
+        return handle.asType(MethodType.methodType(int.class, int.class));
+    }
+
+    /**
+     * Reads the Code attributes of the methods, which ASM only visits instruction by instruction.
+     *
+     * @return the bytes of bytecode summed over the methods, the largest max stack and the max locals summed over the
+     * methods
+     */
+    static int[] size(byte[] classFile) {
+        ClassReader reader = new ClassReader(classFile);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        int[] size = new int[3];
+
+        // Access flags, this class, super class and the interfaces
+        int offset = reader.header + 6;
+        offset += 2 + 2 * reader.readUnsignedShort(offset);
+
+        int fields = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < fields; i++) offset = skipAttributes(reader, offset + 6);
+
+        int methods = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < methods; i++) {
+            int attributes = reader.readUnsignedShort(offset + 6);
+            offset += 8;
+            for (int j = 0; j < attributes; j++) {
+                if (reader.readUTF8(offset, buffer).equals("Code")) {
+                    size[1] = Math.max(size[1], reader.readUnsignedShort(offset + 6));
+                    size[2] += reader.readUnsignedShort(offset + 8);
+                    size[0] += reader.readInt(offset + 10);
+                }
+                offset += 6 + reader.readInt(offset + 2);
+            }
+        }
+
+        return size;
+    }
+
+    private static int skipAttributes(ClassReader reader, int offset) {
+        int attributes = reader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < attributes; i++) offset += 6 + reader.readInt(offset + 2);
+        return offset;
+    }
+}
@@ -0,0 +1,48 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp2023.Optimizer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from the analysed AST to OLLIR, for all the programs of the input: {@link Optimizer#toClassUnit} builds the
+ * ClassUnit (-O1 and up), {@link Optimizer#toOllir} also writes it as OLLIR text and parses it back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OllirBenchmark {
+
+    @Param({"corpus", "synthetic-10", "synthetic-100", "synthetic-1000"})
+    public String input;
+
+    private List<JmmSemanticsResult> semantics;
+
+    @Setup
+    public void setup() {
+        BenchmarkInputs.silence();
+        semantics = BenchmarkInputs.analyse(BenchmarkInputs.load(input));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkInputs.restore();
+    }
+
+    @Benchmark
+    public void toOllir(Blackhole blackhole) {
+        for (JmmSemanticsResult result : semantics) blackhole.consume(new Optimizer().toOllir(result));
+    }
+
+    @Benchmark
+    public void toClassUnit(Blackhole blackhole) {
+        for (JmmSemanticsResult result : semantics) blackhole.consume(new Optimizer().toClassUnit(result));
+    }
+}
@@ -0,0 +1,131 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the optimization levels on compile time (from semantic analysis to Jasmin code) and on the size of the
+ * generated code: JVM instructions and registers (.limit locals), summed over the methods.
+ * Usage: OptimizationLevelBenchmark [-n iterations] [key=value...] file.jmm...
+ * <p>
+ * The key=value entries are added to the config of every level, e.g. pass.array-hoisting=false to measure the payoff of
+ * a pass.
+ */
+public class OptimizationLevelBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int LEVELS = 3;
+
+    public static void main(String[] args) {
+        int iterations = 200;
+        List<File> files = new ArrayList<>();
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n")) iterations = Integer.parseInt(args[++i]);
+            else if (args[i].contains("=")) options.put(args[i].split("=", 2)[0], args[i].split("=", 2)[1]);
+            else files.add(new File(args[i]));
+        }
+
+        PrintStream out = System.out;
+        out.printf("%-40s", "file");
+        for (int level = 0; level < LEVELS; level++) {
+            out.printf(" %10s %8s %7s", "-O" + level + " us", "instrs", "locals");
+        }
+        out.println();
+
+        double[] totalTime = new double[LEVELS];
+        long[] totalInstructions = new long[LEVELS];
+        long[] totalLocals = new long[LEVELS];
+
+        for (File file : files) {
+            double[] time = new double[LEVELS];
+            long[] instructions = new long[LEVELS];
+            long[] locals = new long[LEVELS];
+
+            // The compiler stages print progress messages, keep them out of the report
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                for (int level = 0; level < LEVELS; level++) {
+                    Map<String, String> config = new HashMap<>();
+                    config.put("inputFile", file.getPath());
+                    config.put("debug", "false");
+                    Launcher.setOptimizationLevel(config, level);
+                    config.putAll(options);
+
+                    var parserResult = new SimpleParser().parse(SpecsIo.read(file), config);
+                    JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+
+                    time[level] = measure(iterations, semantics);
+
+                    String jasmin = compile(semantics).getJasminCode();
+                    for (String line : jasmin.split("\n")) {
+                        String trimmed = line.trim();
+                        if (trimmed.startsWith(".limit locals")) locals[level] += Long.parseLong(trimmed.substring(14));
+                        else if (line.startsWith("\t") && !trimmed.startsWith(".")) instructions[level]++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                System.setOut(out);
+                out.printf("%-40s failed: %s%n", file.getName(), e.getMessage());
+                continue;
+            }
+
+            System.setOut(out);
+            out.printf("%-40s", file.getName());
+            for (int level = 0; level < LEVELS; level++) {
+                out.printf(" %10.1f %8d %7d", time[level], instructions[level], locals[level]);
+                totalTime[level] += time[level];
+                totalInstructions[level] += instructions[level];
+                totalLocals[level] += locals[level];
+            }
+            out.println();
+        }
+
+        out.printf("%-40s", "total");
+        for (int level = 0; level < LEVELS; level++) {
+            out.printf(" %10.1f %8d %7d", totalTime[level], totalInstructions[level], totalLocals[level]);
+        }
+        out.println();
+    }
+
+    private static JasminResult compile(JmmSemanticsResult semantics) {
+        Map<String, String> config = semantics.getConfig();
+        if (config.get("backend").equals("ast")) return new AstToJasminImpl().toJasmin(semantics);
+
+        Optimizer optimizer = new Optimizer();
+        var classUnit = optimizer.toClassUnit(semantics);
+        optimizer.optimize(classUnit, config);
+        return new JasminBackender().toJasmin(classUnit, config);
+    }
+
+    /**
+     * @return the average time of an iteration, in microseconds
+     */
+    private static double measure(int iterations, JmmSemanticsResult semantics) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            compile(semantics);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            compile(semantics);
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Characters and lines per second that {@link SimpleParser#parse} gets through on large programs of the
+ * {@link ProgramGenerator}, with SLL prediction first (the default) or full LL prediction only. Deeper expressions
+ * give the parser more decisions between the alternatives of the expression rule.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseThroughputBenchmark {
+
+    @Param({"100", "1000"})
+    public int methods;
+
+    @Param({"3", "6"})
+    public int expressionDepth;
+
+    @Param({"true", "false"})
+    public String sllPrediction;
+
+    private String code;
+    private int lines;
+    private Map<String, String> config;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long characters;
+        public long lines;
+    }
+
+    @Setup
+    public void setup() {
+        code = new ProgramGenerator(0).methods(methods).expressionDepth(expressionDepth).generate();
+        lines = code.split("\n").length;
+
+        config = BenchmarkInputs.config();
+        config.put("sllPrediction", sllPrediction);
+
+        BenchmarkInputs.silence();
+        if (new SimpleParser().parse(code, config).getRootNode() == null) {
+            throw new RuntimeException("The generated program has syntax errors");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkInputs.restore();
+    }
+
+    @Benchmark
+    public JmmParserResult parse(Counters counters) {
+        counters.characters += code.length();
+        counters.lines += lines;
+        return new SimpleParser().parse(code, config);
+    }
+}
@@ -0,0 +1,41 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link SimpleParser#parse}, from the code to the AST, for all the programs of the input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"corpus", "synthetic-10", "synthetic-100", "synthetic-1000"})
+    public String input;
+
+    private List<String> sources;
+
+    @Setup
+    public void setup() {
+        BenchmarkInputs.silence();
+        sources = BenchmarkInputs.load(input);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkInputs.restore();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String source : sources) blackhole.consume(new SimpleParser().parse(source, BenchmarkInputs.config()));
+    }
+}
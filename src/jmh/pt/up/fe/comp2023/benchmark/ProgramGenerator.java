@@ -0,0 +1,347 @@
+package pt.up.fe.comp2023.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random Java-- programs of a given shape, to load the compiler with inputs larger than the test programs.
+ * The same seed and knobs always give the same program. The programs compile without errors at every optimization
+ * level, return the same at each of them and terminate:
+ * <ul>
+ *     <li>each method only calls the next one, once, outside its loops, on a new object (the analysis doesn't handle
+ *     calls on 'this' yet);</li>
+ *     <li>loops count up to {@value #LOOP_TRIPS} with counters that nothing else assigns;</li>
+ *     <li>arrays have {@value #ARRAY_SIZE} elements and are indexed by literals or loop counters;</li>
+ *     <li>divisions are by non-zero literals.</li>
+ * </ul>
+ * Only the operators the backends support are used: +, -, *, /, &lt;, &amp;&amp; and !. Booleans start as true or false.
+ * Usage: ProgramGenerator [-seed n] [knob=value...], e.g. methods=100 locals=8, prints the program.
+ */
+public class ProgramGenerator {
+
+    private static final int ARRAY_SIZE = 16;
+    private static final int LOOP_TRIPS = 4;
+    private static final int PARAMS = 2;
+
+    private final Random random;
+    private String className = "Synthetic";
+    private int methods = 10;
+    private int statements = 20;
+    private int locals = 6;
+    private int expressionDepth = 3;
+    private int loopNesting = 2;
+    private int branches = 3;
+    private int fields = 3;
+    private double importedCallDensity = 0.1;
+
+    private final StringBuilder code = new StringBuilder();
+    private final List<String> intVariables = new ArrayList<>();
+    private final List<String> booleanVariables = new ArrayList<>();
+    private final List<String> arrayVariables = new ArrayList<>();
+    private final List<String> counters = new ArrayList<>();
+
+    public ProgramGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        long seed = 0;
+        List<String> knobs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-seed")) seed = Long.parseLong(args[++i]);
+            else knobs.add(args[i]);
+        }
+
+        ProgramGenerator generator = new ProgramGenerator(seed);
+        for (String knob : knobs) generator.set(knob);
+        System.out.print(generator.generate());
+    }
+
+    public ProgramGenerator className(String className) {
+        this.className = className;
+        return this;
+    }
+
+    public ProgramGenerator methods(int methods) {
+        this.methods = methods;
+        return this;
+    }
+
+    /**
+     * @param statements assignments per method, besides the ones in the loop nest and the branches
+     */
+    public ProgramGenerator statements(int statements) {
+        this.statements = statements;
+        return this;
+    }
+
+    /**
+     * @param locals local variables per method, besides the loop counters
+     */
+    public ProgramGenerator locals(int locals) {
+        this.locals = locals;
+        return this;
+    }
+
+    public ProgramGenerator expressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+        return this;
+    }
+
+    /**
+     * @param loopNesting depth of the loop nest of each method, 0 for none
+     */
+    public ProgramGenerator loopNesting(int loopNesting) {
+        this.loopNesting = loopNesting;
+        return this;
+    }
+
+    /**
+     * @param branches if statements per method
+     */
+    public ProgramGenerator branches(int branches) {
+        this.branches = branches;
+        return this;
+    }
+
+    public ProgramGenerator fields(int fields) {
+        this.fields = fields;
+        return this;
+    }
+
+    /**
+     * @param importedCallDensity the share of statements that call an imported class
+     */
+    public ProgramGenerator importedCallDensity(double importedCallDensity) {
+        this.importedCallDensity = importedCallDensity;
+        return this;
+    }
+
+    /**
+     * Sets a knob from "name=value", with the name of its setter.
+     */
+    public ProgramGenerator set(String knob) {
+        String[] parts = knob.split("=", 2);
+        if (parts.length != 2) throw new RuntimeException("Expected knob=value, got '" + knob + "'.");
+
+        String value = parts[1];
+        return switch (parts[0]) {
+            case "className" -> className(value);
+            case "methods" -> methods(Integer.parseInt(value));
+            case "statements" -> statements(Integer.parseInt(value));
+            case "locals" -> locals(Integer.parseInt(value));
+            case "expressionDepth" -> expressionDepth(Integer.parseInt(value));
+            case "loopNesting" -> loopNesting(Integer.parseInt(value));
+            case "branches" -> branches(Integer.parseInt(value));
+            case "fields" -> fields(Integer.parseInt(value));
+            case "importedCallDensity" -> importedCallDensity(Double.parseDouble(value));
+            default -> throw new RuntimeException("Unknown knob '" + parts[0] + "'.");
+        };
+    }
+
+    public String generate() {
+        code.setLength(0);
+
+        if (importedCallDensity > 0) {
+            code.append("import ioPlus;\n");
+            code.append("import MathUtils;\n\n");
+        }
+
+        code.append("class ").append(className).append(" {\n");
+        for (int i = 0; i < fields; i++) {
+            code.append("    ").append(fieldType(i)).append(' ').append("field").append(i).append(";\n");
+        }
+        code.append('\n');
+
+        for (int i = 0; i < methods; i++) generateMethod(i);
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("        ").append(className).append(" program;\n");
+        code.append("        int result;\n\n");
+        code.append("        program = new ").append(className).append("();\n");
+        code.append("        result = ").append(methods > 0 ? "program.method0(1, 2)" : "0").append(";\n");
+        if (importedCallDensity > 0) code.append("        ioPlus.printResult(result);\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private static String fieldType(int field) {
+        return switch (field % 3) {
+            case 0 -> "int";
+            case 1 -> "boolean";
+            default -> "int[]";
+        };
+    }
+
+    private void generateMethod(int method) {
+        intVariables.clear();
+        booleanVariables.clear();
+        arrayVariables.clear();
+        counters.clear();
+
+        code.append("    public int method").append(method).append('(');
+        for (int i = 0; i < PARAMS; i++) {
+            if (i > 0) code.append(", ");
+            code.append("int param").append(i);
+            intVariables.add("param" + i);
+        }
+        code.append(") {\n");
+
+        // Every third local is a boolean and every fifth an array, the rest are ints
+        List<String> declared = new ArrayList<>();
+        for (int i = 0; i < locals; i++) {
+            String name = "local" + i;
+            String type = i % 5 == 4 ? "int[]" : i % 3 == 2 ? "boolean" : "int";
+            code.append("        ").append(type).append(' ').append(name).append(";\n");
+            declared.add(name);
+            if (type.equals("int[]")) arrayVariables.add(name);
+            else if (type.equals("boolean")) booleanVariables.add(name);
+            else intVariables.add(name);
+        }
+        for (int i = 0; i < loopNesting; i++) {
+            code.append("        int counter").append(i).append(";\n");
+        }
+        boolean calls = method + 1 < methods;
+        if (calls) code.append("        ").append(className).append(" next;\n");
+        code.append('\n');
+
+        // Everything is assigned before the statements read it
+        for (String name : declared) {
+            code.append("        ").append(name).append(" = ");
+            if (arrayVariables.contains(name)) code.append("new int[").append(ARRAY_SIZE).append(']');
+            else if (booleanVariables.contains(name)) code.append(random.nextBoolean());
+            else code.append(random.nextInt(100));
+            code.append(";\n");
+        }
+        if (calls) code.append("        next = new ").append(className).append("();\n");
+        for (int i = 0; i < fields; i++) {
+            if (fieldType(i).equals("int[]")) {
+                code.append("        field").append(i).append(" = new int[").append(ARRAY_SIZE).append("];\n");
+                arrayVariables.add("field" + i);
+            } else if (fieldType(i).equals("boolean")) {
+                booleanVariables.add("field" + i);
+            } else {
+                intVariables.add("field" + i);
+            }
+        }
+
+        // The loop nest, the branches and the call go in random places among the simple statements
+        List<Integer> kinds = new ArrayList<>();
+        for (int i = 0; i < statements; i++) kinds.add(0);
+        if (loopNesting > 0) kinds.add(random.nextInt(kinds.size() + 1), 1);
+        for (int i = 0; i < branches; i++) kinds.add(random.nextInt(kinds.size() + 1), 2);
+        if (calls) kinds.add(random.nextInt(kinds.size() + 1), 3);
+
+        for (int kind : kinds) {
+            switch (kind) {
+                case 1 -> generateLoop(0, 2);
+                case 2 -> generateBranch(2);
+                case 3 -> code.append("        ").append(pick(intVariables)).append(" = next.method").append(method + 1)
+                        .append('(').append(intExpression(1)).append(", ").append(intExpression(1)).append(");\n");
+                default -> generateStatement(2);
+            }
+        }
+
+        code.append("\n        return ").append(intExpression(expressionDepth)).append(";\n");
+        code.append("    }\n\n");
+    }
+
+    private void generateLoop(int level, int indent) {
+        String counter = "counter" + level;
+        indent(indent).append(counter).append(" = 0;\n");
+        indent(indent).append("while (").append(counter).append(" < ").append(LOOP_TRIPS).append(") {\n");
+
+        counters.add(counter);
+        int body = 1 + random.nextInt(3);
+        for (int i = 0; i < body; i++) generateStatement(indent + 1);
+        if (level + 1 < loopNesting) generateLoop(level + 1, indent + 1);
+        counters.remove(counter);
+
+        indent(indent + 1).append(counter).append(" = ").append(counter).append(" + 1;\n");
+        indent(indent).append("}\n");
+    }
+
+    private void generateBranch(int indent) {
+        indent(indent).append("if (").append(booleanExpression(expressionDepth)).append(") {\n");
+        generateStatement(indent + 1);
+        indent(indent).append("} else {\n");
+        generateStatement(indent + 1);
+        indent(indent).append("}\n");
+    }
+
+    private void generateStatement(int indent) {
+        if (random.nextDouble() < importedCallDensity) {
+            if (random.nextBoolean()) {
+                indent(indent).append("ioPlus.printResult(").append(intExpression(expressionDepth)).append(");\n");
+            } else {
+                indent(indent).append(pick(intVariables)).append(" = MathUtils.random(0, ")
+                        .append(intExpression(1)).append(");\n");
+            }
+            return;
+        }
+
+        int choice = random.nextInt(10);
+        if (choice < 6 || arrayVariables.isEmpty() && booleanVariables.isEmpty()) {
+            indent(indent).append(pick(intVariables)).append(" = ").append(intExpression(expressionDepth)).append(";\n");
+        } else if (choice < 8 && !arrayVariables.isEmpty()) {
+            indent(indent).append(pick(arrayVariables)).append('[').append(index()).append("] = ")
+                    .append(intExpression(expressionDepth)).append(";\n");
+        } else if (!booleanVariables.isEmpty()) {
+            indent(indent).append(pick(booleanVariables)).append(" = ").append(booleanExpression(expressionDepth))
+                    .append(";\n");
+        } else {
+            indent(indent).append(pick(intVariables)).append(" = ").append(intExpression(expressionDepth)).append(";\n");
+        }
+    }
+
+    private String intExpression(int depth) {
+        if (depth <= 1 || random.nextInt(4) == 0) {
+            int choice = random.nextInt(10);
+            if (choice < 5) return pick(intVariables);
+            if (choice < 7) return String.valueOf(random.nextInt(100));
+            if (choice < 9 && !arrayVariables.isEmpty()) return pick(arrayVariables) + "[" + index() + "]";
+            if (!arrayVariables.isEmpty()) return pick(arrayVariables) + ".length";
+            return pick(intVariables);
+        }
+
+        return switch (random.nextInt(5)) {
+            case 0 -> intExpression(depth - 1) + " + " + intExpression(depth - 1);
+            case 1 -> intExpression(depth - 1) + " - " + intExpression(depth - 1);
+            case 2 -> "(" + intExpression(depth - 1) + ") * " + intExpression(1);
+            case 3 -> "(" + intExpression(depth - 1) + ") / " + (1 + random.nextInt(9));
+            default -> "(" + intExpression(depth - 1) + " + " + intExpression(depth - 1) + ")";
+        };
+    }
+
+    private String booleanExpression(int depth) {
+        if (depth <= 1 || random.nextInt(3) == 0) {
+            if (!booleanVariables.isEmpty() && random.nextBoolean()) return pick(booleanVariables);
+            return intExpression(1) + " < " + intExpression(1);
+        }
+
+        return switch (random.nextInt(3)) {
+            case 0 -> booleanExpression(depth - 1) + " && " + booleanExpression(depth - 1);
+            case 1 -> "!(" + booleanExpression(depth - 1) + ")";
+            default -> intExpression(depth - 1) + " < " + intExpression(depth - 1);
+        };
+    }
+
+    /**
+     * @return an index that is always in bounds
+     */
+    private String index() {
+        if (!counters.isEmpty() && random.nextBoolean()) return pick(counters);
+        return String.valueOf(random.nextInt(ARRAY_SIZE));
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private StringBuilder indent(int level) {
+        return code.append("    ".repeat(level));
+    }
+}
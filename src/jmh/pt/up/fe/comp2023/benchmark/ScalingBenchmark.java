@@ -0,0 +1,119 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Measures how the time of each stage grows with the size of the program, over programs of the
+ * {@link ProgramGenerator} with more and more methods. The stages are parsing, semantic analysis, building the OLLIR
+ * ClassUnit, the -O2 passes and the Jasmin backend. After the times, the report gives the growth exponent of each
+ * stage between consecutive sizes: 1 when the time grows linearly with the program, 2 when it grows quadratically.
+ * Usage: ScalingBenchmark [-n iterations] [-seed n] [-sizes 1,10,100] [knob=value...]
+ */
+public class ScalingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final String[] STAGES = {"parse", "analysis", "ollir", "optimize", "jasmin"};
+
+    public static void main(String[] args) {
+        int iterations = 5;
+        long seed = 0;
+        int[] sizes = {1, 10, 100, 1000};
+        List<String> knobs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-n")) iterations = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("-sizes")) sizes = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            else knobs.add(args[i]);
+        }
+
+        PrintStream out = System.out;
+        out.printf("%8s %8s", "methods", "lines");
+        for (String stage : STAGES) out.printf(" %12s", stage + " ms");
+        out.println();
+
+        double[][] times = new double[sizes.length][];
+        for (int i = 0; i < sizes.length; i++) {
+            ProgramGenerator generator = new ProgramGenerator(seed);
+            for (String knob : knobs) generator.set(knob);
+            String code = generator.methods(sizes[i]).generate();
+
+            // The compiler stages print progress messages, keep them out of the report
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            try {
+                times[i] = measure(iterations, code);
+            } finally {
+                System.setOut(out);
+            }
+
+            out.printf("%8d %8d", sizes[i], code.split("\n").length);
+            for (double time : times[i]) out.printf(" %12.2f", time);
+            out.println();
+        }
+
+        out.println();
+        out.printf("%17s", "growth");
+        for (String stage : STAGES) out.printf(" %12s", stage);
+        out.println();
+        for (int i = 1; i < sizes.length; i++) {
+            out.printf("%8d-%-8d", sizes[i - 1], sizes[i]);
+            for (int stage = 0; stage < STAGES.length; stage++) {
+                out.printf(" %12.2f", Math.log(times[i][stage] / times[i - 1][stage])
+                        / Math.log((double) sizes[i] / sizes[i - 1]));
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * @return the average time of each stage, in milliseconds
+     */
+    private static double[] measure(int iterations, String code) {
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", "Synthetic.jmm");
+        config.put("debug", "false");
+        Launcher.setOptimizationLevel(config, 2);
+
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+        Optimizer optimizer = new Optimizer();
+
+        double[] times = new double[STAGES.length];
+        for (int i = 0; i < WARMUP_ITERATIONS + iterations; i++) {
+            double[] iteration = new double[STAGES.length];
+
+            iteration[0] = time(() -> new SimpleParser().parse(code, config));
+            iteration[1] = time(() -> new JmmAnalyser().semanticAnalysis(parserResult));
+            iteration[2] = time(() -> optimizer.toClassUnit(semantics));
+
+            // The passes and the backend change the ClassUnit, so each one works on a new one
+            ClassUnit unoptimized = optimizer.toClassUnit(semantics);
+            iteration[3] = time(() -> optimizer.optimize(unoptimized, config));
+            ClassUnit optimized = optimizer.toClassUnit(semantics);
+            optimizer.optimize(optimized, config);
+            iteration[4] = time(() -> new JasminBackender().toJasmin(optimized, config));
+
+            if (i < WARMUP_ITERATIONS) continue;
+            for (int stage = 0; stage < STAGES.length; stage++) times[stage] += iteration[stage] / iterations;
+        }
+        return times;
+    }
+
+    private static double time(Supplier<?> stage) {
+        long start = System.nanoTime();
+        stage.get();
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
@@ -8,6 +8,7 @@ import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp.jmm.report.StageResult;
 import pt.up.fe.comp2023.Analysers.*;
+import pt.up.fe.comp2023.profiling.AnalysisEvent;
 import pt.up.fe.comp2023.visitors.SymbolTableVisitor;
 
 import java.util.ArrayList;
@@ -23,8 +24,20 @@ public class JmmAnalyser implements JmmAnalysis {
 
         var symbolTableFiller = new SymbolTableVisitor(symbolTable);
 
+        AnalysisEvent event = new AnalysisEvent();
+        event.begin();
+
         symbolTableFiller.visit(parserResult.getRootNode()); // Fills the information for symbolTable
 
+        if (event.shouldCommit()) {
+            event.analyser = symbolTableFiller.getClass().getSimpleName();
+            event.className = symbolTable.getClassName();
+            event.methods = symbolTable.getFullMethods().size();
+            event.fields = symbolTable.getFields() == null ? 0 : symbolTable.getFields().size();
+            event.reports = symbolTableFiller.getReports().size();
+            event.commit();
+        }
+
        // System.out.println("========= AST Structure =========");
         //System.out.println(parserResult.getRootNode().toJson());
        // System.out.println("==================================");
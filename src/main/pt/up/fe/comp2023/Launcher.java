@@ -6,15 +6,34 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.comp2023.cache.IncrementalCompiler;
+import pt.up.fe.comp2023.daemon.CompileClient;
+import pt.up.fe.comp2023.daemon.CompileDaemon;
+import pt.up.fe.comp2023.daemon.SourceWatcher;
+import pt.up.fe.comp2023.jasmin.ClassFileUpgrader;
 import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.comp2023.optimization.PassManager;
+import pt.up.fe.comp2023.optimization.PassStatistics;
+import pt.up.fe.comp2023.profiling.CompilationStatistics;
+import pt.up.fe.comp2023.profiling.MethodStatistics;
+import pt.up.fe.comp2023.profiling.StageProfiler;
+import pt.up.fe.comp2023.utils.OllirPrinter;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsLogs;
 import pt.up.fe.specs.util.SpecsSystem;
@@ -25,6 +44,27 @@ public class Launcher {
         // Setups console logging and other things
         SpecsSystem.programStandardInit();
 
+        if (args.length > 0 && args[0].equals("-daemon")) {
+            new CompileDaemon(CompileDaemon.DEFAULT_SOCKET).serve();
+            return;
+        }
+        if (args.length > 1 && args[0].equals("-watch")) {
+            new SourceWatcher(Paths.get(args[1]), Arrays.asList(args).subList(2, args.length)).run();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("-client")) {
+            System.exit(new CompileClient(CompileDaemon.DEFAULT_SOCKET).run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        compile(args);
+    }
+
+    /**
+     * Compiles the input file of the arguments, writing the results to generated-files.
+     *
+     * @return the directory of the class file, or null if generated-files can't be created
+     */
+    public static Path compile(String[] args) {
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
@@ -39,35 +79,134 @@ public class Launcher {
         // Read contents of input file
         String code = SpecsIo.read(inputFile);
 
+        StageProfiler profiler = new StageProfiler();
+
+        // Unchanged files compiled with the same config come from the cache, skipping every stage
+        CompilationCache cache = null;
+        String cacheKey = null;
+        if (config.get("cache").equals("true")) {
+            cache = new CompilationCache(CompilationCache.DEFAULT_DIRECTORY, CompilationCache.DEFAULT_MAX_BYTES);
+            cacheKey = cache.key(code, config);
+
+            CompilationCache cacheForLookup = cache;
+            String key = cacheKey;
+            Optional<CompilationCache.Entry> cached = profiler.run("cache", () -> cacheForLookup.get(key));
+
+            if (cached.isPresent()) {
+                CompilationCache.Entry entry = cached.get();
+                Path path = getResultsPath(entry.className());
+                if (path == null) return null;
+
+                saveJasmin(path, entry.jasminCode());
+                saveClassFile(path, entry.className(), entry.classFile());
+
+                System.out.printf("Compiled %s from the cache, hit rate %.1f%%%n", entry.className(),
+                        100 * cache.getHitRate());
+                saveStatistics(config, profiler, List.of(), MethodStatistics.of(entry.jasminCode(), null), path);
+                return path;
+            }
+        }
+
         // Instantiate JmmParser
         SimpleParser parser = new SimpleParser();
 
         // Parse stage
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = profiler.run("parse", () -> parser.parse(code, config));
 
         // Check if there are parsing errors
         TestUtils.noErrors(parserResult.getReports());
 
-        System.out.println(parserResult.getRootNode().toTree());
+        printVerbose(config, () -> parserResult.getRootNode().toTree());
 
         JmmAnalyser analyser = new JmmAnalyser();
 
-        JmmSemanticsResult analysisResult = analyser.semanticAnalysis(parserResult);
+        JmmSemanticsResult analysisResult = profiler.run("analysis", () -> analyser.semanticAnalysis(parserResult));
 
         //TestUtils.noErrors(analysisResult.getReports());
 
-        Optimizer optimizer = new Optimizer();
+        // Only the methods that changed since the last compilation go through the backend
+        if (config.get("incremental").equals("true")) {
+            CompilationCache fragments = new CompilationCache(IncrementalCompiler.DEFAULT_DIRECTORY,
+                    CompilationCache.DEFAULT_MAX_BYTES);
+            IncrementalCompiler.Result result = new IncrementalCompiler(fragments, profiler)
+                    .compile(analysisResult, config);
+
+            Path path = getResultsPath(result.className());
+            if (path == null) return null;
+
+            saveJasmin(path, result.jasminCode());
+            saveClassFile(path, result.className(), result.classFile());
+            String recompiled = result.recompiled().isEmpty() ? "" : ": " + String.join(", ", result.recompiled());
+            System.out.printf("Recompiled %d of %d methods of %s%s%n", result.recompiled().size(), result.methods(),
+                    result.className(), recompiled);
+
+            if (cache != null) {
+                cache.put(cacheKey, new CompilationCache.Entry(result.className(), result.jasminCode(),
+                        result.classFile(), analysisResult.getReports()));
+            }
+
+            saveStatistics(config, profiler, List.of(), MethodStatistics.of(result.jasminCode(), null), path);
+            return path;
+        }
+
+        JasminResult backendResult;
+        ClassUnit ollirClass = null;
+        List<PassStatistics> passes = List.of();
+
+        if (config.get("backend").equals("ast")) {
+            // Unoptimized builds can skip OLLIR entirely
+            backendResult = profiler.run("jasmin", () -> new AstToJasminImpl().toJasmin(analysisResult));
+        } else {
+            Optimizer optimizer = new Optimizer();
 
-        OllirResult ollirResult =  optimizer.toOllir(analysisResult);
+            ClassUnit classUnit = profiler.run("ollir", () -> optimizer.toClassUnit(analysisResult));
 
-        System.out.println(ollirResult.getOllirCode());
+            passes = profiler.run("optimize", () -> optimizer.optimize(classUnit, config)).getStatistics();
 
-        var jasminBackend = new JasminBackender();
+            // The OLLIR code of the ClassUnit that goes to the backend, after the passes
+            printVerbose(config, () -> OllirPrinter.print(classUnit));
 
-        var backendResult = jasminBackend.toJasmin(ollirResult);
+            var jasminBackend = new JasminBackender();
+
+            backendResult = profiler.run("jasmin", () -> jasminBackend.toJasmin(classUnit, config));
+            ollirClass = classUnit;
+        }
 
         // TestUtils.noErrors(backendResult);
 
+        Path path = getResultsPath(backendResult.getClassName());
+        if (path == null) return null;
+
+        saveJasmin(path, backendResult.getJasminCode());
+
+        // Generate .class file, Jasmin only writes old versions without stack map frames
+        File classFile = profiler.run("assemble", () -> {
+            File assembled = backendResult.compile(path.toFile());
+            new ClassFileUpgrader().upgrade(assembled);
+            return assembled;
+        });
+        System.out.println(".class file saved successfully!");
+
+        if (cache != null) {
+            List<Report> reports = new ArrayList<>(analysisResult.getReports());
+            reports.addAll(backendResult.getReports());
+            try {
+                cache.put(cacheKey, new CompilationCache.Entry(backendResult.getClassName(),
+                        backendResult.getJasminCode(), Files.readAllBytes(classFile.toPath()), reports));
+            } catch (IOException e) {
+                System.out.println("Error while adding the class to the cache.");
+            }
+        }
+
+        saveStatistics(config, profiler, passes, MethodStatistics.of(backendResult.getJasminCode(), ollirClass), path);
+        return path;
+    }
+
+    /**
+     * @return generated-files/ClassName, where the class file goes, with the .j and .stats.json files next to it, or
+     * null if generated-files can't be created
+     */
+    private static Path getResultsPath(String className) {
         Path resultsDirectory = Paths.get("generated-files/");
 
         try {
@@ -76,42 +215,124 @@ public class Launcher {
             }
         } catch (IOException e) {
             System.out.println("Error creating the " + resultsDirectory + " directory.");
-            return;
+            return null;
         }
 
-        Path path = Paths.get("generated-files/" + backendResult.getClassName() + "/");
+        return Paths.get("generated-files/" + className + "/");
+    }
 
+    private static void saveJasmin(Path path, String jasminCode) {
         try {
             FileWriter fileWriter = new FileWriter(path + ".j");
-            fileWriter.write(backendResult.getJasminCode());
+            fileWriter.write(jasminCode);
             fileWriter.close();
             System.out.println("Jasmin file saved successfully!");
         } catch (IOException e) {
             System.out.println("Error while writing the .j file.");
         }
+    }
 
-        // Generate .class file
-        backendResult.compile(path.toFile());
-        System.out.println(".class file saved successfully!");
+    private static void saveClassFile(Path path, String className, byte[] classFile) {
+        try {
+            Files.createDirectories(path);
+            Files.write(path.resolve(className + ".class"), classFile);
+            System.out.println(".class file saved successfully!");
+        } catch (IOException e) {
+            System.out.println("Error while writing the .class file.");
+        }
+    }
 
+    private static void saveStatistics(Map<String, String> config, StageProfiler profiler, List<PassStatistics> passes,
+                                       List<MethodStatistics> methods, Path path) {
+        if (!config.get("stats").equals("true")) return;
+
+        System.out.println(profiler.getReport());
+
+        var statistics = new CompilationStatistics(config.get("inputFile"), PassManager.getOptimizationLevel(config),
+                profiler.getStatistics(), passes, methods);
+        try {
+            Files.writeString(Paths.get(path + ".stats.json"), statistics.toJson());
+            System.out.println("Statistics saved to " + path + ".stats.json");
+        } catch (IOException e) {
+            System.out.println("Error while writing the statistics file.");
+        }
+    }
+
+    /**
+     * Prints a dump of the compilation with -v. The dump is only built then, since for large programs it takes a good
+     * part of the compile time.
+     */
+    private static void printVerbose(Map<String, String> config, Supplier<String> dump) {
+        if (config.get("debug").equals("true")) {
+            System.out.println(dump.get());
+        }
     }
 
     private static Map<String, String> parseArgs(String[] args) {
         SpecsLogs.info("Executing with args: " + Arrays.toString(args));
 
-        // Check if there is at least one argument
-        if (args.length != 1) {
-            throw new RuntimeException("Expected a single argument, a path to an existing input file.");
+        String inputFile = null;
+        int optimizationLevel = 0;
+        boolean verbose = false;
+        boolean stats = false;
+        boolean cache = false;
+        boolean incremental = false;
+
+        for (String arg : args) {
+            if (arg.matches("-O[0-2]")) {
+                optimizationLevel = arg.charAt(2) - '0';
+            } else if (arg.equals("-v")) {
+                verbose = true;
+            } else if (arg.equals("-stats")) {
+                stats = true;
+            } else if (arg.equals("-cache")) {
+                cache = true;
+            } else if (arg.equals("-incremental")) {
+                incremental = true;
+            } else if (arg.startsWith("-") || inputFile != null) {
+                throw new RuntimeException("Expected a path to an existing input file and optionally -O0, -O1 or -O2, -v, -stats, -cache and -incremental, got '" + arg + "'.");
+            } else {
+                inputFile = arg;
+            }
+        }
+
+        // Check if there is an input file
+        if (inputFile == null) {
+            throw new RuntimeException("Expected a path to an existing input file.");
         }
 
         // Create config
         Map<String, String> config = new HashMap<>();
-        config.put("inputFile", args[0]);
-        config.put("optimize", "false");
-        config.put("registerAllocation", "-1");
-        config.put("debug", "false");
+        config.put("inputFile", inputFile);
+        config.put("debug", String.valueOf(verbose));
+        config.put("stats", String.valueOf(stats));
+        config.put("cache", String.valueOf(cache));
+        config.put("incremental", String.valueOf(incremental));
+        setOptimizationLevel(config, optimizationLevel);
 
         return config;
     }
 
+    /**
+     * Sets the backend and the passes of an optimization level. OptimizationLevelBenchmark, in the jmh source set,
+     * compares the levels on compile time and code size.
+     * <ul>
+     *     <li>-O0 (default): Jasmin straight from the AST, no OLLIR and no passes. The code is the plain translation
+     *     of the source.</li>
+     *     <li>-O1: the same backend, which also folds constant expressions and leaves out the branches of constant
+     *     conditions. Compiles about as fast as -O0 and never emits more code.</li>
+     *     <li>-O2: OLLIR ClassUnit and every pass: the local ones (constant folding, peephole, temporary elimination),
+     *     tail recursion elimination, inlining, pure call evaluation, the global passes, which need CFG, liveness and
+     *     loops (scalar replacement of fields, array hoisting, constant propagation, strength reduction, loop
+     *     unrolling, dead store elimination), register allocation and the splitting of methods over splitThreshold
+     *     bytes of bytecode.</li>
+     * </ul>
+     */
+    public static void setOptimizationLevel(Map<String, String> config, int optimizationLevel) {
+        config.put("optimizationLevel", String.valueOf(optimizationLevel));
+        config.put("optimize", optimizationLevel > 0 ? "true" : "false");
+        config.put("registerAllocation", optimizationLevel >= 2 ? "0" : "-1");
+        config.put("backend", optimizationLevel <= 1 ? "ast" : "ollir");
+    }
+
 }
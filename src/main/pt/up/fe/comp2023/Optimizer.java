@@ -1,22 +1,94 @@
 package pt.up.fe.comp2023;
 
+import org.specs.comp.ollir.ClassUnit;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp2023.visitors.OllirGenerator;
-import pt.up.fe.specs.util.collections.SpecsList;
+import pt.up.fe.comp2023.optimization.*;
+import pt.up.fe.comp2023.utils.OllirPrinter;
+import pt.up.fe.comp2023.visitors.OllirClassBuilder;
 
-import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Optimizer implements JmmOptimization {
 
+    /**
+     * The OLLIR code is the ClassUnit of {@link #toClassUnit(JmmSemanticsResult)} written as text, which the
+     * OllirResult parses back.
+     */
     @Override
     public OllirResult toOllir(JmmSemanticsResult jmmSemanticsResult) {
-        SpecsList<Report> reports = (SpecsList<Report>) jmmSemanticsResult.getReports();
+        String ollirCode = OllirPrinter.print(toClassUnit(jmmSemanticsResult));
+        return new OllirResult(jmmSemanticsResult, ollirCode, jmmSemanticsResult.getReports());
+    }
+
+    /**
+     * Builds the OLLIR ClassUnit directly from the AST, without generating and parsing the OLLIR text.
+     */
+    public ClassUnit toClassUnit(JmmSemanticsResult jmmSemanticsResult) {
         JmmNode root = jmmSemanticsResult.getRootNode();
-        OllirGenerator generator = new OllirGenerator((SymbolTable) jmmSemanticsResult.getSymbolTable(), reports);
-        return new OllirResult(jmmSemanticsResult, generator.visit(root), reports);
+        return new OllirClassBuilder((SymbolTable) jmmSemanticsResult.getSymbolTable()).build(root);
+    }
+
+    /**
+     * Builds the OLLIR ClassUnit of the fields, the constructor and the given methods only, for the incremental
+     * compilation of the methods that changed.
+     */
+    public ClassUnit toClassUnit(JmmSemanticsResult jmmSemanticsResult, Set<String> methods) {
+        JmmNode root = jmmSemanticsResult.getRootNode();
+        return new OllirClassBuilder((SymbolTable) jmmSemanticsResult.getSymbolTable()).build(root, methods::contains);
+    }
+
+    /**
+     * @return a pass manager with every pass of the compiler, in the order they run. Which ones run depends on the
+     * optimization level of the config, see {@link PassManager}.
+     */
+    public static PassManager createPassManager(Map<String, String> config) {
+        int maxRegisters = Integer.parseInt(config.getOrDefault("registerAllocation", "-1"));
+        int inlineSize = Integer.parseInt(config.getOrDefault("inlineSize", "12"));
+        int unrollFactor = Integer.parseInt(config.getOrDefault("unrollFactor", "4"));
+        // 8000 bytes is the largest method HotSpot compiles
+        int splitThreshold = Integer.parseInt(config.getOrDefault("splitThreshold", "8000"));
+
+        return new PassManager()
+                // Level 2, first so that the other passes see through the calls
+                .addPass(new TailRecursion())
+                .addPass(new Inlining(inlineSize, 200))
+                // Level 1: local passes, which look at one or two instructions at a time
+                .addPass(new ConstantFolding())
+                .addPass(new Peephole())
+                .addPass(new TemporaryElimination())
+                // Level 2: global passes, using dataflow analyses
+                .addPass(new PureCallEvaluation(10000))
+                .addPass(new ScalarReplacement())
+                .addPass(new ArrayHoisting())
+                .addPass(new ConstantPropagation())
+                .addPass(new StrengthReduction())
+                .addPass(new LoopUnrolling(unrollFactor, splitThreshold))
+                .addPass(new DeadStoreElimination())
+                // Level 1, once the method sizes are final
+                .addPass(new MethodSplitting(splitThreshold))
+                .addPass(new RegisterAllocation(maxRegisters));
+    }
+
+    /**
+     * Runs the passes enabled in the config of the OllirResult over its ClassUnit, which is what the backend
+     * compiles.
+     */
+    @Override
+    public OllirResult optimize(OllirResult ollirResult) {
+        optimize(ollirResult.getOllirClass(), ollirResult.getConfig());
+        return ollirResult;
+    }
+
+    /**
+     * Runs the passes enabled in the config over the ClassUnit, in place.
+     */
+    public PassManager optimize(ClassUnit classUnit, Map<String, String> config) {
+        PassManager passManager = createPassManager(config);
+        passManager.run(classUnit, config);
+        return passManager;
     }
 }
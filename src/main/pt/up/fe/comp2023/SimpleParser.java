@@ -2,17 +2,23 @@ package pt.up.fe.comp2023;
 
 ;
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.parser.JmmParser;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.profiling.ParseEvent;
 
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -36,6 +42,8 @@ public class SimpleParser implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        ParseEvent event = new ParseEvent();
+        event.begin();
 
         try {
             // Convert code string into a character stream
@@ -44,16 +52,50 @@ public class SimpleParser implements JmmParser {
             var lex = new pt.up.fe.comp2023.JavammLexer(input);
             // Wrap lexer around a token stream
             var tokens = new CommonTokenStream(lex);
-            // Transforms tokens into a parse tree
+
+            // SLL prediction is much cheaper than full LL on the many alternatives of expressions, and gives the same
+            // tree for code it accepts. It may reject valid code, so on any syntax error the tokens are parsed again
+            // by a parser with the default settings, which gives the same trees and error messages as before.
             var parser = new pt.up.fe.comp2023.JavammParser(tokens);
+            Optional<JmmNode> root;
+            boolean sll = config == null || !"false".equals(config.get("sllPrediction"));
+            try {
+                if (sll) {
+                    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+                    parser.removeErrorListeners();
+                    parser.setErrorHandler(new BailErrorStrategy());
+                }
+                // Transforms tokens into a parse tree and converts the ANTLR CST to JmmNode AST
+                root = AntlrParser.parse(lex, parser, startingRule);
+            } catch (RuntimeException e) {
+                if (!sll || !isCancellation(e)) throw e;
+
+                event.llFallback = true;
+                tokens.seek(0);
+                parser = new pt.up.fe.comp2023.JavammParser(tokens);
+                root = AntlrParser.parse(lex, parser, startingRule);
+            }
 
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule)
+            int syntaxErrors = parser.getNumberOfSyntaxErrors();
+            JmmParserResult result = root
                     // If there were no errors and a root node was generated, create a JmmParserResult with the node
-                    .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
+                    .map(node -> new JmmParserResult(node, Collections.emptyList(), config))
                     // If there were errors, create an error JmmParserResult without root node
                     .orElseGet(() -> JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
-                            "There were " + parser.getNumberOfSyntaxErrors() + " syntax errors during parsing, terminating")));
+                            "There were " + syntaxErrors + " syntax errors during parsing, terminating")));
+
+            if (event.shouldCommit()) {
+                event.className = result.getRootNode() == null ? "" : result.getRootNode().getChildren().stream()
+                        .filter(child -> child.getKind().equals("ClassDeclaration"))
+                        .map(child -> child.get("className"))
+                        .findFirst().orElse("");
+                event.characters = jmmCode.length();
+                event.tokens = tokens.size();
+                event.syntaxErrors = syntaxErrors;
+                event.commit();
+            }
+
+            return result;
 
         } catch (Exception e) {
 
@@ -61,4 +103,14 @@ public class SimpleParser implements JmmParser {
             return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing", e));
         }
     }
+
+    /**
+     * The rule is invoked through reflection, so the exception of the bail out strategy may come wrapped.
+     */
+    private static boolean isCancellation(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ParseCancellationException) return true;
+        }
+        return false;
+    }
 }
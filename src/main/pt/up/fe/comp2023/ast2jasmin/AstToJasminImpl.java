@@ -0,0 +1,97 @@
+package pt.up.fe.comp2023.ast2jasmin;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast2jasmin.AstToJasmin;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.node.information.Method;
+import pt.up.fe.comp2023.optimization.PassManager;
+import pt.up.fe.comp2023.profiling.JasminMethodEvent;
+
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Backend that emits Jasmin straight from the AST in a single pass, skipping OLLIR generation, the OLLIR parser, CFG
+ * and var table building. Meant for -O0 and -O1 builds, where compile time matters more than the quality of the
+ * generated code. From -O1 it folds constant expressions and leaves out the branches they never take.
+ */
+public class AstToJasminImpl implements AstToJasmin {
+
+    @Override
+    public JasminResult toJasmin(JmmSemanticsResult semanticsResult) {
+        return toJasmin(semanticsResult, methodName -> true);
+    }
+
+    /**
+     * Emits the fields, the constructor and only the methods the filter accepts, for the incremental compilation of
+     * the methods that changed.
+     */
+    public JasminResult toJasmin(JmmSemanticsResult semanticsResult, Predicate<String> methodFilter) {
+        SymbolTable symbolTable = (SymbolTable) semanticsResult.getSymbolTable();
+        JmmNode classNode = semanticsResult.getRootNode().getChildren().stream()
+                .filter(child -> child.getKind().equals("ClassDeclaration")).findFirst().orElseThrow();
+
+        StringBuilder jasmin = new StringBuilder();
+        JasminNames names = new JasminNames(symbolTable);
+        String superClass = symbolTable.getSuper() == null ? "java/lang/Object" : names.getClassName(symbolTable.getSuper());
+        boolean foldConstants = PassManager.getOptimizationLevel(semanticsResult.getConfig()) >= 1;
+
+        jasmin.append(".class ").append(symbolTable.getClassName()).append("\n");
+        jasmin.append(".super ").append(superClass).append("\n");
+
+        if (symbolTable.getFields() != null) {
+            for (Symbol field : symbolTable.getFields()) {
+                jasmin.append(".field private ").append(field.getName()).append(" ")
+                        .append(names.getDescriptor(field.getType())).append("\n");
+            }
+        }
+
+        jasmin.append("\n.method public <init>()V\n")
+                .append("\taload_0\n")
+                .append("\tinvokespecial ").append(superClass).append("/<init>()V\n")
+                .append("\treturn\n")
+                .append(".end method\n");
+
+        for (JmmNode methodNode : classNode.getChildren()) {
+            if (!methodNode.getHierarchy().contains("MethodDeclaration")) continue;
+
+            String methodName = getMethodName(methodNode);
+            if (!methodFilter.test(methodName)) continue;
+
+            Optional<Method> method = symbolTable.getMethodTry(methodName);
+            if (method.isEmpty()) {
+                System.err.println("Tried to get method with name '" + methodName + "' but it wasn't found in the symbol table");
+                continue;
+            }
+
+            JasminMethodEvent event = new JasminMethodEvent();
+            event.begin();
+
+            String methodCode = new JasminMethodEmitter(symbolTable, names, method.get(), foldConstants)
+                    .emit(methodNode);
+            jasmin.append(methodCode);
+
+            if (event.shouldCommit()) {
+                event.className = symbolTable.getClassName();
+                event.methodName = methodName;
+                event.backend = "ast";
+                event.setCode(methodCode);
+                event.commit();
+            }
+        }
+
+        return new JasminResult(symbolTable.getClassName(), jasmin.toString(), semanticsResult.getReports(),
+                semanticsResult.getConfig());
+    }
+
+    private static String getMethodName(JmmNode methodNode) {
+        for (JmmNode child : methodNode.getChildren()) {
+            if (child.getKind().equals("VoidMethodSymbol") || child.getKind().equals("MethodSymbol"))
+                return child.get("name");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,678 @@
+package pt.up.fe.comp2023.ast2jasmin;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.node.information.Method;
+import pt.up.fe.comp2023.utils.TypeInterner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Emits the Jasmin code of a single method while walking its AST.
+ * <p>
+ * Statements are visited with a null argument and return null. Expressions are visited with the type the context
+ * expects, which is how the return type of methods of imported classes is inferred ({@link TypeInterner#VOID} when
+ * the value is discarded), and return the type of the value they leave on the stack.
+ * <p>
+ * From -O1, expressions of literals are folded into their value, and the branches of if and while statements that a
+ * constant condition never takes are not emitted.
+ */
+class JasminMethodEmitter extends AJmmVisitor<Type, Type> {
+
+    private final SymbolTable symbolTable;
+    private final JasminNames names;
+    private final Method method;
+    private final String className;
+    private final boolean foldConstants;
+
+    private final Map<String, Integer> localSlots;
+    private final Map<String, Type> localTypes;
+    private final Map<String, Type> fieldTypes;
+    private final StringBuilder code;
+
+    private int nextSlot;
+    private int labelCounter;
+    private int currentStack;
+    private int maxStack;
+
+    JasminMethodEmitter(SymbolTable symbolTable, JasminNames names, Method method, boolean foldConstants) {
+        this.symbolTable = symbolTable;
+        this.names = names;
+        this.method = method;
+        this.className = symbolTable.getClassName();
+        this.foldConstants = foldConstants;
+        this.localSlots = new HashMap<>();
+        this.localTypes = new HashMap<>();
+        this.fieldTypes = new HashMap<>();
+        this.code = new StringBuilder();
+
+        this.nextSlot = method.getModifiers().contains("static") ? 0 : 1;
+        for (Symbol argument : method.getArguments()) {
+            declareLocal(argument);
+        }
+        for (Symbol variable : method.getVariables()) {
+            declareLocal(variable);
+        }
+        if (symbolTable.getFields() != null) {
+            for (Symbol field : symbolTable.getFields()) {
+                fieldTypes.putIfAbsent(field.getName(), field.getType());
+            }
+        }
+    }
+
+    String emit(JmmNode methodNode) {
+        for (JmmNode child : methodNode.getChildren()) {
+            if (child.getKind().equals("MethodStatement")) {
+                visit(child.getJmmChild(0));
+            }
+        }
+
+        Type returnType = method.getRetType();
+        if (methodNode.getKind().equals("NonVoid")) {
+            JmmNode returnExpression = methodNode.getJmmChild(methodNode.getNumChildren() - 1).getJmmChild(0);
+            visit(returnExpression, returnType);
+            emit(isIntLike(returnType) ? "ireturn" : "areturn", -1);
+        } else {
+            emit("return", 0);
+        }
+
+        StringBuilder header = new StringBuilder("\n.method ");
+        for (String modifier : method.getModifiers()) {
+            header.append(modifier).append(" ");
+        }
+        header.append(method.getName()).append("(");
+        for (Symbol argument : method.getArguments()) {
+            header.append(names.getDescriptor(argument.getType()));
+        }
+        header.append(")").append(names.getDescriptor(returnType)).append("\n");
+        header.append("\t.limit stack ").append(maxStack).append("\n");
+        header.append("\t.limit locals ").append(nextSlot).append("\n");
+
+        return header + code.toString() + ".end method\n";
+    }
+
+    // Utility methods
+
+    private void declareLocal(Symbol symbol) {
+        if (localSlots.containsKey(symbol.getName())) return;
+        localSlots.put(symbol.getName(), nextSlot++);
+        localTypes.put(symbol.getName(), symbol.getType());
+    }
+
+    private static boolean isIntLike(Type type) {
+        return !type.isArray() && (type.getName().equals("int") || type.getName().equals("boolean"));
+    }
+
+    private static String slotSuffix(int slot) {
+        return (slot < 4 ? "_" : " ") + slot;
+    }
+
+    private void emit(String instruction, int stackVariation) {
+        code.append("\t").append(instruction).append("\n");
+        changeStack(stackVariation);
+    }
+
+    private void changeStack(int variation) {
+        currentStack += variation;
+        maxStack = Math.max(maxStack, currentStack);
+    }
+
+    private String newLabel(String prefix) {
+        return prefix + labelCounter++;
+    }
+
+    private void emitLabel(String label) {
+        code.append(label).append(":\n");
+    }
+
+    /**
+     * @return the value of an expression made of literals (1 and 0 for booleans), or null if it has variables, calls,
+     * or divides by 0. Wraps around on overflow like the JVM.
+     */
+    private Integer getConstantValue(JmmNode node) {
+        if (!foldConstants) return null;
+
+        switch (node.getKind()) {
+            case "Integer" -> {
+                return Integer.parseInt(node.get("value"));
+            }
+            case "Boolean" -> {
+                return Boolean.parseBoolean(node.get("value")) ? 1 : 0;
+            }
+            case "Parenthesis" -> {
+                return getConstantValue(node.getJmmChild(0));
+            }
+            case "UnaryBinaryOp" -> {
+                Integer value = getConstantValue(node.getJmmChild(0));
+                return value == null ? null : 1 - value;
+            }
+            case "ArithmeticBinaryOp", "BoolBinaryOp" -> {
+                Integer left = getConstantValue(node.getJmmChild(0));
+                Integer right = getConstantValue(node.getJmmChild(1));
+                if (left == null || right == null) return null;
+
+                return switch (node.get("op")) {
+                    case "+" -> left + right;
+                    case "-" -> left - right;
+                    case "*" -> left * right;
+                    case "/" -> right == 0 ? null : left / right;
+                    case "%" -> right == 0 ? null : left % right;
+                    case "<" -> left < right ? 1 : 0;
+                    case ">" -> left > right ? 1 : 0;
+                    case "<=" -> left <= right ? 1 : 0;
+                    case ">=" -> left >= right ? 1 : 0;
+                    case "==" -> left.equals(right) ? 1 : 0;
+                    case "!=" -> !left.equals(right) ? 1 : 0;
+                    case "&&" -> left & right;
+                    case "||" -> left | right;
+                    default -> null;
+                };
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    private void emitPushInt(int value) {
+        if (value >= -1 && value <= 5) emit("iconst_" + (value == -1 ? "m1" : value), 1);
+        else if (value >= -128 && value <= 127) emit("bipush " + value, 1);
+        else if (value >= -32768 && value <= 32767) emit("sipush " + value, 1);
+        else emit("ldc " + value, 1);
+    }
+
+    private void emitLoadLocal(String name) {
+        Type type = localTypes.get(name);
+        emit((isIntLike(type) ? "iload" : "aload") + slotSuffix(localSlots.get(name)), 1);
+    }
+
+    private void emitStoreLocal(String name) {
+        Type type = localTypes.get(name);
+        emit((isIntLike(type) ? "istore" : "astore") + slotSuffix(localSlots.get(name)), -1);
+    }
+
+    private void emitGetField(String fieldName) {
+        emit("aload_0", 1);
+        emit("getfield " + className + "/" + fieldName + " " + names.getDescriptor(fieldTypes.get(fieldName)), 0);
+    }
+
+    private void emitPutField(String fieldName) {
+        emit("putfield " + className + "/" + fieldName + " " + names.getDescriptor(fieldTypes.get(fieldName)), -2);
+    }
+
+    private static String arrayInstructionPrefix(Type arrayType) {
+        return switch (arrayType.getName()) {
+            case "int" -> "i";
+            case "boolean" -> "b";
+            default -> "a";
+        };
+    }
+
+    /**
+     * @return the type of a variable of the method or a field, or null if the name isn't a variable (e.g. an imported
+     * class)
+     */
+    private Type getVariableType(String name) {
+        Type type = localTypes.get(name);
+        return type != null ? type : fieldTypes.get(name);
+    }
+
+    private Type loadVariable(String name) {
+        if (localSlots.containsKey(name)) {
+            emitLoadLocal(name);
+            return localTypes.get(name);
+        }
+        emitGetField(name);
+        return fieldTypes.get(name);
+    }
+
+    /**
+     * Type given to calls on objects of unknown classes that are themselves the target of another call, following the
+     * same convention as OllirExpressionBuilder#getImportedMethodRootType.
+     */
+    private Type getRootType(JmmNode node) {
+        JmmNode current = node;
+        while (current.getNumChildren() > 0 && !current.getKind().equals("Identifier")) {
+            current = current.getJmmChild(0);
+        }
+        if (!current.getKind().equals("Identifier")) return TypeInterner.intern(className, false);
+
+        Type variableType = getVariableType(current.get("value"));
+        return variableType != null ? variableType : TypeInterner.intern(current.get("value"), false);
+    }
+
+    private List<Type> emitArguments(List<JmmNode> arguments, List<Symbol> parameters) {
+        List<Type> argumentTypes = new ArrayList<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            Type expected = parameters != null && i < parameters.size() ? parameters.get(i).getType() : TypeInterner.INT;
+            argumentTypes.add(visit(arguments.get(i), expected));
+        }
+        return argumentTypes;
+    }
+
+    private Type emitInvoke(String invocation, String owner, String methodName, List<Type> argumentTypes,
+                            Type returnType, boolean hasTarget) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Type argumentType : argumentTypes) {
+            descriptor.append(names.getDescriptor(argumentType));
+        }
+        descriptor.append(")").append(names.getDescriptor(returnType));
+
+        boolean returnsValue = !returnType.getName().equals("void");
+        int stackVariation = -argumentTypes.size() - (hasTarget ? 1 : 0) + (returnsValue ? 1 : 0);
+        emit(invocation + " " + owner + "/" + methodName + descriptor, stackVariation);
+        return returnType;
+    }
+
+    // Conditions
+
+    /**
+     * Jumps to label when the condition evaluates to jumpIfTrue, falling through otherwise. Comparisons and boolean
+     * operators are compiled into branches instead of materializing 0/1 values, and && and || short-circuit.
+     */
+    private void emitConditionalJump(JmmNode condition, String label, boolean jumpIfTrue) {
+        Integer value = getConstantValue(condition);
+        if (value != null) {
+            if ((value != 0) == jumpIfTrue) emit("goto " + label, 0);
+            return;
+        }
+
+        switch (condition.getKind()) {
+            case "Parenthesis" -> emitConditionalJump(condition.getJmmChild(0), label, jumpIfTrue);
+            case "UnaryBinaryOp" -> emitConditionalJump(condition.getJmmChild(0), label, !jumpIfTrue);
+            case "Boolean" -> {
+                if (Boolean.parseBoolean(condition.get("value")) == jumpIfTrue) emit("goto " + label, 0);
+            }
+            case "BoolBinaryOp" -> {
+                String op = condition.get("op");
+                JmmNode left = condition.getJmmChild(0);
+                JmmNode right = condition.getJmmChild(1);
+                switch (op) {
+                    case "&&" -> {
+                        if (jumpIfTrue) {
+                            String skip = newLabel("AND_FALSE");
+                            emitConditionalJump(left, skip, false);
+                            emitConditionalJump(right, label, true);
+                            emitLabel(skip);
+                        } else {
+                            emitConditionalJump(left, label, false);
+                            emitConditionalJump(right, label, false);
+                        }
+                    }
+                    case "||" -> {
+                        if (jumpIfTrue) {
+                            emitConditionalJump(left, label, true);
+                            emitConditionalJump(right, label, true);
+                        } else {
+                            String skip = newLabel("OR_TRUE");
+                            emitConditionalJump(left, skip, true);
+                            emitConditionalJump(right, label, false);
+                            emitLabel(skip);
+                        }
+                    }
+                    default -> emitComparisonJump(op, left, right, label, jumpIfTrue);
+                }
+            }
+            default -> {
+                visit(condition, TypeInterner.BOOLEAN);
+                emit((jumpIfTrue ? "ifne " : "ifeq ") + label, -1);
+            }
+        }
+    }
+
+    private void emitComparisonJump(String op, JmmNode left, JmmNode right, String label, boolean jumpIfTrue) {
+        String condition = switch (op) {
+            case "<" -> jumpIfTrue ? "lt" : "ge";
+            case ">" -> jumpIfTrue ? "gt" : "le";
+            case "<=" -> jumpIfTrue ? "le" : "gt";
+            case ">=" -> jumpIfTrue ? "ge" : "lt";
+            case "==" -> jumpIfTrue ? "eq" : "ne";
+            case "!=" -> jumpIfTrue ? "ne" : "eq";
+            default -> throw new RuntimeException("Unknown comparison operator '" + op + "'");
+        };
+
+        Type leftType = visit(left, TypeInterner.INT);
+        boolean rightIsZero = right.getKind().equals("Integer") && Integer.parseInt(right.get("value")) == 0
+                || Integer.valueOf(0).equals(getConstantValue(right));
+        if (rightIsZero && isIntLike(leftType)) {
+            emit("if" + condition + " " + label, -1);
+            return;
+        }
+
+        visit(right, leftType);
+        String prefix = isIntLike(leftType) ? "if_icmp" : "if_acmp";
+        emit(prefix + condition + " " + label, -2);
+    }
+
+    // End Utility methods
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Scope", this::dealWithScope);
+        addVisit("Conditional", this::dealWithConditional);
+        addVisit("SimpleStatement", this::dealWithSimpleStatement);
+        addVisit("ClassFieldAssignment", this::dealWithClassFieldAssignment);
+        addVisit("Assignment", this::dealWithAssignment);
+        addVisit("ArrayAssignment", this::dealWithArrayAssignment);
+
+        addVisit("MethodCall", this::dealWithMethodCall);
+        addVisit("ThisMethodCall", this::dealWithThisMethodCall);
+        addVisit("ArrayLength", this::dealWithArrayLength);
+        addVisit("ArrayAccess", this::dealWithArrayAccess);
+        addVisit("Parenthesis", this::dealWithParenthesis);
+        addVisit("UnaryBinaryOp", this::dealWithUnaryBoolOp);
+        addVisit("ArithmeticBinaryOp", this::dealWithArithmeticBinaryOp);
+        addVisit("BoolBinaryOp", this::dealWithBoolBinaryOp);
+        addVisit("ArrayInstantiation", this::dealWithArrayInstantiation);
+        addVisit("Instantiation", this::dealWithInstantiation);
+        addVisit("Integer", this::dealWithInteger);
+        addVisit("Boolean", this::dealWithBool);
+        addVisit("Identifier", this::dealWithID);
+        addVisit("ExplicitClassFieldAccess", this::dealWithExplicitClassFieldAccess);
+        addVisit("ClassAccess", this::dealWithClassAccess);
+    }
+
+    // Statements
+
+    private Type dealWithScope(JmmNode node, Type __) {
+        for (JmmNode child : node.getChildren()) {
+            visit(child);
+        }
+        return null;
+    }
+
+    private Type dealWithConditional(JmmNode node, Type __) {
+        JmmNode condition = node.getJmmChild(0).getJmmChild(0);
+        Integer conditionValue = getConstantValue(condition);
+
+        // Same as OllirClassBuilder, if and while share the node kind and differ in the number of children
+        if (node.getNumChildren() == 3 && conditionValue != null) {
+            visit(node.getJmmChild(conditionValue != 0 ? 1 : 2).getJmmChild(0));
+            return null;
+        }
+
+        if (node.getNumChildren() == 3) {
+            String elseLabel = newLabel("ELSE");
+            String endIfLabel = newLabel("ENDIF");
+
+            emitConditionalJump(condition, elseLabel, false);
+            visit(node.getJmmChild(1).getJmmChild(0));
+            emit("goto " + endIfLabel, 0);
+            emitLabel(elseLabel);
+            visit(node.getJmmChild(2).getJmmChild(0));
+            emitLabel(endIfLabel);
+            return null;
+        }
+
+        if (conditionValue != null && conditionValue == 0) return null;
+
+        String whileLabel = newLabel("WHILE");
+        String endWhileLabel = newLabel("ENDWHILE");
+
+        emitLabel(whileLabel);
+        emitConditionalJump(condition, endWhileLabel, false);
+        visit(node.getJmmChild(1).getJmmChild(0));
+        emit("goto " + whileLabel, 0);
+        emitLabel(endWhileLabel);
+        return null;
+    }
+
+    private Type dealWithSimpleStatement(JmmNode node, Type __) {
+        Type type = visit(node.getJmmChild(0), TypeInterner.VOID);
+        if (type != null && !type.getName().equals("void")) {
+            emit("pop", -1);
+        }
+        return null;
+    }
+
+    private Type dealWithClassFieldAssignment(JmmNode node, Type __) {
+        String fieldName = node.getJmmChild(0).get("varName");
+        emit("aload_0", 1);
+        visit(node.getJmmChild(1), fieldTypes.get(fieldName));
+        emitPutField(fieldName);
+        return null;
+    }
+
+    private Type dealWithAssignment(JmmNode node, Type __) {
+        String varName = node.get("varName");
+        JmmNode assigned = node.getJmmChild(0);
+
+        if (!localSlots.containsKey(varName)) {
+            emit("aload_0", 1);
+            visit(assigned, fieldTypes.get(varName));
+            emitPutField(varName);
+            return null;
+        }
+
+        if (emitIncrement(varName, assigned)) return null;
+
+        visit(assigned, localTypes.get(varName));
+        emitStoreLocal(varName);
+        return null;
+    }
+
+    /**
+     * Emits iinc for "x = x + c", "x = c + x" and "x = x - c", with c fitting in a byte.
+     */
+    private boolean emitIncrement(String varName, JmmNode assigned) {
+        if (!assigned.getKind().equals("ArithmeticBinaryOp") || !localTypes.get(varName).equals(TypeInterner.INT)) {
+            return false;
+        }
+
+        String op = assigned.get("op");
+        JmmNode left = assigned.getJmmChild(0);
+        JmmNode right = assigned.getJmmChild(1);
+
+        JmmNode literal = null;
+        if (op.equals("+") || op.equals("-")) {
+            if (isIdentifier(left, varName) && right.getKind().equals("Integer")) literal = right;
+            else if (op.equals("+") && isIdentifier(right, varName) && left.getKind().equals("Integer")) literal = left;
+        }
+        if (literal == null) return false;
+
+        long value = Long.parseLong(literal.get("value")) * (op.equals("-") ? -1 : 1);
+        if (value < -128 || value > 127) return false;
+
+        emit("iinc " + localSlots.get(varName) + " " + value, 0);
+        return true;
+    }
+
+    private static boolean isIdentifier(JmmNode node, String name) {
+        return node.getKind().equals("Identifier") && node.get("value").equals(name);
+    }
+
+    private Type dealWithArrayAssignment(JmmNode node, Type __) {
+        String varName = node.get("varName");
+        Type arrayType = loadVariable(varName);
+        Type elementType = TypeInterner.intern(arrayType.getName(), false);
+
+        visit(node.getJmmChild(0).getJmmChild(0), TypeInterner.INT);
+        visit(node.getJmmChild(1), elementType);
+        emit(arrayInstructionPrefix(arrayType) + "astore", -3);
+        return null;
+    }
+
+    // Expressions
+
+    private Type dealWithMethodCall(JmmNode node, Type expected) {
+        JmmNode target = node.getJmmChild(0);
+        String methodName = node.get("methodName");
+        List<JmmNode> arguments = node.getChildren().subList(1, node.getNumChildren());
+        Type inferredReturnType = expected == null ? TypeInterner.VOID : expected;
+
+        // Static call, the target is a class name
+        if (target.getKind().equals("Identifier") && getVariableType(target.get("value")) == null) {
+            String targetClass = target.get("value");
+            if (targetClass.equals(className) && symbolTable.getMethodTry(methodName).isPresent()) {
+                Method calledMethod = symbolTable.getMethodTry(methodName).get();
+                List<Type> argumentTypes = emitArguments(arguments, calledMethod.getArguments());
+                return emitInvoke("invokestatic", className, methodName, declaredParameterTypes(calledMethod, argumentTypes),
+                        calledMethod.getRetType(), false);
+            }
+
+            List<Type> argumentTypes = emitArguments(arguments, null);
+            return emitInvoke("invokestatic", names.getClassName(targetClass), methodName, argumentTypes,
+                    inferredReturnType, false);
+        }
+
+        Type targetType = visit(target, getRootType(target));
+
+        if (!targetType.isArray() && targetType.getName().equals(className)
+                && symbolTable.getMethodTry(methodName).isPresent()) {
+            Method calledMethod = symbolTable.getMethodTry(methodName).get();
+            List<Type> argumentTypes = emitArguments(arguments, calledMethod.getArguments());
+            return emitInvoke("invokevirtual", className, methodName, declaredParameterTypes(calledMethod, argumentTypes),
+                    calledMethod.getRetType(), true);
+        }
+
+        // Method of an imported class or inherited from one
+        List<Type> argumentTypes = emitArguments(arguments, null);
+        return emitInvoke("invokevirtual", names.getClassName(targetType.getName()), methodName, argumentTypes,
+                inferredReturnType, true);
+    }
+
+    private static List<Type> declaredParameterTypes(Method method, List<Type> argumentTypes) {
+        if (method.getArguments().size() != argumentTypes.size()) return argumentTypes;
+        return method.getArguments().stream().map(Symbol::getType).toList();
+    }
+
+    private Type dealWithThisMethodCall(JmmNode node, Type expected) {
+        String methodName = node.get("methodName");
+        Method calledMethod = symbolTable.getMethodOrWarn(methodName, "dealWithThisMethodCall");
+
+        emit("aload_0", 1);
+        if (calledMethod == null) {
+            List<Type> argumentTypes = emitArguments(node.getChildren(), null);
+            return emitInvoke("invokevirtual", className, methodName, argumentTypes,
+                    expected == null ? TypeInterner.VOID : expected, true);
+        }
+
+        List<Type> argumentTypes = emitArguments(node.getChildren(), calledMethod.getArguments());
+        return emitInvoke("invokevirtual", className, methodName, declaredParameterTypes(calledMethod, argumentTypes),
+                calledMethod.getRetType(), true);
+    }
+
+    private Type dealWithArrayLength(JmmNode node, Type __) {
+        visit(node.getJmmChild(0), TypeInterner.INT_ARRAY);
+        emit("arraylength", 0);
+        return TypeInterner.INT;
+    }
+
+    private Type dealWithArrayAccess(JmmNode node, Type __) {
+        Type arrayType = visit(node.getJmmChild(0), TypeInterner.INT_ARRAY);
+        visit(node.getJmmChild(1), TypeInterner.INT);
+        emit(arrayInstructionPrefix(arrayType) + "aload", -1);
+        return TypeInterner.intern(arrayType.getName(), false);
+    }
+
+    private Type dealWithParenthesis(JmmNode node, Type expected) {
+        return visit(node.getJmmChild(0), expected);
+    }
+
+    private Type dealWithUnaryBoolOp(JmmNode node, Type __) {
+        if (emitConstant(node)) return TypeInterner.BOOLEAN;
+
+        visit(node.getJmmChild(0), TypeInterner.BOOLEAN);
+        emit("iconst_1", 1);
+        emit("ixor", -1);
+        return TypeInterner.BOOLEAN;
+    }
+
+    private Type dealWithArithmeticBinaryOp(JmmNode node, Type __) {
+        if (emitConstant(node)) return TypeInterner.INT;
+
+        visit(node.getJmmChild(0), TypeInterner.INT);
+        visit(node.getJmmChild(1), TypeInterner.INT);
+
+        String instruction = switch (node.get("op")) {
+            case "+" -> "iadd";
+            case "-" -> "isub";
+            case "*" -> "imul";
+            case "/" -> "idiv";
+            case "%" -> "irem";
+            default -> throw new RuntimeException("Unknown arithmetic operator '" + node.get("op") + "'");
+        };
+        emit(instruction, -1);
+        return TypeInterner.INT;
+    }
+
+    private Type dealWithBoolBinaryOp(JmmNode node, Type __) {
+        if (emitConstant(node)) return TypeInterner.BOOLEAN;
+
+        String trueLabel = newLabel("TRUE");
+        String endLabel = newLabel("NEXT");
+
+        int stackBefore = currentStack;
+        emitConditionalJump(node, trueLabel, true);
+        emit("iconst_0", 1);
+        emit("goto " + endLabel, 0);
+        emitLabel(trueLabel);
+        currentStack = stackBefore;
+        emit("iconst_1", 1);
+        emitLabel(endLabel);
+        return TypeInterner.BOOLEAN;
+    }
+
+    private boolean emitConstant(JmmNode node) {
+        Integer value = getConstantValue(node);
+        if (value != null) emitPushInt(value);
+        return value != null;
+    }
+
+    private Type dealWithArrayInstantiation(JmmNode node, Type __) {
+        String typeName = node.get("typeName");
+        visit(node.getJmmChild(0), TypeInterner.INT);
+
+        switch (typeName) {
+            case "int" -> emit("newarray int", 0);
+            case "boolean" -> emit("newarray boolean", 0);
+            default -> emit("anewarray " + names.getClassName(typeName), 0);
+        }
+        return TypeInterner.intern(typeName, true);
+    }
+
+    private Type dealWithInstantiation(JmmNode node, Type __) {
+        String instantiatedClass = names.getClassName(node.get("name"));
+        emit("new " + instantiatedClass, 1);
+        emit("dup", 1);
+        emit("invokespecial " + instantiatedClass + "/<init>()V", -1);
+        return TypeInterner.intern(node.get("name"), false);
+    }
+
+    private Type dealWithInteger(JmmNode node, Type __) {
+        emitPushInt(Integer.parseInt(node.get("value")));
+        return TypeInterner.INT;
+    }
+
+    private Type dealWithBool(JmmNode node, Type __) {
+        emit(Boolean.parseBoolean(node.get("value")) ? "iconst_1" : "iconst_0", 1);
+        return TypeInterner.BOOLEAN;
+    }
+
+    private Type dealWithID(JmmNode node, Type __) {
+        String name = node.get("value");
+        if (getVariableType(name) == null) {
+            // Class names are only valid as the target of static calls, which are handled in dealWithMethodCall
+            System.err.println("Tried to load '" + name + "' but it isn't a variable.");
+            return TypeInterner.intern(name, false);
+        }
+        return loadVariable(name);
+    }
+
+    private Type dealWithExplicitClassFieldAccess(JmmNode node, Type __) {
+        String fieldName = node.getJmmChild(0).get("varName");
+        emitGetField(fieldName);
+        return fieldTypes.get(fieldName);
+    }
+
+    private Type dealWithClassAccess(JmmNode node, Type __) {
+        emit("aload_0", 1);
+        return TypeInterner.intern(className, false);
+    }
+}
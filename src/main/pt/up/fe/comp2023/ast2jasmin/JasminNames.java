@@ -0,0 +1,43 @@
+package pt.up.fe.comp2023.ast2jasmin;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.utils.TypeInterner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves jmm class names to the internal names used by Jasmin (e.g. "io" to "pt/up/io") and builds descriptors.
+ */
+class JasminNames {
+
+    private final SymbolTable symbolTable;
+    private final Map<String, String> classNames;
+
+    JasminNames(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        this.classNames = new HashMap<>();
+    }
+
+    String getClassName(String className) {
+        return classNames.computeIfAbsent(className, name -> {
+            if (name.equals("this")) return symbolTable.getClassName();
+            if (name.equals("String")) return "java/lang/String";
+
+            for (String importName : symbolTable.getImports()) {
+                if (importName.equals(name) || importName.endsWith("." + name)) {
+                    return importName.replace('.', '/');
+                }
+            }
+            return name;
+        });
+    }
+
+    String getDescriptor(Type type) {
+        return switch (type.getName()) {
+            case "int", "boolean", "void", "String" -> TypeInterner.toDescriptor(type);
+            default -> (type.isArray() ? "[L" : "L") + getClassName(type.getName()) + ";";
+        };
+    }
+}
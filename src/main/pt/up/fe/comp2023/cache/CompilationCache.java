@@ -0,0 +1,299 @@
+package pt.up.fe.comp2023.cache;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.Launcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of compiled classes, so that a file that didn't change since it was last compiled skips every stage.
+ * Entries are addressed by a hash of the code, of the config entries that change the generated code, and of the
+ * classes of the compiler itself, so a new build of the compiler never sees the entries of an old one. Each entry is
+ * a directory with the Jasmin code, the class file and the reports of the compilation.
+ * <p>
+ * The cache is bounded by the bytes of its entries: after an entry is added, the least recently used ones are removed
+ * until it fits. How many lookups hit is kept in the cache directory across runs.
+ */
+public class CompilationCache {
+
+    public static final Path DEFAULT_DIRECTORY = Paths.get(".jmm-cache");
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Config entries that don't change the generated code
+    private static final Set<String> IGNORED_CONFIG = Set.of("inputFile", "debug", "stats", "cache", "incremental");
+    private static final String ENTRY_FILE = "entry.json";
+    private static final String STATISTICS_FILE = "statistics.json";
+    private static final String KEY_PATTERN = "[0-9a-f]{64}";
+
+    private static String compilerFingerprint;
+
+    /**
+     * A compiled class, as the launcher writes it.
+     */
+    public record Entry(String className, String jasminCode, byte[] classFile, List<Report> reports) {
+    }
+
+    // What entry.json holds, the code and the class file are kept in files of their own
+    private record Metadata(String className, List<CachedReport> reports) {
+    }
+
+    private record CachedReport(ReportType type, Stage stage, int line, int column, String message) {
+    }
+
+    private record Statistics(long hits, long misses) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final Gson gson = new Gson();
+
+    public CompilationCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the address of the class compiled from the code with the config
+     */
+    public String key(String code, Map<String, String> config) {
+        MessageDigest digest = newDigest();
+        update(digest, getCompilerFingerprint());
+        update(digest, code);
+        for (Map.Entry<String, String> entry : new TreeMap<>(config).entrySet()) {
+            if (IGNORED_CONFIG.contains(entry.getKey())) continue;
+            update(digest, entry.getKey());
+            update(digest, entry.getValue());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @return the SHA-256 of the string, in hex
+     */
+    static String hash(String value) {
+        MessageDigest digest = newDigest();
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Looks the entry up, counting a hit or a miss, and marks it as the most recently used.
+     */
+    public Optional<Entry> get(String key) {
+        Path entryDirectory = directory.resolve(key);
+        Optional<Entry> entry = Optional.empty();
+
+        if (Files.isDirectory(entryDirectory)) {
+            try {
+                Metadata metadata = gson.fromJson(Files.readString(entryDirectory.resolve(ENTRY_FILE)), Metadata.class);
+                String jasminCode = Files.readString(entryDirectory.resolve(metadata.className() + ".j"));
+                byte[] classFile = Files.readAllBytes(entryDirectory.resolve(metadata.className() + ".class"));
+                List<Report> reports = metadata.reports().stream()
+                        .map(report -> new Report(report.type(), report.stage(), report.line(), report.column(),
+                                report.message()))
+                        .toList();
+
+                Files.setLastModifiedTime(entryDirectory, FileTime.fromMillis(System.currentTimeMillis()));
+                entry = Optional.of(new Entry(metadata.className(), jasminCode, classFile, reports));
+            } catch (IOException | RuntimeException e) {
+                // An entry removed or damaged by another compilation is a miss
+                System.err.println("Could not read cache entry " + key + ": " + e.getMessage());
+            }
+        }
+
+        Statistics statistics = readStatistics();
+        writeStatistics(entry.isPresent() ? new Statistics(statistics.hits() + 1, statistics.misses())
+                : new Statistics(statistics.hits(), statistics.misses() + 1));
+        return entry;
+    }
+
+    /**
+     * Adds the entry, then evicts the least recently used entries until the cache fits in its bound. The entry is
+     * written apart and moved in place, so that other compilations never see it half written.
+     */
+    public void put(String key, Entry entry) {
+        putAll(Map.of(key, entry));
+    }
+
+    /**
+     * Adds the entries like {@link #put(String, Entry)}, evicting only once they are all in.
+     */
+    public void putAll(Map<String, Entry> entries) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) write(entry.getKey(), entry.getValue());
+        evict();
+    }
+
+    /**
+     * @return the fraction of the lookups that hit, over every run that used this cache directory
+     */
+    public double getHitRate() {
+        Statistics statistics = readStatistics();
+        long lookups = statistics.hits() + statistics.misses();
+        return lookups == 0 ? 0 : (double) statistics.hits() / lookups;
+    }
+
+    public long getHits() {
+        return readStatistics().hits();
+    }
+
+    public long getMisses() {
+        return readStatistics().misses();
+    }
+
+    /**
+     * @return the bytes of the entries in the cache
+     */
+    public long getSize() {
+        return entries().stream().mapToLong(CompilationCache::size).sum();
+    }
+
+    private void write(String key, Entry entry) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempDirectory(directory, key + ".");
+
+            List<CachedReport> reports = entry.reports().stream()
+                    .map(report -> new CachedReport(report.getType(), report.getStage(), report.getLine(),
+                            report.getColumn(), report.getMessage()))
+                    .toList();
+            Files.writeString(temporary.resolve(ENTRY_FILE), gson.toJson(new Metadata(entry.className(), reports)));
+            Files.writeString(temporary.resolve(entry.className() + ".j"), entry.jasminCode());
+            Files.write(temporary.resolve(entry.className() + ".class"), entry.classFile());
+
+            try {
+                Files.move(temporary, directory.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // Another compilation of the same code got there first
+                delete(temporary);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not add cache entry " + key + ": " + e.getMessage());
+        }
+    }
+
+    private void evict() {
+        List<Path> entries = new ArrayList<>(entries());
+        entries.sort(Comparator.comparing(CompilationCache::lastUsed));
+
+        long size = entries.stream().mapToLong(CompilationCache::size).sum();
+        for (Path entry : entries) {
+            if (size <= maxBytes) break;
+            size -= size(entry);
+            delete(entry);
+        }
+    }
+
+    private List<Path> entries() {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> children = Files.list(directory)) {
+            // Entries being written have a suffix after the key, other caches may have directories of their own here
+            return children.filter(child -> Files.isDirectory(child)
+                    && child.getFileName().toString().matches(KEY_PATTERN)).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the cache " + directory, e);
+        }
+    }
+
+    private Statistics readStatistics() {
+        try {
+            // Empty when a compilation was stopped while writing it
+            Statistics statistics = gson.fromJson(Files.readString(directory.resolve(STATISTICS_FILE)),
+                    Statistics.class);
+            return statistics != null ? statistics : new Statistics(0, 0);
+        } catch (IOException | RuntimeException e) {
+            return new Statistics(0, 0);
+        }
+    }
+
+    private void writeStatistics(Statistics statistics) {
+        try {
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve(STATISTICS_FILE), gson.toJson(statistics));
+        } catch (IOException e) {
+            System.err.println("Could not write the cache statistics: " + e.getMessage());
+        }
+    }
+
+    private static FileTime lastUsed(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long size(Path entry) {
+        try (Stream<Path> files = Files.list(entry)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void delete(Path entry) {
+        try (Stream<Path> files = Files.list(entry)) {
+            for (Path file : files.toList()) Files.deleteIfExists(file);
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            // Already removed by another compilation
+        }
+    }
+
+    /**
+     * The launcher has no version number, so the compiler is identified by the bytes of its classes: the jar it runs
+     * from, or the class files of the build directory.
+     */
+    private static synchronized String getCompilerFingerprint() {
+        if (compilerFingerprint != null) return compilerFingerprint;
+
+        MessageDigest digest = newDigest();
+        try {
+            Path location = Paths.get(Launcher.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (Files.isDirectory(location)) {
+                try (Stream<Path> files = Files.walk(location)) {
+                    for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        update(digest, location.relativize(file).toString());
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Could not read the classes of the compiler", e);
+        }
+
+        compilerFingerprint = HexFormat.of().formatHex(digest.digest());
+        return compilerFingerprint;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Adds the string with its length, so that the boundaries between strings are part of the hash.
+     */
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+}
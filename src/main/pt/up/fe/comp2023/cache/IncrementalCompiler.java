@@ -0,0 +1,234 @@
+package pt.up.fe.comp2023.cache;
+
+import org.objectweb.asm.*;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.jasmin.ClassFileUpgrader;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.comp2023.optimization.MethodSplitting;
+import pt.up.fe.comp2023.profiling.StageProfiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Recompiles only the methods of a class that changed since it was last compiled. Each method is compiled to a
+ * fragment, its Jasmin code and a class file with only its methods (itself and the methods split from it, see
+ * {@link MethodSplitting}), kept in a {@link CompilationCache} under its {@link MethodFingerprints fingerprint}. The
+ * fields and the constructor are a fragment of their own, the header.
+ * <p>
+ * The methods whose fingerprint misses are compiled together, in a ClassUnit with only them and the methods they
+ * depend on, and assembled once, as Jasmin assembling is most of the compile time. The class is then put together
+ * from the fragments, in the order the methods are declared. Methods split from another one come right after it,
+ * instead of at the end of the class.
+ */
+public class IncrementalCompiler {
+
+    public static final Path DEFAULT_DIRECTORY = CompilationCache.DEFAULT_DIRECTORY.resolve("methods");
+
+    // The constructor is part of the header
+    private static final String HEADER = "<init>";
+
+    /**
+     * @param recompiled the methods that were compiled again, in the order they are declared
+     * @param methods    how many methods the class has
+     */
+    public record Result(String className, String jasminCode, byte[] classFile, List<String> recompiled, int methods) {
+    }
+
+    private final CompilationCache fragments;
+    private final StageProfiler profiler;
+
+    public IncrementalCompiler(CompilationCache fragments, StageProfiler profiler) {
+        this.fragments = fragments;
+        this.profiler = profiler;
+    }
+
+    public Result compile(JmmSemanticsResult semantics, Map<String, String> config) {
+        SymbolTable symbolTable = (SymbolTable) semantics.getSymbolTable();
+        MethodFingerprints fingerprints = profiler.run("fingerprint",
+                () -> new MethodFingerprints(semantics.getRootNode(), symbolTable, config, fragments));
+
+        Map<String, CompilationCache.Entry> found = new HashMap<>();
+        profiler.run("cache", () -> {
+            fragments.get(fingerprints.getHeader()).ifPresent(entry -> found.put(HEADER, entry));
+            fingerprints.getMethods().forEach((method, fingerprint) ->
+                    fragments.get(fingerprint).ifPresent(entry -> found.put(method, entry)));
+            return found;
+        });
+
+        List<String> recompiled = new ArrayList<>();
+        for (String method : fingerprints.getMethods().keySet()) {
+            if (!found.containsKey(method)) recompiled.add(method);
+        }
+
+        if (!found.containsKey(HEADER) || !recompiled.isEmpty()) {
+            Set<String> methods = new HashSet<>(recompiled);
+            for (String method : recompiled) methods.addAll(fingerprints.getDependencies(method));
+
+            Map<String, CompilationCache.Entry> compiled = compileFragments(semantics, config, methods,
+                    Set.copyOf(recompiled));
+
+            Map<String, CompilationCache.Entry> added = new HashMap<>();
+            for (Map.Entry<String, CompilationCache.Entry> fragment : compiled.entrySet()) {
+                // The header is compiled with the methods even when it hit
+                if (found.containsKey(fragment.getKey())) continue;
+                found.put(fragment.getKey(), fragment.getValue());
+                added.put(fragment.getKey().equals(HEADER) ? fingerprints.getHeader()
+                        : fingerprints.getMethods().get(fragment.getKey()), fragment.getValue());
+            }
+            profiler.run("cache", () -> {
+                fragments.putAll(added);
+                return added;
+            });
+        }
+
+        CompilationCache.Entry header = found.get(HEADER);
+        StringBuilder jasminCode = new StringBuilder(header.jasminCode());
+        List<byte[]> classFiles = new ArrayList<>();
+        for (String method : fingerprints.getMethods().keySet()) {
+            jasminCode.append(found.get(method).jasminCode());
+            classFiles.add(found.get(method).classFile());
+        }
+        byte[] classFile = profiler.run("merge", () -> merge(header.classFile(), classFiles));
+
+        return new Result(symbolTable.getClassName(), jasminCode.toString(), classFile, recompiled,
+                fingerprints.getMethods().size());
+    }
+
+    /**
+     * Compiles the header and the given methods through the backend of the config. Dependencies that hit are only
+     * there for the passes, they keep the fragment of the cache and are left out of the backend.
+     *
+     * @param recompiled the methods whose fragments are needed
+     * @return the fragment of the header and of each recompiled method
+     */
+    private Map<String, CompilationCache.Entry> compileFragments(JmmSemanticsResult semantics,
+                                                                 Map<String, String> config, Set<String> methods,
+                                                                 Set<String> recompiled) {
+        JasminResult result;
+        if (config.get("backend").equals("ast")) {
+            result = profiler.run("jasmin", () -> new AstToJasminImpl().toJasmin(semantics, methods::contains));
+        } else {
+            Optimizer optimizer = new Optimizer();
+            ClassUnit classUnit = profiler.run("ollir", () -> optimizer.toClassUnit(semantics, methods));
+            profiler.run("optimize", () -> optimizer.optimize(classUnit, config));
+            classUnit.getMethods().removeIf(method -> !method.isConstructMethod()
+                    && !recompiled.contains(getOwner(method.getMethodName())));
+            result = profiler.run("jasmin", () -> new JasminBackender().toJasmin(classUnit, config));
+        }
+
+        if (result.getJasminCode() == null) {
+            throw new RuntimeException("Could not generate the Jasmin code of " + result.getClassName() + ": "
+                    + result.getReports());
+        }
+
+        byte[] classFile = profiler.run("assemble", () -> new ClassFileUpgrader().upgrade(assemble(result)));
+
+        Map<String, CompilationCache.Entry> compiled = new HashMap<>();
+        splitJasmin(result.getJasminCode()).forEach((owner, code) -> {
+            byte[] fragment = extract(classFile, name -> getOwner(name).equals(owner), owner.equals(HEADER));
+            compiled.put(owner, new CompilationCache.Entry(result.getClassName(), code, fragment, List.of()));
+        });
+        return compiled;
+    }
+
+    private static byte[] assemble(JasminResult result) {
+        try {
+            File directory = Files.createTempDirectory("jmm").toFile();
+            byte[] classFile = Files.readAllBytes(result.compile(directory).toPath());
+            SpecsIo.deleteFolder(directory);
+            return classFile;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not assemble " + result.getClassName(), e);
+        }
+    }
+
+    /**
+     * Both backends start every method with "\n.method", and the directives of the class come before the first one.
+     *
+     * @return the Jasmin code of each method with the ones split from it, and of the header under {@link #HEADER}
+     */
+    private static Map<String, String> splitJasmin(String jasminCode) {
+        Map<String, StringBuilder> code = new LinkedHashMap<>();
+        String start = "\n.method ";
+
+        int end = jasminCode.indexOf(start);
+        code.put(HEADER, new StringBuilder(jasminCode.substring(0, end < 0 ? jasminCode.length() : end)));
+
+        while (end >= 0) {
+            int next = jasminCode.indexOf(start, end + 1);
+            String method = jasminCode.substring(end, next < 0 ? jasminCode.length() : next);
+
+            String declaration = method.substring(start.length(), method.indexOf('('));
+            String name = declaration.substring(declaration.lastIndexOf(' ') + 1);
+            code.computeIfAbsent(getOwner(name), owner -> new StringBuilder()).append(method);
+
+            end = next;
+        }
+
+        Map<String, String> fragments = new LinkedHashMap<>();
+        code.forEach((owner, builder) -> fragments.put(owner, builder.toString()));
+        return fragments;
+    }
+
+    private static String getOwner(String methodName) {
+        int separator = methodName.indexOf(MethodSplitting.NAME_SEPARATOR);
+        return separator > 0 ? methodName.substring(0, separator) : methodName;
+    }
+
+    /**
+     * @return a class file with the methods of the class the filter accepts, and its fields if asked
+     */
+    private static byte[] extract(byte[] classFile, Predicate<String> methodFilter, boolean withFields) {
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature,
+                                           Object value) {
+                return withFields ? super.visitField(access, name, descriptor, signature, value) : null;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                return methodFilter.test(name) ? super.visitMethod(access, name, descriptor, signature, exceptions)
+                        : null;
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Copies the methods of the fragments after those of the header. The fragments were upgraded with the header, so
+     * their stack map frames are copied as they are.
+     */
+    private static byte[] merge(byte[] header, List<byte[]> fragments) {
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(header).accept(new ClassVisitor(Opcodes.ASM9, writer) {
+            @Override
+            public void visitEnd() {
+                for (byte[] fragment : fragments) {
+                    new ClassReader(fragment).accept(new ClassVisitor(Opcodes.ASM9) {
+                        @Override
+                        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                                         String[] exceptions) {
+                            return writer.visitMethod(access, name, descriptor, signature, exceptions);
+                        }
+                    }, 0);
+                }
+                super.visitEnd();
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+}
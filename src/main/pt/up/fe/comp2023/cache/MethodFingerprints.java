@@ -0,0 +1,170 @@
+package pt.up.fe.comp2023.cache;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.optimization.PassManager;
+
+import java.util.*;
+
+/**
+ * Fingerprints of the parts of a class that {@link IncrementalCompiler} compiles apart, computed from the AST:
+ * <ul>
+ *     <li>the header: the class, its superclass, imports and fields, which give the fields and the constructor</li>
+ *     <li>each method: the header, the subtree of the method and what it needs from the methods of the class it
+ *     calls. Those are their signatures, or their whole subtrees when a pass copies or evaluates the code of the
+ *     callees (see {@link #INTERPROCEDURAL_PASSES}), and then those of their own callees too.</li>
+ * </ul>
+ * The fingerprints are keys of a {@link CompilationCache}, so the config and the compiler are part of them too. The
+ * positions of the nodes are left out, so that moving a method, or editing the lines above it, doesn't change it.
+ */
+public class MethodFingerprints {
+
+    // Passes whose changes to a method depend on the code of the methods it calls
+    private static final Set<String> INTERPROCEDURAL_PASSES = Set.of("inlining", "pure-calls", "scalar-replacement");
+    private static final Set<String> POSITION_ATTRIBUTES = Set.of("lineStart", "lineEnd", "colStart", "colEnd");
+    private static final Set<String> BODY_KINDS = Set.of("VarDeclaration", "MethodStatement", "MethodReturnExpression");
+
+    private final String header;
+    private final Map<String, String> methods = new LinkedHashMap<>();
+    private final Map<String, Set<String>> dependencies = new HashMap<>();
+
+    public MethodFingerprints(JmmNode root, SymbolTable symbolTable, Map<String, String> config,
+                              CompilationCache cache) {
+        boolean interprocedural = isInterprocedural(config);
+
+        StringBuilder headerCode = new StringBuilder();
+        Map<String, JmmNode> methodNodes = new LinkedHashMap<>();
+        for (JmmNode child : root.getChildren()) {
+            if (child.getKind().equals("ImportDeclaration")) serialize(child, headerCode);
+            if (!child.getKind().equals("ClassDeclaration")) continue;
+
+            headerCode.append(child.getKind());
+            appendAttributes(child, headerCode);
+            for (JmmNode member : child.getChildren()) {
+                if (member.getHierarchy().contains("MethodDeclaration")) methodNodes.put(getMethodName(member), member);
+                else serialize(member, headerCode);
+            }
+        }
+        header = cache.key(headerCode.toString(), config);
+
+        // Each subtree is hashed once, fingerprints combine the hashes of the methods they depend on
+        Map<String, String> bodies = new HashMap<>();
+        Map<String, String> signatures = new HashMap<>();
+        Map<String, Set<String>> callees = new HashMap<>();
+        for (Map.Entry<String, JmmNode> method : methodNodes.entrySet()) {
+            StringBuilder body = new StringBuilder();
+            serialize(method.getValue(), body);
+            bodies.put(method.getKey(), CompilationCache.hash(body.toString()));
+
+            StringBuilder signature = new StringBuilder();
+            serializeSignature(method.getValue(), signature);
+            signatures.put(method.getKey(), CompilationCache.hash(signature.toString()));
+
+            Set<String> called = new TreeSet<>();
+            collectCalls(method.getValue(), symbolTable, called);
+            callees.put(method.getKey(), called);
+        }
+
+        String headerHash = CompilationCache.hash(headerCode.toString());
+        for (String method : methodNodes.keySet()) {
+            Set<String> needed = new TreeSet<>(callees.get(method));
+            if (interprocedural) {
+                Deque<String> pending = new ArrayDeque<>(needed);
+                while (!pending.isEmpty()) {
+                    for (String callee : callees.getOrDefault(pending.pop(), Set.of())) {
+                        if (needed.add(callee)) pending.push(callee);
+                    }
+                }
+            }
+            needed.remove(method);
+            needed.retainAll(methodNodes.keySet());
+
+            StringBuilder code = new StringBuilder(headerHash).append(bodies.get(method));
+            for (String callee : needed) {
+                code.append(callee.length()).append(':').append(callee)
+                        .append(interprocedural ? bodies.get(callee) : signatures.get(callee));
+            }
+
+            methods.put(method, cache.key(code.toString(), config));
+            dependencies.put(method, interprocedural ? needed : Set.of());
+        }
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @return the fingerprint of each method, in the order they are declared
+     */
+    public Map<String, String> getMethods() {
+        return methods;
+    }
+
+    /**
+     * @return the methods whose code has to be in the ClassUnit for the method to compile as it does in the whole
+     * class, empty unless an interprocedural pass is enabled
+     */
+    public Set<String> getDependencies(String method) {
+        return dependencies.getOrDefault(method, Set.of());
+    }
+
+    private static boolean isInterprocedural(Map<String, String> config) {
+        if (config.get("backend").equals("ast")) return false;
+        return Optimizer.createPassManager(config).getPasses().stream().anyMatch(pass ->
+                INTERPROCEDURAL_PASSES.contains(pass.getName()) && PassManager.isEnabled(pass, config));
+    }
+
+    /**
+     * Calls are matched by name only, so calls to a method of another class with the name of one of this class are
+     * dependencies too, which only costs recompiling the caller when it changes.
+     */
+    private static void collectCalls(JmmNode node, SymbolTable symbolTable, Set<String> called) {
+        if (node.getKind().equals("MethodCall") || node.getKind().equals("ThisMethodCall")) {
+            String methodName = node.get("methodName");
+            if (symbolTable.getMethodTry(methodName).isPresent()) called.add(methodName);
+        }
+        for (JmmNode child : node.getChildren()) collectCalls(child, symbolTable, called);
+    }
+
+    private static void serializeSignature(JmmNode method, StringBuilder code) {
+        code.append(method.getKind()).append('(');
+        for (JmmNode child : method.getChildren()) {
+            if (!BODY_KINDS.contains(child.getKind())) serialize(child, code);
+        }
+        code.append(')');
+    }
+
+    private static void serialize(JmmNode node, StringBuilder code) {
+        code.append(node.getKind());
+        appendAttributes(node, code);
+        code.append('(');
+        for (JmmNode child : node.getChildren()) serialize(child, code);
+        code.append(')');
+    }
+
+    /**
+     * Labeled children are attributes too, they are left to the children.
+     */
+    private static void appendAttributes(JmmNode node, StringBuilder code) {
+        code.append('[');
+        for (String attribute : new TreeSet<>(node.getAttributes())) {
+            if (POSITION_ATTRIBUTES.contains(attribute)) continue;
+            Object value = node.getObject(attribute);
+            if (value instanceof JmmNode) continue;
+
+            String text = String.valueOf(value);
+            code.append(attribute).append('=').append(text.length()).append(':').append(text).append(';');
+        }
+        code.append(']');
+    }
+
+    static String getMethodName(JmmNode methodNode) {
+        for (JmmNode child : methodNode.getChildren()) {
+            if (child.getKind().equals("VoidMethodSymbol") || child.getKind().equals("MethodSymbol"))
+                return child.get("name");
+        }
+        return null;
+    }
+}
@@ -0,0 +1,83 @@
+package pt.up.fe.comp2023.daemon;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp2023.Launcher;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Forwards the arguments of the launcher to a {@link CompileDaemon} and prints what the compilation prints, as it
+ * goes. With -stop as the only argument, it asks the daemon to stop. When no daemon is listening, the file is compiled
+ * in this JVM instead.
+ */
+public class CompileClient {
+
+    private final Path socket;
+    private final Gson gson = new Gson();
+
+    public CompileClient(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * @return the exit code of the compilation
+     */
+    public int run(String[] args) {
+        boolean stop = args.length == 1 && args[0].equals("-stop");
+
+        // The daemon only compiles for clients in its own directory, so the arguments go as they are
+        CompileDaemon.Request request = new CompileDaemon.Request(stop ? "stop" : "compile",
+                Paths.get("").toAbsolutePath().toString(), List.of(args));
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            if (stop) {
+                System.err.println("No compile daemon is listening on " + socket);
+                return 1;
+            }
+            System.err.println("No compile daemon is listening on " + socket + ", compiling without it");
+            Launcher.compile(args);
+            return 0;
+        }
+
+        try (channel) {
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+            writer.write(gson.toJson(request) + "\n");
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                    StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                String tag = line.substring(0, separator);
+                String text = line.substring(separator + 1);
+
+                switch (tag) {
+                    case "out" -> System.out.println(text);
+                    case "err" -> System.err.println(text);
+                    case "output" -> System.out.println("Output in " + text);
+                    case "exit" -> {
+                        return Integer.parseInt(text);
+                    }
+                    default -> System.err.println("Unexpected line from the compile daemon: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Lost the connection to the compile daemon: " + e.getMessage());
+        }
+
+        System.err.println("The compile daemon closed the connection before the end of the compilation");
+        return 1;
+    }
+}
@@ -0,0 +1,202 @@
+package pt.up.fe.comp2023.daemon;
+
+import com.google.gson.Gson;
+import pt.up.fe.comp2023.Launcher;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Keeps the compiler loaded in a JVM of its own, so that compilations don't pay for starting the JVM, loading the
+ * parser and the libraries and warming up the JIT. The daemon listens on a Unix domain socket in the directory it was
+ * started from, where it writes generated-files like the launcher, and compiles one request at a time.
+ * <p>
+ * The protocol is made of lines of UTF-8 text. The client sends a {@link Request} as JSON on one line, and the daemon
+ * answers with the lines the compilation prints, each after a tag: "out" for the standard output and "err" for the
+ * standard error, then "output" and the directory of the class file, if there is one, and finally "exit" and the
+ * exit code of the compilation. A request that can't be handled, or whose compilation fails, gets an "err" line and
+ * exit code 1.
+ * <p>
+ * Compilations run in the daemon, so one that calls System.exit stops it.
+ */
+public class CompileDaemon {
+
+    public static final Path DEFAULT_SOCKET = Paths.get(".jmm-daemon.sock");
+
+    /**
+     * @param command   "compile" or "stop"
+     * @param directory the working directory of the client, which must be the one of the daemon
+     * @param args      the arguments of the launcher, with the input file relative to that directory
+     */
+    record Request(String command, String directory, List<String> args) {
+    }
+
+    private final Path socket;
+    private final Gson gson = new Gson();
+
+    public CompileDaemon(Path socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * Serves requests until a client asks the daemon to stop.
+     */
+    public void serve() {
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            // A daemon that didn't stop cleanly leaves its socket behind
+            Files.deleteIfExists(socket);
+            server.bind(UnixDomainSocketAddress.of(socket));
+            System.out.println("Compile daemon listening on " + socket.toAbsolutePath());
+
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    running = handle(client);
+                } catch (IOException e) {
+                    System.err.println("Lost a client of the compile daemon: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen on " + socket, e);
+        } finally {
+            try {
+                Files.deleteIfExists(socket);
+            } catch (IOException e) {
+                System.err.println("Could not remove " + socket + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Compile daemon stopped");
+    }
+
+    /**
+     * @return false if the client asked the daemon to stop
+     */
+    private boolean handle(SocketChannel client) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(client),
+                UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(client),
+                UTF_8));
+
+        String line = reader.readLine();
+        if (line == null) return true;
+
+        // A request the daemon can't handle fails on its own, the daemon keeps serving the next ones
+        try {
+            return handle(gson.fromJson(line, Request.class), writer);
+        } catch (Throwable e) {
+            System.err.println("Could not handle the request " + line + ": " + e);
+            writeFrame(writer, "err", "The compile daemon could not handle the request: " + e);
+            writeFrame(writer, "exit", "1");
+            writer.flush();
+            return true;
+        }
+    }
+
+    private boolean handle(Request request, Writer writer) throws IOException {
+        if (request == null || request.command() == null) {
+            throw new IllegalArgumentException("Expected a request with a command");
+        }
+
+        if (request.command().equals("stop")) {
+            writeFrame(writer, "out", "Compile daemon stopping");
+            writeFrame(writer, "exit", "0");
+            writer.flush();
+            return false;
+        }
+        if (!request.command().equals("compile") || request.args() == null) {
+            throw new IllegalArgumentException("Expected a stop request, or a compile request with arguments");
+        }
+
+        String directory = Paths.get("").toAbsolutePath().toString();
+        if (!directory.equals(request.directory())) {
+            writeFrame(writer, "err", "The compile daemon runs in " + directory + ", not in " + request.directory());
+            writeFrame(writer, "exit", "1");
+            writer.flush();
+            return true;
+        }
+
+        long start = System.nanoTime();
+        int exitCode = 0;
+        Path output = null;
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        // The stages print to the standard streams, which go to the client while the compilation runs
+        try (PrintStream clientOut = new PrintStream(new FrameOutputStream(writer, "out"), true, UTF_8);
+             PrintStream clientErr = new PrintStream(new FrameOutputStream(writer, "err"), true, UTF_8)) {
+            System.setOut(clientOut);
+            System.setErr(clientErr);
+            try {
+                output = Launcher.compile(request.args().toArray(String[]::new));
+            } catch (Throwable e) {
+                // Errors too, a stack overflow of a deep program only fails its compilation
+                e.printStackTrace();
+                exitCode = 1;
+            } finally {
+                System.setOut(out);
+                System.setErr(err);
+            }
+        }
+
+        if (output != null) writeFrame(writer, "output", output.toAbsolutePath().toString());
+        writeFrame(writer, "exit", String.valueOf(exitCode));
+        writer.flush();
+
+        System.out.printf("Compiled %s in %.1f ms, exit code %d%n", String.join(" ", request.args()),
+                (System.nanoTime() - start) / 1e6, exitCode);
+        return true;
+    }
+
+    private static void writeFrame(Writer writer, String tag, String text) throws IOException {
+        synchronized (writer) {
+            writer.write(tag + " " + text + "\n");
+        }
+    }
+
+    /**
+     * Sends what is written to it as "tag line" frames, one per line.
+     */
+    private static class FrameOutputStream extends OutputStream {
+        private final Writer writer;
+        private final String tag;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        FrameOutputStream(Writer writer, String tag) {
+            this.writer = writer;
+            this.tag = tag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == '\n') sendLine();
+            else line.write(b);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (writer) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (line.size() > 0) sendLine();
+            flush();
+        }
+
+        private void sendLine() throws IOException {
+            writeFrame(writer, tag, line.toString(UTF_8));
+            line.reset();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package pt.up.fe.comp2023.daemon;
+
+import pt.up.fe.comp2023.Launcher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Compiles the .jmm files of a directory and its subdirectories, then compiles them again whenever they change,
+ * until it is interrupted. Editors write a file in several steps, so the events are gathered until none came for
+ * {@link #DEBOUNCE_MILLIS}, and each file that changed is compiled once. Files saved without changes are skipped, and
+ * so are the directories the compiler writes to. A file that fails to compile doesn't stop the others.
+ * <p>
+ * Compilations are incremental (see {@link pt.up.fe.comp2023.cache.IncrementalCompiler}) and run in this JVM, where
+ * the parser, whose prediction cache is shared between its instances, and the JIT stay warm between rebuilds. The
+ * time of each rebuild is printed after it.
+ */
+public class SourceWatcher {
+
+    static final long DEBOUNCE_MILLIS = 200;
+
+    // Where the compiler writes, which would otherwise be watched too when the directory is the working one
+    private static final Set<String> IGNORED_DIRECTORIES = Set.of(".jmm-cache", "generated-files");
+
+    private final Path directory;
+    private final List<String> options;
+    private final Consumer<String[]> compiler;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, String> compiled = new HashMap<>();
+
+    /**
+     * @param options the arguments of the launcher to compile each file with, besides the file itself
+     */
+    public SourceWatcher(Path directory, List<String> options) {
+        this(directory, options, Launcher::compile);
+    }
+
+    /**
+     * @param compiler compiles a file, given the arguments of the launcher
+     */
+    public SourceWatcher(Path directory, List<String> options, Consumer<String[]> compiler) {
+        this.directory = directory;
+        this.compiler = compiler;
+        this.options = new ArrayList<>(options);
+        if (!this.options.contains("-incremental")) this.options.add("-incremental");
+    }
+
+    public void run() {
+        if (!Files.isDirectory(directory)) {
+            throw new RuntimeException("Expected a directory to watch, got '" + directory + "'.");
+        }
+
+        try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+            register(watcher, directory);
+            rebuild(findSources(directory));
+            System.out.println("Watching " + directory.toAbsolutePath() + " for changes");
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<>();
+                collect(watcher, watcher.take(), changed);
+
+                WatchKey key;
+                while ((key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    collect(watcher, key, changed);
+                }
+                rebuild(changed);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not watch " + directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rebuild(Collection<Path> files) {
+        long start = System.nanoTime();
+        int rebuilt = 0;
+
+        for (Path file : files) {
+            String code;
+            try {
+                code = Files.readString(file);
+            } catch (IOException e) {
+                // Removed or renamed since the event
+                continue;
+            }
+            if (code.equals(compiled.get(file))) continue;
+            compiled.put(file, code);
+
+            long fileStart = System.nanoTime();
+            List<String> args = new ArrayList<>(options);
+            args.add(0, file.toString());
+            try {
+                compiler.accept(args.toArray(String[]::new));
+                System.out.printf("Compiled %s in %.1f ms%n", file, (System.nanoTime() - fileStart) / 1e6);
+            } catch (Throwable e) {
+                // Errors too, a stack overflow of a deep program must not stop the watcher
+                System.err.println("Could not compile " + file + ": " + e);
+            }
+            rebuilt++;
+        }
+
+        if (rebuilt > 0) {
+            System.out.printf("Rebuilt %d file%s in %.1f ms%n", rebuilt, rebuilt == 1 ? "" : "s",
+                    (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    private void collect(WatchService watcher, WatchKey key, Set<Path> changed) throws IOException {
+        Path parent = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // Events were lost, look at every file again
+                changed.addAll(findSources(directory));
+                continue;
+            }
+
+            Path path = parent.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == ENTRY_CREATE && !isIgnored(path)) {
+                    register(watcher, path);
+                    changed.addAll(findSources(path));
+                }
+            } else if (isSource(path)) {
+                changed.add(path);
+            }
+        }
+
+        if (!key.reset()) directories.remove(key);
+    }
+
+    private void register(WatchService watcher, Path root) throws IOException {
+        for (Path path : walk(root)) {
+            if (Files.isDirectory(path)) directories.put(path.register(watcher, ENTRY_CREATE, ENTRY_MODIFY), path);
+        }
+    }
+
+    private static List<Path> findSources(Path root) throws IOException {
+        return walk(root).stream().filter(SourceWatcher::isSource).sorted().toList();
+    }
+
+    /**
+     * @return the files and directories under the root, without the ignored directories and what they hold
+     */
+    private static List<Path> walk(Path root) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                if (!directory.equals(root) && isIgnored(directory)) return FileVisitResult.SKIP_SUBTREE;
+                paths.add(directory);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                paths.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // Removed while walking
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return paths;
+    }
+
+    private static boolean isIgnored(Path directory) {
+        Path name = directory.getFileName();
+        return name != null && IGNORED_DIRECTORIES.contains(name.toString());
+    }
+
+    private static boolean isSource(Path path) {
+        return path.toString().endsWith(".jmm") && Files.isRegularFile(path);
+    }
+}
@@ -0,0 +1,146 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jasmin assembles class files of version 45.3 (Java 1.1) without StackMapTable attributes, which the JVM can only
+ * check with the old type inferencing verifier. This rewrites them as Java 17 class files, with the stack map frames
+ * computed by ASM from the control flow of the bytecode and the types of the locals and the stack, so that they go
+ * through the faster type checking verifier.
+ * <p>
+ * Where two paths with different types of objects meet, the frame needs their common superclass. When a class with
+ * such a merge uses a class that can't be loaded, e.g. an import that is not on the classpath of the compiler, that
+ * superclass isn't known, and a guess would give frames the verifier rejects. Those classes are left as Jasmin wrote
+ * them, for the old verifier, which loads the classes itself.
+ */
+public class ClassFileUpgrader {
+
+    private static final int VERSION = Opcodes.V17;
+
+    private static final String OBJECT = "java/lang/Object";
+
+    private final ClassLoader classLoader;
+
+    /**
+     * @param classLoader where the imported classes are looked up, to find the common superclass of two types when
+     *                    the frames of two paths meet
+     */
+    public ClassFileUpgrader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public ClassFileUpgrader() {
+        this(ClassFileUpgrader.class.getClassLoader());
+    }
+
+    /**
+     * Thrown when the frames need the common superclass of a type that can't be loaded.
+     */
+    private static class UnresolvedTypeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UnresolvedTypeException(String type, Throwable cause) {
+            super("Could not load " + type, cause);
+        }
+    }
+
+    /**
+     * @return the upgraded class file, or the same one if it merges types that can't be loaded
+     */
+    public byte[] upgrade(byte[] classFile) {
+        ClassReader reader = new ClassReader(classFile);
+        ClassWriter writer = new FrameWriter(reader.getClassName(), reader.getSuperName());
+
+        // The frames are computed from scratch, so the old code is read without any
+        try {
+            reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName,
+                                  String[] interfaces) {
+                    super.visit(VERSION, access, name, signature, superName, interfaces);
+                }
+            }, ClassReader.SKIP_FRAMES);
+
+            return writer.toByteArray();
+        } catch (UnresolvedTypeException e) {
+            return classFile;
+        }
+    }
+
+    /**
+     * Upgrades a class file in place.
+     */
+    public void upgrade(File classFile) {
+        try {
+            Files.write(classFile.toPath(), upgrade(Files.readAllBytes(classFile.toPath())));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not upgrade class file " + classFile, e);
+        }
+    }
+
+    /**
+     * The default ClassWriter loads the classes to find their common superclass, but the class being written can't be
+     * loaded yet. Its superclass is known, and the other classes are loaded. A class that can't be loaded stops the
+     * upgrade with an {@link UnresolvedTypeException}.
+     */
+    private class FrameWriter extends ClassWriter {
+        private final String className;
+        private final String superName;
+
+        FrameWriter(String className, String superName) {
+            super(ClassWriter.COMPUTE_FRAMES);
+            this.className = className;
+            this.superName = superName;
+        }
+
+        @Override
+        protected String getCommonSuperClass(String first, String second) {
+            if (first.equals(OBJECT) || second.equals(OBJECT)) return OBJECT;
+
+            List<String> firstAncestors = getAncestors(first);
+            for (String ancestor : getAncestors(second)) {
+                if (firstAncestors.contains(ancestor)) return ancestor;
+            }
+            return OBJECT;
+        }
+
+        @Override
+        protected ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        /**
+         * @return the type and its superclasses, closest first
+         */
+        private List<String> getAncestors(String type) {
+            List<String> ancestors = new ArrayList<>();
+            ancestors.add(type);
+
+            if (type.equals(className)) {
+                if (superName == null) return ancestors;
+                ancestors.add(superName);
+                type = superName;
+            }
+
+            try {
+                Class<?> loaded = Class.forName(type.replace('/', '.'), false, classLoader);
+                if (loaded.isInterface()) loaded = Object.class;
+                for (Class<?> ancestor = loaded.getSuperclass(); ancestor != null; ancestor = ancestor.getSuperclass()) {
+                    ancestors.add(ancestor.getName().replace('.', '/'));
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new UnresolvedTypeException(type, e);
+            }
+            return ancestors;
+        }
+    }
+}
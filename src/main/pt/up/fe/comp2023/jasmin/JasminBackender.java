@@ -6,6 +6,8 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.profiling.JasminMethodEvent;
+import pt.up.fe.specs.util.SpecsCollections;
 
 import java.util.*;
 
@@ -23,8 +25,15 @@ public class JasminBackender implements JasminBackend {
     //it generates the jasmin code
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
+        JasminResult result = toJasmin(ollirResult.getOllirClass(), ollirResult.getConfig());
+        return new JasminResult(result.getClassName(), result.getJasminCode(),
+                SpecsCollections.concat(ollirResult.getReports(), result.getReports()), ollirResult.getConfig());
+    }
+
+    //it generates the jasmin code from a ClassUnit built directly from the AST, without going through OLLIR text
+    public JasminResult toJasmin(ClassUnit ollirClass, Map<String, String> config) {
         try {
-            this.classUnit = ollirResult.getOllirClass();
+            this.classUnit = ollirClass;
 
             this.classUnit.checkMethodLabels();
             this.classUnit.buildCFGs();
@@ -40,17 +49,17 @@ public class JasminBackender implements JasminBackend {
             List<Report> reports = new ArrayList<>();
 
 
-            if (ollirResult.getConfig().get("debug") != null && ollirResult.getConfig().get("debug").equals("true")) {
+            if (config.get("debug") != null && config.get("debug").equals("true")) {
                 System.out.println("JASMIN CODE : \n" + jasmin);
             }
 
 
-            return new JasminResult(ollirResult, jasmin, reports);
+            return new JasminResult(classUnit.getClassName(), jasmin, reports, config);
 
         } catch (OllirErrorException e) {
             return new JasminResult(classUnit.getClassName(), null,
                     Collections.singletonList(Report.newError(Stage.GENERATION, -1, -1,
-                            "Jasmin generation exception.", e)));
+                            "Jasmin generation exception.", e)), config);
         }
 
     }
@@ -96,11 +105,19 @@ public class JasminBackender implements JasminBackend {
 
 
         for (Method method : this.classUnit.getMethods()) {
-
-            stringBuilder.append(this.getHeaderMethod(method));
-            stringBuilder.append(this.getStatementsMethod(method));
-            stringBuilder.append(".end method\n");
-
+            JasminMethodEvent event = new JasminMethodEvent();
+            event.begin();
+
+            String methodCode = this.getHeaderMethod(method) + this.getStatementsMethod(method) + ".end method\n";
+            stringBuilder.append(methodCode);
+
+            if (event.shouldCommit()) {
+                event.className = this.classUnit.getClassName();
+                event.methodName = method.isConstructMethod() ? "<init>" : method.getMethodName();
+                event.backend = "ollir";
+                event.setCode(methodCode);
+                event.commit();
+            }
         }
 
         return stringBuilder.toString();
@@ -367,7 +384,7 @@ public class JasminBackender implements JasminBackend {
     private String getPutFieldInstruction(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
         String result = this.getLoadToStack(instruction.getFirstOperand(), varTable) +
                 this.getLoadToStack(instruction.getThirdOperand(), varTable) +
-                "\tputfield " + this.getClassName(((Operand) instruction.getFirstOperand()).getName()) +
+                "\tputfield " + this.getFieldClassName(instruction.getFirstOperand()) +
                 "/" + ((Operand) instruction.getSecondOperand()).getName() +
                 " " + this.getFieldDescriptor(instruction.getSecondOperand().getType()) + "\n";
 
@@ -380,7 +397,7 @@ public class JasminBackender implements JasminBackend {
     //gets the GET FIELD isntructions
     private String getGetFieldInstruction(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
         return this.getLoadToStack(instruction.getFirstOperand(), varTable) +
-                "\tgetfield " + this.getClassName(((Operand) instruction.getFirstOperand()).getName()) +
+                "\tgetfield " + this.getFieldClassName(instruction.getFirstOperand()) +
                 "/" + ((Operand) instruction.getSecondOperand()).getName() +
                 " " + this.getFieldDescriptor(instruction.getSecondOperand().getType()) + "\n";
     }
@@ -727,6 +744,14 @@ public class JasminBackender implements JasminBackend {
     }
 
 
+    //gets the class of a field from the object it is accessed on, which is not always 'this' after inlining
+    private String getFieldClassName(Element object) {
+        if (object.getType().getTypeOfElement() == ElementType.OBJECTREF) {
+            return this.getClassName(((ClassType) object.getType()).getName());
+        }
+        return this.getClassName(((Operand) object).getName());
+    }
+
     //gets the name of the class (full name)
     private String getClassName(String className) {
         if (className.equals("this")) {
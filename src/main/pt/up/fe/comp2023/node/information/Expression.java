@@ -1,6 +1,7 @@
 package pt.up.fe.comp2023.node.information;
 
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2023.utils.TypeInterner;
 
 public class Expression {
 
@@ -8,28 +9,28 @@ public class Expression {
     private boolean isIdentifier;
 
     public Expression() {
-        this.retType = new Type("temp", false); // temporary fix until this is needed
+        this.retType = TypeInterner.intern("temp", false); // temporary fix until this is needed
     }
     public Expression(Type retType) {
-        this.retType = retType;
+        this.retType = TypeInterner.intern(retType);
     }
 
     public boolean isCondition() { // TODO remove, use isBool instead
-        return this.retType.equals(new Type("boolean", false));
+        return this.retType == TypeInterner.BOOLEAN;
     };
 
     public Type getRetType() {
         return this.retType;
     }
 
-    public void setRetType(Type type) { this.retType = type; }
+    public void setRetType(Type type) { this.retType = TypeInterner.intern(type); }
 
     public boolean isInt() {
-        return this.retType.equals(new Type("int", false));
+        return this.retType == TypeInterner.INT;
     }
 
     public boolean isBool() {
-        return this.retType.equals(new Type("boolean", false));
+        return this.retType == TypeInterner.BOOLEAN;
     }
 
     public boolean isIdentifier() {
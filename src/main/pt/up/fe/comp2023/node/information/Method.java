@@ -3,6 +3,7 @@ package pt.up.fe.comp2023.node.information;
 
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2023.utils.TypeInterner;
 import pt.up.fe.specs.util.collections.SpecsList;
 
 import java.util.List;
@@ -32,7 +33,7 @@ public class Method {
     public Method(String name, String retType) {
         this.name = name;
         this.modifiers = SpecsList.newInstance(String.class);
-        this.retType = new Type(name, retType.equals("IntArray"));
+        this.retType = TypeInterner.intern(name, retType.equals("IntArray"));
         this.arguments = SpecsList.newInstance(Symbol.class);
         this.variables = SpecsList.newInstance(Symbol.class);
     }
@@ -40,7 +41,7 @@ public class Method {
     public Method(String name, Type retType) {
         this.name = name;
         this.modifiers = SpecsList.newInstance(String.class);
-        this.retType = retType;
+        this.retType = TypeInterner.intern(retType);
         this.arguments = SpecsList.newInstance(Symbol.class);
         this.variables = SpecsList.newInstance(Symbol.class);
     }
@@ -61,11 +62,11 @@ public class Method {
     }
 
     public void setRetType(String retType) {
-        this.retType = new Type(retType, retType.equals("IntArray"));
+        this.retType = TypeInterner.intern(retType, retType.equals("IntArray"));
     }
 
     public void setRetType(Type retType) {
-        this.retType = retType;
+        this.retType = TypeInterner.intern(retType);
     }
 
     public List<Symbol> getVariables() {
@@ -0,0 +1,32 @@
+package pt.up.fe.comp2023.optimization;
+
+/**
+ * Analyses that passes can require. Results are computed on demand by {@link AnalysisCache} and kept until a pass
+ * invalidates them.
+ */
+public enum Analysis {
+    /**
+     * Successor and predecessor edges of the method instructions.
+     */
+    CFG,
+    /**
+     * Live variables before and after each instruction, see {@link Liveness}.
+     */
+    LIVENESS,
+    /**
+     * Dominator tree and dominance frontiers of the CFG, see {@link Dominators}.
+     */
+    DOMINATORS,
+    /**
+     * Natural loops of the CFG and how they nest, see {@link Loops}.
+     */
+    LOOPS;
+
+    /**
+     * @return whether this analysis is computed from the given one, and so becomes stale when it does
+     */
+    public boolean dependsOn(Analysis analysis) {
+        if (this == LOOPS && analysis == DOMINATORS) return true;
+        return this != CFG && analysis == CFG;
+    }
+}
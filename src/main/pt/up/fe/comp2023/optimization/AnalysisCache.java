@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+
+import java.util.*;
+
+/**
+ * Computes the analyses of the methods of a ClassUnit on demand and keeps them until they are invalidated, so that
+ * consecutive passes that don't change the code share the same results.
+ */
+public class AnalysisCache {
+
+    private final Set<Method> builtCFGs = new HashSet<>();
+    private final Set<Method> cfgs = new HashSet<>();
+    private final Map<Method, Liveness> liveness = new HashMap<>();
+    private final Map<Method, Dominators> dominators = new HashMap<>();
+    private final Map<Method, Loops> loops = new HashMap<>();
+    private final Map<Analysis, Integer> computations = new EnumMap<>(Analysis.class);
+
+    /**
+     * Makes sure the given analyses are up to date for every method of the class.
+     */
+    public void require(ClassUnit classUnit, Set<Analysis> analyses) {
+        for (Method method : classUnit.getMethods()) {
+            if (analyses.contains(Analysis.CFG)) buildCFG(method);
+            if (analyses.contains(Analysis.LIVENESS)) getLiveness(method);
+            if (analyses.contains(Analysis.DOMINATORS)) getDominators(method);
+            if (analyses.contains(Analysis.LOOPS)) getLoops(method);
+        }
+    }
+
+    /**
+     * Builds the CFG of the method if the current one is stale. Unlike {@link Method#buildCFG()}, the edges of the
+     * previous CFG are removed first. The begin and end nodes can only be accessed after the first build, so the
+     * cache expects to be the one building the CFGs of the class.
+     */
+    public void buildCFG(Method method) {
+        if (!cfgs.add(method)) return;
+
+        if (!builtCFGs.add(method)) {
+            clearEdges(method.getBeginNode());
+            clearEdges(method.getEndNode());
+            for (Instruction instruction : method.getInstructions()) {
+                clearEdges(instruction);
+            }
+        }
+        method.buildCFG();
+
+        computations.merge(Analysis.CFG, 1, Integer::sum);
+    }
+
+    public Liveness getLiveness(Method method) {
+        buildCFG(method);
+        return liveness.computeIfAbsent(method, m -> {
+            computations.merge(Analysis.LIVENESS, 1, Integer::sum);
+            return new Liveness(m);
+        });
+    }
+
+    public Dominators getDominators(Method method) {
+        buildCFG(method);
+        return dominators.computeIfAbsent(method, m -> {
+            computations.merge(Analysis.DOMINATORS, 1, Integer::sum);
+            return new Dominators(m);
+        });
+    }
+
+    public Loops getLoops(Method method) {
+        Dominators methodDominators = getDominators(method);
+        return loops.computeIfAbsent(method, m -> {
+            computations.merge(Analysis.LOOPS, 1, Integer::sum);
+            return new Loops(m, methodDominators);
+        });
+    }
+
+    /**
+     * Drops the given analyses, and the ones computed from them, for every method.
+     */
+    public void invalidate(Set<Analysis> analyses) {
+        for (Analysis analysis : Analysis.values()) {
+            if (analyses.contains(analysis) || analyses.stream().anyMatch(analysis::dependsOn)) {
+                switch (analysis) {
+                    case CFG -> cfgs.clear();
+                    case LIVENESS -> liveness.clear();
+                    case DOMINATORS -> dominators.clear();
+                    case LOOPS -> loops.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return how many times each analysis was computed, one per method
+     */
+    public Map<Analysis, Integer> getComputations() {
+        return Collections.unmodifiableMap(computations);
+    }
+
+    private static void clearEdges(Node node) {
+        node.getSuccessors().clear();
+        node.getPredecessors().clear();
+    }
+}
@@ -0,0 +1,213 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Moves the loads of arrays that don't change in a loop to right before it. The builder reloads an array field with a
+ * getfield for every a[i] and computes a.length again on every test of the condition, into a new temporary each time.
+ * In a loop, these are hoisted:
+ * <ul>
+ *     <li>getfields of array fields of 'this', when the loop stores no field of that name and makes no call that
+ *     could;</li>
+ *     <li>copies of array variables not assigned in the loop;</li>
+ *     <li>arraylength of such a variable. It throws when the array is null, so it is only hoisted from the start of the
+ *     header, where it runs as soon as the loop is entered, with nothing before it that can throw or store.</li>
+ * </ul>
+ * The temporary written must have no other definition in the method, and the hoisted instruction must come before every
+ * read of it in the loop. The code must fall through into the header from outside the loop.
+ */
+public class ArrayHoisting implements OptimizationPass {
+
+    @Override
+    public String getName() {
+        return "array-hoisting";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.DOMINATORS, Analysis.LOOPS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            // Loads hoisted out of an inner loop land in the outer one, so loops are found again after each hoist
+            while (hoistOnce(method, analyses)) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean hoistOnce(Method method, AnalysisCache analyses) {
+        if (method.getInstructions().isEmpty()) return false;
+
+        Dominators dominators = analyses.getDominators(method);
+        List<Instruction> instructions = method.getInstructions();
+
+        Map<String, Integer> methodDefinitions = new HashMap<>();
+        for (Instruction instruction : instructions) {
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null) methodDefinitions.merge(variable, 1, Integer::sum);
+        }
+
+        for (Loops.Loop loop : analyses.getLoops(method).getLoops()) {
+            if (!Loops.hasPreheader(method, loop)) continue;
+
+            // The body in the order of the code, starting from the header
+            int header = Instructions.indexOf(method, (Instruction) loop.getHeader());
+            List<Integer> body = new ArrayList<>();
+            for (int i = 0; i < instructions.size(); i++) {
+                if (loop.contains(instructions.get(i))) body.add(i);
+            }
+            body.sort(Comparator.comparingInt(index -> index < header ? index + instructions.size() : index));
+
+            Set<String> defined = new HashSet<>();
+            Set<String> storedFields = new HashSet<>();
+            boolean hasBarrier = false;
+            for (int index : body) {
+                Instruction instruction = instructions.get(index);
+                String variable = OllirVariables.getDefined(method, instruction);
+                if (variable != null) defined.add(variable);
+                if (instruction instanceof PutFieldInstruction putField) {
+                    storedFields.add(((Operand) putField.getSecondOperand()).getName());
+                }
+                hasBarrier |= ScalarReplacement.isBarrier(instruction);
+            }
+
+            // Variables read outside the loop, whose definitions must stay
+            Set<String> readOutside = new HashSet<>();
+            for (int i = 0; i < instructions.size(); i++) {
+                if (!loop.contains(instructions.get(i))) readOutside.addAll(OllirVariables.getUsed(method, instructions.get(i)));
+            }
+
+            // Whether the instructions from the header up to the current one all run on entering the loop, in order
+            boolean runsOnEntry = true;
+            int previous = header - 1;
+            Set<String> invariants = new HashSet<>();
+            List<Instruction> hoisted = new ArrayList<>();
+            List<Instruction> removed = new ArrayList<>();
+            Map<String, String> renames = new HashMap<>();
+            Map<String, String> fieldVariables = new HashMap<>();
+
+            for (int index : body) {
+                Instruction instruction = instructions.get(index);
+                runsOnEntry &= index == previous + 1;
+                previous = index;
+
+                String variable = OllirVariables.getDefined(method, instruction);
+                boolean hoist = variable != null && methodDefinitions.get(variable) == 1
+                        && isHoistable((AssignInstruction) instruction, runsOnEntry, hasBarrier, storedFields,
+                        element -> isInvariant(method, element, defined, invariants))
+                        && isBeforeUses(method, dominators, body, instruction, variable);
+
+                if (!hoist) {
+                    runsOnEntry &= instruction.getInstType() != InstructionType.BRANCH
+                            && instruction.getInstType() != InstructionType.GOTO
+                            && instruction.getInstType() != InstructionType.PUTFIELD
+                            && !ScalarReplacement.mayThrow(instruction);
+                    continue;
+                }
+
+                invariants.add(variable);
+                removed.add(instruction);
+
+                // A reference only read in the loop is replaced by the one it copies, or by the first load of the field
+                Instruction rhs = ((AssignInstruction) instruction).getRhs();
+                String same = null;
+                if (rhs instanceof SingleOpInstruction copy && copy.getSingleOperand() instanceof Operand operand) {
+                    same = renames.getOrDefault(operand.getName(), operand.getName());
+                } else if (rhs instanceof GetFieldInstruction getField) {
+                    same = fieldVariables.putIfAbsent(((Operand) getField.getSecondOperand()).getName(), variable);
+                }
+
+                if (same != null && !readOutside.contains(variable)) renames.put(variable, same);
+                else hoisted.add(instruction);
+            }
+
+            if (removed.isEmpty()) continue;
+
+            // The labels of a removed header move to the next instruction, which is where the loop starts
+            int removedBefore = 0;
+            for (Instruction instruction : removed) {
+                int index = Instructions.indexOf(method, instruction);
+                if (index < header) removedBefore++;
+                Instructions.remove(method, index);
+            }
+            Instructions.insertUnlabeled(method, header - removedBefore, hoisted);
+
+            for (Instruction instruction : method.getInstructions()) {
+                if (!loop.contains(instruction)) continue;
+                for (OperandSlot slot : OperandSlot.getUseSlots(instruction)) {
+                    if (slot.get() instanceof Operand operand && renames.containsKey(operand.getName())) {
+                        operand.setName(renames.get(operand.getName()));
+                    }
+                }
+            }
+            method.getVarTable().keySet().removeAll(renames.keySet());
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param runsOnEntry whether the instruction runs on entering the loop, after nothing that can throw or store
+     */
+    private static boolean isHoistable(AssignInstruction assign, boolean runsOnEntry, boolean hasBarrier,
+                                       Set<String> storedFields, Predicate<Element> isInvariant) {
+        if (assign.getRhs() instanceof GetFieldInstruction getField) {
+            return isArray(assign.getDest()) && !hasBarrier
+                    && getField.getFirstOperand().getType().getTypeOfElement() == ElementType.THIS
+                    && !storedFields.contains(((Operand) getField.getSecondOperand()).getName());
+        }
+        if (assign.getRhs() instanceof SingleOpInstruction copy) {
+            return isArray(assign.getDest()) && !(copy.getSingleOperand() instanceof ArrayOperand)
+                    && isInvariant.test(copy.getSingleOperand());
+        }
+        if (assign.getRhs() instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+            return runsOnEntry && isInvariant.test(call.getFirstArg());
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the definition dominates every read of the variable in the loop, so the value read is always the
+     * one of the current iteration
+     */
+    private static boolean isBeforeUses(Method method, Dominators dominators, List<Integer> body,
+                                        Instruction definition, String variable) {
+        for (int index : body) {
+            Instruction instruction = method.getInstructions().get(index);
+            if (OllirVariables.getUsed(method, instruction).contains(variable)
+                    && (instruction == definition || !dominators.dominates(definition, instruction))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isInvariant(Method method, Element element, Set<String> defined, Set<String> invariants) {
+        if (!OllirVariables.isVariable(method, element)) return element.isLiteral();
+
+        String name = ((Operand) element).getName();
+        return !defined.contains(name) || invariants.contains(name);
+    }
+
+    private static boolean isArray(Element element) {
+        return element.getType().getTypeOfElement() == ElementType.ARRAYREF;
+    }
+}
@@ -0,0 +1,67 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+/**
+ * Estimates how many bytes of bytecode the Jasmin backend emits for OLLIR code. The estimate errs on the large side:
+ * literals count as ldc, and comparisons as the branches that push their boolean result.
+ */
+class BytecodeSize {
+
+    private static final int LOAD = 2;
+    private static final int LITERAL = 3;
+    private static final int JUMP = 3;
+    private static final int BOOLEAN_RESULT = 8;
+
+    private BytecodeSize() {
+    }
+
+    static int of(Method method) {
+        int size = 0;
+        for (Instruction instruction : method.getInstructions()) size += of(instruction);
+        return size;
+    }
+
+    static int of(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                // Array stores load the array and the index before the value, other stores take a local
+                yield of(assign.getRhs()) + (assign.getDest() instanceof ArrayOperand array
+                        ? LOAD + of(array.getIndexOperands().get(0)) + 1
+                        : LOAD);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                int size = JUMP + 2 + of(call.getFirstArg());
+                if (call.getListOfOperands() != null) {
+                    for (Element operand : call.getListOfOperands()) size += of(operand);
+                }
+                yield size;
+            }
+            case GOTO -> JUMP;
+            case BRANCH -> of(((CondBranchInstruction) instruction).getCondition()) + JUMP;
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                yield 1 + (ret.hasReturnValue() ? of(ret.getOperand()) : 0);
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                yield of(putField.getFirstOperand()) + of(putField.getThirdOperand()) + JUMP;
+            }
+            case GETFIELD -> of(((GetFieldInstruction) instruction).getFirstOperand()) + JUMP;
+            case UNARYOPER -> of(((UnaryOpInstruction) instruction).getOperand()) + BOOLEAN_RESULT;
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                yield of(binary.getLeftOperand()) + of(binary.getRightOperand()) + BOOLEAN_RESULT;
+            }
+            case NOPER -> of(((SingleOpInstruction) instruction).getSingleOperand());
+        };
+    }
+
+    private static int of(Element element) {
+        if (element.isLiteral()) return LITERAL;
+        if (element instanceof ArrayOperand array) return LOAD + of(array.getIndexOperands().get(0)) + 1;
+        return LOAD;
+    }
+}
@@ -0,0 +1,132 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Calls between the methods of a class. Only calls that surely run a method of the class are edges: calls of its static
+ * and private methods, and calls on objects the caller created itself. Any other object of the class, 'this' included,
+ * may belong to a subclass that overrides the method.
+ */
+class CallGraph {
+
+    private final ClassUnit classUnit;
+    private final Map<String, Method> methods = new HashMap<>();
+    private final Map<Method, Set<Method>> callees = new HashMap<>();
+    private final Map<Method, Set<String>> createdObjects = new HashMap<>();
+
+    CallGraph(ClassUnit classUnit) {
+        this.classUnit = classUnit;
+
+        for (Method method : classUnit.getMethods()) {
+            // Overloads can't be told apart by name, leave them alone
+            if (methods.putIfAbsent(method.getMethodName(), method) != null) methods.put(method.getMethodName(), null);
+        }
+
+        for (Method method : classUnit.getMethods()) {
+            createdObjects.put(method, findCreatedObjects(method));
+        }
+
+        for (Method method : classUnit.getMethods()) {
+            Set<Method> called = new HashSet<>();
+            for (Instruction instruction : method.getInstructions()) {
+                CallInstruction call = getCall(instruction);
+                Method callee = call != null ? getCallee(method, call) : null;
+                if (callee != null) called.add(callee);
+            }
+            callees.put(method, called);
+        }
+    }
+
+    /**
+     * @return the call made by the instruction, alone or as the value of an assignment, or null if it makes none
+     */
+    static CallInstruction getCall(Instruction instruction) {
+        if (instruction instanceof CallInstruction call) return call;
+        if (instruction instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call) {
+            return call;
+        }
+        return null;
+    }
+
+    /**
+     * @return the method of the class that the call in the caller runs, or null if it calls something else or a
+     * subclass could override the method
+     */
+    Method getCallee(Method caller, CallInstruction call) {
+        boolean isStatic = call.getInvocationType() == CallType.invokestatic;
+        if (!isStatic && call.getInvocationType() != CallType.invokevirtual) return null;
+
+        Type type = call.getFirstArg().getType();
+        if (!(type instanceof ClassType classType) || !classType.getName().equals(classUnit.getClassName())) {
+            return null;
+        }
+        // Static calls to imported classes are typed with the class being compiled too, only the name tells them apart
+        if (isStatic && !((Operand) call.getFirstArg()).getName().equals("this")
+                && !((Operand) call.getFirstArg()).getName().equals(classUnit.getClassName())) {
+            return null;
+        }
+
+        String name = ((LiteralElement) call.getSecondArg()).getLiteral().replace("\"", "");
+        Method callee = methods.get(name);
+        if (callee == null || callee.isConstructMethod() || callee.isStaticMethod() != isStatic) return null;
+        if (callee.getParams().size() != call.getListOfOperands().size()) return null;
+
+        boolean overridable = !isStatic && callee.getMethodAccessModifier() != AccessModifiers.PRIVATE;
+        String receiver = ((Operand) call.getFirstArg()).getName();
+        if (overridable && !createdObjects.getOrDefault(caller, Set.of()).contains(receiver)) return null;
+
+        return callee;
+    }
+
+    /**
+     * Inlining only adds variables of its own, so what is found when the graph is built still holds after it.
+     *
+     * @return the local variables of the method that only ever hold objects of the class created by the method
+     */
+    private Set<String> findCreatedObjects(Method method) {
+        Set<String> created = new HashSet<>();
+        Set<String> assignedOtherwise = new HashSet<>();
+
+        for (Instruction instruction : method.getInstructions()) {
+            if (!(instruction instanceof AssignInstruction assign) || !(assign.getDest() instanceof Operand dest)
+                    || dest instanceof ArrayOperand) {
+                continue;
+            }
+
+            boolean createsObject = assign.getRhs() instanceof CallInstruction call
+                    && call.getInvocationType() == CallType.NEW
+                    && call.getReturnType() instanceof ClassType classType
+                    && classType.getName().equals(classUnit.getClassName());
+            if (createsObject) created.add(dest.getName());
+            else assignedOtherwise.add(dest.getName());
+        }
+
+        created.removeAll(assignedOtherwise);
+        for (Element param : method.getParams()) created.remove(((Operand) param).getName());
+        return created;
+    }
+
+    /**
+     * @return the methods of the class the method calls, as they were when the graph was built
+     */
+    Set<Method> getCallees(Method method) {
+        return callees.get(method);
+    }
+
+    /**
+     * @return whether the method can call itself, directly or through other methods of the class
+     */
+    boolean isRecursive(Method method) {
+        Set<Method> reached = new HashSet<>();
+        Deque<Method> worklist = new ArrayDeque<>(callees.get(method));
+
+        while (!worklist.isEmpty()) {
+            Method callee = worklist.pop();
+            if (callee == method) return true;
+            if (reached.add(callee)) worklist.addAll(callees.get(callee));
+        }
+        return false;
+    }
+}
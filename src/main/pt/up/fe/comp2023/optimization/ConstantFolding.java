@@ -0,0 +1,146 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Evaluates operations whose operands are all literals, and turns branches with a constant condition into a goto
+ * (always taken) or removes them (never taken). Only looks at one instruction at a time.
+ */
+public class ConstantFolding implements OptimizationPass {
+
+    @Override
+    public String getName() {
+        return "constant-folding";
+    }
+
+    @Override
+    public int getLevel() {
+        return 1;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            List<Instruction> instructions = method.getInstructions();
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = instructions.get(i);
+
+                if (instruction.getInstType() == InstructionType.ASSIGN) {
+                    AssignInstruction assign = (AssignInstruction) instruction;
+                    if (assign.getRhs().getInstType() == InstructionType.NOPER) continue;
+
+                    Integer value = evaluate(assign.getRhs());
+                    if (value == null) continue;
+
+                    LiteralElement literal = literal(value, assign.getTypeOfAssign());
+                    if (literal == null) continue;
+
+                    Instructions.replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                            new SingleOpInstruction(literal)));
+                    changed = true;
+
+                } else if (instruction.getInstType() == InstructionType.BRANCH) {
+                    CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                    Integer value = evaluate(branch.getCondition());
+                    if (value == null) continue;
+
+                    if (value != 0) {
+                        Instructions.replace(method, i, new GotoInstruction(branch.getLabel()));
+                    } else if (i + 1 < instructions.size()) {
+                        Instructions.remove(method, i);
+                    } else {
+                        continue;
+                    }
+                    changed = true;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the value of the instruction, booleans as 0 or 1, or null if it isn't constant or can't be folded
+     * without changing the behaviour of the program (division by zero)
+     */
+    static Integer evaluate(Instruction instruction) {
+        return evaluate(instruction, ConstantFolding::literalValue);
+    }
+
+    /**
+     * @param values gives the value of an operand, or null if it isn't known
+     */
+    static Integer evaluate(Instruction instruction, Function<Element, Integer> values) {
+        switch (instruction.getInstType()) {
+            case NOPER -> {
+                return values.apply(((SingleOpInstruction) instruction).getSingleOperand());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                Integer operand = values.apply(unary.getOperand());
+                if (operand == null) return null;
+
+                return switch (unary.getOperation().getOpType()) {
+                    case NOTB, NOT -> operand == 0 ? 1 : 0;
+                    case SUB -> -operand;
+                    default -> null;
+                };
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                Integer left = values.apply(binary.getLeftOperand());
+                Integer right = values.apply(binary.getRightOperand());
+                if (left == null || right == null) return null;
+
+                return evaluate(binary.getOperation().getOpType(), left, right);
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    static Integer evaluate(OperationType operation, int left, int right) {
+        return switch (operation) {
+            case ADD -> left + right;
+            case SUB -> left - right;
+            case MUL -> left * right;
+            case DIV -> right == 0 ? null : left / right;
+            case LTH -> left < right ? 1 : 0;
+            case GTH -> left > right ? 1 : 0;
+            case LTE -> left <= right ? 1 : 0;
+            case GTE -> left >= right ? 1 : 0;
+            case EQ -> left == right ? 1 : 0;
+            case NEQ -> left != right ? 1 : 0;
+            case ANDB -> left != 0 && right != 0 ? 1 : 0;
+            case ORB -> left != 0 || right != 0 ? 1 : 0;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return a literal with the value, or null if the value doesn't fit the type (booleans in programs that failed
+     * the semantic analysis)
+     */
+    static LiteralElement literal(int value, Type type) {
+        if (type.getTypeOfElement() == ElementType.BOOLEAN && value != 0 && value != 1) return null;
+        return new LiteralElement(String.valueOf(value), type);
+    }
+
+    static Integer literalValue(Element element) {
+        if (!(element instanceof LiteralElement literal)) return null;
+
+        ElementType type = element.getType().getTypeOfElement();
+        if (type != ElementType.INT32 && type != ElementType.BOOLEAN) return null;
+
+        return Integer.parseInt(literal.getLiteral());
+    }
+}
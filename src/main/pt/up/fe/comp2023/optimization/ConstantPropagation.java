@@ -0,0 +1,301 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over the SSA form of each method. Finds the variables
+ * that always hold the same constant, following only the branches that can be taken, so constants flow through loops
+ * whose other paths never run. Then replaces the reads of those variables by the constant, removes the writes that
+ * became unused, turns branches with a constant condition into gotos (or removes them) and removes the instructions
+ * that can never run.
+ */
+public class ConstantPropagation implements OptimizationPass {
+
+    /**
+     * Lattice value of a version: unknown yet (TOP), a constant, or not a constant (BOTTOM).
+     */
+    private static final class Value {
+        static final Value TOP = new Value(0);
+        static final Value BOTTOM = new Value(0);
+
+        final int constant;
+
+        private Value(int constant) {
+            this.constant = constant;
+        }
+
+        static Value of(Integer constant) {
+            return constant == null ? BOTTOM : new Value(constant);
+        }
+
+        boolean isConstant() {
+            return this != TOP && this != BOTTOM;
+        }
+
+        Value meet(Value other) {
+            if (this == TOP) return other;
+            if (other == TOP) return this;
+            if (this == BOTTOM || other == BOTTOM || constant != other.constant) return BOTTOM;
+            return this;
+        }
+
+        boolean sameAs(Value other) {
+            if (isConstant() && other.isConstant()) return constant == other.constant;
+            return this == other;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "constant-propagation";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.DOMINATORS, Analysis.LIVENESS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            if (method.getInstructions().isEmpty()) continue;
+            changed |= new MethodPropagation(method, SsaForm.build(method, analyses)).run(analyses);
+        }
+
+        return changed;
+    }
+
+    private static final class MethodPropagation {
+        private final Method method;
+        private final SsaForm ssa;
+        private final Map<String, Value> values = new HashMap<>();
+        private final Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Map<Node, Set<Node>> executableEdges = new IdentityHashMap<>();
+        private final Deque<Node[]> edgeWorklist = new ArrayDeque<>();
+        private final Deque<Node> ssaWorklist = new ArrayDeque<>();
+        private final Map<Instruction, Instruction> fallThroughs = new IdentityHashMap<>();
+
+        MethodPropagation(Method method, SsaForm ssa) {
+            this.method = method;
+            this.ssa = ssa;
+
+            List<Instruction> instructions = method.getInstructions();
+            for (int i = 0; i + 1 < instructions.size(); i++) {
+                fallThroughs.put(instructions.get(i), instructions.get(i + 1));
+            }
+        }
+
+        boolean run(AnalysisCache analyses) {
+            propagate();
+
+            boolean changed = false;
+            Set<Instruction> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Instruction> alwaysTaken = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            // Reads of constants become literals, and then their writes are unused
+            for (Map.Entry<String, Value> entry : values.entrySet()) {
+                if (!entry.getValue().isConstant()) continue;
+
+                for (OperandSlot slot : ssa.getUseSlots(entry.getKey())) {
+                    if (!slot.canSet() || !(slot.get() instanceof Operand operand)) continue;
+
+                    LiteralElement literal = ConstantFolding.literal(entry.getValue().constant, operand.getType());
+                    if (literal == null) continue;
+
+                    slot.set(literal);
+                    changed = true;
+                }
+            }
+
+            // Phis read versions, not literals: the phi of a constant only goes once no other phi reads it, which
+            // keeps the writes its operands name
+            boolean removedPhi = true;
+            while (removedPhi) {
+                removedPhi = false;
+                for (Map.Entry<String, Value> entry : values.entrySet()) {
+                    SsaForm.Phi phi = ssa.getPhi(entry.getKey());
+                    if (!entry.getValue().isConstant() || phi == null || ssa.isUsed(entry.getKey())) continue;
+
+                    ssa.removePhi(phi);
+                    removedPhi = true;
+                }
+            }
+
+            for (Map.Entry<String, Value> entry : values.entrySet()) {
+                Instruction definition = ssa.getDefinition(entry.getKey());
+                if (!entry.getValue().isConstant() || definition == null || ssa.isUsed(entry.getKey())) continue;
+                if (DeadStoreElimination.isRemovable(((AssignInstruction) definition).getRhs())) removed.add(definition);
+            }
+
+            for (Instruction instruction : method.getInstructions()) {
+                if (!visited.contains(instruction)) {
+                    removed.add(instruction);
+                } else if (instruction.getInstType() == InstructionType.BRANCH) {
+                    Value condition = evaluate(((CondBranchInstruction) instruction).getCondition());
+                    if (condition.isConstant() && condition.constant != 0) alwaysTaken.add(instruction);
+                    else if (condition.isConstant()) removed.add(instruction);
+                }
+            }
+
+            ssa.destroy(analyses);
+
+            List<Instruction> instructions = method.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = instructions.get(i);
+                if (removed.contains(instruction)) {
+                    Instructions.remove(method, i);
+                    changed = true;
+                } else if (alwaysTaken.contains(instruction)) {
+                    Instructions.replace(method, i, new GotoInstruction(((CondBranchInstruction) instruction).getLabel()));
+                    changed = true;
+                }
+            }
+
+            return changed;
+        }
+
+        private void propagate() {
+            for (String variable : ssa.getVariables()) {
+                // Parameters, and locals read before being written
+                values.put(variable, Value.BOTTOM);
+            }
+
+            Node begin = method.getBeginNode();
+            for (Node successor : begin.getSuccessors()) edgeWorklist.add(new Node[]{begin, successor});
+
+            while (!edgeWorklist.isEmpty() || !ssaWorklist.isEmpty()) {
+                while (!edgeWorklist.isEmpty()) {
+                    Node[] edge = edgeWorklist.poll();
+                    if (!executableEdges.computeIfAbsent(edge[0], node -> newNodeSet()).add(edge[1])) continue;
+
+                    visitPhis(edge[1]);
+                    if (visited.add(edge[1])) visitInstruction(edge[1]);
+                }
+
+                while (!ssaWorklist.isEmpty()) {
+                    Node node = ssaWorklist.poll();
+                    if (!visited.contains(node)) continue;
+
+                    visitPhis(node);
+                    visitInstruction(node);
+                }
+            }
+        }
+
+        private void visitPhis(Node node) {
+            for (SsaForm.Phi phi : ssa.getPhis(node)) {
+                Value value = Value.TOP;
+                for (Map.Entry<Node, String> operand : phi.getOperands().entrySet()) {
+                    if (executableEdges.getOrDefault(operand.getKey(), Collections.emptySet()).contains(node)) {
+                        value = value.meet(getValue(operand.getValue()));
+                    }
+                }
+                lower(phi.getTarget(), value);
+            }
+        }
+
+        private void visitInstruction(Node node) {
+            if (!(node instanceof Instruction instruction)) return;
+
+            if (instruction.getInstType() == InstructionType.BRANCH) {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                Value condition = evaluate(branch.getCondition());
+                Node target = method.getLabels().get(branch.getLabel());
+                Node fallThrough = fallThroughs.get(instruction);
+
+                if (condition == Value.BOTTOM || (condition.isConstant() && condition.constant != 0)) {
+                    edgeWorklist.add(new Node[]{instruction, target});
+                }
+                if (fallThrough != null && (condition == Value.BOTTOM || (condition.isConstant() && condition.constant == 0))) {
+                    edgeWorklist.add(new Node[]{instruction, fallThrough});
+                }
+                return;
+            }
+
+            if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                    && !(dest instanceof ArrayOperand) && ssa.getDefinition(dest.getName()) == instruction) {
+                lower(dest.getName(), evaluate(assign.getRhs()));
+            }
+
+            for (Node successor : instruction.getSuccessors()) {
+                edgeWorklist.add(new Node[]{instruction, successor});
+            }
+        }
+
+        private void lower(String version, Value value) {
+            Value old = values.getOrDefault(version, Value.TOP);
+            Value lowered = old.meet(value);
+            if (lowered.sameAs(old) && values.containsKey(version)) return;
+
+            values.put(version, lowered);
+            ssaWorklist.addAll(ssa.getUseNodes(version));
+        }
+
+        private Value getValue(String version) {
+            return values.getOrDefault(version, Value.TOP);
+        }
+
+        private Value evaluate(Element element) {
+            Integer literal = ConstantFolding.literalValue(element);
+            if (literal != null) return Value.of(literal);
+
+            if (element instanceof Operand operand && !(element instanceof ArrayOperand)
+                    && (ssa.getDefinition(operand.getName()) != null || ssa.getPhi(operand.getName()) != null
+                    || ssa.getVariables().contains(operand.getName()))) {
+                return getValue(operand.getName());
+            }
+            return Value.BOTTOM;
+        }
+
+        private Value evaluate(Instruction instruction) {
+            switch (instruction.getInstType()) {
+                case NOPER -> {
+                    return evaluate(((SingleOpInstruction) instruction).getSingleOperand());
+                }
+                case UNARYOPER -> {
+                    UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                    Value operand = evaluate(unary.getOperand());
+                    if (!operand.isConstant()) return operand;
+
+                    return switch (unary.getOperation().getOpType()) {
+                        case NOTB, NOT -> Value.of(operand.constant == 0 ? 1 : 0);
+                        case SUB -> Value.of(-operand.constant);
+                        default -> Value.BOTTOM;
+                    };
+                }
+                case BINARYOPER -> {
+                    BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                    OperationType operation = binary.getOperation().getOpType();
+                    Value left = evaluate(binary.getLeftOperand());
+                    Value right = evaluate(binary.getRightOperand());
+
+                    // x * 0 and false && x are constant whatever x is
+                    if ((operation == OperationType.MUL || operation == OperationType.ANDB)
+                            && ((left.isConstant() && left.constant == 0) || (right.isConstant() && right.constant == 0))) {
+                        return Value.of(0);
+                    }
+                    if (left == Value.BOTTOM || right == Value.BOTTOM) return Value.BOTTOM;
+                    if (left == Value.TOP || right == Value.TOP) return Value.TOP;
+
+                    return Value.of(ConstantFolding.evaluate(operation, left.constant, right.constant));
+                }
+                default -> {
+                    return Value.BOTTOM;
+                }
+            }
+        }
+
+        private static Set<Node> newNodeSet() {
+            return Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+    }
+}
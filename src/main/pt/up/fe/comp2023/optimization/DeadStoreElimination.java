@@ -0,0 +1,118 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Removes assignments to local variables that are never read afterwards, when computing the value has no side
+ * effects. Runs until no more stores die, since removing a store can kill the ones that fed it. Then removes the
+ * assignments whose values only ever reach other removable assignments, like a counter that is only incremented, which
+ * liveness keeps alive since each one reads the previous.
+ */
+public class DeadStoreElimination implements OptimizationPass {
+
+    @Override
+    public String getName() {
+        return "dead-store";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.LIVENESS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            while (removeDeadStores(method, analyses.getLiveness(method))) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+            if (removeUselessStores(method)) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean removeDeadStores(Method method, Liveness liveness) {
+        List<Instruction> instructions = method.getInstructions();
+        boolean removed = false;
+
+        // The last instruction has nowhere to move its labels to, and is a return anyway
+        for (int i = instructions.size() - 2; i >= 0; i--) {
+            Instruction instruction = instructions.get(i);
+
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable == null || liveness.isLiveOut(instruction, variable)) continue;
+            if (!isRemovable(((AssignInstruction) instruction).getRhs())) continue;
+
+            Instructions.remove(method, i);
+            removed = true;
+        }
+
+        return removed;
+    }
+
+    /**
+     * Marks the instructions that matter to the program, the ones that aren't removable assignments, and then every
+     * assignment of a variable they read, until nothing changes. Ignores the order of the instructions, so it only
+     * removes what is never read at all by what matters.
+     */
+    private static boolean removeUselessStores(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, List<Instruction>> definitions = new HashMap<>();
+        Set<Instruction> useful = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Instruction> worklist = new ArrayDeque<>();
+
+        for (Instruction instruction : instructions) {
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null && isRemovable(((AssignInstruction) instruction).getRhs())) {
+                definitions.computeIfAbsent(variable, name -> new ArrayList<>()).add(instruction);
+            } else {
+                useful.add(instruction);
+                worklist.add(instruction);
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            for (String variable : OllirVariables.getUsed(method, worklist.pop())) {
+                for (Instruction definition : definitions.getOrDefault(variable, List.of())) {
+                    if (useful.add(definition)) worklist.add(definition);
+                }
+            }
+        }
+
+        boolean removed = false;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (!useful.contains(instructions.get(i))) {
+                Instructions.remove(method, i);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Calls may have side effects, and divisions and array accesses may throw.
+     */
+    static boolean isRemovable(Instruction rhs) {
+        return switch (rhs.getInstType()) {
+            case UNARYOPER, GETFIELD -> true;
+            case BINARYOPER -> ((BinaryOpInstruction) rhs).getOperation().getOpType() != OperationType.DIV;
+            case NOPER -> !(((SingleOpInstruction) rhs).getSingleOperand() instanceof ArrayOperand);
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+
+import java.util.*;
+
+/**
+ * Dominator tree and dominance frontiers of the CFG of a method, computed with the iterative algorithm of Cooper,
+ * Harvey and Kennedy. Only the nodes reachable from the begin node are part of the tree.
+ */
+public class Dominators {
+
+    private final List<Node> reversePostorder = new ArrayList<>();
+    private final Map<Node, Integer> order = new HashMap<>();
+    private final Map<Node, Node> immediateDominators = new HashMap<>();
+    private final Map<Node, List<Node>> children = new HashMap<>();
+    private final Map<Node, Set<Node>> frontiers = new HashMap<>();
+
+    Dominators(Method method) {
+        Node begin = method.getBeginNode();
+        computeReversePostorder(begin);
+
+        immediateDominators.put(begin, begin);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Node node : reversePostorder) {
+                if (node == begin) continue;
+
+                Node dominator = null;
+                for (Node predecessor : node.getPredecessors()) {
+                    if (!immediateDominators.containsKey(predecessor)) continue;
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator);
+                }
+
+                if (dominator != null && immediateDominators.get(node) != dominator) {
+                    immediateDominators.put(node, dominator);
+                    changed = true;
+                }
+            }
+        }
+
+        for (Node node : reversePostorder) {
+            children.put(node, new ArrayList<>());
+            frontiers.put(node, new LinkedHashSet<>());
+        }
+        for (Node node : reversePostorder) {
+            if (node != begin) children.get(immediateDominators.get(node)).add(node);
+        }
+
+        for (Node node : reversePostorder) {
+            List<Node> predecessors = node.getPredecessors();
+            if (predecessors.size() < 2) continue;
+
+            for (Node predecessor : predecessors) {
+                if (!order.containsKey(predecessor)) continue;
+
+                Node runner = predecessor;
+                while (runner != immediateDominators.get(node)) {
+                    frontiers.get(runner).add(node);
+                    runner = immediateDominators.get(runner);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the immediate dominator of the node, the begin node for itself, or null if it is unreachable
+     */
+    public Node getImmediateDominator(Node node) {
+        return immediateDominators.get(node);
+    }
+
+    public List<Node> getChildren(Node node) {
+        return children.getOrDefault(node, Collections.emptyList());
+    }
+
+    public Set<Node> getDominanceFrontier(Node node) {
+        return frontiers.getOrDefault(node, Collections.emptySet());
+    }
+
+    /**
+     * @return the reachable nodes, each one after its dominator
+     */
+    public List<Node> getReversePostorder() {
+        return Collections.unmodifiableList(reversePostorder);
+    }
+
+    public boolean isReachable(Node node) {
+        return order.containsKey(node);
+    }
+
+    public boolean dominates(Node dominator, Node node) {
+        if (!isReachable(dominator) || !isReachable(node)) return false;
+
+        while (true) {
+            if (node == dominator) return true;
+
+            Node parent = immediateDominators.get(node);
+            if (parent == node) return false;
+            node = parent;
+        }
+    }
+
+    private Node intersect(Node first, Node second) {
+        while (first != second) {
+            while (order.get(first) > order.get(second)) first = immediateDominators.get(first);
+            while (order.get(second) > order.get(first)) second = immediateDominators.get(second);
+        }
+        return first;
+    }
+
+    private void computeReversePostorder(Node begin) {
+        // Iterative DFS, long methods would overflow the stack with a recursive one
+        Set<Node> visited = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        Deque<Iterator<Node>> successors = new ArrayDeque<>();
+
+        visited.add(begin);
+        stack.push(begin);
+        successors.push(begin.getSuccessors().iterator());
+
+        while (!stack.isEmpty()) {
+            Iterator<Node> iterator = successors.peek();
+            if (iterator.hasNext()) {
+                Node next = iterator.next();
+                if (visited.add(next)) {
+                    stack.push(next);
+                    successors.push(next.getSuccessors().iterator());
+                }
+            } else {
+                reversePostorder.add(stack.pop());
+                successors.pop();
+            }
+        }
+
+        Collections.reverse(reversePostorder);
+        for (int i = 0; i < reversePostorder.size(); i++) {
+            order.put(reversePostorder.get(i), i);
+        }
+    }
+}
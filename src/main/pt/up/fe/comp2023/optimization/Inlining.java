@@ -0,0 +1,182 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Replaces calls to small methods of the class being compiled by their body, which saves the call and lets the other
+ * passes work across it. A call is inlined when the method:
+ * <ul>
+ *     <li>is static or private, or is called on an object the caller created, so no subclass can override it</li>
+ *     <li>is not recursive, directly or through other methods of the class</li>
+ *     <li>has at most maxMethodSize instructions</li>
+ * </ul>
+ * and the caller has not grown by more than maxGrowth instructions yet. See {@link CallGraph} for which calls run
+ * methods of the class.
+ * <p>
+ * The variables of the inlined method are renamed to "name$n" and its labels to "INLINEn_label". Parameters that the
+ * method never assigns are replaced by the arguments, the others are copies of them. Each return assigns the result
+ * and jumps to the instruction after the call.
+ */
+public class Inlining implements OptimizationPass {
+
+    private static final String VARIABLE_SEPARATOR = "$";
+
+    private final int maxMethodSize;
+    private final int maxGrowth;
+    private int inlinedCalls;
+
+    /**
+     * @param maxMethodSize the most instructions a method may have to be inlined
+     * @param maxGrowth     the most instructions inlining may add to a method
+     */
+    public Inlining(int maxMethodSize, int maxGrowth) {
+        this.maxMethodSize = maxMethodSize;
+        this.maxGrowth = maxGrowth;
+    }
+
+    @Override
+    public String getName() {
+        return "inlining";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        CallGraph callGraph = new CallGraph(classUnit);
+        Set<Method> recursive = new HashSet<>();
+        for (Method method : classUnit.getMethods()) {
+            if (callGraph.isRecursive(method)) recursive.add(method);
+        }
+
+        boolean changed = false;
+        inlinedCalls = 0;
+
+        for (Method caller : classUnit.getMethods()) {
+            List<Instruction> instructions = caller.getInstructions();
+            int sizeLimit = instructions.size() + maxGrowth;
+
+            // Inlined code is visited too, so calls in it can be inlined while the budget lasts
+            for (int i = 0; i < instructions.size() - 1; i++) {
+                CallInstruction call = CallGraph.getCall(instructions.get(i));
+                if (call == null) continue;
+
+                Method callee = callGraph.getCallee(caller, call);
+                if (callee == null || recursive.contains(callee)) continue;
+
+                int size = callee.getInstructions().size();
+                if (size > maxMethodSize || instructions.size() + size > sizeLimit) continue;
+
+                inline(caller, i, callee);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private void inline(Method caller, int index, Method callee) {
+        int number = inlinedCalls++;
+        Instruction callSite = caller.getInstructions().get(index);
+        CallInstruction call = CallGraph.getCall(callSite);
+        Element result = callSite instanceof AssignInstruction assign ? assign.getDest() : null;
+
+        InstructionCopier unchanged = new InstructionCopier(name -> null, label -> label);
+        Map<String, Element> replacements = new HashMap<>();
+        List<Instruction> inlined = new ArrayList<>();
+
+        if (!callee.isStaticMethod()) replacements.put("this", call.getFirstArg());
+
+        Set<String> assigned = new HashSet<>();
+        for (Instruction instruction : callee.getInstructions()) {
+            String defined = OllirVariables.getDefined(callee, instruction);
+            if (defined != null) assigned.add(defined);
+        }
+
+        // Array elements may change before the parameter is read, so those arguments are copied like assigned ones
+        List<String> copiedParams = new ArrayList<>();
+        for (int i = 0; i < callee.getParams().size(); i++) {
+            String param = ((Operand) callee.getParams().get(i)).getName();
+            Element argument = call.getListOfOperands().get(i);
+
+            if (assigned.contains(param) || argument instanceof ArrayOperand) copiedParams.add(param);
+            else replacements.put(param, argument);
+        }
+
+        int nextRegister = getNextRegister(caller);
+        for (Map.Entry<String, Descriptor> variable : callee.getVarTable().entrySet()) {
+            String name = variable.getKey();
+            Descriptor descriptor = variable.getValue();
+            if (replacements.containsKey(name) || descriptor.getScope() == VarScope.FIELD) continue;
+
+            String renamed = name + VARIABLE_SEPARATOR + number;
+            caller.getVarTable().put(renamed, new Descriptor(VarScope.LOCAL, nextRegister++, descriptor.getVarType()));
+            replacements.put(name, new Operand(renamed, descriptor.getVarType()));
+        }
+
+        for (int i = 0; i < callee.getParams().size(); i++) {
+            String param = ((Operand) callee.getParams().get(i)).getName();
+            if (!copiedParams.contains(param)) continue;
+
+            Operand copy = (Operand) replacements.get(param);
+            inlined.add(new AssignInstruction(unchanged.copy(copy), copy.getType(),
+                    new SingleOpInstruction(unchanged.copy(call.getListOfOperands().get(i)))));
+        }
+
+        String prefix = "INLINE" + number + "_";
+        String endLabel = "ENDINLINE" + number;
+        InstructionCopier copier = new InstructionCopier(replacements::get, label -> prefix + label);
+        Map<Instruction, Instruction> copies = new IdentityHashMap<>();
+        boolean jumpsToEnd = false;
+
+        List<Instruction> body = callee.getInstructions();
+        for (int i = 0; i < body.size(); i++) {
+            Instruction instruction = body.get(i);
+            int start = inlined.size();
+
+            if (instruction instanceof ReturnInstruction ret) {
+                if (result != null && ret.hasReturnValue()) {
+                    inlined.add(new AssignInstruction(unchanged.copy(result), ((AssignInstruction) callSite).getTypeOfAssign(),
+                            new SingleOpInstruction(copier.copy(ret.getOperand()))));
+                }
+                if (i < body.size() - 1) {
+                    inlined.add(new GotoInstruction(endLabel));
+                    jumpsToEnd = true;
+                }
+            } else {
+                inlined.add(copier.copy(instruction));
+            }
+
+            // A return without a value and without a jump leaves nothing to hold its labels
+            if (inlined.size() == start) {
+                inlined.add(new GotoInstruction(endLabel));
+                jumpsToEnd = true;
+            }
+            copies.put(instruction, inlined.get(start));
+        }
+
+        Instructions.insertBefore(caller, index, inlined);
+        Instructions.remove(caller, index + inlined.size());
+
+        for (Map.Entry<String, Instruction> label : callee.getLabels().entrySet()) {
+            caller.addLabel(prefix + label.getKey(), copies.get(label.getValue()));
+        }
+        if (jumpsToEnd) {
+            caller.addLabel(endLabel, caller.getInstructions().get(index + inlined.size()));
+        }
+    }
+
+    private static int getNextRegister(Method method) {
+        int register = 0;
+        for (Descriptor descriptor : method.getVarTable().values()) {
+            register = Math.max(register, descriptor.getVirtualReg() + 1);
+        }
+        return register;
+    }
+}
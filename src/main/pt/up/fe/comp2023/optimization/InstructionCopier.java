@@ -0,0 +1,127 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.function.Function;
+
+/**
+ * Copies instructions, replacing the variables they read and write and the labels they jump to. Code can't just be
+ * reused when it is duplicated, since instructions are also the nodes of the CFG and the keys of the labels.
+ */
+class InstructionCopier {
+
+    private final Function<String, Element> variables;
+    private final Function<String, String> labels;
+
+    /**
+     * @param variables gives the element that replaces a variable, or null to keep the name
+     * @param labels    gives the label that replaces a label
+     */
+    InstructionCopier(Function<String, Element> variables, Function<String, String> labels) {
+        this.variables = variables;
+        this.labels = labels;
+    }
+
+    Instruction copy(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                yield new AssignInstruction(copy(assign.getDest()), assign.getTypeOfAssign(), copy(assign.getRhs()));
+            }
+            case CALL -> copyCall((CallInstruction) instruction);
+            case GOTO -> new GotoInstruction(labels.apply(((GotoInstruction) instruction).getLabel()));
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                Instruction condition = copy(branch.getCondition());
+                CondBranchInstruction copy = condition instanceof OpInstruction opInstruction
+                        ? new OpCondInstruction(opInstruction)
+                        : new SingleOpCondInstruction((SingleOpInstruction) condition);
+                copy.setLabel(labels.apply(branch.getLabel()));
+                yield copy;
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                yield ret.hasReturnValue() ? new ReturnInstruction(copy(ret.getOperand())) : new ReturnInstruction();
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                yield new PutFieldInstruction(copy(putField.getFirstOperand()), copyField(putField.getSecondOperand()),
+                        copy(putField.getThirdOperand()), putField.getFieldType());
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) instruction;
+                yield new GetFieldInstruction(copy(getField.getFirstOperand()), copyField(getField.getSecondOperand()),
+                        getField.getFieldType());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                yield new UnaryOpInstruction(copy(unary.getOperation()), copy(unary.getOperand()));
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                yield new BinaryOpInstruction(copy(binary.getLeftOperand()), copy(binary.getOperation()),
+                        copy(binary.getRightOperand()));
+            }
+            case NOPER -> new SingleOpInstruction(copy(((SingleOpInstruction) instruction).getSingleOperand()));
+        };
+    }
+
+    private Instruction copyCall(CallInstruction call) {
+        Element firstArg = call.getFirstArg() != null ? copy(call.getFirstArg()) : null;
+
+        if (call.getListOfOperands() == null) {
+            return new CallInstruction(call.getInvocationType(), firstArg, call.getReturnType());
+        }
+
+        ArrayList<Element> operands = new ArrayList<>();
+        for (Element operand : call.getListOfOperands()) operands.add(copy(operand));
+
+        if (call.getSecondArg() == null) {
+            return new CallInstruction(call.getInvocationType(), firstArg, operands, call.getReturnType());
+        }
+        return new CallInstruction(call.getInvocationType(), firstArg, copy(call.getSecondArg()), operands,
+                call.getReturnType());
+    }
+
+    Element copy(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+        }
+
+        Operand operand = (Operand) element;
+        // Targets of static calls are classes, even the ones named 'this'
+        Element replacement = operand.getType().getTypeOfElement() != ElementType.CLASS
+                ? variables.apply(operand.getName())
+                : null;
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            ArrayList<Element> indexes = new ArrayList<>();
+            for (Element index : arrayOperand.getIndexOperands()) indexes.add(copy(index));
+
+            String name = replacement != null ? ((Operand) replacement).getName() : operand.getName();
+            return new ArrayOperand(name, operand.getType(), indexes);
+        }
+
+        if (replacement instanceof LiteralElement literal) {
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+        }
+        if (replacement != null) {
+            // 'this' may be replaced by an object of the class, other replacements keep the type of the variable
+            Type type = operand.getType().getTypeOfElement() == ElementType.THIS ? replacement.getType() : operand.getType();
+            return new Operand(((Operand) replacement).getName(), type);
+        }
+        return new Operand(operand.getName(), operand.getType());
+    }
+
+    /**
+     * Fields are never replaced, even when a local variable has the same name.
+     */
+    private static Element copyField(Element field) {
+        return new Operand(((Operand) field).getName(), field.getType());
+    }
+
+    private static Operation copy(Operation operation) {
+        return new Operation(operation.getOpType(), operation.getTypeInfo());
+    }
+}
@@ -0,0 +1,85 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Edits the instruction list of a method while keeping the labels attached to the right instructions, and adds the
+ * variables the passes need for the code they write.
+ */
+class Instructions {
+
+    private Instructions() {
+    }
+
+    static void replace(Method method, int index, Instruction replacement) {
+        Instruction old = method.getInstructions().set(index, replacement);
+        moveLabels(method, old, replacement);
+    }
+
+    /**
+     * Inserts the instructions before the one at the index, which gives them its labels.
+     */
+    static void insertBefore(Method method, int index, List<Instruction> inserted) {
+        Instruction next = method.getInstructions().get(index);
+        method.getInstructions().addAll(index, inserted);
+        moveLabels(method, next, inserted.get(0));
+    }
+
+    /**
+     * Inserts the instructions before the one at the index, which keeps its labels: jumps to it skip the inserted
+     * instructions, only the code falling through runs them.
+     */
+    static void insertUnlabeled(Method method, int index, List<Instruction> inserted) {
+        method.getInstructions().addAll(index, inserted);
+    }
+
+    /**
+     * Removes the instruction, its labels move to the next one. The labels of the last instruction are dropped, so
+     * there must be no jumps left to it.
+     */
+    static void remove(Method method, int index) {
+        Instruction old = method.getInstructions().remove(index);
+        if (index < method.getInstructions().size()) {
+            moveLabels(method, old, method.getInstructions().get(index));
+        } else {
+            method.getLabels().values().removeIf(instruction -> instruction == old);
+        }
+    }
+
+    /**
+     * @return the index of the instruction in the method, found by identity
+     */
+    static int indexOf(Method method, Instruction instruction) {
+        List<Instruction> instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i) == instruction) return i;
+        }
+        throw new RuntimeException("Instruction not in method " + method.getMethodName());
+    }
+
+    /**
+     * Adds a local to the var table, in a register of its own. It is named base, followed by a number if the method
+     * already has a variable of that name.
+     */
+    static Operand newVariable(Method method, String base, Type type) {
+        String name = base;
+        for (int i = 0; method.getVarTable().containsKey(name); i++) name = base + i;
+
+        int register = method.getVarTable().values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+        method.getVarTable().put(name, new Descriptor(VarScope.LOCAL, register, type));
+        return new Operand(name, type);
+    }
+
+    static boolean hasLabels(Method method, Instruction instruction) {
+        return method.getLabels().containsValue(instruction);
+    }
+
+    private static void moveLabels(Method method, Instruction from, Instruction to) {
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (label.getValue() == from) label.setValue(to);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Runs pure methods of the class at compile time. Only int and boolean values are supported (booleans as 0 or 1): a
+ * field read, an array or a division by zero gives up. Every instruction run counts against a step budget shared by
+ * the nested calls, so a call that takes too long gives up too.
+ */
+class Interpreter {
+
+    private final CallGraph callGraph;
+    private final Purity purity;
+    private final int maxSteps;
+    private final int maxDepth;
+    private final Map<Method, Map<Instruction, Integer>> indexes = new HashMap<>();
+    private int steps;
+
+    Interpreter(CallGraph callGraph, Purity purity, int maxSteps, int maxDepth) {
+        this.callGraph = callGraph;
+        this.purity = purity;
+        this.maxSteps = maxSteps;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @return the value the method returns for the arguments, 0 for void methods, or null if it couldn't be computed
+     */
+    Integer call(Method method, List<Integer> arguments) {
+        if (!purity.isPure(method)) return null;
+
+        steps = 0;
+        return run(method, arguments, 0);
+    }
+
+    private Integer run(Method method, List<Integer> arguments, int depth) {
+        Map<String, Integer> variables = new HashMap<>();
+        for (int i = 0; i < arguments.size(); i++) {
+            variables.put(((Operand) method.getParams().get(i)).getName(), arguments.get(i));
+        }
+
+        List<Instruction> instructions = method.getInstructions();
+        int index = 0;
+
+        while (index < instructions.size()) {
+            if (++steps > maxSteps) return null;
+            Instruction instruction = instructions.get(index++);
+
+            switch (instruction.getInstType()) {
+                case ASSIGN -> {
+                    AssignInstruction assign = (AssignInstruction) instruction;
+                    Instruction rhs = assign.getRhs();
+                    Integer value = rhs instanceof CallInstruction call
+                            ? call(method, call, variables, depth)
+                            : ConstantFolding.evaluate(rhs, element -> getValue(element, variables));
+                    if (value == null) return null;
+
+                    variables.put(((Operand) assign.getDest()).getName(), value);
+                }
+                case CALL -> {
+                    if (call(method, (CallInstruction) instruction, variables, depth) == null) return null;
+                }
+                case GOTO -> index = getIndex(method, ((GotoInstruction) instruction).getLabel());
+                case BRANCH -> {
+                    CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                    Integer condition = ConstantFolding.evaluate(branch.getCondition(),
+                            element -> getValue(element, variables));
+                    if (condition == null) return null;
+
+                    if (condition != 0) index = getIndex(method, branch.getLabel());
+                }
+                case RETURN -> {
+                    ReturnInstruction ret = (ReturnInstruction) instruction;
+                    return ret.hasReturnValue() ? getValue(ret.getOperand(), variables) : Integer.valueOf(0);
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private Integer call(Method caller, CallInstruction call, Map<String, Integer> variables, int depth) {
+        Method callee = callGraph.getCallee(caller, call);
+        if (callee == null || !purity.isPure(callee) || depth >= maxDepth) return null;
+
+        List<Integer> arguments = new ArrayList<>();
+        for (Element operand : call.getListOfOperands()) {
+            Integer value = getValue(operand, variables);
+            if (value == null) return null;
+            arguments.add(value);
+        }
+
+        return run(callee, arguments, depth + 1);
+    }
+
+    private static Integer getValue(Element element, Map<String, Integer> variables) {
+        if (element.isLiteral()) return ConstantFolding.literalValue(element);
+        if (element instanceof ArrayOperand) return null;
+
+        ElementType type = element.getType().getTypeOfElement();
+        if (type != ElementType.INT32 && type != ElementType.BOOLEAN) return null;
+
+        return variables.get(((Operand) element).getName());
+    }
+
+    private int getIndex(Method method, String label) {
+        Map<Instruction, Integer> methodIndexes = indexes.computeIfAbsent(method, key -> {
+            Map<Instruction, Integer> map = new IdentityHashMap<>();
+            for (int i = 0; i < key.getInstructions().size(); i++) map.put(key.getInstructions().get(i), i);
+            return map;
+        });
+        return methodIndexes.get(method.getLabels().get(label));
+    }
+}
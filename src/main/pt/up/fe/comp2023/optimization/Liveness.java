@@ -0,0 +1,102 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Node;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Live variables before and after each instruction of a method, computed by backwards dataflow over the CFG. The sets
+ * are kept as bit sets indexed by variable, so each iteration is a handful of word operations per instruction.
+ */
+public class Liveness {
+
+    private final List<String> variables = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Map<Node, BitSet> liveIn = new HashMap<>();
+    private final Map<Node, BitSet> liveOut = new HashMap<>();
+
+    Liveness(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Node, BitSet> defs = new HashMap<>();
+        Map<Node, BitSet> uses = new HashMap<>();
+
+        for (Instruction instruction : instructions) {
+            BitSet def = new BitSet();
+            BitSet use = new BitSet();
+
+            for (String name : OllirVariables.getUsed(method, instruction)) use.set(indexOf(name));
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (defined != null) def.set(indexOf(defined));
+
+            defs.put(instruction, def);
+            uses.put(instruction, use);
+            liveIn.put(instruction, new BitSet());
+            liveOut.put(instruction, new BitSet());
+        }
+
+        // Going through the instructions backwards converges in a couple of iterations for reducible CFGs
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = instructions.get(i);
+
+                BitSet out = new BitSet();
+                for (Node successor : instruction.getSuccessors()) {
+                    BitSet successorIn = liveIn.get(successor);
+                    if (successorIn != null) out.or(successorIn);
+                }
+
+                BitSet in = (BitSet) out.clone();
+                in.andNot(defs.get(instruction));
+                in.or(uses.get(instruction));
+
+                if (!in.equals(liveIn.get(instruction)) || !out.equals(liveOut.get(instruction))) {
+                    liveIn.put(instruction, in);
+                    liveOut.put(instruction, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public Set<String> getLiveIn(Instruction instruction) {
+        return toNames(liveIn.get(instruction));
+    }
+
+    public Set<String> getLiveOut(Instruction instruction) {
+        return toNames(liveOut.get(instruction));
+    }
+
+    public boolean isLiveIn(Instruction instruction, String variable) {
+        Integer index = indexes.get(variable);
+        BitSet in = liveIn.get(instruction);
+        return index != null && in != null && in.get(index);
+    }
+
+    public boolean isLiveOut(Instruction instruction, String variable) {
+        Integer index = indexes.get(variable);
+        BitSet out = liveOut.get(instruction);
+        return index != null && out != null && out.get(index);
+    }
+
+    private int indexOf(String variable) {
+        return indexes.computeIfAbsent(variable, name -> {
+            variables.add(name);
+            return variables.size() - 1;
+        });
+    }
+
+    private Set<String> toNames(BitSet bits) {
+        Set<String> names = new LinkedHashSet<>();
+        if (bits == null) return names;
+
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            names.add(variables.get(i));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,333 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Unrolls counted loops: innermost loops whose header tests a basic induction variable i against a literal or loop
+ * invariant bound n (or the length of an array the loop doesn't reassign), and whose body is straight-line code
+ * without calls that steps i once. A copy of the loop running factor bodies per test is placed before it:
+ * <pre>
+ *     limit := n - (factor - 1) * step
+ * UNROLL:
+ *     if (!(i &lt; limit)) goto WHILE
+ *     body ... body
+ *     goto UNROLL
+ * WHILE:
+ *     the original loop, which runs the remaining iterations
+ * </pre>
+ * When n is a variable, limit can wrap around, and the copy is skipped if it does. The factor is lowered until the
+ * method fits in maxMethodSize bytes of bytecode (see {@link BytecodeSize}), or the loop is left alone.
+ */
+public class LoopUnrolling implements OptimizationPass {
+
+    private static final String LABEL_PREFIX = "UNROLL";
+    private static final Type INT = new Type(ElementType.INT32);
+    private static final Type BOOLEAN = new Type(ElementType.BOOLEAN);
+    // The limit, the wrap check and the test of the copy
+    private static final int OVERHEAD = 40;
+
+    /**
+     * A loop laid out as: [length := arraylength(a)], test := i < n (or n < i), [negated := !test], a branch out of
+     * the loop, the body and a goto back to the header at latch.
+     *
+     * @param continues whether the loop continues while the test holds, rather than while it doesn't
+     */
+    private record CountedLoop(int header, int branch, int latch, String variable, int step, Element bound,
+                               Instruction length, boolean variableLeft, boolean continues) {
+    }
+
+    private final int factor;
+    private final int maxMethodSize;
+
+    /**
+     * @param factor        how many bodies the unrolled copy runs per test
+     * @param maxMethodSize the most bytes of bytecode a method may grow to
+     */
+    public LoopUnrolling(int factor, int maxMethodSize) {
+        this.factor = factor;
+        this.maxMethodSize = maxMethodSize;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-unrolling";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.DOMINATORS, Analysis.LOOPS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            if (method.getInstructions().isEmpty()) continue;
+
+            List<CountedLoop> counted = new ArrayList<>();
+            for (Loops.Loop loop : analyses.getLoops(method).getLoops()) {
+                CountedLoop countedLoop = loop.getChildren().isEmpty() ? getCountedLoop(method, loop) : null;
+                if (countedLoop != null) counted.add(countedLoop);
+            }
+
+            // From the last loop, so that the indexes of the others stay valid
+            counted.sort(Comparator.comparingInt(CountedLoop::header).reversed());
+            boolean methodChanged = false;
+            for (CountedLoop loop : counted) {
+                methodChanged |= unroll(method, loop);
+            }
+
+            if (methodChanged) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    private static CountedLoop getCountedLoop(Method method, Loops.Loop loop) {
+        if (!Loops.hasPreheader(method, loop)) return null;
+
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) indexes.put(instructions.get(i), i);
+
+        // The loop must be a contiguous run of instructions ending in the jump back to the header
+        int header = indexes.get((Instruction) loop.getHeader());
+        int latch = header + loop.getBody().size() - 1;
+        for (Node node : loop.getBody()) {
+            int index = indexes.get((Instruction) node);
+            if (index < header || index > latch) return null;
+        }
+        if (!(instructions.get(latch) instanceof GotoInstruction back)
+                || method.getLabels().get(back.getLabel()) != loop.getHeader()) {
+            return null;
+        }
+
+        int branch = header;
+        while (branch < latch && instructions.get(branch).getInstType() != InstructionType.BRANCH) branch++;
+        if (branch == latch) return null;
+
+        String exit = ((CondBranchInstruction) instructions.get(branch)).getLabel();
+        if (loop.contains(method.getLabels().get(exit))) return null;
+
+        for (int i = header + 1; i < latch; i++) {
+            if (Instructions.hasLabels(method, instructions.get(i))) return null;
+            if (i > branch && !isStraightLine(instructions.get(i))) return null;
+        }
+
+        Map<String, List<Integer>> definitions = new HashMap<>();
+        for (int i = header; i < latch; i++) {
+            String variable = OllirVariables.getDefined(method, instructions.get(i));
+            if (variable != null) definitions.computeIfAbsent(variable, name -> new ArrayList<>()).add(i);
+        }
+
+        return getTest(method, header, branch, latch, definitions);
+    }
+
+    /**
+     * Assignments and field stores, with no calls but arraylength.
+     */
+    private static boolean isStraightLine(Instruction instruction) {
+        if (instruction.getInstType() == InstructionType.PUTFIELD) return true;
+        if (!(instruction instanceof AssignInstruction assign)) return false;
+        return !(assign.getRhs() instanceof CallInstruction call) || call.getInvocationType() == CallType.arraylength;
+    }
+
+    private static CountedLoop getTest(Method method, int header, int branch, int latch,
+                                       Map<String, List<Integer>> definitions) {
+        List<Instruction> instructions = method.getInstructions();
+        int index = header;
+
+        Instruction length = null;
+        if (instructions.get(index) instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call
+                && call.getInvocationType() == CallType.arraylength) {
+            if (!isInvariant(method, call.getFirstArg(), definitions)) return null;
+            length = assign;
+            index++;
+        }
+
+        if (!(instructions.get(index) instanceof AssignInstruction test)
+                || !(test.getRhs() instanceof BinaryOpInstruction comparison)
+                || comparison.getOperation().getOpType() != OperationType.LTH) {
+            return null;
+        }
+        String testVariable = OllirVariables.getDefined(method, test);
+        index++;
+
+        String negated = null;
+        if (index < branch && instructions.get(index) instanceof AssignInstruction not
+                && not.getRhs() instanceof UnaryOpInstruction unary && unary.getOperation().getOpType() == OperationType.NOTB
+                && isNamed(unary.getOperand(), testVariable)) {
+            negated = OllirVariables.getDefined(method, not);
+            index++;
+        }
+        if (index != branch || testVariable == null) return null;
+
+        Instruction condition = ((CondBranchInstruction) instructions.get(branch)).getCondition();
+        boolean continues;
+        if (condition instanceof SingleOpInstruction single && isNamed(single.getSingleOperand(), negated)) {
+            continues = true;
+        } else if (negated == null && condition instanceof SingleOpInstruction single
+                && isNamed(single.getSingleOperand(), testVariable)) {
+            continues = false;
+        } else if (negated == null && condition instanceof UnaryOpInstruction unary
+                && unary.getOperation().getOpType() == OperationType.NOTB && isNamed(unary.getOperand(), testVariable)) {
+            continues = true;
+        } else {
+            return null;
+        }
+
+        String lengthVariable = length != null ? OllirVariables.getDefined(method, length) : null;
+        for (boolean variableLeft : new boolean[]{true, false}) {
+            Element variable = variableLeft ? comparison.getLeftOperand() : comparison.getRightOperand();
+            Element bound = variableLeft ? comparison.getRightOperand() : comparison.getLeftOperand();
+            if (variable.isLiteral() || !OllirVariables.isVariable(method, variable) || variable instanceof ArrayOperand) {
+                continue;
+            }
+
+            String name = ((Operand) variable).getName();
+            List<Integer> variableDefinitions = definitions.get(name);
+            if (variableDefinitions == null || variableDefinitions.size() != 1) continue;
+
+            // The bound is the length computed in the header, or is never assigned in the loop
+            boolean invariant = lengthVariable != null
+                    ? isNamed(bound, lengthVariable) && definitions.get(lengthVariable).size() == 1
+                    : isInvariant(method, bound, definitions);
+            if (!invariant) continue;
+
+            List<StrengthReduction.Step> steps = StrengthReduction.getSteps(method, name, variableDefinitions,
+                    definitions);
+            if (steps == null || steps.get(0).index() <= branch || steps.get(0).step() == 0) continue;
+
+            // The test must hold for every value between the current one and the one factor steps later, so it has
+            // to go the way i goes: i < n when i grows, n < i when it shrinks
+            int step = steps.get(0).step();
+            if ((step > 0) != (variableLeft == continues)) continue;
+
+            return new CountedLoop(header, branch, latch, name, step, bound, length, variableLeft, continues);
+        }
+
+        return null;
+    }
+
+    private static boolean isInvariant(Method method, Element element, Map<String, List<Integer>> definitions) {
+        if (element.isLiteral()) return ConstantFolding.literalValue(element) != null;
+        return !(element instanceof ArrayOperand) && OllirVariables.isVariable(method, element)
+                && !definitions.containsKey(((Operand) element).getName());
+    }
+
+    private static boolean isNamed(Element element, String name) {
+        return name != null && !element.isLiteral() && !(element instanceof ArrayOperand)
+                && ((Operand) element).getName().equals(name);
+    }
+
+    private boolean unroll(Method method, CountedLoop loop) {
+        List<Instruction> instructions = method.getInstructions();
+        List<Instruction> body = new ArrayList<>(instructions.subList(loop.branch() + 1, loop.latch()));
+
+        int bodySize = body.stream().mapToInt(BytecodeSize::of).sum();
+        int methodSize = BytecodeSize.of(method);
+        int unrolled = factor;
+        while (unrolled > 1 && methodSize + unrolled * bodySize + OVERHEAD > maxMethodSize) unrolled--;
+        if (unrolled < 2) return false;
+
+        // i < n holds for the next unrolled steps when it holds for i + distance, that is i < n - distance
+        long distance = (long) (unrolled - 1) * loop.step();
+        Integer bound = ConstantFolding.literalValue(loop.bound());
+        if (distance > Integer.MAX_VALUE || distance < Integer.MIN_VALUE) return false;
+        if (bound != null && (bound - distance > Integer.MAX_VALUE || bound - distance < Integer.MIN_VALUE)) return false;
+
+        String headerLabel = getLabel(method, instructions.get(loop.header()));
+        String label = newLabel(method);
+        InstructionCopier copier = new InstructionCopier(name -> null, name -> name);
+        List<Instruction> code = new ArrayList<>();
+
+        Element limit;
+        if (bound != null) {
+            limit = new LiteralElement(String.valueOf(bound - distance), INT);
+        } else {
+            if (loop.length() != null) code.add(copier.copy(loop.length()));
+
+            Operand limitVariable = Instructions.newVariable(method, loop.variable() + "$limit", INT);
+            code.add(new AssignInstruction(limitVariable, INT, new BinaryOpInstruction(copier.copy(loop.bound()),
+                    new Operation(distance > 0 ? OperationType.SUB : OperationType.ADD, INT),
+                    new LiteralElement(String.valueOf(Math.abs(distance)), INT))));
+            limit = limitVariable;
+
+            // An array length minus a positive distance can't wrap around
+            if (loop.length() == null || distance < 0) {
+                Operand noWrap = Instructions.newVariable(method, loop.variable() + "$nowrap", BOOLEAN);
+                Element first = distance > 0 ? limit : loop.bound();
+                Element second = distance > 0 ? loop.bound() : limit;
+                code.add(new AssignInstruction(noWrap, BOOLEAN, new BinaryOpInstruction(copier.copy(first),
+                        new Operation(OperationType.LTH, BOOLEAN), copier.copy(second))));
+                code.addAll(branchUnless(method, noWrap, true, headerLabel, loop.variable()));
+            }
+        }
+
+        int start = code.size();
+        Operand test = Instructions.newVariable(method, loop.variable() + "$unroll", BOOLEAN);
+        Element variable = new Operand(loop.variable(), INT);
+        code.add(new AssignInstruction(test, BOOLEAN, loop.variableLeft()
+                ? new BinaryOpInstruction(variable, new Operation(OperationType.LTH, BOOLEAN), copier.copy(limit))
+                : new BinaryOpInstruction(copier.copy(limit), new Operation(OperationType.LTH, BOOLEAN), copy(variable))));
+        code.addAll(branchUnless(method, test, loop.continues(), headerLabel, loop.variable()));
+
+        for (int i = 0; i < unrolled; i++) {
+            for (Instruction instruction : body) code.add(copier.copy(instruction));
+        }
+        code.add(new GotoInstruction(label));
+
+        Instructions.insertUnlabeled(method, loop.header(), code);
+        method.addLabel(label, code.get(start));
+        return true;
+    }
+
+    /**
+     * @return the instructions jumping to the label unless the condition has the given value
+     */
+    private static List<Instruction> branchUnless(Method method, Operand condition, boolean value, String label,
+                                                  String variable) {
+        List<Instruction> code = new ArrayList<>();
+        Operand jump = copy(condition);
+
+        if (value) {
+            jump = Instructions.newVariable(method, variable + "$exit", BOOLEAN);
+            code.add(new AssignInstruction(jump, BOOLEAN,
+                    new UnaryOpInstruction(new Operation(OperationType.NOTB, BOOLEAN), copy(condition))));
+        }
+
+        CondBranchInstruction branch = new SingleOpCondInstruction(new SingleOpInstruction(copy(jump)));
+        branch.setLabel(label);
+        code.add(branch);
+        return code;
+    }
+
+    private static String getLabel(Method method, Instruction instruction) {
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            if (label.getValue() == instruction) return label.getKey();
+        }
+        throw new RuntimeException("Loop header without a label in method " + method.getMethodName());
+    }
+
+    private static String newLabel(Method method) {
+        int number = 0;
+        while (method.getLabels().containsKey(LABEL_PREFIX + number)) number++;
+        return LABEL_PREFIX + number;
+    }
+
+    private static Operand copy(Element element) {
+        return new Operand(((Operand) element).getName(), element.getType());
+    }
+}
@@ -0,0 +1,149 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Natural loops of the CFG of a method and how they nest. A loop is found from each back edge, an edge to a node that
+ * dominates its source, and loops with the same header are merged.
+ */
+public class Loops {
+
+    public static class Loop {
+        private final Node header;
+        private final Set<Node> body = new LinkedHashSet<>();
+        private final List<Node> latches = new ArrayList<>();
+        private final List<Loop> children = new ArrayList<>();
+        private Loop parent;
+
+        private Loop(Node header) {
+            this.header = header;
+            body.add(header);
+        }
+
+        public Node getHeader() {
+            return header;
+        }
+
+        /**
+         * @return the nodes of the loop, including the header and the nodes of the inner loops
+         */
+        public Set<Node> getBody() {
+            return Collections.unmodifiableSet(body);
+        }
+
+        public boolean contains(Node node) {
+            return body.contains(node);
+        }
+
+        /**
+         * @return the sources of the back edges to the header
+         */
+        public List<Node> getLatches() {
+            return Collections.unmodifiableList(latches);
+        }
+
+        /**
+         * @return the innermost loop that contains this one, or null if it is outermost
+         */
+        public Loop getParent() {
+            return parent;
+        }
+
+        public List<Loop> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * @return the nodes outside the loop that jump or fall through to the header
+         */
+        public List<Node> getEntries() {
+            List<Node> entries = new ArrayList<>();
+            for (Node predecessor : header.getPredecessors()) {
+                if (!body.contains(predecessor)) entries.add(predecessor);
+            }
+            return entries;
+        }
+    }
+
+    private final List<Loop> loops = new ArrayList<>();
+    private final Map<Node, Loop> innermost = new HashMap<>();
+
+    Loops(Method method, Dominators dominators) {
+        Map<Node, Loop> byHeader = new LinkedHashMap<>();
+
+        for (Node node : dominators.getReversePostorder()) {
+            for (Node successor : node.getSuccessors()) {
+                if (!dominators.dominates(successor, node)) continue;
+
+                Loop loop = byHeader.computeIfAbsent(successor, Loop::new);
+                loop.latches.add(node);
+                addBody(loop, node, dominators);
+            }
+        }
+
+        // Inner loops have smaller bodies, so the first loop found containing another is its parent
+        loops.addAll(byHeader.values());
+        loops.sort(Comparator.comparingInt(loop -> loop.body.size()));
+
+        for (int i = 0; i < loops.size(); i++) {
+            Loop loop = loops.get(i);
+            for (int j = i + 1; j < loops.size(); j++) {
+                if (loops.get(j).contains(loop.header)) {
+                    loop.parent = loops.get(j);
+                    loops.get(j).children.add(loop);
+                    break;
+                }
+            }
+            for (Node node : loop.body) innermost.putIfAbsent(node, loop);
+        }
+    }
+
+    /**
+     * @return every loop of the method, inner loops before the loops that contain them
+     */
+    public List<Loop> getLoops() {
+        return Collections.unmodifiableList(loops);
+    }
+
+    /**
+     * @return the innermost loop that contains the node, or null if it is in none
+     */
+    public Loop getLoop(Node node) {
+        return innermost.get(node);
+    }
+
+    /**
+     * @return whether code can be placed right before the header to run once on entering the loop: it is only entered
+     * by falling through from the previous instruction, or from the start of the method
+     */
+    public static boolean hasPreheader(Method method, Loop loop) {
+        List<Node> entries = loop.getEntries();
+        if (entries.size() != 1) return false;
+
+        List<Instruction> instructions = method.getInstructions();
+        int header = 0;
+        while (instructions.get(header) != loop.getHeader()) header++;
+
+        Node entry = entries.get(0);
+        if (header == 0) return entry == method.getBeginNode();
+
+        Instruction previous = instructions.get(header - 1);
+        if (entry != previous || previous.getInstType() == InstructionType.GOTO) return false;
+        return !(previous instanceof CondBranchInstruction branch)
+                || method.getLabels().get(branch.getLabel()) != loop.getHeader();
+    }
+
+    private static void addBody(Loop loop, Node latch, Dominators dominators) {
+        Deque<Node> worklist = new ArrayDeque<>();
+        if (loop.body.add(latch)) worklist.push(latch);
+
+        while (!worklist.isEmpty()) {
+            Node node = worklist.pop();
+            for (Node predecessor : node.getPredecessors()) {
+                if (dominators.isReachable(predecessor) && loop.body.add(predecessor)) worklist.push(predecessor);
+            }
+        }
+    }
+}
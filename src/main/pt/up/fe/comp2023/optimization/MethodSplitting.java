@@ -0,0 +1,339 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirTypes;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Moves parts of methods whose bytecode is larger than a threshold into new private methods, until they fit. HotSpot
+ * doesn't compile methods larger than 8000 bytes (HugeMethodLimit), so they would always run in the interpreter.
+ * <p>
+ * A part is a loop or a run of straight-line code, laid out as a range of instructions that is only entered at its
+ * first instruction and only left by falling through or jumping to the instruction after it, with no returns. The
+ * largest part that fits under the threshold is moved first. The variables live on entering it become the parameters
+ * of the new method, named "method$splitN", and the ones it writes that are read after it become its results: one is
+ * returned, and any other int results are stored in an array the caller creates for them. Parts with other results
+ * are left alone.
+ */
+public class MethodSplitting implements OptimizationPass {
+
+    public static final String NAME_SEPARATOR = "$split";
+    private static final String RESULTS_VARIABLE = "split$results";
+    private static final int MIN_REGION_SIZE = 64;
+    private static final int STORED_RESULT_COST = 16;
+
+    private final int threshold;
+
+    /**
+     * A range of instructions [start, end) of a method and the variables flowing into and out of it.
+     */
+    private record Region(int start, int end, int size, List<String> params, List<String> results) {
+    }
+
+    /**
+     * @param threshold the most bytes of bytecode a method may have before it is split
+     */
+    public MethodSplitting(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public String getName() {
+        return "method-splitting";
+    }
+
+    @Override
+    public int getLevel() {
+        return 1;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.LIVENESS, Analysis.LOOPS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : new ArrayList<>(classUnit.getMethods())) {
+            // The calls to the new methods end the runs of straight-line code, so they are not moved again
+            Set<Instruction> calls = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            while (BytecodeSize.of(method) > threshold) {
+                Region region = findRegion(method, analyses, calls);
+                if (region == null) break;
+
+                split(classUnit, method, region, calls);
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    private Region findRegion(Method method, AnalysisCache analyses, Set<Instruction> calls) {
+        List<Instruction> instructions = method.getInstructions();
+        Liveness liveness = analyses.getLiveness(method);
+
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        int[] offsets = new int[instructions.size() + 1];
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+            offsets[i + 1] = offsets[i] + BytecodeSize.of(instructions.get(i));
+        }
+
+        Region best = null;
+
+        for (Loops.Loop loop : analyses.getLoops(method).getLoops()) {
+            int start = instructions.size();
+            int end = 0;
+            for (Node node : loop.getBody()) {
+                start = Math.min(start, indexes.get((Instruction) node));
+                end = Math.max(end, indexes.get((Instruction) node) + 1);
+            }
+            if (end - start != loop.getBody().size() || end == instructions.size()) continue;
+
+            Region region = longestFrom(method, liveness, indexes, offsets, calls, start, end);
+            if (region != null && (best == null || region.size() > best.size())) best = region;
+        }
+
+        // Other code is taken in consecutive pieces, each as long as possible
+        int start = 0;
+        while (start < instructions.size()) {
+            Region region = longestFrom(method, liveness, indexes, offsets, calls, start, instructions.size() - 1);
+            if (region != null && (best == null || region.size() > best.size())) best = region;
+            start = region != null ? region.end() : start + 1;
+        }
+
+        return best != null && best.size() >= MIN_REGION_SIZE ? best : null;
+    }
+
+    /**
+     * @return the longest region under the threshold that starts at the instruction and ends by the limit, or null if
+     * there is none. Shorter regions win when they have fewer results.
+     */
+    private Region longestFrom(Method method, Liveness liveness, Map<Instruction, Integer> indexes, int[] offsets,
+                               Set<Instruction> calls, int start, int limit) {
+        List<Instruction> instructions = method.getInstructions();
+        Set<String> defined = new LinkedHashSet<>();
+        // The region is only closed once it contains every instruction jumped to from it and every one jumping into it
+        int lastTarget = start;
+        int lastPredecessor = -1;
+        int longest = -1;
+        int bestScore = -1;
+        List<String> longestResults = null;
+
+        scan:
+        for (int end = start + 1; end <= limit && offsets[end] - offsets[start] <= threshold; end++) {
+            Instruction instruction = instructions.get(end - 1);
+            if (instruction.getInstType() == InstructionType.RETURN || calls.contains(instruction)) break;
+
+            for (Node successor : instruction.getSuccessors()) {
+                Integer target = successor instanceof Instruction ? indexes.get((Instruction) successor) : null;
+                if (target == null || target < start) break scan;
+                lastTarget = Math.max(lastTarget, target);
+            }
+            if (end - 1 > start) {
+                for (Node node : instruction.getPredecessors()) {
+                    Integer predecessor = node instanceof Instruction ? indexes.get((Instruction) node) : null;
+                    if (predecessor == null || predecessor < start) break scan;
+                    lastPredecessor = Math.max(lastPredecessor, predecessor);
+                }
+            }
+
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null) defined.add(variable);
+
+            if (lastTarget <= end && lastPredecessor < end) {
+                List<String> results = getResults(method, liveness, defined, instructions.get(end));
+                // Each result after the first goes through the array, which costs about as much as a statement
+                int score = results == null ? -1 : offsets[end] - offsets[start] - STORED_RESULT_COST * results.size();
+                if (score > bestScore) {
+                    longest = end;
+                    longestResults = results;
+                    bestScore = score;
+                }
+            }
+        }
+
+        if (longest < 0) return null;
+
+        Set<String> mentioned = new HashSet<>();
+        for (Instruction instruction : instructions.subList(start, longest)) {
+            mentioned.addAll(OllirVariables.getUsed(method, instruction));
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null) mentioned.add(variable);
+        }
+
+        List<String> params = new ArrayList<>();
+        for (String variable : liveness.getLiveIn(instructions.get(start))) {
+            if (mentioned.contains(variable)) params.add(variable);
+        }
+
+        return new Region(start, longest, offsets[longest] - offsets[start], params, longestResults);
+    }
+
+    /**
+     * @return the variables written by the region and read after it, the one returned first, or null if they can't
+     * all be passed back
+     */
+    private static List<String> getResults(Method method, Liveness liveness, Set<String> defined, Instruction next) {
+        List<String> results = new ArrayList<>();
+        for (String variable : defined) {
+            if (!liveness.isLiveIn(next, variable)) continue;
+
+            if (isInt(method, variable)) {
+                results.add(variable);
+            } else if (results.isEmpty() || isInt(method, results.get(0))) {
+                results.add(0, variable);
+            } else {
+                return null;
+            }
+        }
+        return results;
+    }
+
+    private void split(ClassUnit classUnit, Method method, Region region, Set<Instruction> calls) {
+        String className = classUnit.getClassName();
+        List<Instruction> instructions = method.getInstructions();
+        Instruction first = instructions.get(region.start());
+        Instruction next = instructions.get(region.end());
+
+        String name = method.getMethodName() + NAME_SEPARATOR;
+        int number = 0;
+        while (hasMethod(classUnit, name + number)) number++;
+        name += number;
+
+        Method split = new Method(classUnit);
+        split.setMethodName(name);
+        split.setMethodAccessModifier(AccessModifiers.PRIVATE);
+        if (method.isStaticMethod()) split.setStaticMethod();
+
+        int paramId = method.isStaticMethod() ? 0 : 1;
+        ArrayList<Element> arguments = new ArrayList<>();
+        for (String param : region.params()) {
+            Operand operand = variable(method, param);
+            operand.setParamId(paramId++);
+            split.addParam(operand);
+            arguments.add(variable(method, param));
+        }
+
+        List<String> stored = region.results().size() > 1
+                ? region.results().subList(1, region.results().size())
+                : List.of();
+        Type arrayType = OllirTypes.fromOllirType("array.i32");
+        Operand array = null;
+        if (!stored.isEmpty()) {
+            array = new Operand(RESULTS_VARIABLE, arrayType);
+            array.setParamId(paramId);
+            split.addParam(array);
+            array = Instructions.newVariable(method, RESULTS_VARIABLE, arrayType);
+            arguments.add(new Operand(array.getName(), arrayType));
+        }
+
+        String returned = region.results().isEmpty() ? null : region.results().get(0);
+        Type returnType = returned != null ? method.getVarTable().get(returned).getVarType() : new Type(ElementType.VOID);
+        split.setReturnType(returnType);
+
+        // The body, with the labels it jumps to. Labels of the first instruction stay in the caller for the jumps
+        // coming from outside, and labels of the next one name the return of the new method.
+        InstructionCopier copier = new InstructionCopier(variable -> null, label -> label);
+        Map<Instruction, Instruction> copies = new IdentityHashMap<>();
+        for (Instruction instruction : instructions.subList(region.start(), region.end())) {
+            Instruction copy = copier.copy(instruction);
+            copies.put(instruction, copy);
+            split.addInstr(copy);
+        }
+
+        List<Instruction> exit = new ArrayList<>();
+        for (int i = 0; i < stored.size(); i++) {
+            ArrayList<Element> index = new ArrayList<>();
+            index.add(new LiteralElement(String.valueOf(i), new Type(ElementType.INT32)));
+            exit.add(new AssignInstruction(new ArrayOperand(RESULTS_VARIABLE, new Type(ElementType.INT32), index),
+                    new Type(ElementType.INT32), new SingleOpInstruction(variable(method, stored.get(i)))));
+        }
+        ReturnInstruction ret = returned != null ? new ReturnInstruction(variable(method, returned)) : new ReturnInstruction();
+        ret.setReturnType(returnType);
+        exit.add(ret);
+        for (Instruction instruction : exit) split.addInstr(instruction);
+
+        for (Map.Entry<String, Instruction> label : new ArrayList<>(method.getLabels().entrySet())) {
+            if (label.getValue() == next) {
+                split.addLabel(label.getKey(), exit.get(0));
+            } else if (copies.containsKey(label.getValue())) {
+                split.addLabel(label.getKey(), copies.get(label.getValue()));
+                if (label.getValue() != first) method.getLabels().remove(label.getKey());
+            }
+        }
+
+        split.buildVarTable();
+        classUnit.addMethod(split);
+
+        // The call, with the creation of the array before it and the loads of its results after it
+        List<Instruction> call = new ArrayList<>();
+        if (array != null) {
+            ArrayList<Element> size = new ArrayList<>();
+            size.add(new LiteralElement(String.valueOf(stored.size()), new Type(ElementType.INT32)));
+            call.add(new AssignInstruction(new Operand(array.getName(), arrayType), arrayType,
+                    new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), size, arrayType)));
+        }
+
+        CallInstruction invocation = method.isStaticMethod()
+                ? new CallInstruction(CallType.invokestatic, OllirTypes.staticCallTarget("this", className),
+                OllirTypes.methodNameLiteral(name), arguments, returnType)
+                : new CallInstruction(CallType.invokevirtual, OllirTypes.thisOperand(className),
+                OllirTypes.methodNameLiteral(name), arguments, returnType);
+        call.add(returned != null ? new AssignInstruction(variable(method, returned), returnType, invocation) : invocation);
+
+        for (int i = 0; i < stored.size(); i++) {
+            ArrayList<Element> index = new ArrayList<>();
+            index.add(new LiteralElement(String.valueOf(i), new Type(ElementType.INT32)));
+            call.add(new AssignInstruction(variable(method, stored.get(i)), new Type(ElementType.INT32),
+                    new SingleOpInstruction(new ArrayOperand(array.getName(), new Type(ElementType.INT32), index))));
+        }
+
+        Instructions.insertBefore(method, region.start(), call);
+        instructions.subList(region.start() + call.size(), region.end() + call.size()).clear();
+        calls.addAll(call);
+
+        // Variables only used by the moved code go with it
+        Set<String> remaining = new HashSet<>();
+        for (Element param : method.getParams()) remaining.add(((Operand) param).getName());
+        for (Instruction instruction : instructions) {
+            remaining.addAll(OllirVariables.getUsed(method, instruction));
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null) remaining.add(variable);
+        }
+        remaining.add("this");
+        method.getVarTable().entrySet().removeIf(variable -> variable.getValue().getScope() == VarScope.LOCAL
+                && !remaining.contains(variable.getKey()));
+
+        // The backend sizes the frame by the number of variables, so the registers left must be numbered from the
+        // parameters up again
+        List<Descriptor> locals = new ArrayList<>();
+        int register = 0;
+        for (Map.Entry<String, Descriptor> variable : method.getVarTable().entrySet()) {
+            Descriptor descriptor = variable.getValue();
+            if (descriptor.getScope() == VarScope.LOCAL && !variable.getKey().equals("this")) locals.add(descriptor);
+            else if (descriptor.getScope() != VarScope.FIELD) register = Math.max(register, descriptor.getVirtualReg() + 1);
+        }
+        locals.sort(Comparator.comparingInt(Descriptor::getVirtualReg));
+        for (Descriptor descriptor : locals) descriptor.setVirtualReg(register++);
+    }
+
+    private static boolean hasMethod(ClassUnit classUnit, String name) {
+        return classUnit.getMethods().stream().anyMatch(method -> method.getMethodName().equals(name));
+    }
+
+    private static boolean isInt(Method method, String variable) {
+        return method.getVarTable().get(variable).getVarType().getTypeOfElement() == ElementType.INT32;
+    }
+
+    private static Operand variable(Method method, String name) {
+        return new Operand(name, method.getVarTable().get(name).getVarType());
+    }
+}
@@ -0,0 +1,102 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A place in an instruction that holds an element read by it, so that passes can replace what is read (e.g. a variable
+ * by a constant) without knowing the instruction type. Some places can only be read, like the object of a call.
+ */
+public class OperandSlot {
+
+    private final Supplier<Element> getter;
+    private final Consumer<Element> setter;
+
+    private OperandSlot(Supplier<Element> getter, Consumer<Element> setter) {
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public Element get() {
+        return getter.get();
+    }
+
+    public boolean canSet() {
+        return setter != null;
+    }
+
+    public void set(Element element) {
+        if (setter == null) throw new UnsupportedOperationException("Operand can't be replaced: " + get());
+        setter.accept(element);
+    }
+
+    /**
+     * @return the slots of the elements the instruction reads, including the indexes of array accesses, in the order
+     * they are evaluated
+     */
+    public static List<OperandSlot> getUseSlots(Instruction instruction) {
+        List<OperandSlot> slots = new ArrayList<>();
+        collect(instruction, slots);
+        return slots;
+    }
+
+    private static void collect(Instruction instruction, List<OperandSlot> slots) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                if (assign.getDest() instanceof ArrayOperand) add(slots, assign::getDest, null);
+                collect(assign.getRhs(), slots);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                if (call.getInvocationType() != CallType.NEW) add(slots, call::getFirstArg, null);
+                if (call.getListOfOperands() != null) addList(slots, call.getListOfOperands());
+            }
+            case BRANCH -> collect(((CondBranchInstruction) instruction).getCondition(), slots);
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) add(slots, ret::getOperand, ret::setOperand);
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                add(slots, putField::getFirstOperand, null);
+                add(slots, putField::getThirdOperand, putField::setThirdOperand);
+            }
+            case GETFIELD -> add(slots, ((GetFieldInstruction) instruction)::getFirstOperand, null);
+            case UNARYOPER -> {
+                UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                add(slots, unary::getOperand, unary::setOperand);
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                add(slots, binary::getLeftOperand, binary::setLeftOperand);
+                add(slots, binary::getRightOperand, binary::setRightOperand);
+            }
+            case NOPER -> {
+                SingleOpInstruction single = (SingleOpInstruction) instruction;
+                add(slots, single::getSingleOperand, single::setSingleOperand);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static void addList(List<OperandSlot> slots, List<Element> elements) {
+        for (int i = 0; i < elements.size(); i++) {
+            int index = i;
+            add(slots, () -> elements.get(index), element -> elements.set(index, element));
+        }
+    }
+
+    private static void add(List<OperandSlot> slots, Supplier<Element> getter, Consumer<Element> setter) {
+        Element element = getter.get();
+        if (element == null) return;
+
+        slots.add(new OperandSlot(getter, setter));
+        if (element instanceof ArrayOperand arrayOperand) addList(slots, arrayOperand.getIndexOperands());
+    }
+}
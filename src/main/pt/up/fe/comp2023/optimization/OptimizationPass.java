@@ -0,0 +1,52 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A transformation of the OLLIR ClassUnit, run by the {@link PassManager} between the ClassUnit construction and the
+ * Jasmin backend.
+ */
+public interface OptimizationPass {
+
+    /**
+     * @return the name of the pass, also used for its "pass.&lt;name&gt;" enable flag in the config
+     */
+    String getName();
+
+    /**
+     * @return the lowest optimization level that runs the pass, 1 for the local passes and 2 for the others. The
+     * launcher only builds OLLIR at -O2, so at -O1 these passes only run with the "backend" config set to "ollir"
+     */
+    int getLevel();
+
+    /**
+     * @return whether an option of the config asks for the pass at any optimization level
+     */
+    default boolean isRequested(Map<String, String> config) {
+        return false;
+    }
+
+    /**
+     * @return the analyses that must be up to date before the pass runs
+     */
+    default Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.noneOf(Analysis.class);
+    }
+
+    /**
+     * @return the analyses that become stale when the pass changes the code. Passes that only rewrite operands, keeping
+     * the instruction list and the variables intact, can keep the CFG.
+     */
+    default Set<Analysis> getInvalidatedAnalyses() {
+        return EnumSet.allOf(Analysis.class);
+    }
+
+    /**
+     * @return whether the pass changed the code
+     */
+    boolean run(ClassUnit classUnit, AnalysisCache analyses);
+}
@@ -0,0 +1,131 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp2023.profiling.PassEvent;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the registered passes in order over a ClassUnit. A pass runs when its "pass.&lt;name&gt;" config flag is "true",
+ * or when the flag is absent and either the "optimizationLevel" of the config is at least the level of the pass or
+ * the pass is requested by another option (see {@link OptimizationPass#isRequested(Map)}). Analyses are shared between passes through an
+ * {@link AnalysisCache} and only dropped when a pass that invalidates them changes the code.
+ */
+public class PassManager {
+
+    private final List<OptimizationPass> passes = new ArrayList<>();
+    private final List<PassStatistics> statistics = new ArrayList<>();
+    private final AnalysisCache analyses = new AnalysisCache();
+
+    public PassManager addPass(OptimizationPass pass) {
+        passes.add(pass);
+        return this;
+    }
+
+    public List<OptimizationPass> getPasses() {
+        return passes;
+    }
+
+    public static boolean isEnabled(OptimizationPass pass, Map<String, String> config) {
+        String flag = config.get("pass." + pass.getName());
+        if (flag != null) return flag.equals("true");
+        return pass.getLevel() <= getOptimizationLevel(config) || pass.isRequested(config);
+    }
+
+    /**
+     * @return the "optimizationLevel" of the config. Without one, "optimize" set to "true" (the -o flag of the tests)
+     * means every pass.
+     */
+    public static int getOptimizationLevel(Map<String, String> config) {
+        String level = config.get("optimizationLevel");
+        if (level != null) return Integer.parseInt(level);
+        return "true".equals(config.get("optimize")) ? 2 : 0;
+    }
+
+    public List<PassStatistics> run(ClassUnit classUnit, Map<String, String> config) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+
+        for (OptimizationPass pass : passes) {
+            if (!isEnabled(pass, config)) continue;
+
+            long analysisStart = System.nanoTime();
+            analyses.require(classUnit, pass.getRequiredAnalyses());
+            long analysisNanos = System.nanoTime() - analysisStart;
+
+            PassEvent event = new PassEvent();
+            if (event.isEnabled()) event.instructionsBefore = countInstructions(classUnit);
+            event.begin();
+
+            long allocationStart = getAllocatedBytes(threads);
+            long cpuStart = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+            long start = System.nanoTime();
+
+            boolean changed = pass.run(classUnit, analyses);
+
+            long wallNanos = System.nanoTime() - start;
+            long cpuNanos = cpuTime ? threads.getCurrentThreadCpuTime() - cpuStart : -1;
+            long allocatedBytes = allocationStart < 0 ? -1 : getAllocatedBytes(threads) - allocationStart;
+
+            event.end();
+            if (event.shouldCommit()) {
+                event.passName = pass.getName();
+                event.className = classUnit.getClassName();
+                event.changed = changed;
+                event.methods = classUnit.getNumMethods();
+                event.instructionsAfter = countInstructions(classUnit);
+                event.commit();
+            }
+
+            if (changed) analyses.invalidate(pass.getInvalidatedAnalyses());
+
+            statistics.add(new PassStatistics(pass.getName(), changed, analysisNanos, wallNanos, cpuNanos,
+                    allocatedBytes));
+        }
+
+        if ("true".equals(config.get("debug"))) {
+            System.out.println(getReport());
+        }
+
+        return statistics;
+    }
+
+    public List<PassStatistics> getStatistics() {
+        return statistics;
+    }
+
+    public AnalysisCache getAnalyses() {
+        return analyses;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-24s %8s %12s %12s %12s %14s%n", "pass", "changed", "analyses us", "wall us",
+                "cpu us", "allocated B"));
+        for (PassStatistics passStatistics : statistics) {
+            report.append(passStatistics).append("\n");
+        }
+        report.append("analyses computed: ").append(analyses.getComputations());
+        return report.toString();
+    }
+
+    private static int countInstructions(ClassUnit classUnit) {
+        int instructions = 0;
+        for (Method method : classUnit.getMethods()) instructions += method.getInstructions().size();
+        return instructions;
+    }
+
+    private static long getAllocatedBytes(ThreadMXBean threads) {
+        // Allocation counters are a HotSpot extension of the standard bean
+        if (threads instanceof com.sun.management.ThreadMXBean hotspotThreads
+                && hotspotThreads.isThreadAllocatedMemorySupported() && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+            return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
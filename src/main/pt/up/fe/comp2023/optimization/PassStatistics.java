@@ -0,0 +1,61 @@
+package pt.up.fe.comp2023.optimization;
+
+/**
+ * What running a pass cost: wall and CPU time, bytes allocated by the compiler thread, and the time spent bringing the
+ * required analyses up to date, which is measured apart from the pass itself.
+ */
+public class PassStatistics {
+
+    private final String passName;
+    private final boolean changed;
+    private final long analysisNanos;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    PassStatistics(String passName, boolean changed, long analysisNanos, long wallNanos, long cpuNanos,
+                   long allocatedBytes) {
+        this.passName = passName;
+        this.changed = changed;
+        this.analysisNanos = analysisNanos;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getPassName() {
+        return passName;
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public long getAnalysisNanos() {
+        return analysisNanos;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return the CPU time of the pass, or -1 if the JVM can't measure it
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @return the bytes allocated by the pass, or -1 if the JVM can't measure it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-24s %8s %12.1f %12.1f %12.1f %14d", passName, changed ? "yes" : "no",
+                analysisNanos / 1000.0, wallNanos / 1000.0, cpuNanos / 1000.0, allocatedBytes);
+    }
+}
@@ -0,0 +1,108 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+
+/**
+ * Local clean-ups that give the backend simpler instructions to select from:
+ * <ul>
+ *     <li>removes gotos to the next instruction and copies of a variable to itself</li>
+ *     <li>simplifies additions and subtractions of 0, multiplications by 1 and divisions by 1 to a copy</li>
+ *     <li>rewrites a = a - c as a = a + -c, which the backend emits as an iinc</li>
+ * </ul>
+ */
+public class Peephole implements OptimizationPass {
+
+    @Override
+    public String getName() {
+        return "peephole";
+    }
+
+    @Override
+    public int getLevel() {
+        return 1;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            List<Instruction> instructions = method.getInstructions();
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = instructions.get(i);
+                boolean last = i == instructions.size() - 1;
+
+                if (instruction.getInstType() == InstructionType.GOTO) {
+                    if (!last && method.getLabels().get(((GotoInstruction) instruction).getLabel()) == instructions.get(i + 1)) {
+                        Instructions.remove(method, i);
+                        changed = true;
+                    }
+                } else if (instruction.getInstType() == InstructionType.ASSIGN) {
+                    AssignInstruction assign = (AssignInstruction) instruction;
+                    Instruction rhs = simplify(assign);
+
+                    if (!last && isSelfCopy(assign.getDest(), rhs)) {
+                        Instructions.remove(method, i);
+                        changed = true;
+                    } else if (rhs != assign.getRhs()) {
+                        Instructions.replace(method, i, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), rhs));
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private static Instruction simplify(AssignInstruction assign) {
+        if (assign.getRhs().getInstType() != InstructionType.BINARYOPER) return assign.getRhs();
+
+        BinaryOpInstruction binary = (BinaryOpInstruction) assign.getRhs();
+        Element left = binary.getLeftOperand();
+        Element right = binary.getRightOperand();
+        Integer leftValue = ConstantFolding.literalValue(left);
+        Integer rightValue = ConstantFolding.literalValue(right);
+
+        switch (binary.getOperation().getOpType()) {
+            case ADD -> {
+                if (rightValue != null && rightValue == 0) return new SingleOpInstruction(left);
+                if (leftValue != null && leftValue == 0) return new SingleOpInstruction(right);
+            }
+            case SUB -> {
+                if (rightValue != null && rightValue == 0) return new SingleOpInstruction(left);
+
+                // Negating Integer.MIN_VALUE overflows, but so does the subtraction, to the same value
+                if (rightValue != null && isSameVariable(assign.getDest(), left)) {
+                    Operation add = new Operation(OperationType.ADD, binary.getOperation().getTypeInfo());
+                    return new BinaryOpInstruction(left, add, new LiteralElement(String.valueOf(-rightValue), right.getType()));
+                }
+            }
+            case MUL -> {
+                if (rightValue != null && rightValue == 1) return new SingleOpInstruction(left);
+                if (leftValue != null && leftValue == 1) return new SingleOpInstruction(right);
+            }
+            case DIV -> {
+                if (rightValue != null && rightValue == 1) return new SingleOpInstruction(left);
+            }
+            default -> {
+            }
+        }
+
+        return binary;
+    }
+
+    private static boolean isSelfCopy(Element dest, Instruction rhs) {
+        return rhs.getInstType() == InstructionType.NOPER
+                && isSameVariable(dest, ((SingleOpInstruction) rhs).getSingleOperand());
+    }
+
+    private static boolean isSameVariable(Element dest, Element element) {
+        if (dest instanceof ArrayOperand || element instanceof ArrayOperand) return false;
+        if (!(dest instanceof Operand destOperand) || !(element instanceof Operand operand)) return false;
+        return !element.isLiteral() && destOperand.getName().equals(operand.getName());
+    }
+}
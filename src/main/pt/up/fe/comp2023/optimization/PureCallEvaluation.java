@@ -0,0 +1,100 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Evaluates calls to pure methods of the class whose arguments are all literals (see {@link Purity}), and replaces
+ * them by the value they return. Only calls that {@link CallGraph} resolves count, since a subclass may override any
+ * other method with one that isn't pure. Calls whose value isn't used are removed. A call is left alone when the
+ * {@link Interpreter} gives up on it, e.g. because it runs more than maxSteps instructions.
+ * <p>
+ * Runs before constant propagation, which carries the values further.
+ */
+public class PureCallEvaluation implements OptimizationPass {
+
+    private static final int MAX_DEPTH = 100;
+
+    private final int maxSteps;
+
+    /**
+     * @param maxSteps the most instructions the evaluation of a call may run
+     */
+    public PureCallEvaluation(int maxSteps) {
+        this.maxSteps = maxSteps;
+    }
+
+    @Override
+    public String getName() {
+        return "pure-calls";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        CallGraph callGraph = new CallGraph(classUnit);
+        Purity purity = new Purity(classUnit, callGraph);
+        Interpreter interpreter = new Interpreter(callGraph, purity, maxSteps, MAX_DEPTH);
+        Map<String, Integer> results = new HashMap<>();
+
+        // Evaluate everything before changing any code, the interpreter runs the methods being changed
+        Map<Method, Map<Integer, Integer>> values = new LinkedHashMap<>();
+        for (Method method : classUnit.getMethods()) {
+            List<Instruction> instructions = method.getInstructions();
+
+            for (int i = 0; i < instructions.size(); i++) {
+                CallInstruction call = CallGraph.getCall(instructions.get(i));
+                Method callee = call != null ? callGraph.getCallee(method, call) : null;
+                if (callee == null || !purity.isPure(callee)) continue;
+
+                List<Integer> arguments = getArguments(call);
+                if (arguments == null) continue;
+
+                Integer value = results.computeIfAbsent(callee.getMethodName() + arguments,
+                        key -> interpreter.call(callee, arguments));
+                if (value != null) values.computeIfAbsent(method, key -> new TreeMap<>()).put(i, value);
+            }
+        }
+
+        for (Map.Entry<Method, Map<Integer, Integer>> entry : values.entrySet()) {
+            Method method = entry.getKey();
+            List<Integer> indexes = new ArrayList<>(entry.getValue().keySet());
+
+            for (int i = indexes.size() - 1; i >= 0; i--) {
+                int index = indexes.get(i);
+                replace(method, index, entry.getValue().get(index));
+            }
+        }
+
+        return !values.isEmpty();
+    }
+
+    private static List<Integer> getArguments(CallInstruction call) {
+        List<Integer> arguments = new ArrayList<>();
+        for (Element operand : call.getListOfOperands()) {
+            Integer value = ConstantFolding.literalValue(operand);
+            if (value == null) return null;
+            arguments.add(value);
+        }
+        return arguments;
+    }
+
+    private static void replace(Method method, int index, int value) {
+        Instruction instruction = method.getInstructions().get(index);
+
+        if (instruction instanceof AssignInstruction assign) {
+            LiteralElement literal = ConstantFolding.literal(value, assign.getTypeOfAssign());
+            if (literal != null) {
+                Instructions.replace(method, index, new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                        new SingleOpInstruction(literal)));
+            }
+        } else {
+            Instructions.remove(method, index);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds the methods of a class without side effects: they write no fields and no array elements, create no objects and
+ * only call pure methods of the class that no subclass can override. Methods start out pure and lose it until nothing
+ * changes, so pure methods may be recursive. A pure method may still read fields, never end or throw.
+ */
+class Purity {
+
+    private final Set<Method> pure = new HashSet<>();
+
+    Purity(ClassUnit classUnit, CallGraph callGraph) {
+        for (Method method : classUnit.getMethods()) {
+            if (!method.isConstructMethod() && hasNoSideEffects(method, callGraph)) pure.add(method);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = pure.removeIf(method -> !pure.containsAll(callGraph.getCallees(method)));
+        }
+    }
+
+    boolean isPure(Method method) {
+        return pure.contains(method);
+    }
+
+    /**
+     * @return whether the method has no side effects by itself, not counting the methods of the class it calls
+     */
+    private static boolean hasNoSideEffects(Method method, CallGraph callGraph) {
+        for (Instruction instruction : method.getInstructions()) {
+            if (instruction.getInstType() == InstructionType.PUTFIELD) return false;
+            if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof ArrayOperand) return false;
+
+            CallInstruction call = CallGraph.getCall(instruction);
+            if (call != null && !isPureCall(method, call, callGraph)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isPureCall(Method method, CallInstruction call, CallGraph callGraph) {
+        return switch (call.getInvocationType()) {
+            case arraylength -> true;
+            case NEW -> call.getReturnType().getTypeOfElement() == ElementType.ARRAYREF;
+            case invokevirtual, invokestatic -> callGraph.getCallee(method, call) != null;
+            default -> false;
+        };
+    }
+}
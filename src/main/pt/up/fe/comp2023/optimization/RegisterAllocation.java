@@ -0,0 +1,139 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Gives local variables that are never live at the same time the same JVM register, by greedy coloring of the
+ * interference graph built from liveness. 'this' and the parameters keep their registers. Only the descriptors of the
+ * var tables change, so the CFG and the analyses stay valid.
+ */
+public class RegisterAllocation implements OptimizationPass {
+
+    private final int maxRegisters;
+
+    /**
+     * @param maxRegisters the most registers a method may use, 0 (or less) to just use as few as possible
+     */
+    public RegisterAllocation(int maxRegisters) {
+        this.maxRegisters = maxRegisters;
+    }
+
+    @Override
+    public String getName() {
+        return "register-allocation";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    /**
+     * The "registerAllocation" option (-r) runs the pass without -o when it is 0 or more.
+     */
+    @Override
+    public boolean isRequested(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault("registerAllocation", "-1")) >= 0;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.LIVENESS);
+    }
+
+    @Override
+    public Set<Analysis> getInvalidatedAnalyses() {
+        return EnumSet.noneOf(Analysis.class);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            changed |= allocate(method, analyses.getLiveness(method));
+        }
+
+        return changed;
+    }
+
+    private boolean allocate(Method method, Liveness liveness) {
+        Map<String, Descriptor> varTable = method.getVarTable();
+        Map<String, Set<String>> interference = new LinkedHashMap<>();
+
+        // Every local that is written or read gets a node, in order of appearance
+        for (Instruction instruction : method.getInstructions()) {
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (isLocal(varTable, defined)) interference.computeIfAbsent(defined, name -> new HashSet<>());
+            for (String used : OllirVariables.getUsed(method, instruction)) {
+                if (isLocal(varTable, used)) interference.computeIfAbsent(used, name -> new HashSet<>());
+            }
+        }
+
+        // A variable that is written interferes with everything live after the write
+        for (Instruction instruction : method.getInstructions()) {
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (!isLocal(varTable, defined)) continue;
+
+            for (String live : liveness.getLiveOut(instruction)) {
+                if (live.equals(defined) || !isLocal(varTable, live)) continue;
+                interference.get(defined).add(live);
+                interference.get(live).add(defined);
+            }
+        }
+
+        int firstRegister = method.isStaticMethod() ? 0 : 1;
+        for (Descriptor descriptor : varTable.values()) {
+            if (descriptor.getScope() == VarScope.PARAMETER) {
+                firstRegister = Math.max(firstRegister, descriptor.getVirtualReg() + 1);
+            }
+        }
+
+        boolean changed = false;
+        int registers = firstRegister;
+        Map<String, Integer> colors = new HashMap<>();
+
+        for (Map.Entry<String, Set<String>> node : interference.entrySet()) {
+            BitSet taken = new BitSet();
+            for (String neighbour : node.getValue()) {
+                Integer color = colors.get(neighbour);
+                if (color != null) taken.set(color);
+            }
+
+            int register = taken.nextClearBit(firstRegister);
+            colors.put(node.getKey(), register);
+            registers = Math.max(registers, register + 1);
+
+            Descriptor descriptor = varTable.get(node.getKey());
+            if (descriptor.getVirtualReg() != register) {
+                descriptor.setVirtualReg(register);
+                changed = true;
+            }
+        }
+
+        // Locals that are declared but never used don't need a register of their own
+        for (Descriptor descriptor : varTable.values()) {
+            if (descriptor.getScope() == VarScope.LOCAL && descriptor.getVirtualReg() >= registers) {
+                descriptor.setVirtualReg(firstRegister);
+                changed = true;
+            }
+        }
+
+        if (maxRegisters > 0 && registers > maxRegisters) {
+            System.err.println("Method '" + method.getMethodName() + "' needs at least " + registers
+                    + " registers, more than the " + maxRegisters + " allowed");
+        }
+
+        return changed;
+    }
+
+    private static boolean isLocal(Map<String, Descriptor> varTable, String name) {
+        if (name == null) return false;
+
+        Descriptor descriptor = varTable.get(name);
+        return descriptor != null && descriptor.getScope() == VarScope.LOCAL;
+    }
+}
@@ -0,0 +1,252 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirTypes;
+
+import java.util.*;
+
+/**
+ * Keeps the fields of 'this' in local variables inside regions of a method that make no calls: the whole method when
+ * it has none, otherwise the outermost loops that have none. Each field is loaded once when the region is entered, and
+ * its getfields and putfields in the region become copies from and to the local.
+ * <p>
+ * The putfields are sunk to the exits of the region (the returns of the method, or the targets of the jumps out of the
+ * loop) when nothing in the region can throw. Otherwise an exception would leave the field out of date, so each write
+ * still stores the field right away, and only the reads are saved. Fields also accessed through another object of the
+ * class in the region, which could be 'this' after inlining, are left alone.
+ */
+public class ScalarReplacement implements OptimizationPass {
+
+    private static final String VARIABLE_SUFFIX = "$field";
+
+    /**
+     * Instructions of a method that run as a unit: entered at entry (or at the start of the method if null) and left
+     * at the exits.
+     */
+    private record Region(Set<Instruction> instructions, Instruction entry, List<Instruction> exits) {
+    }
+
+    @Override
+    public String getName() {
+        return "scalar-replacement";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.DOMINATORS, Analysis.LOOPS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            if (method.isStaticMethod() || method.getInstructions().isEmpty()) continue;
+
+            List<Region> regions = new ArrayList<>();
+            List<Instruction> instructions = method.getInstructions();
+            if (instructions.stream().noneMatch(ScalarReplacement::isBarrier)) {
+                List<Instruction> returns = instructions.stream()
+                        .filter(instruction -> instruction.getInstType() == InstructionType.RETURN).toList();
+                regions.add(new Region(Collections.newSetFromMap(new IdentityHashMap<>()), null, returns));
+                regions.get(0).instructions().addAll(instructions);
+            } else {
+                for (Loops.Loop loop : analyses.getLoops(method).getLoops()) {
+                    if (loop.getParent() == null) addLoopRegions(method, loop, regions);
+                }
+            }
+
+            boolean methodChanged = false;
+            for (Region region : regions) {
+                methodChanged |= replace(method, region, region.entry() == null ? 2 : 1);
+            }
+
+            if (methodChanged) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Adds the loop as a region if it makes no calls, or else looks for regions in the loops inside it.
+     */
+    private static void addLoopRegions(Method method, Loops.Loop loop, List<Region> regions) {
+        Set<Instruction> body = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node node : loop.getBody()) body.add((Instruction) node);
+
+        if (body.stream().anyMatch(ScalarReplacement::isBarrier) || !Loops.hasPreheader(method, loop)) {
+            for (Loops.Loop child : loop.getChildren()) addLoopRegions(method, child, regions);
+            return;
+        }
+
+        // The stores can only go before the targets of the exits when nothing else reaches them, or else null
+        List<Instruction> exits = new ArrayList<>();
+        for (Node node : loop.getBody()) {
+            for (Node successor : node.getSuccessors()) {
+                if (loop.contains(successor)) continue;
+
+                boolean dedicated = successor instanceof Instruction
+                        && successor.getPredecessors().stream().allMatch(loop::contains);
+                if (!dedicated) {
+                    exits = null;
+                    break;
+                }
+                if (exits.stream().noneMatch(exit -> exit == successor)) exits.add((Instruction) successor);
+            }
+            if (exits == null) break;
+        }
+
+        regions.add(new Region(body, (Instruction) loop.getHeader(), exits));
+    }
+
+    /**
+     * @param minAccesses how many times a field must be accessed in the region to be worth a local
+     */
+    private static boolean replace(Method method, Region region, int minAccesses) {
+        Map<String, Type> fields = new LinkedHashMap<>();
+        Map<String, Integer> accesses = new HashMap<>();
+        Set<String> written = new HashSet<>();
+        Set<String> aliased = new HashSet<>();
+        boolean mayThrow = false;
+
+        for (Instruction instruction : method.getInstructions()) {
+            if (!region.instructions().contains(instruction)) continue;
+
+            Element object = null;
+            Operand field = null;
+            if (instruction instanceof PutFieldInstruction putField) {
+                object = putField.getFirstOperand();
+                field = (Operand) putField.getSecondOperand();
+                if (isThis(object)) written.add(field.getName());
+            } else if (instruction instanceof AssignInstruction assign
+                    && assign.getRhs() instanceof GetFieldInstruction getField) {
+                object = getField.getFirstOperand();
+                field = (Operand) getField.getSecondOperand();
+            }
+            mayThrow |= mayThrow(instruction);
+
+            if (field == null) continue;
+            if (!isThis(object)) {
+                aliased.add(field.getName());
+                continue;
+            }
+            fields.putIfAbsent(field.getName(), field.getType());
+            accesses.merge(field.getName(), 1, Integer::sum);
+        }
+
+        fields.keySet().removeIf(field -> aliased.contains(field) || accesses.get(field) < minAccesses);
+        if (fields.isEmpty()) return false;
+
+        boolean sink = !mayThrow && region.exits() != null;
+        Map<String, Operand> locals = new HashMap<>();
+        for (Map.Entry<String, Type> field : fields.entrySet()) {
+            locals.put(field.getKey(),
+                    Instructions.newVariable(method, field.getKey() + VARIABLE_SUFFIX, field.getValue()));
+        }
+
+        // Rewrite the accesses first, their instructions are found by identity as the list changes
+        for (Instruction instruction : new ArrayList<>(method.getInstructions())) {
+            if (!region.instructions().contains(instruction)) continue;
+
+            if (instruction instanceof PutFieldInstruction putField && isThis(putField.getFirstOperand())
+                    && fields.containsKey(((Operand) putField.getSecondOperand()).getName())) {
+                String field = ((Operand) putField.getSecondOperand()).getName();
+                Operand local = locals.get(field);
+                int index = Instructions.indexOf(method, instruction);
+
+                Instructions.replace(method, index, new AssignInstruction(copy(local), local.getType(),
+                        new SingleOpInstruction(putField.getThirdOperand())));
+                if (!sink) Instructions.insertUnlabeled(method, index + 1, List.of(store(method, field, local)));
+            } else if (instruction instanceof AssignInstruction assign
+                    && assign.getRhs() instanceof GetFieldInstruction getField && isThis(getField.getFirstOperand())
+                    && fields.containsKey(((Operand) getField.getSecondOperand()).getName())) {
+                Operand local = locals.get(((Operand) getField.getSecondOperand()).getName());
+                Instructions.replace(method, Instructions.indexOf(method, instruction),
+                        new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(),
+                                new SingleOpInstruction(copy(local))));
+            }
+        }
+
+        if (sink) {
+            for (Instruction exit : region.exits()) {
+                List<Instruction> stores = new ArrayList<>();
+                for (String field : fields.keySet()) {
+                    if (written.contains(field)) stores.add(store(method, field, locals.get(field)));
+                }
+                if (!stores.isEmpty()) Instructions.insertBefore(method, Instructions.indexOf(method, exit), stores);
+            }
+        }
+
+        // Jumps back to the entry keep the locals, only the code coming in from outside loads them
+        List<Instruction> loads = new ArrayList<>();
+        for (Map.Entry<String, Type> field : fields.entrySet()) {
+            Operand local = locals.get(field.getKey());
+            loads.add(new AssignInstruction(copy(local), local.getType(), new GetFieldInstruction(thisOperand(method),
+                    new Operand(field.getKey(), field.getValue()), field.getValue())));
+        }
+        int entry = region.entry() == null ? 0 : Instructions.indexOf(method, region.entry());
+        Instructions.insertUnlabeled(method, entry, loads);
+
+        return true;
+    }
+
+    /**
+     * Calls other than arraylength and the creation of arrays may read or write the fields.
+     */
+    static boolean isBarrier(Instruction instruction) {
+        CallInstruction call = CallGraph.getCall(instruction);
+        if (call == null) return false;
+        if (call.getInvocationType() == CallType.arraylength) return false;
+        return call.getInvocationType() != CallType.NEW || call.getReturnType().getTypeOfElement() != ElementType.ARRAYREF;
+    }
+
+    /**
+     * Array accesses, divisions, array creations and lengths, and field accesses on other objects.
+     */
+    static boolean mayThrow(Instruction instruction) {
+        if (CallGraph.getCall(instruction) != null) return true;
+
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                yield assign.getDest() instanceof ArrayOperand || mayThrow(assign.getRhs());
+            }
+            case PUTFIELD -> !isThis(((PutFieldInstruction) instruction).getFirstOperand());
+            case GETFIELD -> !isThis(((GetFieldInstruction) instruction).getFirstOperand());
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                yield binary.getOperation().getOpType() == OperationType.DIV
+                        || binary.getLeftOperand() instanceof ArrayOperand || binary.getRightOperand() instanceof ArrayOperand;
+            }
+            case UNARYOPER -> ((UnaryOpInstruction) instruction).getOperand() instanceof ArrayOperand;
+            case NOPER -> ((SingleOpInstruction) instruction).getSingleOperand() instanceof ArrayOperand;
+            default -> false;
+        };
+    }
+
+    private static boolean isThis(Element element) {
+        return element.getType().getTypeOfElement() == ElementType.THIS
+                || element instanceof Operand operand && operand.getName().equals("this");
+    }
+
+    private static Operand thisOperand(Method method) {
+        return OllirTypes.thisOperand(method.getOllirClass().getClassName());
+    }
+
+    private static PutFieldInstruction store(Method method, String field, Operand local) {
+        return new PutFieldInstruction(thisOperand(method), new Operand(field, local.getType()), copy(local),
+                new Type(ElementType.VOID));
+    }
+
+    private static Operand copy(Operand operand) {
+        return new Operand(operand.getName(), operand.getType());
+    }
+}
@@ -0,0 +1,539 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Puts a method in SSA form, in place, and takes it back out. Every write of a variable gets its own version, named
+ * "variable#n", and phis are placed where versions meet (pruned with liveness, so only for variables that are live
+ * there). The values of parameters and uninitialized locals on entry keep the original name.
+ * <p>
+ * OLLIR has no phi instruction, so the phis are kept here, at the CFG node they are placed before. Passes that use the
+ * SSA may replace operands and decide what to remove, but should only remove instructions after
+ * {@link #destroy(AnalysisCache)}, which needs the CFG the phis were built for.
+ */
+public class SsaForm {
+
+    private static final String VERSION_SEPARATOR = "#";
+
+    /**
+     * target = phi(operand from each predecessor), at the start of a CFG node.
+     */
+    public static class Phi {
+        private final String variable;
+        private final Node node;
+        private String target;
+        private final Map<Node, String> operands = new LinkedHashMap<>();
+
+        private Phi(String variable, String target, Node node) {
+            this.variable = variable;
+            this.target = target;
+            this.node = node;
+        }
+
+        public String getVariable() {
+            return variable;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        /**
+         * @return the version coming from each predecessor of the node
+         */
+        public Map<Node, String> getOperands() {
+            return operands;
+        }
+    }
+
+    private final Method method;
+    private final Map<String, Type> types = new LinkedHashMap<>();
+    private final Map<String, Descriptor> originalDescriptors = new HashMap<>();
+    private final Map<Node, List<Phi>> phis = new HashMap<>();
+    private final Map<String, String> originals = new HashMap<>();
+    private final Map<String, Instruction> definitions = new HashMap<>();
+    private final Map<String, Phi> phiDefinitions = new HashMap<>();
+    private final Map<String, List<OperandSlot>> useSlots = new HashMap<>();
+    private final Map<String, Set<Node>> useNodes = new HashMap<>();
+    private final Map<String, Integer> versionCounters = new HashMap<>();
+
+    private SsaForm(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Puts the method in SSA form. Uses the CFG, dominators and liveness of the cache, and invalidates the liveness,
+     * which is computed for the original names.
+     */
+    public static SsaForm build(Method method, AnalysisCache analyses) {
+        SsaForm ssa = new SsaForm(method);
+        if (ssa.unshareOperands()) analyses.invalidate(EnumSet.of(Analysis.CFG));
+
+        Dominators dominators = analyses.getDominators(method);
+        Liveness liveness = analyses.getLiveness(method);
+
+        ssa.findVariables();
+        ssa.placePhis(dominators, liveness);
+        ssa.rename(dominators);
+
+        analyses.invalidate(EnumSet.of(Analysis.LIVENESS));
+        return ssa;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public Set<String> getVariables() {
+        return types.keySet();
+    }
+
+    public String getOriginal(String version) {
+        return originals.getOrDefault(version, version);
+    }
+
+    public Collection<Phi> getPhis(Node node) {
+        return phis.getOrDefault(node, Collections.emptyList());
+    }
+
+    public Phi getPhi(String version) {
+        return phiDefinitions.get(version);
+    }
+
+    public void removePhi(Phi phi) {
+        phis.get(phi.getNode()).remove(phi);
+        phiDefinitions.remove(phi.getTarget());
+    }
+
+    /**
+     * @return the instruction that writes the version, or null if it is written by a phi or on entry
+     */
+    public Instruction getDefinition(String version) {
+        return definitions.get(version);
+    }
+
+    /**
+     * @return the places in instructions where the version is read (reads by phis are not included)
+     */
+    public List<OperandSlot> getUseSlots(String version) {
+        return useSlots.getOrDefault(version, Collections.emptyList());
+    }
+
+    /**
+     * @return the instructions, and the nodes with phis, that read the version
+     */
+    public Set<Node> getUseNodes(String version) {
+        return useNodes.getOrDefault(version, Collections.emptySet());
+    }
+
+    /**
+     * @return whether the version is still read by an instruction or a phi
+     */
+    public boolean isUsed(String version) {
+        for (OperandSlot slot : getUseSlots(version)) {
+            if (slot.get() instanceof Operand operand && operand.getName().equals(version)) return true;
+        }
+        for (Node node : getUseNodes(version)) {
+            for (Phi phi : getPhis(node)) {
+                if (phi.getOperands().containsValue(version)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the method out of SSA form. When the versions of a variable never hold different values at the same time,
+     * which is the case unless a pass moved writes around, the phis are dropped and every version gets the original
+     * name back (coalescing all the copies). Otherwise the versions become separate variables and each phi becomes
+     * copies at the end of its predecessors, splitting the branch edges that need it.
+     */
+    public void destroy(AnalysisCache analyses) {
+        Set<String> interfering = findInterferingVariables();
+
+        if (!interfering.isEmpty()) {
+            for (Map.Entry<Node, List<Phi>> nodePhis : phis.entrySet()) {
+                List<Phi> copied = nodePhis.getValue().stream()
+                        .filter(phi -> interfering.contains(phi.getVariable()) && isUsed(phi.getTarget()))
+                        .toList();
+                if (!copied.isEmpty()) insertCopies(nodePhis.getKey(), copied);
+            }
+        }
+
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+        int nextRegister = varTable.values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(0) + 1;
+
+        for (Map.Entry<String, String> version : originals.entrySet()) {
+            String variable = version.getValue();
+            if (!interfering.contains(variable)) {
+                varTable.remove(version.getKey());
+            } else {
+                varTable.get(version.getKey()).setVirtualReg(nextRegister++);
+            }
+        }
+
+        for (Instruction instruction : method.getInstructions()) {
+            for (OperandSlot slot : OperandSlot.getUseSlots(instruction)) {
+                restoreName(slot.get(), interfering);
+            }
+            if (instruction instanceof AssignInstruction assign) {
+                restoreName(assign.getDest(), interfering);
+            }
+        }
+
+        phis.clear();
+        analyses.invalidate(EnumSet.allOf(Analysis.class));
+    }
+
+    private void restoreName(Element element, Set<String> interfering) {
+        if (!(element instanceof Operand operand)) return;
+
+        String variable = originals.get(operand.getName());
+        if (variable != null && !interfering.contains(variable)) operand.setName(variable);
+    }
+
+    private void findVariables() {
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+
+        for (Instruction instruction : method.getInstructions()) {
+            List<String> variables = new ArrayList<>(OllirVariables.getUsed(method, instruction));
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (defined != null) variables.add(defined);
+
+            for (String variable : variables) {
+                Descriptor descriptor = varTable.get(variable);
+                types.putIfAbsent(variable, descriptor.getVarType());
+                originalDescriptors.putIfAbsent(variable, descriptor);
+            }
+        }
+    }
+
+    /**
+     * Renaming changes the names of the operands in place, which needs every operand to be used by one instruction
+     * only.
+     *
+     * @return whether instructions had to be replaced, which invalidates the CFG
+     */
+    private boolean unshareOperands() {
+        boolean replaced = false;
+        Set<Element> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Instruction> instructions = method.getInstructions();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+
+            for (OperandSlot slot : OperandSlot.getUseSlots(instruction)) {
+                if (!seen.add(slot.get()) && slot.canSet() && slot.get() instanceof Operand operand) {
+                    slot.set(copy(operand));
+                }
+            }
+
+            // Array stores read the array, their dest is one of the slots
+            if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)
+                    && !seen.add(assign.getDest())) {
+                Instructions.replace(method, i, new AssignInstruction(copy((Operand) assign.getDest()),
+                        assign.getTypeOfAssign(), assign.getRhs()));
+                replaced = true;
+            }
+        }
+
+        return replaced;
+    }
+
+    private static Operand copy(Operand operand) {
+        if (operand instanceof ArrayOperand arrayOperand) {
+            return new ArrayOperand(arrayOperand.getName(), arrayOperand.getType(),
+                    new ArrayList<>(arrayOperand.getIndexOperands()));
+        }
+        return new Operand(operand.getName(), operand.getType());
+    }
+
+    private void placePhis(Dominators dominators, Liveness liveness) {
+        Map<String, List<Node>> definitionSites = new HashMap<>();
+        for (String variable : types.keySet()) {
+            definitionSites.put(variable, new ArrayList<>(List.of(method.getBeginNode())));
+        }
+        for (Instruction instruction : method.getInstructions()) {
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (defined != null) definitionSites.get(defined).add(instruction);
+        }
+
+        for (Map.Entry<String, List<Node>> variableSites : definitionSites.entrySet()) {
+            String variable = variableSites.getKey();
+            Set<Node> hasPhi = Collections.newSetFromMap(new IdentityHashMap<>());
+            Set<Node> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+            Deque<Node> worklist = new ArrayDeque<>(variableSites.getValue());
+            queued.addAll(variableSites.getValue());
+
+            while (!worklist.isEmpty()) {
+                Node site = worklist.poll();
+                for (Node frontier : dominators.getDominanceFrontier(site)) {
+                    if (hasPhi.contains(frontier) || !(frontier instanceof Instruction instruction)) continue;
+                    if (!liveness.isLiveIn(instruction, variable)) continue;
+
+                    hasPhi.add(frontier);
+                    phis.computeIfAbsent(frontier, node -> new ArrayList<>()).add(new Phi(variable, null, frontier));
+                    if (queued.add(frontier)) worklist.add(frontier);
+                }
+            }
+        }
+    }
+
+    private void rename(Dominators dominators) {
+        Map<String, Deque<String>> stacks = new HashMap<>();
+        for (String variable : types.keySet()) {
+            stacks.put(variable, new ArrayDeque<>(List.of(variable)));
+        }
+
+        // Iterative walk of the dominator tree, methods can be too long for a recursive one
+        Deque<Node> nodes = new ArrayDeque<>(List.of(method.getBeginNode()));
+        Deque<List<String>> pushed = new ArrayDeque<>();
+        Deque<Boolean> entering = new ArrayDeque<>(List.of(true));
+
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            if (!entering.pop()) {
+                for (String variable : pushed.pop()) stacks.get(variable).pop();
+                continue;
+            }
+
+            List<String> defined = new ArrayList<>();
+
+            for (Phi phi : phis.getOrDefault(node, Collections.emptyList())) {
+                phi.target = newVersion(phi.getVariable());
+                phiDefinitions.put(phi.getTarget(), phi);
+                stacks.get(phi.getVariable()).push(phi.getTarget());
+                defined.add(phi.getVariable());
+            }
+
+            if (node instanceof Instruction instruction) {
+                for (OperandSlot slot : OperandSlot.getUseSlots(instruction)) {
+                    if (!(slot.get() instanceof Operand operand) || !types.containsKey(operand.getName())) continue;
+                    if (!OllirVariables.isVariable(method, operand)) continue;
+
+                    String version = stacks.get(operand.getName()).peek();
+                    operand.setName(version);
+                    useSlots.computeIfAbsent(version, name -> new ArrayList<>()).add(slot);
+                    useNodes.computeIfAbsent(version, name -> newNodeSet()).add(node);
+                }
+
+                String variable = OllirVariables.getDefined(method, instruction);
+                if (variable != null && types.containsKey(variable)) {
+                    String version = newVersion(variable);
+                    ((Operand) ((AssignInstruction) instruction).getDest()).setName(version);
+                    definitions.put(version, instruction);
+                    stacks.get(variable).push(version);
+                    defined.add(variable);
+                }
+            }
+
+            for (Node successor : node.getSuccessors()) {
+                for (Phi phi : phis.getOrDefault(successor, Collections.emptyList())) {
+                    String version = stacks.get(phi.getVariable()).peek();
+                    phi.getOperands().put(node, version);
+                    useNodes.computeIfAbsent(version, name -> newNodeSet()).add(successor);
+                }
+            }
+
+            nodes.push(node);
+            entering.push(false);
+            pushed.push(defined);
+
+            List<Node> children = dominators.getChildren(node);
+            for (int i = children.size() - 1; i >= 0; i--) {
+                nodes.push(children.get(i));
+                entering.push(true);
+            }
+        }
+    }
+
+    private String newVersion(String variable) {
+        int number = versionCounters.merge(variable, 1, Integer::sum);
+        String version = variable + VERSION_SEPARATOR + number;
+
+        // Versions share the register of the variable while in SSA, destroy() gives them their own if needed
+        Descriptor descriptor = originalDescriptors.get(variable);
+        method.getVarTable().put(version, new Descriptor(VarScope.LOCAL, descriptor.getVirtualReg(), types.get(variable)));
+        originals.put(version, variable);
+        return version;
+    }
+
+    private static Set<Node> newNodeSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * @return the variables with versions that are live at the same time, which can't all go back to one name
+     */
+    private Set<String> findInterferingVariables() {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (String variable : types.keySet()) indexOf(variable, indexes, names);
+        for (String version : originals.keySet()) indexOf(version, indexes, names);
+
+        Map<Node, BitSet> uses = new IdentityHashMap<>();
+        Map<Node, Integer> defs = new IdentityHashMap<>();
+        Map<Node, BitSet> phiDefs = new IdentityHashMap<>();
+        for (Instruction instruction : instructions) {
+            BitSet use = new BitSet();
+            for (String name : OllirVariables.getUsed(method, instruction)) use.set(indexOf(name, indexes, names));
+            uses.put(instruction, use);
+
+            String defined = OllirVariables.getDefined(method, instruction);
+            if (defined != null) defs.put(instruction, indexOf(defined, indexes, names));
+
+            BitSet targets = new BitSet();
+            for (Phi phi : getPhis(instruction)) targets.set(indexes.get(phi.getTarget()));
+            phiDefs.put(instruction, targets);
+        }
+
+        // Live after the phis of each node, and at the end of each node
+        Map<Node, BitSet> liveAfterPhis = new IdentityHashMap<>();
+        Map<Node, BitSet> liveOut = new IdentityHashMap<>();
+        List<Node> order = new ArrayList<>(instructions);
+        Collections.reverse(order);
+        order.add(method.getBeginNode());
+        for (Node node : order) {
+            liveAfterPhis.put(node, new BitSet());
+            liveOut.put(node, new BitSet());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Node node : order) {
+                BitSet out = new BitSet();
+                for (Node successor : node.getSuccessors()) {
+                    if (!(successor instanceof Instruction)) continue;
+
+                    BitSet successorLive = (BitSet) liveAfterPhis.get(successor).clone();
+                    successorLive.andNot(phiDefs.get(successor));
+                    out.or(successorLive);
+                    for (Phi phi : getPhis(successor)) {
+                        String operand = phi.getOperands().get(node);
+                        if (operand != null) out.set(indexes.get(operand));
+                    }
+                }
+
+                BitSet after = (BitSet) out.clone();
+                if (node instanceof Instruction) {
+                    Integer def = defs.get(node);
+                    if (def != null) after.clear(def);
+                    after.or(uses.get(node));
+                }
+
+                if (!out.equals(liveOut.get(node)) || !after.equals(liveAfterPhis.get(node))) {
+                    liveOut.put(node, out);
+                    liveAfterPhis.put(node, after);
+                    changed = true;
+                }
+            }
+        }
+
+        Set<String> interfering = new HashSet<>();
+        for (Node node : order) {
+            if (node instanceof Instruction) {
+                Integer def = defs.get(node);
+                if (def != null) checkInterference(names.get(def), liveOut.get(node), Set.of(names.get(def)), names, interfering);
+
+                Set<String> targets = new HashSet<>();
+                for (Phi phi : getPhis(node)) targets.add(phi.getTarget());
+                for (String target : targets) {
+                    checkInterference(target, liveAfterPhis.get(node), targets, names, interfering);
+                }
+            } else {
+                // Parameters and uninitialized locals on entry
+                for (String variable : types.keySet()) {
+                    checkInterference(variable, liveOut.get(node), Set.of(variable), names, interfering);
+                }
+            }
+        }
+
+        return interfering;
+    }
+
+    private void checkInterference(String written, BitSet live, Set<String> sameWrite, List<String> names,
+                                   Set<String> interfering) {
+        String variable = getOriginal(written);
+        for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+            String name = names.get(i);
+            if (!sameWrite.contains(name) && getOriginal(name).equals(variable)) interfering.add(variable);
+        }
+    }
+
+    private static int indexOf(String name, Map<String, Integer> indexes, List<String> names) {
+        return indexes.computeIfAbsent(name, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * Replaces the phis of a node by copies of the right operands on each incoming edge. Each phi is for a different
+     * variable and a version is only ever read as its own variable, so no copy can overwrite what another one reads.
+     */
+    private void insertCopies(Node node, List<Phi> nodePhis) {
+        Set<Node> predecessors = Collections.newSetFromMap(new IdentityHashMap<>());
+        predecessors.addAll(node.getPredecessors());
+
+        for (Node predecessor : predecessors) {
+            List<String[]> copies = new ArrayList<>();
+            for (Phi phi : nodePhis) {
+                String source = phi.getOperands().get(predecessor);
+                if (source != null) copies.add(new String[]{phi.getTarget(), source});
+            }
+            if (!copies.isEmpty()) insertOnEdge(predecessor, node, copies);
+        }
+    }
+
+    private List<Instruction> copyInstructions(List<String[]> copies) {
+        List<Instruction> instructions = new ArrayList<>();
+        for (String[] copy : copies) {
+            Type type = types.get(getOriginal(copy[0]));
+            instructions.add(copyInstruction(copy[0], copy[1], type));
+        }
+        return instructions;
+    }
+
+    private static Instruction copyInstruction(String target, String source, Type type) {
+        return new AssignInstruction(new Operand(target, type), type, new SingleOpInstruction(new Operand(source, type)));
+    }
+
+    private void insertOnEdge(Node predecessor, Node node, List<String[]> copies) {
+        List<Instruction> instructions = method.getInstructions();
+
+        if (!(predecessor instanceof Instruction instruction)) {
+            // From the begin node, the node is the first instruction
+            instructions.addAll(0, copyInstructions(copies));
+            return;
+        }
+
+        int index = instructions.indexOf(instruction);
+        boolean fallsThrough = index + 1 < instructions.size() && instructions.get(index + 1) == node;
+
+        switch (instruction.getInstType()) {
+            case GOTO -> Instructions.insertBefore(method, index, copyInstructions(copies));
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                if (method.getLabels().get(branch.getLabel()) == node) {
+                    // The taken edge gets a block of its own at the end of the method
+                    List<Instruction> block = copyInstructions(copies);
+                    String label = "ssa_" + branch.getLabel() + "_" + instructions.size();
+                    instructions.addAll(block);
+                    instructions.add(new GotoInstruction(branch.getLabel()));
+                    method.addLabel(label, block.get(0));
+                    branch.setLabel(label);
+                }
+                if (fallsThrough) instructions.addAll(index + 1, copyInstructions(copies));
+            }
+            default -> instructions.addAll(index + 1, copyInstructions(copies));
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Induction variable strength reduction. In each loop, a product i * a of a basic induction variable i, one only
+ * changed by adding constants to it, and a loop invariant a (optionally followed by adding an invariant b, as in the
+ * index of a[i * k + 1]) is replaced by a new variable r. r is computed once before the loop and then stepped right
+ * after every change of i, so that r = i * a + b holds everywhere in the loop.
+ * <p>
+ * When a and b are literals and the loop runs while i < n for a literal n, the test is rewritten to r < n * a + b, as
+ * long as no value can overflow. Dead store elimination then removes i if nothing else reads it.
+ * <p>
+ * The code must fall through into the header of the loop from outside it, which is how the builder lays out loops.
+ */
+public class StrengthReduction implements OptimizationPass {
+
+    private static final String VARIABLE_SUFFIX = "$iv";
+    private static final Type INT = new Type(ElementType.INT32);
+
+    /**
+     * A definition of a basic induction variable: the instruction at the index adds step to it.
+     */
+    record Step(int index, int step) {
+    }
+
+    /**
+     * j := i * factor at index, or y := (i * factor) +/- offset when the product feeds the next instruction.
+     */
+    private record Candidate(int index, String variable, Element factor, String dest, Element offset,
+                             OperationType offsetOperation) {
+        int replacedIndex() {
+            return offset == null ? index : index + 1;
+        }
+    }
+
+    private record Edit(int index, boolean insertion, List<Instruction> instructions) {
+    }
+
+    @Override
+    public String getName() {
+        return "strength-reduction";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public Set<Analysis> getRequiredAnalyses() {
+        return EnumSet.of(Analysis.CFG, Analysis.DOMINATORS, Analysis.LOOPS);
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            // Each reduction moves instructions around, so loops are found again after each one
+            while (reduceOnce(method, analyses)) {
+                changed = true;
+                analyses.invalidate(getInvalidatedAnalyses());
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean reduceOnce(Method method, AnalysisCache analyses) {
+        if (method.getInstructions().isEmpty()) return false;
+
+        Loops loops = analyses.getLoops(method);
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) indexes.put(instructions.get(i), i);
+
+        for (Loops.Loop loop : loops.getLoops()) {
+            int header = indexes.get((Instruction) loop.getHeader());
+            if (!Loops.hasPreheader(method, loop)) continue;
+
+            List<Integer> body = new ArrayList<>();
+            for (Node node : loop.getBody()) body.add(indexes.get((Instruction) node));
+            Collections.sort(body);
+
+            Map<String, List<Integer>> definitions = new HashMap<>();
+            for (int index : body) {
+                String variable = OllirVariables.getDefined(method, instructions.get(index));
+                if (variable != null) definitions.computeIfAbsent(variable, name -> new ArrayList<>()).add(index);
+            }
+
+            Map<String, List<Step>> inductionVariables = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : definitions.entrySet()) {
+                List<Step> steps = getSteps(method, entry.getKey(), entry.getValue(), definitions);
+                if (steps != null) inductionVariables.put(entry.getKey(), steps);
+            }
+            if (inductionVariables.isEmpty()) continue;
+
+            for (int index : body) {
+                Candidate candidate = getCandidate(method, index, inductionVariables, definitions);
+                if (candidate != null) {
+                    reduce(method, analyses, loop, header, candidate, inductionVariables.get(candidate.variable()));
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the steps of the variable if every definition of it in the loop adds a literal to it, either directly
+     * (i := i + 1) or through a temporary (t := i + 1; i := t), as the builder does; null otherwise. The indexes are
+     * the definitions of the variable in the loop, definitions those of every variable.
+     */
+    static List<Step> getSteps(Method method, String variable, List<Integer> indexes,
+                               Map<String, List<Integer>> definitions) {
+        List<Instruction> instructions = method.getInstructions();
+        AssignInstruction first = (AssignInstruction) instructions.get(indexes.get(0));
+        if (first.getDest().getType().getTypeOfElement() != ElementType.INT32) return null;
+
+        List<Step> steps = new ArrayList<>();
+        for (int index : indexes) {
+            Instruction rhs = ((AssignInstruction) instructions.get(index)).getRhs();
+            Integer step = getIncrement(rhs, variable);
+
+            if (step == null && rhs instanceof SingleOpInstruction copy && index > 0
+                    && !Instructions.hasLabels(method, instructions.get(index))
+                    && isVariableNamed(copy.getSingleOperand(), null)) {
+                String temporary = ((Operand) copy.getSingleOperand()).getName();
+                if (definitions.getOrDefault(temporary, List.of()).equals(List.of(index - 1))) {
+                    step = getIncrement(((AssignInstruction) instructions.get(index - 1)).getRhs(), variable);
+                }
+            }
+
+            if (step == null) return null;
+            steps.add(new Step(index, step));
+        }
+        return steps;
+    }
+
+    /**
+     * @return c for variable + c, c + variable and -c for variable - c, with c a literal; null for anything else
+     */
+    private static Integer getIncrement(Instruction rhs, String variable) {
+        if (!(rhs instanceof BinaryOpInstruction binary)) return null;
+
+        Element left = binary.getLeftOperand();
+        Element right = binary.getRightOperand();
+        return switch (binary.getOperation().getOpType()) {
+            case ADD -> {
+                if (isVariableNamed(left, variable)) yield ConstantFolding.literalValue(right);
+                if (isVariableNamed(right, variable)) yield ConstantFolding.literalValue(left);
+                yield null;
+            }
+            case SUB -> {
+                Integer value = isVariableNamed(left, variable) ? ConstantFolding.literalValue(right) : null;
+                yield value != null ? -value : null;
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * @param name the name it must have, null for any
+     */
+    private static boolean isVariableNamed(Element element, String name) {
+        return !element.isLiteral() && !(element instanceof ArrayOperand) && element instanceof Operand operand
+                && element.getType().getTypeOfElement() == ElementType.INT32
+                && (name == null || operand.getName().equals(name));
+    }
+
+    private static Candidate getCandidate(Method method, int index, Map<String, List<Step>> inductionVariables,
+                                          Map<String, List<Integer>> definitions) {
+        List<Instruction> instructions = method.getInstructions();
+        String dest = OllirVariables.getDefined(method, instructions.get(index));
+        if (dest == null || !(((AssignInstruction) instructions.get(index)).getRhs() instanceof BinaryOpInstruction binary)
+                || binary.getOperation().getOpType() != OperationType.MUL) {
+            return null;
+        }
+
+        String variable = null;
+        Element factor = null;
+        for (boolean swapped : new boolean[]{false, true}) {
+            Element first = swapped ? binary.getRightOperand() : binary.getLeftOperand();
+            Element second = swapped ? binary.getLeftOperand() : binary.getRightOperand();
+            if (isVariableNamed(first, null) && OllirVariables.isVariable(method, first)
+                    && inductionVariables.containsKey(((Operand) first).getName())
+                    && isInvariant(method, second, definitions)) {
+                variable = ((Operand) first).getName();
+                factor = second;
+                break;
+            }
+        }
+        if (variable == null) return null;
+
+        // Fold an invariant added to the product into the new variable too, when nothing else reads the product
+        if (index + 1 < instructions.size() && !Instructions.hasLabels(method, instructions.get(index + 1))
+                && countUses(method, dest) == 1) {
+            Instruction next = instructions.get(index + 1);
+            String nextDest = OllirVariables.getDefined(method, next);
+            if (nextDest != null && ((AssignInstruction) next).getRhs() instanceof BinaryOpInstruction sum) {
+                OperationType operation = sum.getOperation().getOpType();
+                Element left = sum.getLeftOperand();
+                Element right = sum.getRightOperand();
+
+                if ((operation == OperationType.ADD || operation == OperationType.SUB) && isVariableNamed(left, dest)
+                        && isInvariant(method, right, definitions)) {
+                    return new Candidate(index, variable, factor, nextDest, right, operation);
+                }
+                if (operation == OperationType.ADD && isVariableNamed(right, dest)
+                        && isInvariant(method, left, definitions)) {
+                    return new Candidate(index, variable, factor, nextDest, left, operation);
+                }
+            }
+        }
+
+        return new Candidate(index, variable, factor, dest, null, null);
+    }
+
+    /**
+     * @return whether the element is an int literal or an int variable that the loop never assigns
+     */
+    private static boolean isInvariant(Method method, Element element, Map<String, List<Integer>> definitions) {
+        if (element.isLiteral()) return ConstantFolding.literalValue(element) != null
+                && element.getType().getTypeOfElement() == ElementType.INT32;
+        return isVariableNamed(element, null) && OllirVariables.isVariable(method, element)
+                && !definitions.containsKey(((Operand) element).getName());
+    }
+
+    private static int countUses(Method method, String variable) {
+        int uses = 0;
+        for (Instruction instruction : method.getInstructions()) {
+            for (String used : OllirVariables.getUsed(method, instruction)) {
+                if (used.equals(variable)) uses++;
+            }
+        }
+        return uses;
+    }
+
+    private static void reduce(Method method, AnalysisCache analyses, Loops.Loop loop, int header, Candidate candidate,
+                               List<Step> steps) {
+        Operand reduced = Instructions.newVariable(method, candidate.dest() + VARIABLE_SUFFIX, INT);
+        List<Instruction> preheader = new ArrayList<>();
+        List<Edit> edits = new ArrayList<>();
+
+        Integer factor = ConstantFolding.literalValue(candidate.factor());
+        Integer initial = getInitialValue(method, analyses, loop, candidate.variable());
+
+        // Starting from the initial value of i rather than i itself lets i die when the test is rewritten too
+        Integer start = initial == null ? null : initial == 0 ? Integer.valueOf(0) : factor != null ? initial * factor : null;
+        Integer offset = candidate.offset() != null ? ConstantFolding.literalValue(candidate.offset()) : Integer.valueOf(0);
+        if (start != null && offset != null) {
+            int value = candidate.offsetOperation() == OperationType.SUB ? start - offset : start + offset;
+            preheader.add(assign(reduced, new SingleOpInstruction(new LiteralElement(String.valueOf(value), INT))));
+        } else {
+            Element first = initial != null ? new LiteralElement(String.valueOf(initial), INT) : variable(candidate.variable());
+            preheader.add(assign(reduced, new BinaryOpInstruction(first, new Operation(OperationType.MUL, INT),
+                    copy(candidate.factor()))));
+            if (candidate.offset() != null) {
+                preheader.add(assign(reduced, new BinaryOpInstruction(copy(reduced),
+                        new Operation(candidate.offsetOperation(), INT), copy(candidate.offset()))));
+            }
+        }
+
+        Map<Integer, Operand> stepVariables = new HashMap<>();
+        for (Step step : steps) {
+            Instruction update;
+            if (factor != null) {
+                if (factor * step.step() == 0) continue;
+                update = add(reduced, new LiteralElement(String.valueOf(factor * step.step()), INT));
+            } else if (step.step() == 1 || step.step() == -1) {
+                update = assign(reduced, new BinaryOpInstruction(copy(reduced),
+                        new Operation(step.step() == 1 ? OperationType.ADD : OperationType.SUB, INT),
+                        copy(candidate.factor())));
+            } else {
+                // The factor is only known at run time, its multiples are computed before the loop
+                Operand multiple = stepVariables.computeIfAbsent(step.step(), value -> {
+                    Operand temporary = Instructions.newVariable(method, reduced.getName() + "$step", INT);
+                    preheader.add(assign(temporary, new BinaryOpInstruction(copy(candidate.factor()),
+                            new Operation(OperationType.MUL, INT), new LiteralElement(String.valueOf(value), INT))));
+                    return temporary;
+                });
+                update = add(reduced, copy(multiple));
+            }
+            edits.add(new Edit(step.index() + 1, true, List.of(update)));
+        }
+
+        edits.add(new Edit(header, true, preheader));
+        edits.add(new Edit(candidate.replacedIndex(), false,
+                List.of(assign(variable(candidate.dest()), new SingleOpInstruction(copy(reduced))))));
+        replaceTest(method, analyses, loop, header, candidate, steps, reduced, initial);
+
+        // From the end, so the indexes stay valid. At the same index the replacement goes first, then the
+        // insertion before it: the update of r must come before an instruction that reads it
+        edits.sort(Comparator.comparingInt(Edit::index).reversed().thenComparing(Edit::insertion));
+        for (Edit edit : edits) {
+            if (edit.insertion()) {
+                Instructions.insertUnlabeled(method, edit.index(), edit.instructions());
+            } else {
+                Instructions.replace(method, edit.index(), edit.instructions().get(0));
+            }
+        }
+    }
+
+    /**
+     * Rewrites i < n (or i <= n, n > i, n >= i) in the header to r < n * a + b, when the loop only continues while the
+     * test holds: the header computes the test, then branches out of the loop on its negation. The values i takes at
+     * the test must then be between its initial value and n plus what one iteration adds, and none may overflow.
+     */
+    private static void replaceTest(Method method, AnalysisCache analyses, Loops.Loop loop, int header,
+                                    Candidate candidate, List<Step> steps, Operand reduced, Integer initial) {
+        Integer factor = ConstantFolding.literalValue(candidate.factor());
+        Integer offset = candidate.offset() != null ? ConstantFolding.literalValue(candidate.offset()) : Integer.valueOf(0);
+        if (factor == null || factor <= 0 || offset == null) return;
+        if (candidate.offsetOperation() == OperationType.SUB) offset = -offset;
+
+        List<Instruction> instructions = method.getInstructions();
+        if (!(instructions.get(header) instanceof AssignInstruction test)
+                || !(test.getRhs() instanceof BinaryOpInstruction comparison) || !isNegatedExit(method, loop, header)) {
+            return;
+        }
+
+        OperationType operation = comparison.getOperation().getOpType();
+        boolean left = isVariableNamed(comparison.getLeftOperand(), candidate.variable());
+        Integer bound = ConstantFolding.literalValue(left ? comparison.getRightOperand() : comparison.getLeftOperand());
+        if (bound == null || !(left ? operation == OperationType.LTH || operation == OperationType.LTE
+                : (operation == OperationType.GTH || operation == OperationType.GTE)
+                && isVariableNamed(comparison.getRightOperand(), candidate.variable()))) {
+            return;
+        }
+
+        if (initial == null) return;
+
+        long increment = 0;
+        for (Step step : steps) {
+            if (step.step() <= 0 || analyses.getLoops(method).getLoop(instructions.get(step.index())) != loop) return;
+            increment += step.step();
+        }
+
+        long highest = Math.max(initial, (long) bound + increment);
+        for (long value : new long[]{initial, highest, bound}) {
+            long reducedValue = value * factor + offset;
+            if (value > Integer.MAX_VALUE || reducedValue < Integer.MIN_VALUE || reducedValue > Integer.MAX_VALUE) {
+                return;
+            }
+        }
+
+        Element newBound = new LiteralElement(String.valueOf(bound * factor + offset), INT);
+        BinaryOpInstruction replacement = left
+                ? new BinaryOpInstruction(copy(reduced), comparison.getOperation(), newBound)
+                : new BinaryOpInstruction(newBound, comparison.getOperation(), copy(reduced));
+        Instructions.replace(method, header, new AssignInstruction(test.getDest(), test.getTypeOfAssign(), replacement));
+    }
+
+    /**
+     * @return whether the header is followed by t := !test and a branch on t out of the loop, or a branch on !test
+     */
+    private static boolean isNegatedExit(Method method, Loops.Loop loop, int header) {
+        List<Instruction> instructions = method.getInstructions();
+        String test = OllirVariables.getDefined(method, instructions.get(header));
+        int branchIndex = header + 1;
+        String negated = null;
+
+        if (branchIndex < instructions.size() && instructions.get(branchIndex) instanceof AssignInstruction not
+                && not.getRhs() instanceof UnaryOpInstruction unary && unary.getOperation().getOpType() == OperationType.NOTB
+                && isBooleanNamed(unary.getOperand(), test)) {
+            negated = OllirVariables.getDefined(method, not);
+            branchIndex++;
+        }
+        if (branchIndex >= instructions.size() || !(instructions.get(branchIndex) instanceof CondBranchInstruction branch)
+                || loop.contains(method.getLabels().get(branch.getLabel()))) {
+            return false;
+        }
+
+        Instruction condition = branch.getCondition();
+        if (negated != null) {
+            return condition instanceof SingleOpInstruction single && isBooleanNamed(single.getSingleOperand(), negated);
+        }
+        return condition instanceof UnaryOpInstruction unary && unary.getOperation().getOpType() == OperationType.NOTB
+                && isBooleanNamed(unary.getOperand(), test);
+    }
+
+    private static boolean isBooleanNamed(Element element, String name) {
+        return name != null && !element.isLiteral() && element instanceof Operand operand
+                && !(element instanceof ArrayOperand) && operand.getName().equals(name);
+    }
+
+    /**
+     * @return the literal assigned to the variable by its only definition outside the loop, if that definition
+     * runs before every entry into the loop
+     */
+    private static Integer getInitialValue(Method method, AnalysisCache analyses, Loops.Loop loop, String variable) {
+        Instruction initialization = null;
+        for (Instruction instruction : method.getInstructions()) {
+            if (!variable.equals(OllirVariables.getDefined(method, instruction)) || loop.contains(instruction)) continue;
+            if (initialization != null) return null;
+            initialization = instruction;
+        }
+
+        if (initialization == null || !analyses.getDominators(method).dominates(initialization, loop.getHeader())) {
+            return null;
+        }
+
+        Instruction rhs = ((AssignInstruction) initialization).getRhs();
+        return rhs instanceof SingleOpInstruction single ? ConstantFolding.literalValue(single.getSingleOperand()) : null;
+    }
+
+    private static Operand variable(String name) {
+        return new Operand(name, INT);
+    }
+
+    private static Element copy(Element element) {
+        if (element.isLiteral()) return new LiteralElement(((LiteralElement) element).getLiteral(), INT);
+        return variable(((Operand) element).getName());
+    }
+
+    private static AssignInstruction assign(Operand dest, Instruction rhs) {
+        return new AssignInstruction(variable(dest.getName()), INT, rhs);
+    }
+
+    private static AssignInstruction add(Operand dest, Element value) {
+        return assign(dest, new BinaryOpInstruction(copy(dest), new Operation(OperationType.ADD, INT), value));
+    }
+}
@@ -0,0 +1,187 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.*;
+
+/**
+ * Turns calls of a method to itself whose result is returned right away into a jump back to the start of the method,
+ * after assigning the arguments to the parameters. The recursion then runs in constant stack space.
+ * <p>
+ * Methods only return at their end in jmm, so the result of a tail call usually reaches the return through copies and
+ * gotos (e.g. r = this.f(n - 1) in an else, then return r). Those are followed to find the return.
+ */
+public class TailRecursion implements OptimizationPass {
+
+    private static final String START_LABEL = "TAILRECURSION";
+    private static final String TEMPORARY_SEPARATOR = "$tail";
+
+    @Override
+    public String getName() {
+        return "tail-recursion";
+    }
+
+    @Override
+    public int getLevel() {
+        return 2;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            if (method.isConstructMethod()) continue;
+
+            List<Instruction> instructions = method.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                if (isTailCall(method, i)) {
+                    eliminate(method, i);
+                    changed = true;
+                }
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean isTailCall(Method method, int index) {
+        Instruction instruction = method.getInstructions().get(index);
+        String result = null;
+        CallInstruction call;
+
+        if (instruction instanceof CallInstruction callInstruction) {
+            call = callInstruction;
+        } else if (instruction instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction callInstruction
+                && !(assign.getDest() instanceof ArrayOperand)) {
+            call = callInstruction;
+            result = ((Operand) assign.getDest()).getName();
+        } else {
+            return false;
+        }
+
+        return isSelfCall(method, call) && isReturned(method, index + 1, result);
+    }
+
+    private static boolean isSelfCall(Method method, CallInstruction call) {
+        ElementType target = call.getFirstArg().getType().getTypeOfElement();
+        if (method.isStaticMethod()) {
+            if (call.getInvocationType() != CallType.invokestatic || target != ElementType.CLASS) return false;
+
+            // Static calls to imported classes are typed with the class being compiled too, only the name tells them apart
+            String className = ((Operand) call.getFirstArg()).getName();
+            if (!className.equals("this") && !className.equals(method.getOllirClass().getClassName())) return false;
+        } else if (call.getInvocationType() != CallType.invokevirtual || target != ElementType.THIS) {
+            return false;
+        }
+
+        String name = ((LiteralElement) call.getSecondArg()).getLiteral().replace("\"", "");
+        return name.equals(method.getMethodName()) && call.getListOfOperands().size() == method.getParams().size();
+    }
+
+    /**
+     * @param result the variable holding the result of the call, null if it has none
+     * @return whether the code from the index only copies the result around, jumps, and returns it
+     */
+    private static boolean isReturned(Method method, int index, String result) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) indexes.put(instructions.get(i), i);
+
+        Set<String> holders = new HashSet<>();
+        if (result != null) holders.add(result);
+        Set<Integer> visited = new HashSet<>();
+
+        while (index < instructions.size() && visited.add(index)) {
+            Instruction instruction = instructions.get(index);
+
+            switch (instruction.getInstType()) {
+                case GOTO -> {
+                    index = indexes.get(method.getLabels().get(((GotoInstruction) instruction).getLabel()));
+                    continue;
+                }
+                case ASSIGN -> {
+                    AssignInstruction assign = (AssignInstruction) instruction;
+                    if (!(assign.getRhs() instanceof SingleOpInstruction copy) || !isHolder(copy.getSingleOperand(), holders)
+                            || assign.getDest() instanceof ArrayOperand) {
+                        return false;
+                    }
+                    holders.add(((Operand) assign.getDest()).getName());
+                }
+                case RETURN -> {
+                    ReturnInstruction ret = (ReturnInstruction) instruction;
+                    return ret.hasReturnValue() ? isHolder(ret.getOperand(), holders) : result == null;
+                }
+                default -> {
+                    return false;
+                }
+            }
+            index++;
+        }
+
+        return false;
+    }
+
+    private static boolean isHolder(Element element, Set<String> holders) {
+        return !element.isLiteral() && !(element instanceof ArrayOperand) && holders.contains(((Operand) element).getName());
+    }
+
+    private static void eliminate(Method method, int index) {
+        CallInstruction call = (CallInstruction) (method.getInstructions().get(index) instanceof AssignInstruction assign
+                ? assign.getRhs()
+                : method.getInstructions().get(index));
+        List<Element> params = method.getParams();
+        List<Element> arguments = call.getListOfOperands();
+        List<Instruction> replacement = new ArrayList<>();
+        List<Instruction> assignments = new ArrayList<>();
+        Set<String> assigned = new HashSet<>();
+
+        for (int i = 0; i < params.size(); i++) {
+            Operand param = (Operand) params.get(i);
+            Element argument = arguments.get(i);
+            if (argument instanceof Operand operand && !(operand instanceof ArrayOperand)
+                    && operand.getName().equals(param.getName())) {
+                continue;
+            }
+
+            // An argument that reads a parameter assigned before it is saved first, e.g. f(b, a) after a = b
+            Element value = argument;
+            if (readsAny(method, argument, assigned)) {
+                Operand temporary = getTemporary(method, param);
+                replacement.add(new AssignInstruction(temporary, param.getType(), new SingleOpInstruction(argument)));
+                value = new Operand(temporary.getName(), temporary.getType());
+            }
+
+            assignments.add(new AssignInstruction(new Operand(param.getName(), param.getType()), param.getType(),
+                    new SingleOpInstruction(value)));
+            assigned.add(param.getName());
+        }
+
+        replacement.addAll(assignments);
+        replacement.add(new GotoInstruction(getStartLabel(method)));
+
+        Instructions.insertBefore(method, index, replacement);
+        Instructions.remove(method, index + replacement.size());
+    }
+
+    private static boolean readsAny(Method method, Element element, Set<String> variables) {
+        Instruction read = new SingleOpInstruction(element);
+        return OllirVariables.getUsed(method, read).stream().anyMatch(variables::contains);
+    }
+
+    private static Operand getTemporary(Method method, Operand param) {
+        String name = param.getName() + TEMPORARY_SEPARATOR;
+        if (!method.getVarTable().containsKey(name)) {
+            int register = method.getVarTable().values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+            method.getVarTable().put(name, new Descriptor(VarScope.LOCAL, register, param.getType()));
+        }
+        return new Operand(name, param.getType());
+    }
+
+    private static String getStartLabel(Method method) {
+        Instruction first = method.getInstructions().get(0);
+        if (method.getLabels().get(START_LABEL) != first) method.addLabel(START_LABEL, first);
+        return START_LABEL;
+    }
+}
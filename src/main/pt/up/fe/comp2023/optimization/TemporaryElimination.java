@@ -0,0 +1,155 @@
+package pt.up.fe.comp2023.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.utils.OllirVariables;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes the temporaries that OLLIR needs to hold the value of each operation, looking at one pair of instructions at
+ * a time. A variable assigned once and read once, by the next instruction, is replaced by what it was assigned:
+ * <ul>
+ *     <li>t = a + b; x = t becomes x = a + b, which the backend can also emit as an iinc</li>
+ *     <li>t = a &lt; b; if (t) goto L becomes if (a &lt; b) goto L, a compare and branch</li>
+ *     <li>t = a; f(t) becomes f(a), copy propagation of a variable or literal, also of the array of t[i]</li>
+ * </ul>
+ * Variables assigned values without side effects that are never read are then removed, and the var tables of the
+ * methods that changed are rebuilt, so the registers of the removed temporaries are freed.
+ */
+public class TemporaryElimination implements OptimizationPass {
+
+    @Override
+    public String getName() {
+        return "temporaries";
+    }
+
+    @Override
+    public int getLevel() {
+        return 1;
+    }
+
+    @Override
+    public boolean run(ClassUnit classUnit, AnalysisCache analyses) {
+        boolean changed = false;
+
+        for (Method method : classUnit.getMethods()) {
+            boolean methodChanged = false;
+            while (forwardTemporaries(method) | removeUnusedTemporaries(method)) {
+                methodChanged = true;
+            }
+
+            if (methodChanged) {
+                method.getVarTable().clear();
+                method.buildVarTable();
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static boolean forwardTemporaries(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Integer> definitions = countDefinitions(method);
+        Map<String, Integer> uses = countUses(method);
+        boolean changed = false;
+
+        for (int i = instructions.size() - 2; i >= 0; i--) {
+            String variable = OllirVariables.getDefined(method, instructions.get(i));
+            if (variable == null || definitions.get(variable) != 1 || uses.getOrDefault(variable, 0) != 1) continue;
+
+            // Jumps to the next instruction would read the value of an earlier run of the definition
+            Instruction next = instructions.get(i + 1);
+            if (Instructions.hasLabels(method, next)) continue;
+
+            Instruction rhs = ((AssignInstruction) instructions.get(i)).getRhs();
+            Instruction forwarded = forward(method, variable, rhs, next);
+            if (forwarded == null) continue;
+
+            Instructions.replace(method, i + 1, forwarded);
+            Instructions.remove(method, i);
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return the instruction that reads the value of the variable with its definition forwarded into it, or null when
+     * it can't be. May change the instruction in place.
+     */
+    private static Instruction forward(Method method, String variable, Instruction rhs, Instruction next) {
+        if (next instanceof AssignInstruction assign && isVariable(assign.getRhs(), variable)) {
+            return new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), rhs);
+        }
+
+        if (next instanceof CondBranchInstruction branch && isVariable(branch.getCondition(), variable)
+                && rhs instanceof OpInstruction operation) {
+            OpCondInstruction forwarded = new OpCondInstruction(operation);
+            forwarded.setLabel(branch.getLabel());
+            return forwarded;
+        }
+
+        if (rhs.getInstType() != InstructionType.NOPER) return null;
+        Element value = ((SingleOpInstruction) rhs).getSingleOperand();
+        if (value instanceof ArrayOperand) return null;
+
+        for (OperandSlot slot : OperandSlot.getUseSlots(next)) {
+            if (slot.canSet() && OllirVariables.isVariable(method, slot.get())
+                    && ((Operand) slot.get()).getName().equals(variable)) {
+                // An access through the variable keeps its indexes, only the array it reads is replaced
+                if (slot.get() instanceof ArrayOperand access) {
+                    if (value.isLiteral()) return null;
+                    slot.set(new ArrayOperand(((Operand) value).getName(), access.getType(), access.getIndexOperands()));
+                } else {
+                    slot.set(value);
+                }
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVariable(Instruction instruction, String variable) {
+        return instruction.getInstType() == InstructionType.NOPER
+                && ((SingleOpInstruction) instruction).getSingleOperand() instanceof Operand operand
+                && !(operand instanceof ArrayOperand) && !operand.isLiteral() && operand.getName().equals(variable);
+    }
+
+    private static boolean removeUnusedTemporaries(Method method) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<String, Integer> uses = countUses(method);
+        boolean removed = false;
+
+        // The last instruction has nowhere to move its labels to, and is a return anyway
+        for (int i = instructions.size() - 2; i >= 0; i--) {
+            String variable = OllirVariables.getDefined(method, instructions.get(i));
+            if (variable == null || uses.containsKey(variable)) continue;
+            if (!DeadStoreElimination.isRemovable(((AssignInstruction) instructions.get(i)).getRhs())) continue;
+
+            Instructions.remove(method, i);
+            removed = true;
+        }
+
+        return removed;
+    }
+
+    private static Map<String, Integer> countDefinitions(Method method) {
+        Map<String, Integer> definitions = new HashMap<>();
+        for (Instruction instruction : method.getInstructions()) {
+            String variable = OllirVariables.getDefined(method, instruction);
+            if (variable != null) definitions.merge(variable, 1, Integer::sum);
+        }
+        return definitions;
+    }
+
+    private static Map<String, Integer> countUses(Method method) {
+        Map<String, Integer> uses = new HashMap<>();
+        for (Instruction instruction : method.getInstructions()) {
+            for (String variable : OllirVariables.getUsed(method, instruction)) uses.merge(variable, 1, Integer::sum);
+        }
+        return uses;
+    }
+}
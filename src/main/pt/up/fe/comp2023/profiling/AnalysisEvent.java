@@ -0,0 +1,29 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a visitor of the semantic analysis over the AST of a class.
+ */
+@Name("pt.up.fe.comp2023.Analysis")
+@Label("Analysis")
+@Category("Java-- Compiler")
+public class AnalysisEvent extends jdk.jfr.Event {
+
+    @Label("Analyser")
+    public String analyser;
+
+    @Label("Class")
+    public String className;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Fields")
+    public int fields;
+
+    @Label("Reports")
+    public int reports;
+}
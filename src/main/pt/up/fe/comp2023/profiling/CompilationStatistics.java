@@ -0,0 +1,33 @@
+package pt.up.fe.comp2023.profiling;
+
+import com.google.gson.GsonBuilder;
+import pt.up.fe.comp2023.optimization.PassStatistics;
+
+import java.util.List;
+
+/**
+ * Everything measured while compiling a file, written by the launcher as JSON with -stats: the cost of each stage
+ * (see {@link StageProfiler}) and of each pass that ran, and the size of the code of each method (see
+ * {@link MethodStatistics}). Times are in nanoseconds.
+ */
+public class CompilationStatistics {
+
+    private final String inputFile;
+    private final int optimizationLevel;
+    private final List<StageStatistics> stages;
+    private final List<PassStatistics> passes;
+    private final List<MethodStatistics> methods;
+
+    public CompilationStatistics(String inputFile, int optimizationLevel, List<StageStatistics> stages,
+                                 List<PassStatistics> passes, List<MethodStatistics> methods) {
+        this.inputFile = inputFile;
+        this.optimizationLevel = optimizationLevel;
+        this.stages = stages;
+        this.passes = passes;
+        this.methods = methods;
+    }
+
+    public String toJson() {
+        return new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create().toJson(this);
+    }
+}
@@ -0,0 +1,45 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the generation of the Jasmin code of a method.
+ */
+@Name("pt.up.fe.comp2023.JasminMethod")
+@Label("Jasmin Method")
+@Category("Java-- Compiler")
+public class JasminMethodEvent extends jdk.jfr.Event {
+
+    @Label("Class")
+    public String className;
+
+    @Label("Method")
+    public String methodName;
+
+    @Label("Backend")
+    @Description("ollir for the Jasmin of a ClassUnit, ast for the Jasmin straight from the AST")
+    public String backend;
+
+    @Label("Instructions")
+    @Description("JVM instructions of the method")
+    public int instructions;
+
+    @Label("Stack")
+    public int stack;
+
+    @Label("Locals")
+    public int locals;
+
+    /**
+     * Fills the sizes from the Jasmin code of the method, see {@link MethodStatistics}.
+     */
+    public void setCode(String jasminCode) {
+        MethodStatistics statistics = MethodStatistics.of(jasminCode, null).get(0);
+        instructions = statistics.getInstructions();
+        stack = statistics.getStack();
+        locals = statistics.getLocals();
+    }
+}
@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023.profiling;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The size of the code generated for a method. The JVM instructions, labels, max stack and locals are read from the
+ * Jasmin code, so they are known for both backends (max stack and locals are 0 when the code has no .limit). The OLLIR
+ * instructions and the temporaries the compiler added to the method (the aux variables of the OLLIR builders and the $
+ * variables of the passes) are only known when the code went through a ClassUnit, and are null otherwise.
+ */
+public class MethodStatistics {
+
+    private final String methodName;
+    private int instructions;
+    private int labels;
+    private int stack;
+    private int locals;
+    private Integer ollirInstructions;
+    private Integer temporaries;
+
+    private MethodStatistics(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * @param classUnit the ClassUnit the Jasmin code was generated from, or null when it came from the AST
+     */
+    public static List<MethodStatistics> of(String jasminCode, ClassUnit classUnit) {
+        List<MethodStatistics> methods = new ArrayList<>();
+        MethodStatistics current = null;
+
+        for (String line : jasminCode.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith(".method")) {
+                String signature = trimmed.substring(trimmed.lastIndexOf(' ') + 1);
+                current = new MethodStatistics(signature.substring(0, signature.indexOf('(')));
+                methods.add(current);
+            } else if (current == null || trimmed.isEmpty()) {
+                continue;
+            } else if (trimmed.startsWith(".end method")) {
+                current = null;
+            } else if (trimmed.startsWith(".limit stack")) {
+                current.stack = Integer.parseInt(trimmed.substring(13).trim());
+            } else if (trimmed.startsWith(".limit locals")) {
+                current.locals = Integer.parseInt(trimmed.substring(14).trim());
+            } else if (trimmed.endsWith(":")) {
+                current.labels++;
+            } else if (!trimmed.startsWith(".")) {
+                current.instructions++;
+            }
+        }
+
+        if (classUnit == null) return methods;
+
+        for (Method method : classUnit.getMethods()) {
+            String name = method.isConstructMethod() ? "<init>" : method.getMethodName();
+            for (MethodStatistics statistics : methods) {
+                if (!statistics.methodName.equals(name)) continue;
+                statistics.ollirInstructions = method.getInstructions().size();
+                statistics.temporaries = (int) method.getVarTable().keySet().stream()
+                        .filter(variable -> variable.startsWith("aux") || variable.contains("$"))
+                        .count();
+            }
+        }
+
+        return methods;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public int getInstructions() {
+        return instructions;
+    }
+
+    public int getLabels() {
+        return labels;
+    }
+
+    public int getStack() {
+        return stack;
+    }
+
+    public int getLocals() {
+        return locals;
+    }
+
+    /**
+     * @return the OLLIR instructions of the method, or null when the code came from the AST
+     */
+    public Integer getOllirInstructions() {
+        return ollirInstructions;
+    }
+
+    /**
+     * @return the temporaries of the method, or null when the code came from the AST
+     */
+    public Integer getTemporaries() {
+        return temporaries;
+    }
+}
@@ -0,0 +1,25 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of the OLLIR generation of a method, as a method of the ClassUnit.
+ */
+@Name("pt.up.fe.comp2023.OllirMethod")
+@Label("OLLIR Method")
+@Category("Java-- Compiler")
+public class OllirMethodEvent extends jdk.jfr.Event {
+
+    @Label("Class")
+    public String className;
+
+    @Label("Method")
+    public String methodName;
+
+    @Label("Instructions")
+    @Description("OLLIR instructions of the method")
+    public int instructions;
+}
@@ -0,0 +1,33 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of {@link pt.up.fe.comp2023.SimpleParser#parse}, from the code to the AST.
+ */
+@Name("pt.up.fe.comp2023.Parse")
+@Label("Parse")
+@Category("Java-- Compiler")
+@Description("Lexing and parsing of a Java-- file and the conversion of its parse tree to the AST")
+public class ParseEvent extends jdk.jfr.Event {
+
+    @Label("Class")
+    @Description("Name of the class, empty when the file has syntax errors")
+    public String className;
+
+    @Label("Characters")
+    public int characters;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Syntax Errors")
+    public int syntaxErrors;
+
+    @Label("LL Fallback")
+    @Description("Whether the code was parsed again with full LL prediction after SLL prediction failed")
+    public boolean llFallback;
+}
@@ -0,0 +1,36 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of an optimization pass over a ClassUnit. The time spent bringing the analyses the pass needs
+ * up to date is not part of it.
+ */
+@Name("pt.up.fe.comp2023.Pass")
+@Label("Optimization Pass")
+@Category("Java-- Compiler")
+public class PassEvent extends jdk.jfr.Event {
+
+    @Label("Pass")
+    public String passName;
+
+    @Label("Class")
+    public String className;
+
+    @Label("Changed")
+    public boolean changed;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Instructions Before")
+    @Description("OLLIR instructions of the class before the pass")
+    public int instructionsBefore;
+
+    @Label("Instructions After")
+    @Description("OLLIR instructions of the class after the pass")
+    public int instructionsAfter;
+}
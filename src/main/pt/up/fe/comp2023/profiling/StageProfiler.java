@@ -0,0 +1,69 @@
+package pt.up.fe.comp2023.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Measures the stages of a compilation as they run, the same way {@link pt.up.fe.comp2023.optimization.PassManager}
+ * measures the passes: wall time, CPU time and bytes allocated by the current thread, from the {@link ThreadMXBean}.
+ */
+public class StageProfiler {
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTime = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+    private final List<StageStatistics> statistics = new ArrayList<>();
+
+    /**
+     * Runs a stage and records what it cost.
+     *
+     * @return the result of the stage
+     */
+    public <T> T run(String stageName, Supplier<T> stage) {
+        long allocationStart = getAllocatedBytes(threads);
+        long cpuStart = cpuTime ? threads.getCurrentThreadCpuTime() : 0;
+        long start = System.nanoTime();
+
+        T result = stage.get();
+
+        long wallNanos = System.nanoTime() - start;
+        long cpuNanos = cpuTime ? threads.getCurrentThreadCpuTime() - cpuStart : -1;
+        long allocatedBytes = allocationStart < 0 ? -1 : getAllocatedBytes(threads) - allocationStart;
+
+        statistics.add(new StageStatistics(stageName, wallNanos, cpuNanos, allocatedBytes));
+        return result;
+    }
+
+    public List<StageStatistics> getStatistics() {
+        return statistics;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-12s %12s %12s %14s%n", "stage", "wall ms", "cpu ms", "allocated B"));
+
+        long wallNanos = 0;
+        long cpuNanos = 0;
+        long allocatedBytes = 0;
+        for (StageStatistics stageStatistics : statistics) {
+            report.append(stageStatistics).append("\n");
+            wallNanos += stageStatistics.getWallNanos();
+            cpuNanos += stageStatistics.getCpuNanos();
+            allocatedBytes += stageStatistics.getAllocatedBytes();
+        }
+        // Stages the JVM can't measure count -1 each, and make the total -1 as well
+        report.append(new StageStatistics("total", wallNanos, Math.max(cpuNanos, -1), Math.max(allocatedBytes, -1)));
+        return report.toString();
+    }
+
+    private static long getAllocatedBytes(ThreadMXBean threads) {
+        // Allocation counters are a HotSpot extension of the standard bean
+        if (threads instanceof com.sun.management.ThreadMXBean hotspotThreads
+                && hotspotThreads.isThreadAllocatedMemorySupported() && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+            return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
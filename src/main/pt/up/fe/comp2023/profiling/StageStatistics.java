@@ -0,0 +1,46 @@
+package pt.up.fe.comp2023.profiling;
+
+/**
+ * What running a stage of the compiler cost: wall and CPU time, and bytes allocated by the compiler thread.
+ */
+public class StageStatistics {
+
+    private final String stageName;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    StageStatistics(String stageName, long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.stageName = stageName;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /**
+     * @return the CPU time of the stage, or -1 if the JVM can't measure it
+     */
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @return the bytes allocated by the stage, or -1 if the JVM can't measure it
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s %12.1f %12.1f %14d", stageName, wallNanos / 1e6, cpuNanos / 1e6, allocatedBytes);
+    }
+}
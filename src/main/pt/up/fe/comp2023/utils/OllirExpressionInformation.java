@@ -0,0 +1,86 @@
+package pt.up.fe.comp2023.utils;
+
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.SingleOpInstruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the instructions needed to compute an expression and the element (or, for calls and instantiations, the
+ * instruction) that represents its value.
+ */
+public class OllirExpressionInformation {
+
+    private final List<Instruction> auxInstructions;
+
+    private Element result;
+    private Instruction resultInstruction;
+    private String ollirType;
+
+    public OllirExpressionInformation() {
+        this.auxInstructions = new ArrayList<>();
+        this.ollirType = "";
+    }
+
+    public List<Instruction> getAuxInstructions() {
+        return auxInstructions;
+    }
+
+    public void addAuxInstruction(Instruction auxInstruction) {
+        this.auxInstructions.add(auxInstruction);
+    }
+
+    public void addAuxInstructions(List<Instruction> auxInstructions) {
+        this.auxInstructions.addAll(auxInstructions);
+    }
+
+    public Element getResult() {
+        return result;
+    }
+
+    public void setResult(Element result) {
+        this.result = result;
+        this.resultInstruction = null;
+    }
+
+    /**
+     * @return the name of the result operand (or the value of a literal), "" when the result is an instruction
+     */
+    public String getResultName() {
+        if (result instanceof Operand operand) return operand.getName();
+        if (result instanceof LiteralElement literal) return literal.getLiteral();
+        return "";
+    }
+
+    /**
+     * Used when the value of the expression is an instruction that was not stored in an aux variable, e.g. a call
+     * whose value is discarded or a 'new' that is directly assigned.
+     */
+    public Instruction getResultInstruction() {
+        return resultInstruction;
+    }
+
+    public void setResultInstruction(Instruction resultInstruction) {
+        this.resultInstruction = resultInstruction;
+        this.result = null;
+    }
+
+    /**
+     * @return the instruction to place on the right-hand side of an assignment of this expression
+     */
+    public Instruction toRhsInstruction() {
+        return resultInstruction != null ? resultInstruction : new SingleOpInstruction(result);
+    }
+
+    public String getOllirType() {
+        return ollirType;
+    }
+
+    public void setOllirType(String ollirType) {
+        this.ollirType = ollirType;
+    }
+}
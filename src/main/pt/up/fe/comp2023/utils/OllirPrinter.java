@@ -0,0 +1,198 @@
+package pt.up.fe.comp2023.utils;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a ClassUnit as OLLIR text, the inverse of {@link OllirTypes}: parsing the text gives back the same
+ * ClassUnit. The OLLIR code of the compiler is the text of the ClassUnit {@link pt.up.fe.comp2023.visitors.OllirClassBuilder}
+ * builds, so there is one code generator, and the ClassUnit can be printed at any point of the optimization.
+ * After the passes the text is for reading only: the variables they create are named with a '$', which the
+ * OLLIR parser does not accept.
+ */
+public final class OllirPrinter {
+
+    private OllirPrinter() {
+    }
+
+    public static String print(ClassUnit classUnit) {
+        StringBuilder code = new StringBuilder();
+
+        for (String imported : classUnit.getImports()) {
+            code.append("import ").append(imported).append(";\n");
+        }
+        if (!classUnit.getImports().isEmpty()) code.append("\n");
+
+        code.append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) code.append(" extends ").append(classUnit.getSuperClass());
+        code.append(" {\n\n");
+
+        for (Field field : classUnit.getFields()) {
+            code.append("\t.field ").append(getModifiers(field.getFieldAccessModifier(), field.isStaticField(),
+                    field.isFinalField()));
+            code.append(field.getFieldName()).append(".").append(toOllirType(field.getFieldType())).append(";\n");
+        }
+        if (!classUnit.getFields().isEmpty()) code.append("\n");
+
+        for (Method method : classUnit.getMethods()) {
+            code.append(print(method)).append("\n");
+        }
+
+        return code.append("}\n").toString();
+    }
+
+    public static String print(Method method) {
+        StringBuilder code = new StringBuilder("\t");
+
+        if (method.isConstructMethod()) {
+            code.append(".construct ").append(method.getMethodName());
+        } else {
+            code.append(".method ").append(getModifiers(method.getMethodAccessModifier(), method.isStaticMethod(),
+                    method.isFinalMethod())).append(method.getMethodName());
+        }
+
+        List<String> params = new ArrayList<>();
+        for (Element param : method.getParams()) params.add(toOllir(param));
+        code.append("(").append(String.join(", ", params)).append(").")
+                .append(toOllirType(method.getReturnType())).append(" {\n");
+
+        for (Instruction instruction : method.getInstructions()) {
+            for (String label : method.getLabels(instruction)) {
+                code.append("\t").append(label).append(":\n");
+            }
+            code.append("\t\t").append(toOllir(instruction)).append(";\n");
+        }
+
+        return code.append("\t}\n").toString();
+    }
+
+    /**
+     * @return the OLLIR text of an instruction, without the ";" that ends a statement
+     */
+    public static String toOllir(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                yield toOllir(assign.getDest()) + " :=." + toOllirType(assign.getTypeOfAssign()) + " "
+                        + toOllir(assign.getRhs());
+            }
+            case CALL -> toOllir((CallInstruction) instruction);
+            case GOTO -> "goto " + ((GotoInstruction) instruction).getLabel();
+            case BRANCH -> {
+                CondBranchInstruction branch = (CondBranchInstruction) instruction;
+                yield "if (" + toOllir(branch.getCondition()) + ") goto " + branch.getLabel();
+            }
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                if (!ret.hasReturnValue()) yield "ret.V";
+                yield "ret." + toOllirType(ret.getReturnType()) + " " + toOllir(ret.getOperand());
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                yield "putfield(" + toOllir(putField.getFirstOperand()) + ", " + toOllir(putField.getSecondOperand())
+                        + ", " + toOllir(putField.getThirdOperand()) + ").V";
+            }
+            case GETFIELD -> {
+                GetFieldInstruction getField = (GetFieldInstruction) instruction;
+                yield "getfield(" + toOllir(getField.getFirstOperand()) + ", " + toOllir(getField.getSecondOperand())
+                        + ")." + toOllirType(getField.getFieldType());
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unary = (UnaryOpInstruction) instruction;
+                yield toOllir(unary.getOperation()) + " " + toOllir(unary.getOperand());
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                yield toOllir(binary.getLeftOperand()) + " " + toOllir(binary.getOperation()) + " "
+                        + toOllir(binary.getRightOperand());
+            }
+            case NOPER -> toOllir(((SingleOpInstruction) instruction).getSingleOperand());
+        };
+    }
+
+    private static String toOllir(CallInstruction call) {
+        List<String> arguments = new ArrayList<>();
+        Element first = call.getFirstArg();
+
+        switch (call.getInvocationType()) {
+            // The class of a new object goes without a type, and new arrays take their size
+            case NEW -> arguments.add(first.getType() instanceof ArrayType ? "array" : ((Operand) first).getName());
+            default -> arguments.add(toOllir(first));
+        }
+        if (call.getSecondArg() != null) arguments.add(toOllir(call.getSecondArg()));
+        if (call.getListOfOperands() != null) {
+            for (Element operand : call.getListOfOperands()) arguments.add(toOllir(operand));
+        }
+
+        String invocation = call.getInvocationType() == CallType.NEW ? "new" : call.getInvocationType().name();
+        return invocation + "(" + String.join(", ", arguments) + ")." + toOllirType(call.getReturnType());
+    }
+
+    public static String toOllir(Element element) {
+        if (element instanceof LiteralElement literal) {
+            // Method names are string literals, written without a type
+            if (literal.getType().getTypeOfElement() == ElementType.STRING) return literal.getLiteral();
+            return literal.getLiteral() + "." + toOllirType(literal.getType());
+        }
+
+        Operand operand = (Operand) element;
+        ElementType type = operand.getType().getTypeOfElement();
+        // 'this' and the class of a static call go without a type
+        if (type == ElementType.THIS || type == ElementType.CLASS) return operand.getName();
+
+        StringBuilder text = new StringBuilder(operand.getName());
+        if (operand instanceof ArrayOperand array) {
+            for (Element index : array.getIndexOperands()) text.append("[").append(toOllir(index)).append("]");
+        }
+        return text.append(".").append(toOllirType(operand.getType())).toString();
+    }
+
+    public static String toOllirType(Type type) {
+        if (type instanceof ArrayType arrayType) {
+            return "array.".repeat(arrayType.getNumDimensions()) + toOllirType(arrayType.getElementType());
+        }
+
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "i32";
+            case BOOLEAN -> "bool";
+            case STRING -> "String";
+            case VOID -> "V";
+            default -> ((ClassType) type).getName();
+        };
+    }
+
+    private static String toOllir(Operation operation) {
+        String operator = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case SHR -> ">>";
+            case SHL -> "<<";
+            case SHRR -> ">>>";
+            case XOR -> "^";
+            case AND -> "&";
+            case OR -> "|";
+            case LTH -> "<";
+            case GTH -> ">";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB, NOT -> "!";
+        };
+        return operator + "." + toOllirType(operation.getTypeInfo());
+    }
+
+    private static String getModifiers(AccessModifiers access, boolean isStatic, boolean isFinal) {
+        StringBuilder modifiers = new StringBuilder();
+        if (access != AccessModifiers.DEFAULT) modifiers.append(access.name().toLowerCase()).append(" ");
+        if (isStatic) modifiers.append("static ");
+        if (isFinal) modifiers.append("final ");
+        return modifiers.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package pt.up.fe.comp2023.utils;
+
+import org.specs.comp.ollir.*;
+
+/**
+ * Builds OLLIR object model types and elements from the OLLIR type strings used by the generators ("i32",
+ * "array.i32", "bool", class names...), creating the same objects the OLLIR parser would create for that text.
+ */
+public final class OllirTypes {
+
+    private OllirTypes() {
+    }
+
+    public static Type fromOllirType(String ollirType) {
+        if (ollirType.startsWith("array.")) {
+            // Like the OLLIR parser, every "array." prefix adds a dimension
+            int dimensions = 0;
+            String elementType = ollirType;
+            while (elementType.startsWith("array.")) {
+                elementType = elementType.substring("array.".length());
+                dimensions++;
+            }
+            ArrayType arrayType = new ArrayType();
+            arrayType.setNumDimensions(dimensions);
+            ElementType typeOfElements = fromOllirType(elementType).getTypeOfElement();
+            arrayType.setTypeOfElements(typeOfElements);
+            if (typeOfElements == ElementType.OBJECTREF) {
+                arrayType.setElementClass(elementType);
+            } else if (typeOfElements == ElementType.STRING) {
+                arrayType.setElementClass("String");
+            }
+            return arrayType;
+        }
+
+        return switch (ollirType) {
+            case "i32" -> new Type(ElementType.INT32);
+            case "bool" -> new Type(ElementType.BOOLEAN);
+            case "String" -> new Type(ElementType.STRING);
+            case "V" -> new Type(ElementType.VOID);
+            default -> new ClassType(ElementType.OBJECTREF, ollirType);
+        };
+    }
+
+    /**
+     * Creates the element for "name.type": an integer literal, 'this' or a plain operand.
+     */
+    public static Element element(String name, String ollirType, String className) {
+        if (isIntegerLiteral(name)) {
+            return new LiteralElement(name, fromOllirType(ollirType));
+        }
+        if (name.equals("this")) {
+            return thisOperand(className);
+        }
+        return new Operand(name, fromOllirType(ollirType));
+    }
+
+    public static Operand thisOperand(String className) {
+        return new Operand("this", new ClassType(ElementType.THIS, className));
+    }
+
+    /**
+     * First argument of an invokestatic, which the OLLIR parser types as a class.
+     */
+    public static Operand staticCallTarget(String name, String className) {
+        return new Operand(name, new ClassType(ElementType.CLASS, className));
+    }
+
+    public static LiteralElement methodNameLiteral(String methodName) {
+        return new LiteralElement("\"" + methodName + "\"", new Type(ElementType.STRING));
+    }
+
+    public static Operation operation(String jmmOperator, String ollirType) {
+        OperationType operationType = switch (jmmOperator) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "<=" -> OperationType.LTE;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            case "!" -> OperationType.NOTB;
+            default -> throw new RuntimeException("Operator '" + jmmOperator + "' has no OLLIR equivalent");
+        };
+        return new Operation(operationType, fromOllirType(ollirType));
+    }
+
+    private static boolean isIntegerLiteral(String name) {
+        if (name.isEmpty()) return false;
+        int start = name.charAt(0) == '-' ? 1 : 0;
+        if (start == name.length()) return false;
+        for (int i = start; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package pt.up.fe.comp2023.utils;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the local variables (and parameters) that OLLIR instructions define and use. Class names used as call targets,
+ * 'this', literals and fields are not variables.
+ */
+public class OllirVariables {
+
+    private OllirVariables() {
+    }
+
+    public static boolean isVariable(Method method, Element element) {
+        if (element.isLiteral()) return false;
+        if (element.getType().getTypeOfElement() == ElementType.CLASS) return false;
+        if (element.getType().getTypeOfElement() == ElementType.THIS) return false;
+
+        String name = ((Operand) element).getName();
+        if (name.equals("this")) return false;
+
+        Descriptor descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD;
+    }
+
+    /**
+     * @return the variable written by the instruction, or null if it writes none (array stores write an element, not
+     * the variable)
+     */
+    public static String getDefined(Method method, Instruction instruction) {
+        if (instruction.getInstType() != InstructionType.ASSIGN) return null;
+
+        Element dest = ((AssignInstruction) instruction).getDest();
+        if (dest instanceof ArrayOperand || !isVariable(method, dest)) return null;
+
+        return ((Operand) dest).getName();
+    }
+
+    /**
+     * @return the variables read by the instruction, in operand order and possibly repeated
+     */
+    public static List<String> getUsed(Method method, Instruction instruction) {
+        List<String> used = new ArrayList<>();
+        collectUsed(method, instruction, used);
+        return used;
+    }
+
+    private static void collectUsed(Method method, Instruction instruction, List<String> used) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assign = (AssignInstruction) instruction;
+                if (assign.getDest() instanceof ArrayOperand) addElement(method, assign.getDest(), used);
+                collectUsed(method, assign.getRhs(), used);
+            }
+            case CALL -> {
+                CallInstruction call = (CallInstruction) instruction;
+                if (call.getInvocationType() != CallType.NEW) addElement(method, call.getFirstArg(), used);
+                if (call.getListOfOperands() != null) {
+                    for (Element operand : call.getListOfOperands()) addElement(method, operand, used);
+                }
+            }
+            case BRANCH -> collectUsed(method, ((CondBranchInstruction) instruction).getCondition(), used);
+            case RETURN -> {
+                ReturnInstruction ret = (ReturnInstruction) instruction;
+                if (ret.hasReturnValue()) addElement(method, ret.getOperand(), used);
+            }
+            // The object of a field access is 'this' unless a method of the class was inlined
+            case PUTFIELD -> {
+                PutFieldInstruction putField = (PutFieldInstruction) instruction;
+                addElement(method, putField.getFirstOperand(), used);
+                addElement(method, putField.getThirdOperand(), used);
+            }
+            case GETFIELD -> addElement(method, ((GetFieldInstruction) instruction).getFirstOperand(), used);
+            case UNARYOPER -> addElement(method, ((UnaryOpInstruction) instruction).getOperand(), used);
+            case BINARYOPER -> {
+                BinaryOpInstruction binary = (BinaryOpInstruction) instruction;
+                addElement(method, binary.getLeftOperand(), used);
+                addElement(method, binary.getRightOperand(), used);
+            }
+            case NOPER -> addElement(method, ((SingleOpInstruction) instruction).getSingleOperand(), used);
+            default -> {
+            }
+        }
+    }
+
+    private static void addElement(Method method, Element element, List<String> used) {
+        if (element == null) return;
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            if (isVariable(method, element)) used.add(arrayOperand.getName());
+            for (Element index : arrayOperand.getIndexOperands()) addElement(method, index, used);
+        } else if (isVariable(method, element)) {
+            used.add(((Operand) element).getName());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package pt.up.fe.comp2023.utils;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out canonical {@link Type} instances for the built-in types (int, boolean, String, void and their arrays), so
+ * that they can be compared with ==.
+ * <p>
+ * Every built-in type also carries its OLLIR and JVM descriptor strings, computed once. Class types are not interned:
+ * the names of the classes and variables of every compiled program would pile up in a compiler that stays loaded
+ * between compilations, like the compile daemon and the watch mode. Their strings are built when asked for.
+ */
+public final class TypeInterner {
+
+    private record TypeInfo(Type type, String ollirType, String ollirElementType, String descriptor) {
+    }
+
+    private static final Map<String, TypeInfo> builtInTypes = new HashMap<>();
+    private static final Map<Type, TypeInfo> builtInInfos = new HashMap<>();
+
+    public static final Type INT = addBuiltIn("int", false);
+    public static final Type INT_ARRAY = addBuiltIn("int", true);
+    public static final Type BOOLEAN = addBuiltIn("boolean", false);
+    public static final Type BOOLEAN_ARRAY = addBuiltIn("boolean", true);
+    public static final Type STRING = addBuiltIn("String", false);
+    public static final Type STRING_ARRAY = addBuiltIn("String", true);
+    public static final Type VOID = addBuiltIn("void", false);
+
+    private TypeInterner() {
+    }
+
+    private static Type addBuiltIn(String name, boolean isArray) {
+        TypeInfo info = newTypeInfo(new Type(name, isArray));
+        builtInTypes.put(getKey(name, isArray), info);
+        builtInInfos.put(info.type(), info);
+        return info.type();
+    }
+
+    private static String getKey(String name, boolean isArray) {
+        return isArray ? name + "[]" : name;
+    }
+
+    /**
+     * @return the canonical instance of a built-in type, or a new Type for any other
+     */
+    public static Type intern(String name, boolean isArray) {
+        TypeInfo info = builtInTypes.get(getKey(name, isArray));
+        return info != null ? info.type() : new Type(name, isArray);
+    }
+
+    public static Type intern(Type type) {
+        if (type == null) return null;
+        TypeInfo info = builtInInfos.get(type);
+        return info != null ? info.type() : type;
+    }
+
+    /**
+     * @return a symbol whose type is canonical if it is a built-in type
+     */
+    public static Symbol intern(Type type, String name) {
+        return new Symbol(intern(type), name);
+    }
+
+    /**
+     * Returns the OLLIR type of a jmm type, e.g. "i32", "array.i32" or "bool". The special type "this" is resolved to
+     * the given class name.
+     */
+    public static String toOllirType(Type type, String className) {
+        if (type.getName().equals("this")) {
+            return (type.isArray() ? "array." : "") + className;
+        }
+        return getInfo(type).ollirType();
+    }
+
+    /**
+     * Same as {@link #toOllirType(Type, String)} but ignores the array flag, giving the OLLIR type of the elements.
+     */
+    public static String toOllirElementType(Type type, String className) {
+        if (type.getName().equals("this")) {
+            return className;
+        }
+        return getInfo(type).ollirElementType();
+    }
+
+    /**
+     * Returns the JVM field descriptor of a jmm type, e.g. "I", "[I" or "LFoo;".
+     */
+    public static String toDescriptor(Type type) {
+        return getInfo(type).descriptor();
+    }
+
+    private static TypeInfo getInfo(Type type) {
+        TypeInfo info = builtInInfos.get(type);
+        return info != null ? info : newTypeInfo(type);
+    }
+
+    private static TypeInfo newTypeInfo(Type type) {
+        String elementType = switch (type.getName()) {
+            case "int" -> "i32";
+            case "boolean" -> "bool";
+            case "void" -> "V";
+            default -> type.getName();
+        };
+        String elementDescriptor = switch (type.getName()) {
+            case "int" -> "I";
+            case "boolean" -> "Z";
+            case "void" -> "V";
+            case "String" -> "Ljava/lang/String;";
+            default -> "L" + type.getName() + ";";
+        };
+
+        if (type.isArray()) {
+            return new TypeInfo(type, "array." + elementType, elementType, "[" + elementDescriptor);
+        }
+        return new TypeInfo(type, elementType, elementType, elementDescriptor);
+    }
+}
@@ -0,0 +1,453 @@
+package pt.up.fe.comp2023.visitors;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.profiling.OllirMethodEvent;
+import pt.up.fe.comp2023.utils.OllirExpressionInformation;
+import pt.up.fe.comp2023.utils.OllirPrinter;
+import pt.up.fe.comp2023.utils.OllirTypes;
+import pt.up.fe.comp2023.utils.SymbolInfo;
+import pt.up.fe.comp2023.utils.SymbolPosition;
+import pt.up.fe.comp2023.utils.TypeInterner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Builds the OLLIR {@link ClassUnit} of a program straight from the AST, without going through OLLIR text and the
+ * OLLIR parser. This is the only OLLIR generator of the compiler: the OLLIR code is this ClassUnit written with
+ * {@link OllirPrinter}.
+ */
+public class OllirClassBuilder extends AJmmVisitor<String, Void> {
+
+    private final SymbolTable symbolTable;
+    private final String className;
+    private final ClassUnit classUnit;
+    private final List<String> pendingLabels;
+    private org.specs.comp.ollir.Method currentMethod;
+    private int tempVariables;
+    private Predicate<String> methodFilter = methodName -> true;
+
+    private int whileCounter;
+
+    private int ifCounter;
+
+    public OllirClassBuilder(SymbolTable symbolTable) {
+        super();
+        this.symbolTable = symbolTable;
+        this.className = symbolTable.getClassName();
+        this.classUnit = new ClassUnit();
+        this.pendingLabels = new ArrayList<>();
+        this.tempVariables = 0;
+    }
+
+    /**
+     * Builds the ClassUnit of a program. As with OllirUtils.parse, the var tables are already built.
+     */
+    public ClassUnit build(JmmNode root) {
+        visit(root);
+        classUnit.buildVarTables();
+        return classUnit;
+    }
+
+    /**
+     * Builds a ClassUnit with the fields and the constructor of the class, but only the methods the filter accepts,
+     * in the order they are declared.
+     */
+    public ClassUnit build(JmmNode root, Predicate<String> methodFilter) {
+        this.methodFilter = methodFilter;
+        return build(root);
+    }
+
+    // Utility functions
+
+    private void addInstruction(Instruction instruction) {
+        for (String label : pendingLabels) {
+            currentMethod.addLabel(label, instruction);
+        }
+        pendingLabels.clear();
+        currentMethod.addInstr(instruction);
+    }
+
+    private void addInstructions(List<Instruction> instructions) {
+        for (Instruction instruction : instructions) {
+            addInstruction(instruction);
+        }
+    }
+
+    private void addLabel(String label) {
+        pendingLabels.add(label);
+    }
+
+    private OllirExpressionInformation visitExpression(JmmNode exprNode, String methodName) {
+        OllirExpressionBuilder exprBuilder = new OllirExpressionBuilder(symbolTable, this.tempVariables);
+        OllirExpressionInformation info = exprBuilder.visit(exprNode, methodName);
+        this.tempVariables += exprBuilder.getUsedAuxVariables();
+        return info;
+    }
+
+    private String getNewAuxVariable() {
+        String ret = "aux" + tempVariables;
+        tempVariables++;
+        return ret;
+    }
+
+    private static CallInstruction newInitCall(Element object) {
+        return new CallInstruction(CallType.invokespecial, object, OllirTypes.methodNameLiteral("<init>"),
+                new ArrayList<>(), new Type(ElementType.VOID));
+    }
+
+    private String getMethodName(JmmNode methodNode) {
+        for (JmmNode child : methodNode.getChildren()) {
+            if (methodNode.getKind().equals("Void") && child.getKind().equals("VoidMethodSymbol"))
+                return child.get("name");
+            else if (methodNode.getKind().equals("NonVoid") && child.getKind().equals("MethodSymbol")) return child.get("name");
+        }
+        return null;
+    }
+
+    private Optional<Symbol> getField(String fieldName) {
+        if (symbolTable.getFields() == null) return Optional.empty();
+        return symbolTable.getFields().stream().filter(field -> field.getName().equals(fieldName)).findFirst();
+    }
+
+    private void addGoto(String label) {
+        addInstruction(new GotoInstruction(label));
+    }
+
+    private void addConditionalGoto(OllirExpressionInformation conditionInfo, String label) {
+        addConditionalGoto(conditionInfo.getResult(), label);
+    }
+
+    /**
+     * Takes back the last aux instruction of an expression when it only stores the value of an operation in the aux
+     * result, so that the operation goes straight into its destination or branch. The backend selects iinc and the
+     * compares against 0 from these forms.
+     *
+     * @return the operation, or null when the value of the expression is not computed that way
+     */
+    private static OpInstruction takeResultOperation(OllirExpressionInformation info) {
+        List<Instruction> auxInstructions = info.getAuxInstructions();
+        if (auxInstructions.isEmpty() || !(info.getResult() instanceof Operand result)) return null;
+
+        Instruction last = auxInstructions.get(auxInstructions.size() - 1);
+        if (!(last instanceof AssignInstruction assign) || !(assign.getRhs() instanceof OpInstruction operation)) return null;
+        if (!((Operand) assign.getDest()).getName().equals(result.getName())) return null;
+
+        auxInstructions.remove(auxInstructions.size() - 1);
+        return operation;
+    }
+
+    private void addConditionalGoto(Element condition, String label) {
+        SingleOpCondInstruction condBranch = new SingleOpCondInstruction(new SingleOpInstruction(condition));
+        condBranch.setLabel(label);
+        addInstruction(condBranch);
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Program", this::dealWithProgram);
+        addVisit("ImportDeclaration", this::dealWithImportDeclaration);
+        addVisit("MethodDeclaration", this::dealWithMethodDeclaration);
+        addVisit("VarDeclaration", this::dealWithVarDeclaration);
+        addVisit("FieldDeclaration", this::dealWithFieldDeclaration);
+        addVisit("ClassDeclaration", this::dealWithClassDeclaration);
+        addVisit("Scope", this::dealWithScopeStatement);
+        addVisit("Conditional", this::dealWithConditionalStatement);
+        addVisit("SimpleStatement", this::dealWithSimpleStatement);
+        addVisit("ClassFieldAssignment", this::dealWithClassFieldAssignmentStatement);
+        addVisit("Assignment", this::dealWithAssignmentStatement);
+        addVisit("ArrayAssignment", this::dealWithArrayAssignmentStatement);
+    }
+
+    // Visitors
+
+    private Void dealWithProgram(JmmNode node, String arg) {
+        for (JmmNode child : node.getChildren()) {
+            visit(child);
+        }
+        return null;
+    }
+
+    private Void dealWithImportDeclaration(JmmNode node, String __) {
+        List<String> fragments = node.getChildren().stream().map(child -> child.get("pathFragment")).toList();
+        classUnit.addImport(String.join(".", fragments));
+        return null;
+    }
+
+    private Void dealWithClassDeclaration(JmmNode node, String __) {
+        classUnit.setClassName(node.get("className"));
+        node.getOptional("superClassName").ifPresent(classUnit::setSuperClass);
+
+        for (JmmNode fieldDeclaration : node.getChildren().stream().filter(s -> s.getKind().equals("FieldDeclaration")).toList()) {
+            visit(fieldDeclaration);
+        }
+
+        org.specs.comp.ollir.Method constructor = new org.specs.comp.ollir.Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.setMethodName(className);
+        constructor.setReturnType(new Type(ElementType.VOID));
+        constructor.addInstr(newInitCall(OllirTypes.thisOperand(className)));
+        classUnit.addMethod(constructor);
+
+        for (JmmNode child : node.getChildren().stream().filter(s -> s.getHierarchy().contains("MethodDeclaration")).toList()) {
+            if (!methodFilter.test(getMethodName(child))) continue;
+            visit(child);
+        }
+        return null;
+    }
+
+    private Void dealWithMethodDeclaration(JmmNode node, String __) {
+        OllirMethodEvent event = new OllirMethodEvent();
+        event.begin();
+
+        String methodName = this.getMethodName(node);
+        Optional<pt.up.fe.comp2023.node.information.Method> methodOp = this.symbolTable.getMethodTry(methodName);
+
+        if (methodOp.isEmpty()) {
+            System.err.println("Tried to get method with name '" + methodName + "' but it wasn't found in the symbol table");
+            System.exit(1);
+        }
+
+        pt.up.fe.comp2023.node.information.Method method = methodOp.get();
+        currentMethod = new org.specs.comp.ollir.Method(classUnit);
+        currentMethod.setMethodName(methodName);
+
+        for (String modifier : method.getModifiers()) {
+            switch (modifier) {
+                case "public" -> currentMethod.setMethodAccessModifier(AccessModifiers.PUBLIC);
+                case "private" -> currentMethod.setMethodAccessModifier(AccessModifiers.PRIVATE);
+                case "protected" -> currentMethod.setMethodAccessModifier(AccessModifiers.PROTECTED);
+                case "static" -> currentMethod.setStaticMethod();
+                case "final" -> currentMethod.setFinalMethod();
+            }
+        }
+
+        int paramId = currentMethod.isStaticMethod() ? 0 : 1;
+        for (Symbol argument : method.getArguments()) {
+            Operand param = new Operand(argument.getName(),
+                    OllirTypes.fromOllirType(TypeInterner.toOllirType(argument.getType(), className)));
+            param.setParamId(paramId++);
+            currentMethod.addParam(param);
+        }
+
+        currentMethod.setReturnType(OllirTypes.fromOllirType(TypeInterner.toOllirType(method.getRetType(), className)));
+
+        List<JmmNode> methodStatements = node.getChildren().stream().filter((child) -> child.getKind().equals("MethodStatement")).map((child) -> child.getJmmChild(0)) // get statement inside methodStatement
+                .toList();
+
+        for (JmmNode statement : methodStatements) {
+            visit(statement, methodName);
+        }
+
+        ReturnInstruction returnInstruction;
+        if (node.getKind().equals("NonVoid")) {
+            JmmNode retExpressionNode = node.getChildren().get(node.getNumChildren() - 1).getJmmChild(0);
+            OllirExpressionInformation retInfo = visitExpression(retExpressionNode, methodName);
+            addInstructions(retInfo.getAuxInstructions());
+            returnInstruction = new ReturnInstruction(retInfo.getResult());
+            returnInstruction.setReturnType(OllirTypes.fromOllirType(retInfo.getOllirType()));
+        } else {
+            returnInstruction = new ReturnInstruction();
+            returnInstruction.setReturnType(new Type(ElementType.VOID));
+        }
+        addInstruction(returnInstruction);
+
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.methodName = methodName;
+            event.instructions = currentMethod.getInstructions().size();
+            event.commit();
+        }
+
+        classUnit.addMethod(currentMethod);
+        currentMethod = null;
+        return null;
+    }
+
+    private Void dealWithFieldDeclaration(JmmNode node, String __) {
+        JmmNode typeNode = node.getJmmChild(0);
+        String fieldType = TypeInterner.toOllirType(TypeInterner.intern(typeNode.get("typeName"),
+                (boolean) typeNode.getObject("isArray")), className);
+
+        Field field = new Field();
+        field.setFieldAccessModifier(AccessModifiers.PRIVATE);
+        field.setFieldName(node.get("name"));
+        field.setFieldType(OllirTypes.fromOllirType(fieldType));
+        classUnit.addField(field);
+        return null;
+    }
+
+    private Void dealWithVarDeclaration(JmmNode node, String __) {
+        return null;
+    }
+
+    private Void dealWithScopeStatement(JmmNode node, String methodName) {
+        for (JmmNode child : node.getChildren()) {
+            visit(child, methodName);
+        }
+        return null;
+    }
+
+    private Void dealWithConditionalStatement(JmmNode node, String methodName) {
+        // If and while share the node kind and differ in the number of children
+        if (node.getNumChildren() == 3) {
+            return dealWithIfStatement(node, methodName);
+        }
+        return dealWithWhileStatement(node, methodName);
+    }
+
+    private Void dealWithWhileStatement(JmmNode node, String methodName) {
+        String whileTag = "WHILE" + whileCounter;
+        String endWhileTag = "ENDWHILE" + whileCounter;
+        whileCounter++;
+
+        addLabel(whileTag);
+
+        JmmNode conditionExpressionNode = node.getJmmChild(0).getJmmChild(0);
+        OllirExpressionInformation conditionInfo = visitExpression(conditionExpressionNode, methodName);
+        addInstructions(conditionInfo.getAuxInstructions());
+
+        // The loop is left when the condition doesn't hold
+        Operand exit = new Operand(getNewAuxVariable(), OllirTypes.fromOllirType("bool"));
+        UnaryOpInstruction not = new UnaryOpInstruction(OllirTypes.operation("!", "bool"), conditionInfo.getResult());
+        addInstruction(new AssignInstruction(exit, OllirTypes.fromOllirType("bool"), not));
+        addConditionalGoto(exit, endWhileTag);
+
+        visit(node.getJmmChild(1).getJmmChild(0), methodName);
+        addGoto(whileTag);
+        addLabel(endWhileTag);
+        return null;
+    }
+
+    private Void dealWithIfStatement(JmmNode node, String methodName) {
+        JmmNode conditionExpressionNode = node.getJmmChild(0).getJmmChild(0);
+        OllirExpressionInformation conditionInfo = visitExpression(conditionExpressionNode, methodName);
+        OpInstruction conditionOperation = takeResultOperation(conditionInfo);
+        addInstructions(conditionInfo.getAuxInstructions());
+
+        String ifTrueTag = "IFTRUE" + ifCounter;
+        String endIfTag = "ENDIF" + ifCounter;
+        ifCounter++;
+
+        if (conditionOperation != null) {
+            OpCondInstruction condBranch = new OpCondInstruction(conditionOperation);
+            condBranch.setLabel(ifTrueTag);
+            addInstruction(condBranch);
+        } else {
+            addConditionalGoto(conditionInfo, ifTrueTag);
+        }
+        visit(node.getJmmChild(2).getJmmChild(0), methodName);
+        addGoto(endIfTag);
+        addLabel(ifTrueTag);
+        visit(node.getJmmChild(1).getJmmChild(0), methodName);
+        addGoto(endIfTag);
+        addLabel(endIfTag);
+        return null;
+    }
+
+    private Void dealWithSimpleStatement(JmmNode node, String methodName) {
+        OllirExpressionInformation info = visitExpression(node.getJmmChild(0), methodName);
+        // The value of the expression is discarded, but a call whose value is unused is its result instruction
+        addInstructions(info.getAuxInstructions());
+        if (info.getResultInstruction() != null) addInstruction(info.getResultInstruction());
+        return null;
+    }
+
+    private Void dealWithClassFieldAssignmentStatement(JmmNode node, String methodName) {
+        String fieldName = node.getJmmChild(0).get("varName");
+        Optional<Symbol> field = getField(fieldName);
+
+        if (field.isEmpty()) {
+            System.err.println("Tried to find '" + fieldName + "'s type but failed");
+            return null;
+        }
+
+        String fieldType = TypeInterner.toOllirType(field.get().getType(), className);
+        OllirExpressionInformation info = visitExpression(node.getJmmChild(1), methodName);
+        addInstructions(info.getAuxInstructions());
+        addInstruction(new PutFieldInstruction(OllirTypes.thisOperand(className),
+                new Operand(fieldName, OllirTypes.fromOllirType(fieldType)), info.getResult(), new Type(ElementType.VOID)));
+        return null;
+    }
+
+    private Void dealWithAssignmentStatement(JmmNode node, String methodName) {
+        String varName = node.get("varName");
+
+        Optional<SymbolInfo> symbolInfoOpt = symbolTable.getMostSpecificSymbolTry(methodName, varName);
+
+        JmmNode assignedExprNode = node.getJmmChild(0);
+
+        if (symbolInfoOpt.isPresent() && symbolInfoOpt.get().getSymbolPosition().equals(SymbolPosition.FIELD)) {
+            Symbol field = symbolInfoOpt.get().getSymbol();
+            String fieldType = TypeInterner.toOllirType(field.getType(), className);
+            OllirExpressionInformation assignedInfo = visitExpression(assignedExprNode, methodName);
+            addInstructions(assignedInfo.getAuxInstructions());
+            addInstruction(new PutFieldInstruction(OllirTypes.thisOperand(className),
+                    new Operand(field.getName(), OllirTypes.fromOllirType(fieldType)), assignedInfo.getResult(),
+                    new Type(ElementType.VOID)));
+            return null;
+        }
+
+        if (this.symbolTable.getMethodTry(methodName).isEmpty()) {
+            System.err.println("Tried to search for method '" + methodName + "' but it wasn't found.");
+            return null;
+        }
+
+        OllirExpressionInformation assignedInfo = visitExpression(assignedExprNode, methodName);
+        OpInstruction assignedOperation = takeResultOperation(assignedInfo);
+        addInstructions(assignedInfo.getAuxInstructions());
+
+        Type assignedType = OllirTypes.fromOllirType(assignedInfo.getOllirType());
+        Operand dest = new Operand(varName, assignedType);
+        Instruction rhs = assignedOperation != null ? assignedOperation : assignedInfo.toRhsInstruction();
+        addInstruction(new AssignInstruction(dest, assignedType, rhs));
+
+        if (assignedExprNode.getKind().equals("Instantiation")) {
+            addInstruction(newInitCall(new Operand(varName, OllirTypes.fromOllirType(assignedInfo.getOllirType()))));
+        }
+        return null;
+    }
+
+    private Void dealWithArrayAssignmentStatement(JmmNode node, String methodName) {
+        String varName = node.get("varName");
+
+        SymbolInfo arrayVarInfo = symbolTable.getMostSpecificSymbol(methodName, varName);
+        if (arrayVarInfo == null) {
+            System.err.println("arrayVarInfo is null! tried to search for '" + varName + "'.");
+            return null;
+        }
+
+        JmmNode arrayIndexExpression = node.getJmmChild(0).getJmmChild(0);
+        JmmNode assignedExpression = node.getJmmChild(1);
+
+        OllirExpressionInformation indexInfo = visitExpression(arrayIndexExpression, methodName);
+        OllirExpressionInformation assignedInfo = visitExpression(assignedExpression, methodName);
+        addInstructions(indexInfo.getAuxInstructions());
+        addInstructions(assignedInfo.getAuxInstructions());
+
+        String arrayHolderName = varName;
+        if (arrayVarInfo.getSymbolPosition().equals(SymbolPosition.FIELD)) {
+            String varOllirType = TypeInterner.toOllirType(arrayVarInfo.getSymbol().getType(), className);
+            arrayHolderName = getNewAuxVariable();
+            Type varType = OllirTypes.fromOllirType(varOllirType);
+            GetFieldInstruction getField = new GetFieldInstruction(OllirTypes.thisOperand(className),
+                    new Operand(varName, varType), OllirTypes.fromOllirType(varOllirType));
+            addInstruction(new AssignInstruction(new Operand(arrayHolderName, varType),
+                    OllirTypes.fromOllirType(varOllirType), getField));
+        }
+
+        String elementType = TypeInterner.toOllirElementType(arrayVarInfo.getSymbol().getType(), className);
+        ArrayList<Element> indexes = new ArrayList<>();
+        indexes.add(indexInfo.getResult());
+        ArrayOperand dest = new ArrayOperand(arrayHolderName, OllirTypes.fromOllirType(elementType), indexes);
+        addInstruction(new AssignInstruction(dest, OllirTypes.fromOllirType(assignedInfo.getOllirType()),
+                assignedInfo.toRhsInstruction()));
+        return null;
+    }
+}
@@ -0,0 +1,536 @@
+package pt.up.fe.comp2023.visitors;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.SymbolTable;
+import pt.up.fe.comp2023.node.information.Method;
+import pt.up.fe.comp2023.utils.OllirExpressionInformation;
+import pt.up.fe.comp2023.utils.OllirTypes;
+import pt.up.fe.comp2023.utils.SymbolInfo;
+import pt.up.fe.comp2023.utils.SymbolPosition;
+import pt.up.fe.comp2023.utils.TypeInterner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds the OLLIR instructions of an expression for {@link OllirClassBuilder}, and the element that holds its value.
+ * Aux variables are numbered from the one the builder is given, in the order the expression needs them.
+ */
+public class OllirExpressionBuilder extends AJmmVisitor<String, OllirExpressionInformation> {
+
+    private final SymbolTable symbolTable;
+    private final String className;
+    private Integer currentAuxVariable;
+    private Integer usedAuxVariables;
+
+    public OllirExpressionBuilder(SymbolTable symbolTable, Integer startingAuxVariable) {
+        this.symbolTable = symbolTable;
+        this.className = symbolTable.getClassName();
+        this.currentAuxVariable = startingAuxVariable;
+        this.usedAuxVariables = 0;
+    }
+
+    // Utility methods
+
+    private String getNewAuxVariable() {
+        String ret = "aux" + this.currentAuxVariable;
+        this.currentAuxVariable++;
+        this.usedAuxVariables++;
+        return ret;
+    }
+
+    private String getCurrentAuxVar() {
+        return "aux" + (this.currentAuxVariable-1);
+    }
+
+    private OllirExpressionInformation visitExpressionAndStoreInfo(OllirExpressionInformation storage,
+                                                                   JmmNode toVisit, String methodName) {
+        OllirExpressionInformation exprNodeInfo = visit(toVisit, methodName);
+        storage.addAuxInstructions(exprNodeInfo.getAuxInstructions());
+        return exprNodeInfo;
+    }
+
+    private Operand newAuxOperand(String auxName, String ollirType) {
+        return new Operand(auxName, OllirTypes.fromOllirType(ollirType));
+    }
+
+    private AssignInstruction assignToAux(String auxName, String ollirType, Instruction rhs) {
+        return new AssignInstruction(newAuxOperand(auxName, ollirType), OllirTypes.fromOllirType(ollirType), rhs);
+    }
+
+    private ArrayList<Element> getParams(JmmNode node, String parentMethodName, OllirExpressionInformation ret) {
+        int startingIndex = node.getKind().equals("MethodCall") ? 1 : 0;
+
+        List<JmmNode> parameterExpressions =
+                (node.getChildren().size() >= startingIndex) ?
+                        node.getChildren().subList(startingIndex, node.getChildren().size())
+                        :
+                        new ArrayList<>();
+
+        ArrayList<Element> params = new ArrayList<>();
+        for (JmmNode childNode : parameterExpressions) {
+            OllirExpressionInformation paramExprInfo = visit(childNode, parentMethodName);
+            ret.addAuxInstructions(paramExprInfo.getAuxInstructions());
+            params.add(paramExprInfo.getResult());
+        }
+        return params;
+    }
+
+    private boolean isDeclaredClassInstance(OllirExpressionInformation calledMethodsObj, String parentMethodName) {
+        Optional<SymbolInfo> symbolInfoOpt = symbolTable.getMostSpecificSymbolTry(parentMethodName, calledMethodsObj.getResultName());
+
+        if (symbolInfoOpt.isEmpty()) {
+            return false;
+        }
+
+        SymbolInfo symbolInfo = symbolInfoOpt.get();
+        return symbolInfo.getSymbol().getType().getName().equals(className);
+    }
+
+    private boolean isImportedClass(OllirExpressionInformation calledMethodsObj) {
+        return symbolTable.getImportedClasses().contains(calledMethodsObj.getResultName());
+    }
+
+    private boolean parentNodeIsSimpleStatement(JmmNode currentNode) {
+        return currentNode.getJmmParent().getKind().equals("SimpleStatement");
+    }
+
+    /**
+     * Stores the result of the call in a new aux variable, or uses the call itself as the result when its value is
+     * not used. The holder aux is allocated by the caller, since its position in the numbering depends on the kind of
+     * call.
+     */
+    private void setCallResult(OllirExpressionInformation ret, CallInstruction call, String holderName,
+                               String methodType) {
+        if (holderName == null) {
+            ret.setResultInstruction(call);
+        } else {
+            ret.addAuxInstruction(assignToAux(holderName, methodType, call));
+            ret.setResult(newAuxOperand(holderName, methodType));
+        }
+        ret.setOllirType(methodType);
+    }
+
+    /**
+     * Infers the OLLIR return type of a method of an imported class from the context the call is in, since the
+     * symbol table knows nothing about imported methods.
+     */
+    private static String getImportedMethodReturnType(SymbolTable symbolTable, JmmNode methodCallNode, String outerMethodName) {
+        JmmNode parent = methodCallNode.getJmmParent();
+        Optional<Method> optMethod = symbolTable.getMethodTry(outerMethodName);
+
+        if (optMethod.isEmpty()) {
+            System.err.println("Tried to find outer method '" + outerMethodName + "' in symbol table but it couldn't be found!");
+            return "getImportedMethodReturnType error: outer method \"" + outerMethodName + "\" not found";
+        }
+
+        switch (parent.getKind()) {
+            case "SimpleStatement" -> {
+                return "V";
+            }
+
+            case "ClassFieldAssignment" -> {
+                String fieldName = parent.getJmmChild(0).get("varName");
+                for (var field : symbolTable.getFields()) {
+                    if (field.getName().equals(fieldName))
+                        return TypeInterner.toOllirType(field.getType(), symbolTable.getClassName());
+                }
+                return "BIGERROR";
+            }
+
+            case "Assignment" -> {
+                String varName = parent.get("varName");
+                SymbolInfo symbolInfo = symbolTable.getMostSpecificSymbol(outerMethodName, varName);
+                return TypeInterner.toOllirType(symbolInfo.getSymbol().getType(), symbolTable.getClassName());
+            }
+
+            case "ArrayAssignment" -> {
+                String varName = parent.get("varName");
+                SymbolInfo symbolInfo = symbolTable.getMostSpecificSymbol(outerMethodName, varName);
+                return TypeInterner.toOllirElementType(symbolInfo.getSymbol().getType(), symbolTable.getClassName());
+            }
+
+            case "MethodCall" -> {
+                return getImportedMethodRootType(symbolTable, methodCallNode, outerMethodName);
+            }
+
+            case "ArrayAccess", "ArrayInstantiation" -> {
+                return "i32";
+            }
+
+            default -> {
+                return "HUGEERROR";
+            }
+        }
+    }
+
+    private static String getImportedMethodRootType(SymbolTable symbolTable, JmmNode exprStatement, String methodName) {
+        JmmNode current = exprStatement;
+        while (true) {
+            JmmNode leftChild = current.getJmmChild(0);
+            if (leftChild.getKind().equals("Identifier")) {
+                Optional<SymbolInfo> symbolInfo = symbolTable.getMostSpecificSymbolTry(methodName, leftChild.get("value"));
+                return symbolInfo.map(info -> TypeInterner.toOllirType(info.getSymbol().getType(), "errorInGetImportedMethodRootType")).orElseGet(() -> leftChild.get("value"));
+            }
+            current = leftChild;
+        }
+    }
+
+    // End Utility methods
+    @Override
+    protected void buildVisitor() {
+        addVisit("MethodCall", this::dealWithGenericMethodCall);
+        addVisit("ThisMethodCall", this::dealWithThisMethodCall);
+        addVisit("ArrayLength", this::dealWithArrayLength);
+        addVisit("ArrayAccess", this::dealWithArrayAccess);
+        addVisit("Parenthesis", this::dealWithParenthesis);
+        addVisit("UnaryBinaryOp", this::dealWithUnaryBoolOp);
+        addVisit("ArithmeticBinaryOp", this::dealWithArithmeticBinaryOp);
+        addVisit("BoolBinaryOp", this::dealWithBoolBinaryOp);
+        addVisit("ArrayInstantiation", this::dealWithArrayInstantiation);
+        addVisit("Instantiation", this::dealWithInstantiation);
+        addVisit("Integer", this::dealWithInteger);
+        addVisit("Boolean", this::dealWithBool);
+        addVisit("Identifier", this::dealWithID);
+        addVisit("ClassAccess", this::dealWithClassAccess);
+    }
+
+    private void dealWithDeclaredClassStaticMethodCall(JmmNode methodCallNode,
+                                                       OllirExpressionInformation parentRet,
+                                                       String parentMethodName) {
+        String calledMethodName = methodCallNode.get("methodName");
+        // Errors in this phase are NOT handled, should have been caught by semantic analysis
+        Method calledMethod = symbolTable.getMethodOrWarn(calledMethodName, "dealWithThisMethodCall");
+        String methodType = TypeInterner.toOllirType(calledMethod.getRetType(), className);
+
+        boolean valueIsUsed = !methodType.equals("V") && !parentNodeIsSimpleStatement(methodCallNode);
+        String holderName = valueIsUsed ? getNewAuxVariable() : null;
+
+        ArrayList<Element> params = getParams(methodCallNode, parentMethodName, parentRet);
+        CallInstruction call = new CallInstruction(CallType.invokestatic, OllirTypes.staticCallTarget("this", className),
+                OllirTypes.methodNameLiteral(calledMethodName), params, OllirTypes.fromOllirType(methodType));
+        setCallResult(parentRet, call, holderName, methodType);
+    }
+
+    private void dealWithDeclaredClassInstanceMethodCall(JmmNode methodCallNode,
+                                                         OllirExpressionInformation calledMethodsObj,
+                                                         OllirExpressionInformation parentRet,
+                                                         String parentMethodName) {
+        String calledMethodName = methodCallNode.get("methodName");
+        // Errors in this phase are NOT handled, should have been caught by semantic analysis
+        Method calledMethod = symbolTable.getMethodOrWarn(calledMethodName, "dealWithThisMethodCall");
+        String methodType = TypeInterner.toOllirType(calledMethod.getRetType(), className);
+
+        boolean valueIsUsed = !methodType.equals("V") && !parentNodeIsSimpleStatement(methodCallNode);
+        String holderName = valueIsUsed ? getNewAuxVariable() : null;
+
+        ArrayList<Element> params = getParams(methodCallNode, parentMethodName, parentRet);
+        CallInstruction call = new CallInstruction(CallType.invokevirtual, calledMethodsObj.getResult(),
+                OllirTypes.methodNameLiteral(calledMethodName), params, OllirTypes.fromOllirType(methodType));
+        setCallResult(parentRet, call, holderName, methodType);
+    }
+
+    private void dealWithImportedClassInstanceMethodCall(JmmNode methodCallNode,
+                                                         OllirExpressionInformation calledMethodsObj,
+                                                         OllirExpressionInformation parentRet,
+                                                         String parentMethodName) {
+        String calledMethodName = methodCallNode.get("methodName");
+        String methodType = getImportedMethodReturnType(symbolTable, methodCallNode, parentMethodName);
+
+        boolean valueIsUsed = !methodType.equals("V") && !parentNodeIsSimpleStatement(methodCallNode);
+
+        ArrayList<Element> params = getParams(methodCallNode, parentMethodName, parentRet);
+        String holderName = valueIsUsed ? getNewAuxVariable() : null;
+
+        CallInstruction call = new CallInstruction(CallType.invokevirtual, calledMethodsObj.getResult(),
+                OllirTypes.methodNameLiteral(calledMethodName), params, OllirTypes.fromOllirType(methodType));
+        setCallResult(parentRet, call, holderName, methodType);
+    }
+
+    private void dealWithImportedClassStaticMethodCall(JmmNode methodCallNode,
+                                                       OllirExpressionInformation calledMethodsObj,
+                                                       OllirExpressionInformation parentRet,
+                                                       String parentMethodName) {
+        String calledMethodName = methodCallNode.get("methodName");
+        String methodType = getImportedMethodReturnType(symbolTable, methodCallNode, parentMethodName);
+
+        boolean valueIsUsed = !methodType.equals("V") && !parentNodeIsSimpleStatement(methodCallNode);
+        String holderName = valueIsUsed ? getNewAuxVariable() : null;
+
+        ArrayList<Element> params = getParams(methodCallNode, parentMethodName, parentRet);
+        CallInstruction call = new CallInstruction(CallType.invokestatic,
+                OllirTypes.staticCallTarget(calledMethodsObj.getResultName(), className),
+                OllirTypes.methodNameLiteral(calledMethodName), params, OllirTypes.fromOllirType(methodType));
+        setCallResult(parentRet, call, holderName, methodType);
+    }
+
+    private OllirExpressionInformation dealWithGenericMethodCall(JmmNode methodCallNode, String parentMethodName) {
+        OllirExpressionInformation evInfoRet = new OllirExpressionInformation();
+
+        JmmNode calledMethodsObjNode = methodCallNode.getJmmChild(0);
+        OllirExpressionInformation calledMethodsObj = visitExpressionAndStoreInfo(evInfoRet, calledMethodsObjNode, parentMethodName);
+
+        if (calledMethodsObj.getResultName().equals(className)) {
+            dealWithDeclaredClassStaticMethodCall(methodCallNode, evInfoRet, parentMethodName);
+        }
+        else if (isDeclaredClassInstance(calledMethodsObj, parentMethodName)) {
+            dealWithDeclaredClassInstanceMethodCall(methodCallNode, calledMethodsObj, evInfoRet, parentMethodName);
+        }
+        else if (isImportedClass(calledMethodsObj)) {
+            dealWithImportedClassStaticMethodCall(methodCallNode, calledMethodsObj, evInfoRet, parentMethodName);
+        }
+        else if (symbolTable.symbolIsDeclared(parentMethodName, calledMethodsObj.getResultName(), getCurrentAuxVar())) {
+            dealWithImportedClassInstanceMethodCall(methodCallNode, calledMethodsObj, evInfoRet, parentMethodName);
+        }
+        else {
+            System.err.println("dealWithGenericMethodCall could not determine which kind of method call this is.");
+        }
+
+        return evInfoRet;
+    }
+
+    private OllirExpressionInformation dealWithThisMethodCall(JmmNode methodCallNode, String parentMethodName) {
+        OllirExpressionInformation retInfo = new OllirExpressionInformation();
+        String calledMethodName = methodCallNode.get("methodName");
+
+        // Errors in this phase are NOT handled, should have been caught by semantic analysis
+        Method calledMethod = symbolTable.getMethodOrWarn(calledMethodName, "dealWithThisMethodCall");
+        String methodType = TypeInterner.toOllirType(calledMethod.getRetType(), className);
+
+        ArrayList<Element> params = getParams(methodCallNode, parentMethodName, retInfo);
+        String methodCallHolderName = getNewAuxVariable();
+
+        CallInstruction call = new CallInstruction(CallType.invokevirtual, OllirTypes.thisOperand(className),
+                OllirTypes.methodNameLiteral(calledMethod.getName()), params, OllirTypes.fromOllirType(methodType));
+        setCallResult(retInfo, call, methodCallHolderName, methodType);
+        return retInfo;
+    }
+
+    private OllirExpressionInformation dealWithArrayLength(JmmNode node, String methodName) {
+        String newAuxVar = getNewAuxVariable();
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        JmmNode exprNode = node.getObject("array", JmmNode.class);
+        OllirExpressionInformation exprNodeInfo = visitExpressionAndStoreInfo(ret, exprNode, methodName);
+
+        CallInstruction arrayLength = new CallInstruction(CallType.arraylength, exprNodeInfo.getResult(),
+                OllirTypes.fromOllirType("i32"));
+        ret.addAuxInstruction(assignToAux(newAuxVar, "i32", arrayLength));
+
+        ret.setResult(newAuxOperand(newAuxVar, "i32"));
+        ret.setOllirType("i32");
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithArrayAccess(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        JmmNode arrayNode = node.getJmmChild(0);
+        JmmNode indexNode = node.getJmmChild(1);
+
+        OllirExpressionInformation arrayExprInfo = visitExpressionAndStoreInfo(ret, arrayNode, methodName);
+        OllirExpressionInformation indexExprInfo = visitExpressionAndStoreInfo(ret, indexNode, methodName);
+
+        String arrayHolderName = arrayExprInfo.getResultName();
+        if (arrayNode.getKind().equals("Identifier")) {
+            String arrayName = arrayNode.get("value");
+            SymbolInfo arrayVarInfo = symbolTable.getMostSpecificSymbol(methodName, arrayExprInfo.getResultName());
+            if (arrayVarInfo != null && arrayVarInfo.getSymbolPosition().equals(SymbolPosition.FIELD)) {
+                String newAuxVar = getNewAuxVariable();
+                String arrayOllirType = TypeInterner.toOllirType(arrayVarInfo.getSymbol().getType(), className);
+                GetFieldInstruction getField = new GetFieldInstruction(OllirTypes.thisOperand(className),
+                        new Operand(arrayName, OllirTypes.fromOllirType(arrayOllirType)),
+                        OllirTypes.fromOllirType(arrayOllirType));
+                ret.addAuxInstruction(assignToAux(newAuxVar, arrayOllirType, getField));
+                arrayHolderName = newAuxVar;
+            }
+        }
+
+        String lastAuxVar = getNewAuxVariable();
+        String arrayOllirType = arrayExprInfo.getOllirType();
+        if (arrayOllirType.contains("array.")) {
+            arrayOllirType = arrayOllirType.substring(arrayOllirType.indexOf("array.") + 6);
+        }
+
+        ArrayList<Element> indexes = new ArrayList<>();
+        indexes.add(indexExprInfo.getResult());
+        ArrayOperand access = new ArrayOperand(arrayHolderName, OllirTypes.fromOllirType(arrayOllirType), indexes);
+        ret.addAuxInstruction(assignToAux(lastAuxVar, arrayOllirType, new SingleOpInstruction(access)));
+
+        ret.setResult(newAuxOperand(lastAuxVar, arrayOllirType));
+        ret.setOllirType(arrayOllirType);
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithParenthesis(JmmNode node, String methodName) {
+        JmmNode innerExprNode = node.getJmmChild(0);
+        return visit(innerExprNode, methodName);
+    }
+
+    private OllirExpressionInformation dealWithUnaryBoolOp(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+        JmmNode expressionNode = node.getObject("bool", JmmNode.class);
+
+        OllirExpressionInformation exprInfo = visitExpressionAndStoreInfo(ret, expressionNode, methodName);
+
+        String newAuxVar = getNewAuxVariable();
+        UnaryOpInstruction not = new UnaryOpInstruction(OllirTypes.operation("!", "bool"), exprInfo.getResult());
+        ret.addAuxInstruction(assignToAux(newAuxVar, "bool", not));
+
+        ret.setResult(newAuxOperand(newAuxVar, "bool"));
+        ret.setOllirType("bool");
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithBinaryOp(JmmNode node, String methodName, String type) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        JmmNode arg1Node = node.getJmmChild(0);
+        JmmNode arg2Node = node.getJmmChild(1);
+
+        OllirExpressionInformation arg1Info = visitExpressionAndStoreInfo(ret, arg1Node, methodName);
+        OllirExpressionInformation arg2Info = visitExpressionAndStoreInfo(ret, arg2Node, methodName);
+
+        String lastAuxVar = getNewAuxVariable();
+        BinaryOpInstruction operation = new BinaryOpInstruction(arg1Info.getResult(),
+                OllirTypes.operation(node.get("op"), type), arg2Info.getResult());
+        ret.addAuxInstruction(assignToAux(lastAuxVar, type, operation));
+
+        ret.setResult(newAuxOperand(lastAuxVar, type));
+        ret.setOllirType(type);
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithArithmeticBinaryOp(JmmNode node, String methodName) {
+        return dealWithBinaryOp(node, methodName, "i32");
+    }
+
+    private OllirExpressionInformation dealWithBoolBinaryOp(JmmNode node, String methodName) {
+        return dealWithBinaryOp(node, methodName, "bool");
+    }
+
+    private OllirExpressionInformation dealWithArrayInstantiation(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        String ollirTypeName = TypeInterner.toOllirType(TypeInterner.intern(node.get("typeName"), true), className);
+        JmmNode sizeExpression = node.getObject("size", JmmNode.class);
+
+        OllirExpressionInformation sizeInfo = visitExpressionAndStoreInfo(ret, sizeExpression, methodName);
+
+        String newAuxVar = getNewAuxVariable();
+        String arrayType = "array." + ollirTypeName;
+        ArrayList<Element> size = new ArrayList<>();
+        size.add(sizeInfo.getResult());
+        CallInstruction newArray = new CallInstruction(CallType.NEW,
+                new Operand("array", new ArrayType()), size, OllirTypes.fromOllirType(arrayType));
+        ret.addAuxInstruction(assignToAux(newAuxVar, arrayType, newArray));
+
+        ret.setResult(newAuxOperand(newAuxVar, arrayType));
+        ret.setOllirType(arrayType);
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithInstantiation(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        String ollirTypeName = TypeInterner.toOllirType(TypeInterner.intern(node.get("name"), false), className);
+        Type type = OllirTypes.fromOllirType(ollirTypeName);
+
+        ret.setResultInstruction(new CallInstruction(CallType.NEW, new Operand(ollirTypeName, type),
+                new ArrayList<>(), type));
+        ret.setOllirType(ollirTypeName);
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithInteger(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        ret.setResult(OllirTypes.element(node.get("value"), "i32", className));
+        ret.setOllirType("i32");
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithBool(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        // OLLIR writes true and false as the literals 1.bool and 0.bool
+        String literal = node.get("value").equals("true") ? "1" : "0";
+        ret.setResult(OllirTypes.element(literal, "bool", className));
+        ret.setOllirType("bool");
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithID(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+
+        String value = node.get("value");
+
+        Optional<Method> optMethod = this.symbolTable.getMethodTry(methodName);
+
+        if (optMethod.isEmpty()) {
+            System.err.println("Tried to search for method '" + methodName + "' but it wasn't found.");
+            return ret;
+        }
+
+        Method method = optMethod.get();
+
+        Optional<SymbolInfo> symbolInfoOpt = this.symbolTable.getMostSpecificSymbolTry(methodName, value);
+
+        if (symbolInfoOpt.isEmpty()) {
+            // Class names, used as the target of static calls
+            ret.setResult(OllirTypes.element(value, value, className));
+            ret.setOllirType(value);
+            return ret;
+        }
+
+        SymbolInfo symbolInfo = symbolInfoOpt.get();
+
+        switch (symbolInfo.getSymbolPosition()) {
+            case LOCAL -> {
+                String type = TypeInterner.toOllirType(symbolInfo.getSymbol().getType(), className);
+                ret.setResult(OllirTypes.element(symbolInfo.getSymbol().getName(), type, className));
+                ret.setOllirType(type);
+            }
+            case PARAM -> {
+                for (Symbol param : method.getArguments()) {
+                    if (param.getName().equals(value)) {
+                        String type = TypeInterner.toOllirType(param.getType(), className);
+                        ret.setResult(OllirTypes.element(value, type, className));
+                        ret.setOllirType(type);
+                    }
+                }
+            }
+            case FIELD -> {
+                for (Symbol field : symbolTable.getFields()) {
+                    if (field.getName().equals(value)) {
+                        String varAux = getNewAuxVariable();
+                        String fieldType = TypeInterner.toOllirType(symbolInfo.getSymbol().getType(), className);
+                        GetFieldInstruction getField = new GetFieldInstruction(OllirTypes.thisOperand(className),
+                                new Operand(field.getName(), OllirTypes.fromOllirType(fieldType)),
+                                OllirTypes.fromOllirType(fieldType));
+                        ret.addAuxInstruction(assignToAux(varAux, fieldType, getField));
+                        ret.setResult(newAuxOperand(varAux, fieldType));
+                        ret.setOllirType(fieldType);
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    private OllirExpressionInformation dealWithClassAccess(JmmNode node, String methodName) {
+        OllirExpressionInformation ret = new OllirExpressionInformation();
+        ret.setResult(OllirTypes.thisOperand(className));
+        ret.setOllirType(className);
+        return ret;
+    }
+
+    public Integer getUsedAuxVariables() {
+        return usedAuxVariables;
+    }
+}
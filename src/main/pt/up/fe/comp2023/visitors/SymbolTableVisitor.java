@@ -10,6 +10,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2023.SymbolTable;
 import pt.up.fe.comp2023.node.information.Expression;
 import pt.up.fe.comp2023.node.information.Method;
+import pt.up.fe.comp2023.utils.TypeInterner;
 import pt.up.fe.specs.util.collections.SpecsList;
 
 import java.util.ArrayList;
@@ -202,7 +203,7 @@ public class SymbolTableVisitor extends AJmmVisitor<String, String> {
     private String dealWithFieldDeclaration(JmmNode node, String s) {
         String fieldName = node.get("name");
         Type fieldType = dealWithType(node.getJmmChild(0));
-        this.table.addField(new Symbol(fieldType, fieldName));
+        this.table.addField(TypeInterner.intern(fieldType, fieldName));
         return "";
     }
 
@@ -235,9 +236,9 @@ public class SymbolTableVisitor extends AJmmVisitor<String, String> {
         if (node.getKind().equals("MethodSymbol"))
             type = dealWithType(node.getJmmChild(0));
         else
-            type = new Type("void", false);
+            type = TypeInterner.VOID;
 
-        return new Symbol(type, name);
+        return TypeInterner.intern(type, name);
     }
 
     private String dealWithModifier(JmmNode node, String methodName) {
@@ -253,7 +254,7 @@ public class SymbolTableVisitor extends AJmmVisitor<String, String> {
 
         JmmNode type = node.getJmmChild(0);
         Type argumentType = dealWithType(type);
-        method.addArgument(new Symbol(argumentType, argumentName));
+        method.addArgument(TypeInterner.intern(argumentType, argumentName));
         return "";
     }
 
@@ -262,7 +263,7 @@ public class SymbolTableVisitor extends AJmmVisitor<String, String> {
         JmmNode typeNode = node.getJmmChild(0);
         Type varType = dealWithType(typeNode);
         String varName = node.get("name");
-        method.addVariable(new Symbol(varType, varName));
+        method.addVariable(TypeInterner.intern(varType, varName));
         return "";
     }
 
@@ -346,7 +347,7 @@ public class SymbolTableVisitor extends AJmmVisitor<String, String> {
         String typeName = node.get("typeName");
         boolean isArray = (boolean) node.getObject("isArray");
 
-        return new Type(typeName, isArray);
+        return TypeInterner.intern(typeName, isArray);
     }
 
     private String dealWithNameNode(JmmNode nameNode, String s) {
@@ -0,0 +1,325 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.Optimizer;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.ast2jasmin.AstToJasminImpl;
+import pt.up.fe.comp2023.jasmin.ClassFileUpgrader;
+import pt.up.fe.comp2023.jasmin.JasminBackender;
+import pt.up.fe.comp2023.optimization.PassStatistics;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the behaviour of the optimization passes and of the class files: each program is compiled in-process like
+ * the launcher does at a level, loaded and its run(int) method called. The optimized code has to return what the code
+ * of -O0 returns.
+ */
+public class Cpf6_Passes {
+
+    static final String RESOURCES = "test/pt/up/fe/comp/cpf/6_passes/";
+
+    /**
+     * The classes of libs-jmm, for the imports of the programs.
+     */
+    private static final File LIBRARIES = new File("libs-jmm/compiled");
+
+    record Compilation(String className, byte[] classFile, List<PassStatistics> passes) {
+    }
+
+    /**
+     * Compiles the program at the optimization level, with the given config entries ("key=value") on top.
+     */
+    static Compilation compile(String filename, int level, String... entries) {
+        return compileCode(SpecsIo.read(new File(RESOURCES + filename)), level, entries);
+    }
+
+    /**
+     * Compiles the code like {@link #compile(String, int, String...)}, for programs the tests edit.
+     */
+    static Compilation compileCode(String code, int level, String... entries) {
+        Map<String, String> config = new HashMap<>();
+        Launcher.setOptimizationLevel(config, level);
+        for (String entry : entries) config.put(entry.split("=", 2)[0], entry.split("=", 2)[1]);
+
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        TestUtils.noErrors(parserResult.getReports());
+        JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+
+        JasminResult jasminResult;
+        List<PassStatistics> passes = List.of();
+        if (config.get("backend").equals("ast")) {
+            jasminResult = new AstToJasminImpl().toJasmin(semantics);
+        } else {
+            Optimizer optimizer = new Optimizer();
+            ClassUnit classUnit = optimizer.toClassUnit(semantics);
+            passes = optimizer.optimize(classUnit, config).getStatistics();
+            jasminResult = new JasminBackender().toJasmin(classUnit, config);
+        }
+
+        try {
+            File directory = Files.createTempDirectory("jmm").toFile();
+            try {
+                File classFile = jasminResult.compile(directory);
+                new ClassFileUpgrader().upgrade(classFile);
+                return new Compilation(jasminResult.getClassName(), Files.readAllBytes(classFile.toPath()), passes);
+            } finally {
+                SpecsIo.deleteFolder(directory);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not assemble " + jasminResult.getClassName(), e);
+        }
+    }
+
+    /**
+     * Loads the compiled class in a class loader of its own, with the compiled classes it imports, and calls its run
+     * method.
+     */
+    static int run(Compilation compilation, int argument, Compilation... imported) {
+        Map<String, byte[]> classFiles = new HashMap<>();
+        classFiles.put(compilation.className(), compilation.classFile());
+        for (Compilation importedClass : imported) classFiles.put(importedClass.className(), importedClass.classFile());
+
+        URL[] classPath;
+        try {
+            classPath = new URL[]{LIBRARIES.toURI().toURL()};
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try (URLClassLoader loader = new URLClassLoader(classPath, Cpf6_Passes.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] classFile = classFiles.get(name);
+                if (classFile == null) return super.findClass(name);
+                return defineClass(name, classFile, 0, classFile.length);
+            }
+        }) {
+            Class<?> compiled = loader.loadClass(compilation.className());
+            // The generated classes are not public
+            Constructor<?> constructor = compiled.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            Method method = compiled.getDeclaredMethod("run", int.class);
+            method.setAccessible(true);
+
+            return (int) method.invoke(constructor.newInstance(), argument);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("run(" + argument + ") of " + compilation.className() + " threw",
+                    e.getCause());
+        } catch (Exception e) {
+            throw new RuntimeException("Could not run " + compilation.className(), e);
+        }
+    }
+
+    static int run(String filename, int argument, int level, String... entries) {
+        return run(compile(filename, level, entries), argument);
+    }
+
+    /**
+     * Checks that the program returns the same at -O0 and at the level, for each argument.
+     */
+    static void assertSameAsO0(String filename, int[] arguments, int level, String... entries) {
+        Compilation expected = compile(filename, 0);
+        Compilation actual = compile(filename, level, entries);
+
+        for (int argument : arguments) {
+            assertEquals(filename + " at -O" + level + " " + String.join(" ", entries) + ", run(" + argument + ")",
+                    run(expected, argument), run(actual, argument));
+        }
+    }
+
+    /**
+     * Checks that the pass changes the program at -O2, so that the program tests it.
+     */
+    static void assertChanges(String filename, String pass, String... entries) {
+        boolean changed = compile(filename, 2, entries).passes().stream()
+                .anyMatch(statistics -> statistics.getPassName().equals(pass) && statistics.isChanged());
+        assertTrue(pass + " does not change " + filename, changed);
+    }
+
+    /**
+     * A constant version read by a phi keeps the write of the constant, here the join of a branch that is never
+     * taken, read by the phi of the loop.
+     */
+    @Test
+    public void section1_ConstProp_ConstantReadByPhi() {
+        assertEquals(6, run("const_prop/PropPhiOperand.jmm", 20, 2));
+        assertSameAsO0("const_prop/PropPhiOperand.jmm", new int[]{0, 2, 3, 20}, 2);
+    }
+
+    /**
+     * Small private methods of the class are inlined at their calls, with parameters the callee writes, nested calls,
+     * branches and loops in the callee, and a callee that writes a field. So is a public method called on an object
+     * the caller created.
+     */
+    @Test
+    public void section2_Inlining_SmallMethods() {
+        assertChanges("inlining/InlineSmall.jmm", "inlining");
+        assertSameAsO0("inlining/InlineSmall.jmm", new int[]{0, 1, 7, 40}, 2);
+    }
+
+    /**
+     * A public method called on 'this' may be overridden by a subclass, so it stays a call: describe of Base has to
+     * run the value of Derived.
+     */
+    @Test
+    public void section2_Inlining_OverriddenMethods() {
+        for (int level = 0; level <= 2; level++) {
+            Compilation base = compile("inlining/Base.jmm", level);
+            Compilation derived = compile("inlining/Derived.jmm", level);
+            assertEquals(30 * 1000 + 50, run(derived, 3, base));
+        }
+    }
+
+    /**
+     * Tail calls of a method to itself become jumps: the arguments are all computed before the parameters are
+     * written, so swapping parameters works, and calls that are not in tail position stay.
+     */
+    @Test
+    public void section3_TailRecursion_SelfCalls() {
+        assertChanges("tail_recursion/TailCalls.jmm", "tail-recursion");
+        assertSameAsO0("tail_recursion/TailCalls.jmm", new int[]{0, 1, 5, 100, 1000}, 2);
+    }
+
+    /**
+     * Without the calls, recursion deeper than the stack of -O0 allows returns normally.
+     */
+    @Test
+    public void section3_TailRecursion_Deep() {
+        // gcd 2, the sum of 1 to 1000000 wrapped to an int, and 26 calls of depth
+        assertEquals(2 * 1000 + 1784293664 + 26, run("tail_recursion/TailCalls.jmm", 1000000, 2));
+    }
+
+    /**
+     * Pure calls with literal arguments are replaced by their value. Calls that read fields, throw, run for too long
+     * or have side effects stay, and run as they would at -O0.
+     */
+    @Test
+    public void section4_PureCalls_LiteralArguments() {
+        assertChanges("pure_calls/PureCalls.jmm", "pure-calls");
+        assertSameAsO0("pure_calls/PureCalls.jmm", new int[]{0, 3, 13}, 2);
+    }
+
+    /**
+     * Without inlining, a public method called on 'this' isn't evaluated at compile time either: describe of Base has
+     * to run the value of Derived.
+     */
+    @Test
+    public void section4_PureCalls_OverriddenMethods() {
+        Compilation base = compile("inlining/Base.jmm", 2, "pass.inlining=false");
+        Compilation derived = compile("inlining/Derived.jmm", 2, "pass.inlining=false");
+        assertEquals(30 * 1000 + 50, run(derived, 3, base));
+    }
+
+    /**
+     * Products of induction variables become variables stepped with additions, with counters stepped by more than
+     * one, counting down or also written on a branch.
+     */
+    @Test
+    public void section5_StrengthReduction_InductionProducts() {
+        assertChanges("strength_reduction/InductionProducts.jmm", "strength-reduction");
+        assertSameAsO0("strength_reduction/InductionProducts.jmm", new int[]{0, 1, 6, 25}, 2);
+    }
+
+    /**
+     * Unrolled loops run the iterations left over by the factor, and loops whose bound changes stay as they are.
+     */
+    @Test
+    public void section6_LoopUnrolling_CountedLoops() {
+        assertChanges("loop_unrolling/CountedLoops.jmm", "loop-unrolling");
+        assertSameAsO0("loop_unrolling/CountedLoops.jmm", new int[]{0, 1, 2, 3, 4, 5, 9, 30}, 2);
+        assertSameAsO0("loop_unrolling/CountedLoops.jmm", new int[]{0, 1, 2, 3, 4, 5, 9, 30}, 2, "unrollFactor=3");
+    }
+
+    /**
+     * Fields kept in locals are written back before the calls of the region and after it, so that callees and the
+     * code after the loop see their values.
+     */
+    @Test
+    public void section7_ScalarReplacement_FieldLoops() {
+        assertChanges("scalar_replacement/FieldLoops.jmm", "scalar-replacement");
+        assertChanges("scalar_replacement/FieldLoops.jmm", "scalar-replacement", "pass.inlining=false");
+        assertSameAsO0("scalar_replacement/FieldLoops.jmm", new int[]{0, 1, 4, 9, 50}, 2);
+        assertSameAsO0("scalar_replacement/FieldLoops.jmm", new int[]{0, 1, 4, 9, 50}, 2, "pass.inlining=false");
+    }
+
+    /**
+     * Array references and lengths are only hoisted when the loop can't replace the array: not when the variable is
+     * assigned in the loop, nor when a call may replace an array field.
+     */
+    @Test
+    public void section8_ArrayHoisting_ArrayLoops() {
+        assertChanges("array_hoisting/ArrayLoops.jmm", "array-hoisting");
+        assertSameAsO0("array_hoisting/ArrayLoops.jmm", new int[]{1, 2, 7, 40}, 2);
+        assertSameAsO0("array_hoisting/ArrayLoops.jmm", new int[]{1, 2, 7, 40}, 2, "pass.inlining=false");
+    }
+
+    /**
+     * Where a Square and a Shape meet, the stack map frame needs their common superclass. Neither is on the classpath
+     * of the compiler, so the class is left for the old verifier, which loads them.
+     */
+    @Test
+    public void section9_ClassFiles_UnresolvedImports() {
+        Compilation shape = compile("class_files/Shape.jmm", 0);
+        Compilation square = compile("class_files/Square.jmm", 0);
+
+        for (int level = 0; level <= 2; level++) {
+            Compilation shapes = compile("class_files/Shapes.jmm", level);
+            assertEquals(0, run(shapes, 2, shape, square));
+            assertEquals(25, run(shapes, 5, shape, square));
+        }
+    }
+
+    /**
+     * With a small threshold, loops and runs of code of a long method move to new methods, which take the variables
+     * live on entering them and give back the ones read after them.
+     */
+    @Test
+    public void section10_MethodSplitting_LongMethod() {
+        assertChanges("method_splitting/LongMethod.jmm", "method-splitting", "splitThreshold=150");
+        assertSameAsO0("method_splitting/LongMethod.jmm", new int[]{0, 1, 6, 33}, 2, "splitThreshold=150");
+        assertSameAsO0("method_splitting/LongMethod.jmm", new int[]{0, 1, 6, 33}, 2, "splitThreshold=150",
+                "pass.loop-unrolling=false");
+    }
+
+    /**
+     * The literals true and false are 1 and 0 in OLLIR, in locals, fields and conditions.
+     */
+    @Test
+    public void section11_Literals_Booleans() {
+        for (int level = 0; level <= 2; level++) {
+            assertEquals(10101, run("literals/BooleanLiterals.jmm", 0, level));
+        }
+    }
+
+    /**
+     * The temporary that holds the new array is read by an access with an index, which keeps its index when the
+     * temporary is replaced by the array.
+     */
+    @Test
+    public void section12_Temporaries_ArrayAccess() {
+        assertChanges("temporaries/ArrayRead.jmm", "temporaries");
+        assertSameAsO0("temporaries/ArrayRead.jmm", new int[]{0, 1}, 2);
+    }
+}
@@ -0,0 +1,341 @@
+package pt.up.fe.comp.cpf;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.JmmAnalyser;
+import pt.up.fe.comp2023.Launcher;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.comp2023.cache.IncrementalCompiler;
+import pt.up.fe.comp2023.daemon.CompileClient;
+import pt.up.fe.comp2023.daemon.CompileDaemon;
+import pt.up.fe.comp2023.daemon.SourceWatcher;
+import pt.up.fe.comp2023.profiling.StageProfiler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of what keeps builds fast: the cache of compiled classes, incremental compilation, the compile daemon and the
+ * watch mode. Each test works in a temporary directory of its own.
+ */
+public class Cpf7_Builds {
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("jmm");
+    }
+
+    @After
+    public void deleteDirectory() {
+        SpecsIo.deleteFolder(directory.toFile());
+    }
+
+    static Map<String, String> config(String inputFile, int level) {
+        Map<String, String> config = new HashMap<>();
+        config.put("inputFile", inputFile);
+        config.put("debug", "false");
+        Launcher.setOptimizationLevel(config, level);
+        return config;
+    }
+
+    /**
+     * Compiles the code with {@link IncrementalCompiler}, keeping the fragments in the directory of the test.
+     */
+    IncrementalCompiler.Result compileIncrementally(String code, int level) {
+        Map<String, String> config = config("", level);
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        TestUtils.noErrors(parserResult.getReports());
+        JmmSemanticsResult semantics = new JmmAnalyser().semanticAnalysis(parserResult);
+
+        CompilationCache fragments = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        return new IncrementalCompiler(fragments, new StageProfiler()).compile(semantics, config);
+    }
+
+    /**
+     * Checks that the class put together from the fragments returns what the class compiled as a whole does.
+     */
+    static void assertSameAsWhole(String code, int level, IncrementalCompiler.Result result, int... arguments) {
+        Cpf6_Passes.Compilation whole = Cpf6_Passes.compileCode(code, level);
+        Cpf6_Passes.Compilation merged = new Cpf6_Passes.Compilation(result.className(), result.classFile(),
+                List.of());
+        for (int argument : arguments) {
+            assertEquals("run(" + argument + ") at -O" + level, Cpf6_Passes.run(whole, argument),
+                    Cpf6_Passes.run(merged, argument));
+        }
+    }
+
+    /**
+     * Sends the line to the daemon listening on the socket.
+     *
+     * @return the lines of the answer
+     */
+    static List<String> send(Path socket, String line) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            Writer writer = new OutputStreamWriter(Channels.newOutputStream(channel), UTF_8);
+            writer.write(line + "\n");
+            writer.flush();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), UTF_8));
+            List<String> answer = new ArrayList<>();
+            for (String answerLine = reader.readLine(); answerLine != null; answerLine = reader.readLine()) {
+                answer.add(answerLine);
+            }
+            return answer;
+        }
+    }
+
+    /**
+     * Waits until the daemon accepts connections. Its socket file appears when it binds, just before it listens.
+     */
+    static void awaitDaemon(Path socket) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+        fail("The compile daemon didn't listen on " + socket);
+    }
+
+    /**
+     * Waits for the text in what was printed.
+     */
+    static void awaitOutput(ByteArrayOutputStream output, String text) throws InterruptedException {
+        for (int i = 0; i < 600 && !output.toString(UTF_8).contains(text); i++) Thread.sleep(50);
+        assertTrue("Expected " + text + " in\n" + output.toString(UTF_8), output.toString(UTF_8).contains(text));
+    }
+
+    static CompilationCache.Entry entry(String className, String jasminCode) {
+        return new CompilationCache.Entry(className, jasminCode, new byte[]{(byte) 0xCA, (byte) 0xFE, 1, 2},
+                List.of(new Report(ReportType.WARNING, Stage.SEMANTIC, 3, 7, "unused")));
+    }
+
+    /**
+     * An entry comes back as it was put, under a key that only depends on the code and on the config entries that
+     * change the generated code.
+     */
+    @Test
+    public void section1_Cache_HitAfterPut() {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        String code = "class A {}";
+        String key = cache.key(code, config("A.jmm", 2));
+
+        assertEquals(key, cache.key(code, config("other/A.jmm", 2)));
+        assertNotEquals(key, cache.key(code, config("A.jmm", 1)));
+        assertNotEquals(key, cache.key("class A { int x; }", config("A.jmm", 2)));
+
+        assertFalse(cache.get(key).isPresent());
+        cache.put(key, entry("A", ".class A"));
+        Optional<CompilationCache.Entry> cached = cache.get(key);
+
+        assertTrue(cached.isPresent());
+        assertEquals("A", cached.get().className());
+        assertEquals(".class A", cached.get().jasminCode());
+        assertArrayEquals(new byte[]{(byte) 0xCA, (byte) 0xFE, 1, 2}, cached.get().classFile());
+        assertEquals(1, cached.get().reports().size());
+        assertEquals("unused", cached.get().reports().get(0).getMessage());
+        assertEquals(3, cached.get().reports().get(0).getLine());
+
+        // The statistics are kept in the directory, for the next runs
+        CompilationCache reopened = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        assertEquals(1, reopened.getHits());
+        assertEquals(1, reopened.getMisses());
+        assertEquals(0.5, reopened.getHitRate(), 0);
+    }
+
+    /**
+     * Over its bound, the cache removes the entries used least recently, not the ones added first.
+     */
+    @Test
+    public void section1_Cache_EvictsLeastRecentlyUsed() throws IOException {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        String first = cache.key("class A {}", config("A.jmm", 0));
+        String second = cache.key("class B {}", config("B.jmm", 0));
+        String third = cache.key("class C {}", config("C.jmm", 0));
+
+        cache.put(first, entry("A", ".class A"));
+        long entrySize = cache.getSize();
+        cache.put(second, entry("B", ".class B"));
+
+        long now = System.currentTimeMillis();
+        Files.setLastModifiedTime(directory.resolve(first), FileTime.fromMillis(now - 20000));
+        Files.setLastModifiedTime(directory.resolve(second), FileTime.fromMillis(now - 10000));
+        // Using the first entry makes the second one the least recently used
+        assertTrue(cache.get(first).isPresent());
+
+        new CompilationCache(directory, 2 * entrySize).put(third, entry("C", ".class C"));
+
+        assertTrue(cache.get(first).isPresent());
+        assertFalse(cache.get(second).isPresent());
+        assertTrue(cache.get(third).isPresent());
+        assertEquals(2 * entrySize, cache.getSize());
+    }
+
+    /**
+     * An entry whose files were removed under the cache is a miss, which the launcher compiles again.
+     */
+    @Test
+    public void section1_Cache_DamagedEntryMisses() throws IOException {
+        CompilationCache cache = new CompilationCache(directory, CompilationCache.DEFAULT_MAX_BYTES);
+        String key = cache.key("class A {}", config("A.jmm", 0));
+
+        cache.put(key, entry("A", ".class A"));
+        Files.delete(directory.resolve(key).resolve("A.class"));
+
+        assertFalse(cache.get(key).isPresent());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Only the methods whose code changed are compiled again, moving code around compiles nothing, and a change to
+     * the fields compiles every method.
+     */
+    @Test
+    public void section2_Incremental_ChangedMethods() {
+        String code = SpecsIo.read(new File(Cpf6_Passes.RESOURCES + "inlining/InlineSmall.jmm"));
+        String edited = code.replace("x = x - 3;", "x = x - 2;");
+
+        assertEquals(List.of("run", "twice", "clamp", "isEven", "countDown", "add", "offset", "main"),
+                compileIncrementally(code, 0).recompiled());
+        assertEquals(List.of(), compileIncrementally("\n\n" + code, 0).recompiled());
+
+        IncrementalCompiler.Result result = compileIncrementally(edited, 0);
+        assertEquals(List.of("countDown"), result.recompiled());
+        assertEquals(8, result.methods());
+        assertSameAsWhole(edited, 0, result, 0, 1, 7, 40);
+
+        String withField = edited.replace("int total;", "int total;\n    int unused;");
+        assertEquals(8, compileIncrementally(withField, 0).recompiled().size());
+    }
+
+    /**
+     * At -O2, inlining copies the callees into their callers, so the callers of a method that changed are compiled
+     * again with it.
+     */
+    @Test
+    public void section2_Incremental_CallersOfInlinedMethods() {
+        String code = SpecsIo.read(new File(Cpf6_Passes.RESOURCES + "inlining/InlineSmall.jmm"));
+        String edited = code.replace("x = x - 3;", "x = x - 2;");
+
+        assertSameAsWhole(code, 2, compileIncrementally(code, 2), 0, 1, 7, 40);
+
+        IncrementalCompiler.Result result = compileIncrementally(edited, 2);
+        assertEquals(List.of("run", "countDown"), result.recompiled());
+        assertSameAsWhole(edited, 2, result, 0, 1, 7, 40);
+    }
+
+    /**
+     * Requests the daemon can't handle, and compilations that fail, are answered with exit code 1, and the daemon
+     * goes on serving the next requests until one asks it to stop.
+     */
+    @Test
+    public void section3_Daemon_KeepsServing() throws Exception {
+        Path socket = directory.resolve("daemon.sock");
+        Thread daemon = new Thread(() -> new CompileDaemon(socket).serve());
+        daemon.start();
+        awaitDaemon(socket);
+
+        try {
+            for (String request : List.of("{", "{}", "null", "{\"command\":\"compile\"}", "{\"command\":\"run\"}")) {
+                List<String> answer = send(socket, request);
+                assertTrue(request + ": " + answer, answer.get(0).startsWith("err "));
+                assertEquals(request + ": " + answer, "exit 1", answer.get(answer.size() - 1));
+            }
+
+            String workingDirectory = Paths.get("").toAbsolutePath().toString();
+            List<String> missing = send(socket, "{\"command\":\"compile\",\"directory\":\"" + workingDirectory
+                    + "\",\"args\":[\"Missing.jmm\"]}");
+            assertEquals("exit 1", missing.get(missing.size() - 1));
+
+            // Relative paths, which the daemon reads from the directory it shares with the client
+            CompileClient client = new CompileClient(socket);
+            assertEquals(0, client.run(new String[]{Cpf6_Passes.RESOURCES + "inlining/InlineSmall.jmm", "-O1"}));
+            assertTrue(Files.isRegularFile(Paths.get("generated-files/InlineSmall/InlineSmall.class")));
+        } finally {
+            assertEquals(0, new CompileClient(socket).run(new String[]{"-stop"}));
+            daemon.join(10000);
+        }
+        assertFalse(daemon.isAlive());
+        assertFalse(Files.exists(socket));
+    }
+
+    /**
+     * The watcher compiles the files of the directory, without those in the directories the compiler writes to, and
+     * goes on after a file that fails to compile, even with an Error.
+     */
+    @Test
+    public void section4_Watch_SkipsOutputsAndFailures() throws Exception {
+        String program = SpecsIo.read(new File(Cpf6_Passes.RESOURCES + "inlining/InlineSmall.jmm"));
+        Path source = directory.resolve("InlineSmall.jmm");
+        Files.writeString(source, program);
+        Files.writeString(directory.resolve("Deep.jmm"), program.replace("InlineSmall", "Deep"));
+        Files.createDirectories(directory.resolve("generated-files"));
+        Files.writeString(directory.resolve("generated-files/Generated.jmm"), program);
+        Files.createDirectories(directory.resolve(".jmm-cache/methods"));
+        Files.writeString(directory.resolve(".jmm-cache/methods/Cached.jmm"), program);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printed = new PrintStream(output, true, UTF_8);
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        System.setOut(printed);
+        System.setErr(printed);
+
+        // As the compiler would on a program nested deeper than its stack allows
+        Consumer<String[]> compiler = args -> {
+            if (args[0].endsWith("Deep.jmm")) throw new StackOverflowError();
+            Launcher.compile(args);
+        };
+        Thread watcher = new Thread(() -> new SourceWatcher(directory, List.of("-O0"), compiler).run());
+        try {
+            watcher.start();
+            awaitOutput(output, "Rebuilt 2 files");
+            awaitOutput(output, "Could not compile " + directory.resolve("Deep.jmm") + ": "
+                    + StackOverflowError.class.getName());
+            awaitOutput(output, "Compiled " + source + " in");
+
+            output.reset();
+            Files.writeString(directory.resolve("generated-files/Generated.jmm"), program + "\n");
+            Files.writeString(source, program.replace("x = x - 3;", "x = x - 2;"));
+            awaitOutput(output, "Rebuilt 1 file ");
+            awaitOutput(output, "Compiled " + source + " in");
+        } finally {
+            watcher.interrupt();
+            watcher.join(10000);
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        assertFalse(watcher.isAlive());
+        assertFalse(output.toString(UTF_8).contains("Generated.jmm"));
+        assertFalse(output.toString(UTF_8).contains("Cached.jmm"));
+    }
+}